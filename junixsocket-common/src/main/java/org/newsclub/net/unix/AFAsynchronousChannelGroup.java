@@ -0,0 +1,385 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ShutdownChannelGroupException;
+import java.nio.channels.spi.AbstractSelectableChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An {@link AsynchronousChannelGroup} for junixsocket's asynchronous channels, backed by a single
+ * {@link AFEventLoop} that multiplexes all channels of the group.
+ * <p>
+ * Operations are first attempted directly on the initiating thread; if the socket is ready, the
+ * completion handler is invoked right away, without a thread handoff (up to a small nesting limit,
+ * to prevent unbounded recursion). Otherwise, the channel is registered with the event loop, which
+ * performs the I/O once the socket becomes ready.
+ * <p>
+ * By default, completion handlers of such deferred operations run on the event-loop thread, and
+ * must therefore not block. If the group was created with an {@link ExecutorService} (see
+ * {@link AsynchronousChannelGroup#withThreadPool(ExecutorService)}, or
+ * {@link AsynchronousChannelGroup#withFixedThreadPool(int, ThreadFactory)} with more than one
+ * thread), they are dispatched to that executor instead.
+ * <p>
+ * A group may host channels of any junixsocket address family (e.g., AF_UNIX, AF_TIPC, AF_VSOCK).
+ *
+ * @author Christian Kohlschütter
+ * @see AFSelectorProvider#asynchronousChannelProvider()
+ */
+public final class AFAsynchronousChannelGroup extends AsynchronousChannelGroup {
+  private static final int MAX_INLINE_DEPTH = 16;
+
+  private static final ThreadLocal<int[]> INLINE_DEPTH = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[1];
+    }
+  };
+
+  private final AFEventLoopGroup loopGroup;
+  private final AFEventLoop loop;
+  private final @Nullable ExecutorService executor;
+  private final Set<Member> members = Collections.newSetFromMap(
+      new ConcurrentHashMap<Member, Boolean>());
+  private final AtomicBoolean shutdown = new AtomicBoolean(false);
+
+  /**
+   * A channel that is hosted by an {@link AFAsynchronousChannelGroup}.
+   */
+  interface Member {
+    /**
+     * Returns the underlying selectable channel.
+     *
+     * @return The channel.
+     */
+    AbstractSelectableChannel selectableChannel();
+
+    /**
+     * Returns the operations the channel currently waits for.
+     *
+     * @return The interest set.
+     */
+    int interestOps();
+
+    /**
+     * Called from the event loop when the channel is ready for some of the operations of its
+     * interest set.
+     *
+     * @param readyOps The ready operations.
+     */
+    void onReady(int readyOps);
+
+    /**
+     * Called from the event loop after the channel was closed, to fail all pending operations.
+     */
+    void onClosed();
+
+    /**
+     * Closes the channel.
+     *
+     * @throws IOException on error.
+     */
+    void close() throws IOException;
+  }
+
+  AFAsynchronousChannelGroup(AFAsynchronousChannelProvider<?> provider,
+      @Nullable ExecutorService executor, @Nullable ThreadFactory threadFactory)
+      throws IOException {
+    super(provider);
+    this.executor = executor;
+
+    ThreadFactory tf = threadFactory;
+    if (tf == null) {
+      tf = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "junixsocket async channel group event loop");
+          t.setDaemon(true);
+          return t;
+        }
+      };
+    }
+    this.loopGroup = AFEventLoopGroup.builder().withLoops(1).withThreadFactory(tf).build();
+    this.loop = loopGroup.loops().get(0);
+    loop.setTerminationHook(new Runnable() {
+      @Override
+      public void run() {
+        terminated();
+      }
+    });
+  }
+
+  /**
+   * Returns the shared default group, which is never shut down.
+   *
+   * @return The default group.
+   */
+  static AFAsynchronousChannelGroup getDefault() {
+    return DefaultGroupHolder.INSTANCE;
+  }
+
+  /**
+   * Called from the event loop once it terminates; closes any remaining channels.
+   */
+  private void terminated() {
+    for (Member member : members) {
+      try {
+        member.close();
+      } catch (IOException e) {
+        // ignore
+      }
+      member.onClosed();
+    }
+    members.clear();
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Shuts down the event loop once the group is shut down and all its channels are closed. Must be
+   * called from the event loop.
+   */
+  private void terminateIfIdle() {
+    if (shutdown.get() && members.isEmpty()) {
+      loopGroup.shutdown();
+    }
+  }
+
+  private void onReady(Member member, SelectionKey key) {
+    int readyOps = key.readyOps() & key.interestOps();
+    if (readyOps != 0) {
+      member.onReady(readyOps);
+    }
+    updateKey(member, key);
+  }
+
+  private void updateKey(final Member member, @Nullable SelectionKey existingKey) {
+    AbstractSelectableChannel channel = member.selectableChannel();
+    SelectionKey key = existingKey == null ? loop.keyFor(channel) : existingKey;
+    int ops = member.interestOps();
+    if (!channel.isOpen()) {
+      if (key != null) {
+        key.cancel();
+      }
+      return;
+    }
+    try {
+      if (key == null || !key.isValid()) {
+        if (ops != 0) {
+          loop.registerInLoop(channel, ops, new AFEventLoop.ReadyHandler() {
+            @Override
+            public void onReady(SelectionKey k) {
+              AFAsynchronousChannelGroup.this.onReady(member, k);
+            }
+          });
+        }
+      } else if (key.interestOps() != ops) {
+        key.interestOps(ops);
+      }
+    } catch (ClosedChannelException e) {
+      member.onClosed();
+    }
+  }
+
+  /**
+   * Registers a new channel with this group.
+   *
+   * @param member The channel.
+   * @throws ShutdownChannelGroupException if the group is shut down.
+   */
+  void register(Member member) {
+    if (shutdown.get()) {
+      throw new ShutdownChannelGroupException();
+    }
+    members.add(member);
+  }
+
+  /**
+   * Removes a closed channel from this group, and fails its pending operations.
+   *
+   * @param member The channel.
+   */
+  void unregister(final Member member) {
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        members.remove(member);
+        SelectionKey key = loop.keyFor(member.selectableChannel());
+        if (key != null) {
+          key.cancel();
+        }
+        member.onClosed();
+        terminateIfIdle();
+      }
+    });
+  }
+
+  /**
+   * Requests the channel's current interest set to be applied by the event loop.
+   *
+   * @param member The channel.
+   */
+  void updateInterest(final Member member) {
+    if (loop.inEventLoop()) {
+      updateKey(member, null);
+    } else {
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          updateKey(member, null);
+        }
+      });
+    }
+  }
+
+  /**
+   * Runs the given task on the event loop. Tasks submitted after the event loop has terminated are
+   * ignored; by then, all channels of this group have been closed.
+   *
+   * @param task The task.
+   */
+  void execute(Runnable task) {
+    try {
+      loop.execute(task);
+    } catch (RejectedExecutionException e) {
+      // terminated
+    }
+  }
+
+  /**
+   * Invokes a completion handler for an operation that completed on the event loop.
+   *
+   * @param completion The handler invocation.
+   */
+  void dispatch(Runnable completion) {
+    ExecutorService exec = executor;
+    if (exec != null) {
+      try {
+        exec.execute(completion);
+        return;
+      } catch (RejectedExecutionException e) {
+        // executor shut down; invoke directly
+      }
+    }
+    invokeInline(completion);
+  }
+
+  /**
+   * Invokes a completion handler directly on the current thread, unless too many completions are
+   * already nested on this thread's stack.
+   *
+   * @param completion The handler invocation.
+   */
+  void invokeDirectly(Runnable completion) {
+    if (INLINE_DEPTH.get()[0] >= MAX_INLINE_DEPTH) {
+      ExecutorService exec = executor;
+      if (exec != null) {
+        try {
+          exec.execute(completion);
+          return;
+        } catch (RejectedExecutionException e) {
+          // fall through
+        }
+      }
+      execute(completion);
+    } else {
+      invokeInline(completion);
+    }
+  }
+
+  private static void invokeInline(Runnable completion) {
+    int[] depth = INLINE_DEPTH.get();
+    depth[0]++;
+    try {
+      completion.run();
+    } finally {
+      depth[0]--;
+    }
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return shutdown.get();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return loopGroup.isTerminated();
+  }
+
+  @Override
+  public void shutdown() {
+    if (this == DefaultGroupHolder.INSTANCE) {
+      return;
+    }
+    if (shutdown.compareAndSet(false, true)) {
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          terminateIfIdle();
+        }
+      });
+    }
+  }
+
+  @Override
+  public void shutdownNow() throws IOException {
+    if (this == DefaultGroupHolder.INSTANCE) {
+      return;
+    }
+    shutdown();
+    List<Member> list = new ArrayList<>(members);
+    for (Member member : list) {
+      member.close();
+    }
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return loopGroup.awaitTermination(timeout, unit);
+  }
+
+  private static final class DefaultGroupHolder {
+    static final AFAsynchronousChannelGroup INSTANCE;
+
+    static {
+      try {
+        INSTANCE = new AFAsynchronousChannelGroup(AFUNIXSelectorProvider.getInstance()
+            .asynchronousChannelProvider(), null, null);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
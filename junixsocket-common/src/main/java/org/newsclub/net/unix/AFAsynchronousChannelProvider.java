@@ -0,0 +1,127 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.IllegalChannelGroupException;
+import java.nio.channels.spi.AsynchronousChannelProvider;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Service-provider class for junixsocket's asynchronous channels, for the address family of a
+ * given {@link AFSelectorProvider}.
+ *
+ * @param <A> The concrete {@link AFSocketAddress} that is supported by this type.
+ * @author Christian Kohlschütter
+ * @see AFSelectorProvider#asynchronousChannelProvider()
+ */
+public final class AFAsynchronousChannelProvider<A extends AFSocketAddress> extends
+    AsynchronousChannelProvider {
+  private final AFSelectorProvider<A> selectorProvider;
+
+  AFAsynchronousChannelProvider(AFSelectorProvider<A> selectorProvider) {
+    super();
+    this.selectorProvider = Objects.requireNonNull(selectorProvider);
+  }
+
+  /**
+   * Returns the selector provider whose channels are wrapped by this provider.
+   *
+   * @return The selector provider.
+   */
+  public AFSelectorProvider<A> selectorProvider() {
+    return selectorProvider;
+  }
+
+  /**
+   * Creates a new channel group with one event-loop thread, created using the given thread
+   * factory. If {@code nThreads} is greater than 1, completion handlers for operations that did
+   * not complete immediately are dispatched to a fixed thread pool of that size, using the same
+   * thread factory; otherwise they run on the event-loop thread.
+   *
+   * @param nThreads The number of threads available for completion handlers.
+   * @param threadFactory The thread factory.
+   * @return The new group.
+   * @throws IOException on error.
+   */
+  @Override
+  public AFAsynchronousChannelGroup openAsynchronousChannelGroup(int nThreads,
+      ThreadFactory threadFactory) throws IOException {
+    if (nThreads <= 0) {
+      throw new IllegalArgumentException("nThreads");
+    }
+    Objects.requireNonNull(threadFactory);
+    return new AFAsynchronousChannelGroup(this, nThreads > 1 ? Executors.newFixedThreadPool(
+        nThreads, threadFactory) : null, threadFactory);
+  }
+
+  /**
+   * Creates a new channel group with one event-loop thread. Completion handlers for operations
+   * that did not complete immediately are dispatched to the given executor, which is shut down
+   * when the group terminates.
+   *
+   * @param executor The executor for completion handlers.
+   * @param initialSize Ignored.
+   * @return The new group.
+   * @throws IOException on error.
+   */
+  @Override
+  public AFAsynchronousChannelGroup openAsynchronousChannelGroup(ExecutorService executor,
+      int initialSize) throws IOException {
+    return new AFAsynchronousChannelGroup(this, Objects.requireNonNull(executor), null);
+  }
+
+  /**
+   * Creates a new channel group with one event-loop thread, on which completion handlers run
+   * unless they complete immediately on the initiating thread.
+   *
+   * @return The new group.
+   * @throws IOException on error.
+   */
+  public AFAsynchronousChannelGroup openAsynchronousChannelGroup() throws IOException {
+    return new AFAsynchronousChannelGroup(this, null, null);
+  }
+
+  @Override
+  public AFAsynchronousServerSocketChannel<A> openAsynchronousServerSocketChannel(
+      AsynchronousChannelGroup group) throws IOException {
+    return new AFAsynchronousServerSocketChannel<>(this, toGroup(group), selectorProvider
+        .openServerSocketChannel());
+  }
+
+  @Override
+  public AFAsynchronousSocketChannel<A> openAsynchronousSocketChannel(
+      AsynchronousChannelGroup group) throws IOException {
+    return new AFAsynchronousSocketChannel<>(this, toGroup(group), selectorProvider
+        .openSocketChannel());
+  }
+
+  private static AFAsynchronousChannelGroup toGroup(AsynchronousChannelGroup group) {
+    if (group == null) {
+      return AFAsynchronousChannelGroup.getDefault();
+    } else if (group instanceof AFAsynchronousChannelGroup) {
+      return (AFAsynchronousChannelGroup) group;
+    } else {
+      throw new IllegalChannelGroupException();
+    }
+  }
+}
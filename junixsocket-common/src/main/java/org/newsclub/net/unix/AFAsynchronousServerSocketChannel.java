@@ -0,0 +1,271 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.channels.AcceptPendingException;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.NotYetBoundException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.spi.AbstractSelectableChannel;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An {@link AsynchronousServerSocketChannel} implementation for junixsocket, wrapping a
+ * non-blocking {@link AFServerSocketChannel}.
+ * <p>
+ * If a connection is already pending, {@link #accept(Object, CompletionHandler)} completes on the
+ * initiating thread, without a thread handoff. Accepted channels belong to the same
+ * {@link AFAsynchronousChannelGroup} as this channel.
+ *
+ * @param <A> The concrete {@link AFSocketAddress} that is supported by this type.
+ * @author Christian Kohlschütter
+ * @see AFAsynchronousChannelProvider#openAsynchronousServerSocketChannel(
+ *      java.nio.channels.AsynchronousChannelGroup)
+ */
+public final class AFAsynchronousServerSocketChannel<A extends AFSocketAddress> extends
+    AsynchronousServerSocketChannel implements AFAsynchronousChannelGroup.Member,
+    FileDescriptorAccess {
+  private final AFAsynchronousChannelProvider<A> provider;
+  private final AFServerSocketChannel<A> channel;
+  private final AFAsynchronousChannelGroup group;
+  private final AtomicBoolean acceptPending = new AtomicBoolean(false);
+  private volatile @Nullable AcceptOperation acceptOp;
+
+  private static final class AcceptOperation {
+    private final @Nullable Object attachment;
+    private final CompletionHandler<AsynchronousSocketChannel, Object> handler;
+
+    @SuppressWarnings("unchecked")
+    AcceptOperation(@Nullable Object attachment, CompletionHandler<?, ?> handler) {
+      this.attachment = attachment;
+      this.handler = (CompletionHandler<AsynchronousSocketChannel, Object>) Objects
+          .requireNonNull(handler, "handler");
+    }
+  }
+
+  AFAsynchronousServerSocketChannel(AFAsynchronousChannelProvider<A> provider,
+      AFAsynchronousChannelGroup group, AFServerSocketChannel<A> channel) throws IOException {
+    super(provider);
+    this.provider = provider;
+    this.group = group;
+    this.channel = channel;
+    boolean success = false;
+    try {
+      channel.configureBlocking(false);
+      group.register(this);
+      success = true;
+    } finally {
+      if (!success) {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Returns the underlying {@link AFServerSocketChannel}, which is in non-blocking mode.
+   *
+   * @return The underlying channel.
+   */
+  public AFServerSocketChannel<A> getChannel() {
+    return channel;
+  }
+
+  @Override
+  public FileDescriptor getFileDescriptor() throws IOException {
+    return channel.getFileDescriptor();
+  }
+
+  @Override
+  public AbstractSelectableChannel selectableChannel() {
+    return channel;
+  }
+
+  @Override
+  public int interestOps() {
+    return acceptOp == null ? 0 : SelectionKey.OP_ACCEPT;
+  }
+
+  @Override
+  public AFAsynchronousServerSocketChannel<A> bind(SocketAddress local, int backlog)
+      throws IOException {
+    channel.bind(local, backlog);
+    return this;
+  }
+
+  @Override
+  public <T> AFAsynchronousServerSocketChannel<A> setOption(SocketOption<T> name, T value)
+      throws IOException {
+    channel.setOption(name, value);
+    return this;
+  }
+
+  @Override
+  public <T> T getOption(SocketOption<T> name) throws IOException {
+    return channel.getOption(name);
+  }
+
+  @Override
+  public Set<SocketOption<?>> supportedOptions() {
+    return channel.supportedOptions();
+  }
+
+  @Override
+  public @Nullable A getLocalAddress() throws IOException {
+    return channel.getLocalAddress();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return channel.isOpen();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      channel.close();
+    } finally {
+      group.unregister(this);
+    }
+  }
+
+  @Override
+  public <X> void accept(X attachment,
+      CompletionHandler<AsynchronousSocketChannel, ? super X> handler) {
+    accept0(new AcceptOperation(attachment, handler));
+  }
+
+  @Override
+  public Future<AsynchronousSocketChannel> accept() {
+    AFCompletionFuture<AsynchronousSocketChannel> future = new AFCompletionFuture<>();
+    final AcceptOperation op = new AcceptOperation(null, future);
+    accept0(op);
+    future.setCancelAction(() -> group.execute(() -> {
+      if (acceptOp == op) {
+        acceptOp = null;
+        acceptPending.set(false);
+        group.updateInterest(this);
+      }
+    }));
+    return future;
+  }
+
+  private void accept0(AcceptOperation op) {
+    if (!channel.isOpen()) {
+      complete(op, null, new ClosedChannelException(), true);
+      return;
+    }
+    if (channel.getLocalAddress() == null) {
+      throw new NotYetBoundException();
+    }
+    if (!acceptPending.compareAndSet(false, true)) {
+      throw new AcceptPendingException();
+    }
+
+    AFAsynchronousSocketChannel<A> accepted;
+    try {
+      accepted = doAccept();
+    } catch (IOException e) {
+      acceptPending.set(false);
+      complete(op, null, e, true);
+      return;
+    }
+    if (accepted != null) {
+      acceptPending.set(false);
+      complete(op, accepted, null, true);
+      return;
+    }
+
+    acceptOp = op;
+    group.updateInterest(this);
+  }
+
+  private @Nullable AFAsynchronousSocketChannel<A> doAccept() throws IOException {
+    AFSocketChannel<A> socketChannel = channel.accept();
+    if (socketChannel == null) {
+      return null;
+    }
+    return new AFAsynchronousSocketChannel<>(provider, group, socketChannel);
+  }
+
+  @Override
+  public void onReady(int readyOps) {
+    AcceptOperation op = acceptOp;
+    if (op == null || (readyOps & SelectionKey.OP_ACCEPT) == 0) {
+      return;
+    }
+    AFAsynchronousSocketChannel<A> accepted;
+    try {
+      accepted = doAccept();
+    } catch (IOException e) {
+      acceptOp = null;
+      acceptPending.set(false);
+      complete(op, null, e, false);
+      return;
+    }
+    if (accepted != null) {
+      acceptOp = null;
+      acceptPending.set(false);
+      complete(op, accepted, null, false);
+    }
+  }
+
+  @Override
+  public void onClosed() {
+    AcceptOperation op = acceptOp;
+    if (op != null) {
+      acceptOp = null;
+      acceptPending.set(false);
+      complete(op, null, new AsynchronousCloseException(), false);
+    }
+  }
+
+  private void complete(final AcceptOperation op,
+      final @Nullable AFAsynchronousSocketChannel<A> accepted, final @Nullable Throwable exc,
+      boolean inline) {
+    Runnable completion = () -> {
+      if (exc == null) {
+        op.handler.completed(accepted, op.attachment);
+      } else {
+        op.handler.failed(exc, op.attachment);
+      }
+    };
+    if (inline) {
+      group.invokeDirectly(completion);
+    } else {
+      group.dispatch(completion);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[" + channel + "]";
+  }
+}
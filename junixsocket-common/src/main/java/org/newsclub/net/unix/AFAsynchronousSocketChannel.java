@@ -0,0 +1,599 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.ReadPendingException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.WritePendingException;
+import java.nio.channels.spi.AbstractSelectableChannel;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An {@link AsynchronousSocketChannel} implementation for junixsocket, wrapping a non-blocking
+ * {@link AFSocketChannel}.
+ * <p>
+ * Reads, writes and connects are first attempted on the initiating thread; if they can be
+ * completed right away, the completion handler is invoked directly, without a thread handoff.
+ * Otherwise, the operation is completed by the {@link AFAsynchronousChannelGroup}'s event loop.
+ *
+ * @param <A> The concrete {@link AFSocketAddress} that is supported by this type.
+ * @author Christian Kohlschütter
+ * @see AFAsynchronousChannelProvider#openAsynchronousSocketChannel(
+ *      java.nio.channels.AsynchronousChannelGroup)
+ */
+public final class AFAsynchronousSocketChannel<A extends AFSocketAddress> extends
+    AsynchronousSocketChannel implements AFAsynchronousChannelGroup.Member, FileDescriptorAccess {
+  private final AFSocketChannel<A> channel;
+  private final AFAsynchronousChannelGroup group;
+
+  private final AtomicBoolean readPending = new AtomicBoolean(false);
+  private final AtomicBoolean writePending = new AtomicBoolean(false);
+  private final AtomicBoolean connectPending = new AtomicBoolean(false);
+
+  private volatile @Nullable Operation readOp;
+  private volatile @Nullable Operation writeOp;
+  private volatile @Nullable Operation connectOp;
+
+  private volatile boolean readKilled;
+  private volatile boolean writeKilled;
+
+  /**
+   * A pending read, write or connect operation.
+   */
+  private static final class Operation {
+    private final ByteBuffer @Nullable [] buffers;
+    private final int offset;
+    private final int length;
+    private final boolean longResult;
+    private final @Nullable Object attachment;
+    private final CompletionHandler<Object, Object> handler;
+    private AFTimerWheel.@Nullable Timeout timeout;
+
+    @SuppressWarnings({"unchecked", "PMD.ArrayIsStoredDirectly"})
+    Operation(ByteBuffer @Nullable [] buffers, int offset, int length, boolean longResult,
+        @Nullable Object attachment, CompletionHandler<?, ?> handler) {
+      this.buffers = buffers;
+      this.offset = offset;
+      this.length = length;
+      this.longResult = longResult;
+      this.attachment = attachment;
+      this.handler = (CompletionHandler<Object, Object>) Objects.requireNonNull(handler,
+          "handler");
+    }
+
+    boolean hasRemaining() {
+      ByteBuffer[] bufs = buffers;
+      if (bufs == null) {
+        return false;
+      }
+      for (int i = offset, n = offset + length; i < n; i++) {
+        if (bufs[i].hasRemaining()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    Object result(long count) {
+      return longResult ? (Object) count : (Object) (int) count;
+    }
+
+    void cancelTimeout() {
+      AFTimerWheel.Timeout t = timeout;
+      if (t != null) {
+        t.cancel();
+      }
+    }
+  }
+
+  AFAsynchronousSocketChannel(AFAsynchronousChannelProvider<A> provider,
+      AFAsynchronousChannelGroup group, AFSocketChannel<A> channel) throws IOException {
+    super(provider);
+    this.group = group;
+    this.channel = channel;
+    boolean success = false;
+    try {
+      channel.configureBlocking(false);
+      group.register(this);
+      success = true;
+    } finally {
+      if (!success) {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Returns the underlying {@link AFSocketChannel}, which is in non-blocking mode.
+   * <p>
+   * Use this to access junixsocket-specific features (such as peer credentials or file descriptor
+   * passing). Do not read from or write to the channel directly while an asynchronous operation
+   * is pending.
+   *
+   * @return The underlying channel.
+   */
+  public AFSocketChannel<A> getChannel() {
+    return channel;
+  }
+
+  @Override
+  public FileDescriptor getFileDescriptor() throws IOException {
+    return channel.getFileDescriptor();
+  }
+
+  @Override
+  public AbstractSelectableChannel selectableChannel() {
+    return channel;
+  }
+
+  @Override
+  public int interestOps() {
+    int ops = 0;
+    if (readOp != null) {
+      ops |= SelectionKey.OP_READ;
+    }
+    if (writeOp != null) {
+      ops |= SelectionKey.OP_WRITE;
+    }
+    if (connectOp != null) {
+      ops |= SelectionKey.OP_CONNECT;
+    }
+    return ops;
+  }
+
+  @Override
+  public AFAsynchronousSocketChannel<A> bind(SocketAddress local) throws IOException {
+    channel.bind(local);
+    return this;
+  }
+
+  @Override
+  public <T> AFAsynchronousSocketChannel<A> setOption(SocketOption<T> name, T value)
+      throws IOException {
+    channel.setOption(name, value);
+    return this;
+  }
+
+  @Override
+  public <T> T getOption(SocketOption<T> name) throws IOException {
+    return channel.getOption(name);
+  }
+
+  @Override
+  public Set<SocketOption<?>> supportedOptions() {
+    return channel.supportedOptions();
+  }
+
+  @Override
+  public AFAsynchronousSocketChannel<A> shutdownInput() throws IOException {
+    channel.shutdownInput();
+    return this;
+  }
+
+  @Override
+  public AFAsynchronousSocketChannel<A> shutdownOutput() throws IOException {
+    channel.shutdownOutput();
+    return this;
+  }
+
+  @Override
+  public A getRemoteAddress() throws IOException {
+    return channel.getRemoteAddress();
+  }
+
+  @Override
+  public A getLocalAddress() throws IOException {
+    return channel.getLocalAddress();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return channel.isOpen();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      channel.close();
+    } finally {
+      group.unregister(this);
+    }
+  }
+
+  @Override
+  public <X> void connect(SocketAddress remote, X attachment,
+      CompletionHandler<Void, ? super X> handler) {
+    connect0(remote, new Operation(null, 0, 0, false, attachment, handler));
+  }
+
+  @Override
+  public Future<Void> connect(SocketAddress remote) {
+    AFCompletionFuture<Void> future = new AFCompletionFuture<>();
+    connect0(remote, new Operation(null, 0, 0, false, null, future));
+    return future;
+  }
+
+  private void connect0(SocketAddress remote, Operation op) {
+    Objects.requireNonNull(remote, "remote");
+    if (!channel.isOpen()) {
+      fail(op, new ClosedChannelException(), true);
+      return;
+    }
+    if (channel.isConnected()) {
+      throw new AlreadyConnectedException();
+    }
+    if (!connectPending.compareAndSet(false, true)) {
+      throw new ConnectionPendingException();
+    }
+
+    boolean connected;
+    try {
+      connected = channel.connect(remote);
+    } catch (IOException e) {
+      connectPending.set(false);
+      fail(op, e, true);
+      return;
+    }
+    if (connected) {
+      connectPending.set(false);
+      succeed(op, null, true);
+    } else {
+      connectOp = op;
+      group.updateInterest(this);
+    }
+  }
+
+  @Override
+  public <X> void read(ByteBuffer dst, long timeout, TimeUnit unit, X attachment,
+      CompletionHandler<Integer, ? super X> handler) {
+    checkReadable(dst);
+    read0(new Operation(new ByteBuffer[] {dst}, 0, 1, false, attachment, handler), timeout, unit);
+  }
+
+  @Override
+  public Future<Integer> read(ByteBuffer dst) {
+    checkReadable(dst);
+    AFCompletionFuture<Integer> future = new AFCompletionFuture<>();
+    final Operation op = new Operation(new ByteBuffer[] {dst}, 0, 1, false, null, future);
+    read0(op, 0, TimeUnit.MILLISECONDS);
+    future.setCancelAction(() -> group.execute(() -> abortRead(op, null)));
+    return future;
+  }
+
+  @Override
+  public <X> void read(ByteBuffer[] dsts, int offset, int length, long timeout, TimeUnit unit,
+      X attachment, CompletionHandler<Long, ? super X> handler) {
+    checkBounds(dsts, offset, length);
+    for (int i = offset, n = offset + length; i < n; i++) {
+      checkReadable(dsts[i]);
+    }
+    read0(new Operation(dsts, offset, length, true, attachment, handler), timeout, unit);
+  }
+
+  @Override
+  public <X> void write(ByteBuffer src, long timeout, TimeUnit unit, X attachment,
+      CompletionHandler<Integer, ? super X> handler) {
+    Objects.requireNonNull(src);
+    write0(new Operation(new ByteBuffer[] {src}, 0, 1, false, attachment, handler), timeout, unit);
+  }
+
+  @Override
+  public Future<Integer> write(ByteBuffer src) {
+    Objects.requireNonNull(src);
+    AFCompletionFuture<Integer> future = new AFCompletionFuture<>();
+    final Operation op = new Operation(new ByteBuffer[] {src}, 0, 1, false, null, future);
+    write0(op, 0, TimeUnit.MILLISECONDS);
+    future.setCancelAction(() -> group.execute(() -> abortWrite(op, null)));
+    return future;
+  }
+
+  @Override
+  public <X> void write(ByteBuffer[] srcs, int offset, int length, long timeout, TimeUnit unit,
+      X attachment, CompletionHandler<Long, ? super X> handler) {
+    checkBounds(srcs, offset, length);
+    write0(new Operation(srcs, offset, length, true, attachment, handler), timeout, unit);
+  }
+
+  private static void checkReadable(ByteBuffer dst) {
+    if (dst.isReadOnly()) {
+      throw new IllegalArgumentException("Read-only buffer");
+    }
+  }
+
+  private static void checkBounds(ByteBuffer[] buffers, int offset, int length) {
+    if (offset < 0 || length < 0 || offset > buffers.length - length) {
+      throw new IndexOutOfBoundsException();
+    }
+  }
+
+  private void read0(Operation op, long timeout, TimeUnit unit) {
+    if (!channel.isOpen()) {
+      fail(op, new ClosedChannelException(), true);
+      return;
+    }
+    if (readKilled) {
+      throw new IllegalStateException("Reading not allowed due to timeout or cancellation");
+    }
+    if (!channel.isConnected()) {
+      throw new NotYetConnectedException();
+    }
+    if (!readPending.compareAndSet(false, true)) {
+      throw new ReadPendingException();
+    }
+
+    long count;
+    try {
+      count = op.hasRemaining() ? doRead(op) : 0;
+    } catch (IOException e) {
+      readPending.set(false);
+      fail(op, e, true);
+      return;
+    }
+    if (count != 0 || !op.hasRemaining()) {
+      readPending.set(false);
+      succeed(op, op.result(count), true);
+      return;
+    }
+
+    readOp = op;
+    scheduleTimeout(op, timeout, unit, true);
+    group.updateInterest(this);
+  }
+
+  private void write0(Operation op, long timeout, TimeUnit unit) {
+    if (!channel.isOpen()) {
+      fail(op, new ClosedChannelException(), true);
+      return;
+    }
+    if (writeKilled) {
+      throw new IllegalStateException("Writing not allowed due to timeout or cancellation");
+    }
+    if (!channel.isConnected()) {
+      throw new NotYetConnectedException();
+    }
+    if (!writePending.compareAndSet(false, true)) {
+      throw new WritePendingException();
+    }
+
+    long count;
+    try {
+      count = op.hasRemaining() ? doWrite(op) : 0;
+    } catch (IOException e) {
+      writePending.set(false);
+      fail(op, e, true);
+      return;
+    }
+    if (count != 0 || !op.hasRemaining()) {
+      writePending.set(false);
+      succeed(op, op.result(count), true);
+      return;
+    }
+
+    writeOp = op;
+    scheduleTimeout(op, timeout, unit, false);
+    group.updateInterest(this);
+  }
+
+  private void scheduleTimeout(final Operation op, long timeout, TimeUnit unit,
+      final boolean read) {
+    if (timeout <= 0) {
+      return;
+    }
+    op.timeout = AFTimerWheel.getDefault().schedule(() -> group.execute(() -> {
+      InterruptedByTimeoutException exc = new InterruptedByTimeoutException();
+      if (read) {
+        abortRead(op, exc);
+      } else {
+        abortWrite(op, exc);
+      }
+    }), timeout, unit);
+  }
+
+  @SuppressWarnings("null")
+  private long doRead(Operation op) throws IOException {
+    ByteBuffer[] bufs = op.buffers;
+    if (op.length == 1) {
+      return channel.read(bufs[op.offset]);
+    } else {
+      return channel.read(bufs, op.offset, op.length);
+    }
+  }
+
+  @SuppressWarnings("null")
+  private long doWrite(Operation op) throws IOException {
+    ByteBuffer[] bufs = op.buffers;
+    if (op.length == 1) {
+      return channel.write(bufs[op.offset]);
+    } else {
+      return channel.write(bufs, op.offset, op.length);
+    }
+  }
+
+  @Override
+  public void onReady(int readyOps) {
+    if ((readyOps & SelectionKey.OP_CONNECT) != 0) {
+      onConnectReady();
+    }
+    if ((readyOps & SelectionKey.OP_READ) != 0) {
+      onReadReady();
+    }
+    if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+      onWriteReady();
+    }
+  }
+
+  private void onConnectReady() {
+    Operation op = connectOp;
+    if (op == null) {
+      return;
+    }
+    try {
+      if (!channel.finishConnect()) {
+        return;
+      }
+    } catch (IOException e) {
+      connectOp = null;
+      connectPending.set(false);
+      fail(op, e, false);
+      return;
+    }
+    connectOp = null;
+    connectPending.set(false);
+    succeed(op, null, false);
+  }
+
+  private void onReadReady() {
+    Operation op = readOp;
+    if (op == null) {
+      return;
+    }
+    long count;
+    try {
+      count = doRead(op);
+    } catch (IOException e) {
+      readOp = null;
+      op.cancelTimeout();
+      readPending.set(false);
+      fail(op, e, false);
+      return;
+    }
+    if (count == 0 && op.hasRemaining()) {
+      return;
+    }
+    readOp = null;
+    op.cancelTimeout();
+    readPending.set(false);
+    succeed(op, op.result(count), false);
+  }
+
+  private void onWriteReady() {
+    Operation op = writeOp;
+    if (op == null) {
+      return;
+    }
+    long count;
+    try {
+      count = doWrite(op);
+    } catch (IOException e) {
+      writeOp = null;
+      op.cancelTimeout();
+      writePending.set(false);
+      fail(op, e, false);
+      return;
+    }
+    if (count == 0 && op.hasRemaining()) {
+      return;
+    }
+    writeOp = null;
+    op.cancelTimeout();
+    writePending.set(false);
+    succeed(op, op.result(count), false);
+  }
+
+  private void abortRead(Operation op, @Nullable Throwable exc) {
+    if (readOp != op) {
+      return;
+    }
+    readOp = null;
+    readKilled = true;
+    op.cancelTimeout();
+    readPending.set(false);
+    group.updateInterest(this);
+    if (exc != null) {
+      fail(op, exc, false);
+    }
+  }
+
+  private void abortWrite(Operation op, @Nullable Throwable exc) {
+    if (writeOp != op) {
+      return;
+    }
+    writeOp = null;
+    writeKilled = true;
+    op.cancelTimeout();
+    writePending.set(false);
+    group.updateInterest(this);
+    if (exc != null) {
+      fail(op, exc, false);
+    }
+  }
+
+  @Override
+  public void onClosed() {
+    Operation op;
+    if ((op = readOp) != null) {
+      readOp = null;
+      op.cancelTimeout();
+      readPending.set(false);
+      fail(op, new AsynchronousCloseException(), false);
+    }
+    if ((op = writeOp) != null) {
+      writeOp = null;
+      op.cancelTimeout();
+      writePending.set(false);
+      fail(op, new AsynchronousCloseException(), false);
+    }
+    if ((op = connectOp) != null) {
+      connectOp = null;
+      connectPending.set(false);
+      fail(op, new AsynchronousCloseException(), false);
+    }
+  }
+
+  private void succeed(final Operation op, final @Nullable Object result, boolean inline) {
+    Runnable completion = () -> op.handler.completed(result, op.attachment);
+    if (inline) {
+      group.invokeDirectly(completion);
+    } else {
+      group.dispatch(completion);
+    }
+  }
+
+  private void fail(final Operation op, final Throwable exc, boolean inline) {
+    Runnable completion = () -> op.handler.failed(exc, op.attachment);
+    if (inline) {
+      group.invokeDirectly(completion);
+    } else {
+      group.dispatch(completion);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[" + channel + "]";
+  }
+}
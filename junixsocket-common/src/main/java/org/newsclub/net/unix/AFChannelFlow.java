@@ -0,0 +1,493 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.spi.AbstractSelectableChannel;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+import org.eclipse.jdt.annotation.Nullable;
+import org.newsclub.net.unix.pool.ConcurrentQueueObjectPool;
+import org.newsclub.net.unix.pool.ObjectPool;
+import org.newsclub.net.unix.pool.ObjectPool.Lease;
+
+/**
+ * Reactive-streams ({@link java.util.concurrent.Flow}) adapters for a non-blocking
+ * {@link AFSocketChannel} or {@link AFDatagramChannel}, driven by the event loop of an
+ * {@link AFAsynchronousChannelGroup}.
+ * <p>
+ * The {@link #publisher() publisher} only reads from the socket while its subscriber has
+ * outstanding demand. Without demand, the channel is not polled for reading, so unread data stays
+ * in the socket's receive buffer, and backpressure propagates to the sender via the kernel, instead
+ * of accumulating in Java queues. Each {@link ByteBuffer} passed to
+ * {@link java.util.concurrent.Flow.Subscriber#onNext(Object)} is taken from a pool of direct
+ * buffers, and is only valid until {@code onNext} returns; subscribers that need to retain data must
+ * copy it. For datagram channels, each buffer holds one datagram (truncated to the buffer size).
+ * <p>
+ * The {@link #subscriber() subscriber} requests one buffer at a time, and writes it directly from
+ * {@code onNext}; only if the socket's send buffer is full, the remaining bytes are copied and
+ * written once the socket becomes writable, before more data is requested from upstream.
+ * <p>
+ * NOTE: This class requires Java 9 or newer, and is not available on Java 8.
+ *
+ * @author Christian Kohlschütter
+ */
+@IgnoreJRERequirement // excluded from the Java 8 build
+public final class AFChannelFlow implements AFAsynchronousChannelGroup.Member, Closeable {
+  private static final int DEFAULT_BUFFER_SIZE = 8192;
+  private static final int MAX_READS_PER_WAKEUP = 16;
+
+  private static final ObjectPool<ByteBuffer> DEFAULT_BUFFER_POOL = newBufferPool(
+      DEFAULT_BUFFER_SIZE, 64);
+
+  private final AbstractSelectableChannel channel;
+  private final ByteChannel byteChannel;
+  private final @Nullable AFDatagramChannel<?> datagramChannel;
+  private final AFAsynchronousChannelGroup group;
+  private final ObjectPool<ByteBuffer> bufferPool;
+
+  private final Publisher publisher = new Publisher();
+  private final Subscriber subscriber = new Subscriber();
+
+  private AFChannelFlow(AbstractSelectableChannel channel, ByteChannel byteChannel,
+      @Nullable AFDatagramChannel<?> datagramChannel, @Nullable AFAsynchronousChannelGroup group,
+      int bufferSize) throws IOException {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("bufferSize");
+    }
+    this.channel = channel;
+    this.byteChannel = byteChannel;
+    this.datagramChannel = datagramChannel;
+    this.group = group == null ? AFAsynchronousChannelGroup.getDefault() : group;
+    this.bufferPool = bufferSize == DEFAULT_BUFFER_SIZE ? DEFAULT_BUFFER_POOL : newBufferPool(
+        bufferSize, 4);
+
+    channel.configureBlocking(false);
+    this.group.register(this);
+  }
+
+  private static ObjectPool<ByteBuffer> newBufferPool(int bufferSize, int maxCapacity) {
+    return new ConcurrentQueueObjectPool<>(() -> ByteBuffer.allocateDirect(bufferSize), (bb) -> {
+      bb.clear();
+      return true;
+    }, maxCapacity);
+  }
+
+  /**
+   * Creates Flow adapters for the given socket channel, using the default
+   * {@link AFAsynchronousChannelGroup} and buffer size. The channel is switched to non-blocking
+   * mode.
+   *
+   * @param channel The channel.
+   * @return The adapters.
+   * @throws IOException on error.
+   */
+  public static AFChannelFlow of(AFSocketChannel<?> channel) throws IOException {
+    return of(channel, null, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates Flow adapters for the given socket channel. The channel is switched to non-blocking
+   * mode.
+   *
+   * @param channel The channel.
+   * @param group The channel group whose event loop drives the I/O, or {@code null} for the default
+   *          group.
+   * @param bufferSize The size of the buffers emitted by the publisher.
+   * @return The adapters.
+   * @throws IOException on error.
+   */
+  public static AFChannelFlow of(AFSocketChannel<?> channel,
+      @Nullable AFAsynchronousChannelGroup group, int bufferSize) throws IOException {
+    return new AFChannelFlow(channel, channel, null, group, bufferSize);
+  }
+
+  /**
+   * Creates Flow adapters for the given datagram channel, using the default
+   * {@link AFAsynchronousChannelGroup} and buffer size. The channel is switched to non-blocking
+   * mode. To use the {@link #subscriber()}, the channel must be connected.
+   *
+   * @param channel The channel.
+   * @return The adapters.
+   * @throws IOException on error.
+   */
+  public static AFChannelFlow of(AFDatagramChannel<?> channel) throws IOException {
+    return of(channel, null, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates Flow adapters for the given datagram channel. The channel is switched to non-blocking
+   * mode. To use the {@link #subscriber()}, the channel must be connected.
+   *
+   * @param channel The channel.
+   * @param group The channel group whose event loop drives the I/O, or {@code null} for the default
+   *          group.
+   * @param bufferSize The size of the buffers emitted by the publisher, which should be at least as
+   *          large as the largest expected datagram.
+   * @return The adapters.
+   * @throws IOException on error.
+   */
+  public static AFChannelFlow of(AFDatagramChannel<?> channel,
+      @Nullable AFAsynchronousChannelGroup group, int bufferSize) throws IOException {
+    return new AFChannelFlow(channel, channel, channel, group, bufferSize);
+  }
+
+  /**
+   * Returns the publisher of data read from the channel. Only a single subscriber is supported.
+   * The publisher completes upon end-of-stream.
+   *
+   * @return The publisher.
+   */
+  public Flow.Publisher<ByteBuffer> publisher() {
+    return publisher;
+  }
+
+  /**
+   * Returns the subscriber that writes data to the channel. It may only be subscribed once.
+   *
+   * @return The subscriber.
+   * @see #whenSubscriberDone()
+   */
+  public Flow.Subscriber<ByteBuffer> subscriber() {
+    return subscriber;
+  }
+
+  /**
+   * Returns a future that completes once the {@link #subscriber()} has written all data after
+   * upstream completion, or completes exceptionally upon an upstream or write error.
+   * <p>
+   * The channel is not closed or shut down automatically.
+   *
+   * @return The future.
+   */
+  public CompletableFuture<Void> whenSubscriberDone() {
+    return subscriber.done;
+  }
+
+  /**
+   * Closes the channel; an active subscription of the {@link #publisher()} is terminated with an
+   * {@link AsynchronousCloseException}.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      channel.close();
+    } finally {
+      group.unregister(this);
+    }
+  }
+
+  @Override
+  public AbstractSelectableChannel selectableChannel() {
+    return channel;
+  }
+
+  @Override
+  public int interestOps() {
+    return (publisher.wantsRead() ? SelectionKey.OP_READ : 0) | (subscriber.writePending
+        ? SelectionKey.OP_WRITE : 0);
+  }
+
+  @Override
+  public void onReady(int readyOps) {
+    if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+      subscriber.drain();
+    }
+    if ((readyOps & SelectionKey.OP_READ) != 0) {
+      publisher.read();
+    }
+  }
+
+  @Override
+  public void onClosed() {
+    publisher.terminate(new AsynchronousCloseException());
+    subscriber.fail(new AsynchronousCloseException());
+  }
+
+  /**
+   * The publisher side; all signals to the subscriber, except {@code onSubscribe}, are issued from
+   * the event loop.
+   */
+  @IgnoreJRERequirement // excluded from the Java 8 build
+  private final class Publisher implements Flow.Publisher<ByteBuffer>, Flow.Subscription {
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+    private final AtomicLong demand = new AtomicLong();
+    private volatile Flow.@Nullable Subscriber<? super ByteBuffer> downstream;
+    private volatile boolean done;
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> s) {
+      Objects.requireNonNull(s);
+      if (!subscribed.compareAndSet(false, true)) {
+        s.onSubscribe(new Flow.Subscription() {
+          @Override
+          public void request(long n) {
+          }
+
+          @Override
+          public void cancel() {
+          }
+        });
+        s.onError(new IllegalStateException("Only a single subscriber is supported"));
+        return;
+      }
+      s.onSubscribe(this);
+      downstream = s;
+      group.execute(() -> {
+        if (!channel.isOpen()) {
+          terminate(new ClosedChannelException());
+        } else {
+          group.updateInterest(AFChannelFlow.this);
+        }
+      });
+    }
+
+    boolean wantsRead() {
+      return !done && downstream != null && demand.get() > 0;
+    }
+
+    @Override
+    public void request(long n) {
+      if (done) {
+        return;
+      }
+      if (n <= 0) {
+        group.execute(() -> terminate(new IllegalArgumentException(
+            "Non-positive request count: " + n)));
+        return;
+      }
+      long prev;
+      long next;
+      do {
+        prev = demand.get();
+        next = prev + n;
+        if (next < 0) {
+          next = Long.MAX_VALUE;
+        }
+      } while (!demand.compareAndSet(prev, next));
+
+      if (prev == 0) {
+        group.updateInterest(AFChannelFlow.this);
+      }
+    }
+
+    @Override
+    public void cancel() {
+      done = true;
+      downstream = null;
+      group.updateInterest(AFChannelFlow.this);
+    }
+
+    /**
+     * Reads while there is demand; called from the event loop.
+     */
+    void read() {
+      for (int i = 0; i < MAX_READS_PER_WAKEUP; i++) {
+        Flow.Subscriber<? super ByteBuffer> s = downstream;
+        if (s == null || done || demand.get() == 0) {
+          return;
+        }
+
+        try (Lease<ByteBuffer> lease = bufferPool.take()) {
+          ByteBuffer bb = lease.get();
+          if (datagramChannel != null) {
+            // the sender address may be null for unnamed peers (e.g., from a socketpair)
+            if (datagramChannel.receive(bb) == null && bb.position() == 0) {
+              return;
+            }
+          } else {
+            int count = byteChannel.read(bb);
+            if (count == 0) {
+              return;
+            } else if (count < 0) {
+              terminate(null);
+              return;
+            }
+          }
+          bb.flip();
+          if (demand.get() != Long.MAX_VALUE) {
+            demand.decrementAndGet();
+          }
+          s.onNext(bb);
+        } catch (IOException e) {
+          terminate(e);
+          return;
+        }
+      }
+    }
+
+    /**
+     * Completes the subscription (successfully if {@code e} is {@code null}); called from the event
+     * loop.
+     *
+     * @param e The error, or {@code null}.
+     */
+    void terminate(@Nullable Throwable e) {
+      Flow.Subscriber<? super ByteBuffer> s = downstream;
+      if (done || s == null) {
+        return;
+      }
+      done = true;
+      downstream = null;
+      if (e == null) {
+        s.onComplete();
+      } else {
+        s.onError(e);
+      }
+      group.updateInterest(AFChannelFlow.this);
+    }
+  }
+
+  /**
+   * The subscriber side.
+   */
+  @IgnoreJRERequirement // excluded from the Java 8 build
+  private final class Subscriber implements Flow.Subscriber<ByteBuffer> {
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+    private volatile Flow.@Nullable Subscription upstream;
+    private volatile boolean writePending;
+    private boolean upstreamComplete;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      Objects.requireNonNull(subscription);
+      if (upstream != null || done.isDone()) {
+        subscription.cancel();
+        return;
+      }
+      upstream = subscription;
+      subscription.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+      Objects.requireNonNull(item);
+      boolean requestMore;
+      synchronized (pending) {
+        if (done.isDone()) {
+          return;
+        }
+        try {
+          if (pending.isEmpty()) {
+            byteChannel.write(item);
+          }
+        } catch (IOException e) {
+          fail(e);
+          return;
+        }
+        if (item.hasRemaining()) {
+          ByteBuffer copy = ByteBuffer.allocate(item.remaining());
+          copy.put(item);
+          copy.flip();
+          pending.add(copy);
+          writePending = true;
+          requestMore = false;
+        } else {
+          requestMore = true;
+        }
+      }
+      if (requestMore) {
+        requestOne();
+      } else {
+        group.updateInterest(AFChannelFlow.this);
+      }
+    }
+
+    /**
+     * Writes pending data; called from the event loop.
+     */
+    void drain() {
+      boolean drained;
+      synchronized (pending) {
+        try {
+          ByteBuffer bb;
+          while ((bb = pending.peek()) != null) {
+            byteChannel.write(bb);
+            if (bb.hasRemaining()) {
+              return;
+            }
+            pending.poll();
+          }
+        } catch (IOException e) {
+          fail(e);
+          return;
+        }
+        writePending = false;
+        drained = !done.isDone();
+        if (drained && upstreamComplete) {
+          done.complete(null);
+          return;
+        }
+      }
+      if (drained) {
+        requestOne();
+      }
+    }
+
+    private void requestOne() {
+      Flow.Subscription s = upstream;
+      if (s != null) {
+        s.request(1);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      synchronized (pending) {
+        pending.clear();
+        writePending = false;
+      }
+      done.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      synchronized (pending) {
+        if (pending.isEmpty()) {
+          done.complete(null);
+        } else {
+          upstreamComplete = true;
+        }
+      }
+    }
+
+    void fail(Throwable e) {
+      Flow.Subscription s = upstream;
+      synchronized (pending) {
+        pending.clear();
+        writePending = false;
+      }
+      if (done.completeExceptionally(e) && s != null) {
+        s.cancel();
+      }
+    }
+  }
+}
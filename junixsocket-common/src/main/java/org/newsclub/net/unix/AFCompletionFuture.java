@@ -0,0 +1,127 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A {@link Future} that is completed via the {@link CompletionHandler} interface, used for the
+ * {@link Future}-returning operations of junixsocket's asynchronous channels.
+ *
+ * @param <V> The result type.
+ * @author Christian Kohlschütter
+ */
+final class AFCompletionFuture<V> implements Future<V>, CompletionHandler<V, Object> {
+  private final CountDownLatch latch = new CountDownLatch(1);
+  private final AtomicBoolean done = new AtomicBoolean(false);
+  private @Nullable V result;
+  private @Nullable Throwable exception;
+  private volatile boolean cancelled;
+  private volatile @Nullable Runnable cancelAction;
+
+  AFCompletionFuture() {
+  }
+
+  /**
+   * Sets the action that aborts the underlying operation upon {@link #cancel(boolean)}.
+   *
+   * @param action The action.
+   */
+  void setCancelAction(Runnable action) {
+    this.cancelAction = action;
+    if (cancelled) {
+      action.run();
+    }
+  }
+
+  @Override
+  public void completed(V value, Object attachment) {
+    if (done.compareAndSet(false, true)) {
+      this.result = value;
+      latch.countDown();
+    }
+  }
+
+  @Override
+  public void failed(Throwable exc, Object attachment) {
+    if (done.compareAndSet(false, true)) {
+      this.exception = exc;
+      latch.countDown();
+    }
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    if (!done.compareAndSet(false, true)) {
+      return false;
+    }
+    cancelled = true;
+    latch.countDown();
+    Runnable action = cancelAction;
+    if (action != null) {
+      action.run();
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  @Override
+  public boolean isDone() {
+    return latch.getCount() == 0;
+  }
+
+  @Override
+  public V get() throws InterruptedException, ExecutionException {
+    latch.await();
+    return report();
+  }
+
+  @Override
+  public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+      TimeoutException {
+    if (!latch.await(timeout, unit)) {
+      throw new TimeoutException();
+    }
+    return report();
+  }
+
+  @SuppressWarnings("null")
+  private V report() throws ExecutionException {
+    if (cancelled) {
+      throw new CancellationException();
+    }
+    Throwable exc = exception;
+    if (exc != null) {
+      throw new ExecutionException(exc);
+    }
+    return result;
+  }
+}
@@ -59,6 +59,31 @@ class AFCore extends CleanableState {
   private static final int TL_BUFFER_MAX_CAPACITY = Integer.parseInt(System.getProperty(
       PROP_TL_BUFFER_MAX_CAPACITY, Integer.toString(1 * 1024 * 1024))); // 1 MB per thread
 
+  private static final String PROP_FD_FASTPATH_DISABLED =
+      "org.newsclub.net.unix.fd-fastpath.disabled";
+
+  /**
+   * Whether plain reads, writes and polls may identify sockets by their native file descriptor
+   * number (see {@link NativeUnixSocket#recvFd(int, ByteBuffer, int, int, int)}, etc.), which saves
+   * a {@link FileDescriptor} field lookup per native call. Not available on Windows, where
+   * {@link FileDescriptor}s wrap handles.
+   */
+  static final boolean FD_FASTPATH = !Boolean.parseBoolean(System.getProperty(
+      PROP_FD_FASTPATH_DISABLED, "false")) && !System.getProperty("os.name", "").startsWith(
+          "Windows");
+
+  private static final String PROP_HEAP_PIN_THRESHOLD =
+      "org.newsclub.net.unix.heap-io.pin-threshold"; // 0 disables pinning
+
+  /**
+   * Heap transfers of up to this many bytes let the kernel access the Java array directly, which is
+   * pinned for the duration of a non-blocking native call (a {@code GetPrimitiveArrayCritical}
+   * region, or a heap memory segment with {@link NativeForeignIO}). Larger transfers are copied
+   * through a thread-local direct buffer, so the garbage collector is never held up for long.
+   */
+  static final int HEAP_PIN_THRESHOLD = Integer.parseInt(System.getProperty(
+      PROP_HEAP_PIN_THRESHOLD, Integer.toString(64 * 1024)));
+
   private final AtomicBoolean closed = new AtomicBoolean(false);
 
   final FileDescriptor fd;
@@ -70,6 +95,9 @@ class AFCore extends CleanableState {
   private volatile boolean blocking = true;
   private boolean cleanFd = true;
 
+  // the native file descriptor number, as used by the plain I/O fast paths; -1 if unknown or closed
+  private volatile int fdNum = -1;
+
   AFCore(Object observed, FileDescriptor fd, AncillaryDataSupport ancillaryDataSupport,
       boolean datagramMode) {
     super(observed);
@@ -107,10 +135,31 @@ class AFCore extends CleanableState {
 
   void doClose() throws IOException {
     if (closed.compareAndSet(false, true)) {
+      fdNum = -1;
       NativeUnixSocket.close(fd);
     }
   }
 
+  void attachFilter(AFSocketFilter filter) throws IOException {
+    NativeUnixSocket.attachFilter(validFdOrException(), filter.getProgram());
+  }
+
+  void detachFilter() throws IOException {
+    NativeUnixSocket.detachFilter(validFdOrException());
+  }
+
+  void lockFilter() throws IOException {
+    NativeUnixSocket.lockFilter(validFdOrException());
+  }
+
+  int getReceiveQueueBytes() throws IOException {
+    return NativeUnixSocket.queueBytes(validFdOrException(), false);
+  }
+
+  int getSendQueueBytes() throws IOException {
+    return NativeUnixSocket.queueBytes(validFdOrException(), true);
+  }
+
   FileDescriptor validFdOrException() throws SocketException {
     FileDescriptor fdesc = validFd();
     if (fdesc == null) {
@@ -133,6 +182,71 @@ class AFCore extends CleanableState {
     return null;
   }
 
+  /**
+   * Checks if a transfer can be handled by {@link NativeForeignIO} or the primitive file descriptor
+   * calls (see {@link #FD_FASTPATH}), or if it has to go through the generic JNI calls.
+   *
+   * @param plain {@code true} if no socket address is involved.
+   * @return {@code true} if the transfer is plain and a fast path is available.
+   */
+  boolean usePlainIO(boolean plain) {
+    return plain && !datagramMode && (FD_FASTPATH || NativeForeignIO.isAvailable())
+        && (ancillaryDataSupport == null || !ancillaryDataSupport.isInUse());
+  }
+
+  /**
+   * Checks if plain stream I/O can use the primitive file descriptor calls, such as
+   * {@link NativeUnixSocket#readFd(int, byte[], int, int, int, int)}.
+   *
+   * @return {@code true} if so.
+   */
+  boolean useFdFastPath() {
+    return FD_FASTPATH && usePlainIO(true);
+  }
+
+  /**
+   * Checks if a heap transfer of the given length may access the Java array directly, via
+   * {@link NativeUnixSocket#recvArray(int, byte[], int, int, int)} or
+   * {@link NativeUnixSocket#sendArray(int, byte[], int, int, int)}.
+   *
+   * @param length The number of bytes to transfer.
+   * @return {@code true} if so.
+   */
+  static boolean isPinnable(int length) {
+    return FD_FASTPATH && length > 0 && length <= HEAP_PIN_THRESHOLD;
+  }
+
+  /**
+   * Returns the native file descriptor number, which is cached until this instance is closed.
+   *
+   * Native error handling may close the {@link FileDescriptor} without going through
+   * {@link #doClose()} (e.g., upon {@code EPIPE}), so its validity is checked upon every call.
+   *
+   * @return The file descriptor number.
+   * @throws IOException on error, or if closed.
+   */
+  int fdNum() throws IOException {
+    return fdNum(fd);
+  }
+
+  private int fdNum(FileDescriptor fdesc) throws IOException {
+    if (!fdesc.valid()) {
+      fdNum = -1;
+      throw new SocketClosedException("Not open");
+    }
+    int num = fdNum;
+    if (num < 0) {
+      num = NativeUnixSocket.getFD(fdesc);
+      fdNum = num;
+      if (isClosed() || !fdesc.valid()) {
+        // raced with doClose
+        fdNum = -1;
+        throw new SocketClosedException("Not open");
+      }
+    }
+    return num;
+  }
+
   int read(ByteBuffer dst, AFSupplier<Integer> timeout) throws IOException {
     return read(dst, timeout, null, 0);
   }
@@ -154,8 +268,6 @@ class AFCore extends CleanableState {
     ByteBuffer buf;
     int pos;
 
-    boolean direct = dst.isDirect();
-
     final boolean virtualBlocking = (ThreadUtil.isVirtualThread() && isBlocking())
         || isVirtualBlocking();
     final long now;
@@ -167,6 +279,17 @@ class AFCore extends CleanableState {
     if (virtualBlocking || !blocking) {
       options |= NativeUnixSocket.OPT_NON_BLOCKING;
     }
+    if (datagramMode) {
+      options |= NativeUnixSocket.OPT_DGRAM_MODE;
+    }
+
+    final boolean plain = usePlainIO(socketAddressBuffer == null);
+    final boolean foreign = plain && NativeForeignIO.isAvailable();
+    final boolean nonBlocking = (options & NativeUnixSocket.OPT_NON_BLOCKING) != 0;
+    boolean direct = dst.isDirect() || (foreign && !dst.isReadOnly()
+        && remaining <= HEAP_PIN_THRESHOLD && NativeForeignIO.supportsHeapBuffers(options));
+    final boolean pinned = !direct && plain && nonBlocking && dst.hasArray() && isPinnable(
+        remaining);
 
     boolean park = false;
 
@@ -180,9 +303,9 @@ class AFCore extends CleanableState {
         configureVirtualBlocking(true);
       }
 
-      try (Lease<MutableHolder<ByteBuffer>> lease = direct ? null : getPrivateDirectByteBuffer(
-          remaining)) {
-        if (direct) {
+      try (Lease<MutableHolder<ByteBuffer>> lease = (direct || pinned) ? null
+          : getPrivateDirectByteBuffer(remaining)) {
+        if (direct || pinned) {
           buf = dst;
           pos = dstPos;
         } else {
@@ -193,8 +316,21 @@ class AFCore extends CleanableState {
         }
 
         try {
-          count = NativeUnixSocket.receive(fdesc, buf, pos, remaining, socketAddressBuffer, options,
-              ancillaryDataSupport, 0);
+          if (pinned) {
+            count = NativeUnixSocket.checkFdResult(NativeUnixSocket.recvArray(fdNum(fdesc), dst
+                .array(), dst.arrayOffset() + pos, remaining, options), fdesc);
+            if (count == -2) {
+              count = 0;
+            }
+          } else if (foreign) {
+            count = NativeForeignIO.receive(fdesc, fdNum(fdesc), buf, pos, remaining, options);
+          } else if (plain) {
+            count = NativeUnixSocket.checkFdResult(NativeUnixSocket.recvFd(fdNum(fdesc), buf, pos,
+                remaining, options), fdesc);
+          } else {
+            count = NativeUnixSocket.receive(fdesc, buf, pos, remaining, socketAddressBuffer,
+                options, ancillaryDataSupport, 0);
+          }
           if (count == 0 && virtualBlocking) {
             // try again
             park = true;
@@ -214,7 +350,7 @@ class AFCore extends CleanableState {
           return -1;
         }
 
-        if (direct) {
+        if (direct || pinned) {
           if (count < 0) {
             throw new IllegalStateException();
           }
@@ -278,7 +414,6 @@ class AFCore extends CleanableState {
       // and don't retry (which may slow things down quite a bit)
 
       int pos = src.position();
-      boolean isDirect = src.isDirect();
       ByteBuffer buf;
       int bufPos;
 
@@ -297,6 +432,14 @@ class AFCore extends CleanableState {
         options |= NativeUnixSocket.OPT_DGRAM_MODE;
       }
 
+      final boolean plain = usePlainIO(target == null);
+      final boolean foreign = plain && NativeForeignIO.isAvailable();
+      final boolean nonBlocking = (options & NativeUnixSocket.OPT_NON_BLOCKING) != 0;
+      boolean isDirect = src.isDirect() || (foreign && remaining <= HEAP_PIN_THRESHOLD
+          && NativeForeignIO.supportsHeapBuffers(options));
+      final boolean pinned = !isDirect && plain && nonBlocking && src.hasArray() && isPinnable(
+          remaining);
+
       int written;
 
       boolean park = false;
@@ -309,9 +452,9 @@ class AFCore extends CleanableState {
           configureVirtualBlocking(true);
         }
 
-        try (Lease<MutableHolder<ByteBuffer>> lease = isDirect ? null : getPrivateDirectByteBuffer(
-            remaining)) {
-          if (isDirect) {
+        try (Lease<MutableHolder<ByteBuffer>> lease = (isDirect || pinned) ? null
+            : getPrivateDirectByteBuffer(remaining)) {
+          if (isDirect || pinned) {
             buf = src;
             bufPos = pos;
           } else {
@@ -327,8 +470,21 @@ class AFCore extends CleanableState {
             buf.position(bufPos);
           }
 
-          written = NativeUnixSocket.send(fdesc, buf, bufPos, remaining, addressTo, addressToLen,
-              options, ancillaryDataSupport);
+          if (pinned) {
+            written = NativeUnixSocket.checkFdResult(NativeUnixSocket.sendArray(fdNum(fdesc), src
+                .array(), src.arrayOffset() + pos, remaining, options), fdesc);
+            if (written == -2) {
+              written = 0;
+            }
+          } else if (foreign) {
+            written = NativeForeignIO.send(fdesc, fdNum(fdesc), buf, bufPos, remaining, options);
+          } else if (plain) {
+            written = NativeUnixSocket.checkFdResult(NativeUnixSocket.sendFd(fdNum(fdesc), buf,
+                bufPos, remaining, options), fdesc);
+          } else {
+            written = NativeUnixSocket.send(fdesc, buf, bufPos, remaining, addressTo, addressToLen,
+                options, ancillaryDataSupport);
+          }
           if (written == 0 && virtualBlocking) {
             // try again
             park = true;
@@ -354,6 +510,166 @@ class AFCore extends CleanableState {
     }
   }
 
+  /**
+   * Reads into multiple buffers with a single call (scatter read).
+   *
+   * If all buffers are direct, they are passed to {@code readv(2)}. Otherwise (or when virtual
+   * blocking is required), data is read into a thread-local direct buffer, and then distributed.
+   *
+   * @param dsts The destination buffers.
+   * @param offset The offset into {@code dsts}.
+   * @param length The number of buffers to use.
+   * @param timeout The timeout supplier.
+   * @param options Options to pass to the native call.
+   * @return The number of bytes read, or {@code -1} upon EOF.
+   * @throws IOException on error.
+   */
+  long read(ByteBuffer[] dsts, int offset, int length, AFSupplier<Integer> timeout, int options)
+      throws IOException {
+    if (offset < 0 || length < 0 || offset > dsts.length - length) {
+      throw new IndexOutOfBoundsException();
+    }
+    length = Math.min(length, NativeUnixSocket.MAX_IOV);
+
+    long total = 0;
+    boolean allDirect = true;
+    for (int i = 0; i < length; i++) {
+      ByteBuffer dst = dsts[offset + i];
+      total += dst.remaining();
+      allDirect &= dst.isDirect();
+    }
+    if (total == 0) {
+      return 0;
+    } else if (length == 1) {
+      return read(dsts[offset], timeout, null, options);
+    }
+
+    if (allDirect && !ThreadUtil.isVirtualThread() && !isVirtualBlocking()) {
+      FileDescriptor fdesc = validFdOrException();
+      if (!blocking) {
+        options |= NativeUnixSocket.OPT_NON_BLOCKING;
+      }
+      int[] positionsAndLengths = positionsAndLengths(dsts, offset, length);
+      long count = NativeUnixSocket.readv(fdesc, dsts, offset, length, positionsAndLengths,
+          options);
+      if (count > 0) {
+        advance(dsts, offset, length, count);
+      }
+      return count;
+    }
+
+    try (Lease<MutableHolder<ByteBuffer>> lease = getPrivateDirectByteBuffer(cappedSize(total))) {
+      ByteBuffer buf = Objects.requireNonNull(lease.get().get());
+      buf.limit(Math.min(buf.capacity(), cappedSize(total)));
+      int count = read(buf, timeout, null, options);
+      if (count > 0) {
+        buf.flip();
+        for (int i = 0; i < length && buf.hasRemaining(); i++) {
+          ByteBuffer dst = dsts[offset + i];
+          int n = Math.min(dst.remaining(), buf.remaining());
+          int limit = buf.limit();
+          buf.limit(buf.position() + n);
+          dst.put(buf);
+          buf.limit(limit);
+        }
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Writes from multiple buffers with a single call (gather write).
+   *
+   * If all buffers are direct, they are passed to {@code writev(2)}. Otherwise (or when virtual
+   * blocking is required), data is collected in a thread-local direct buffer first.
+   *
+   * @param srcs The source buffers.
+   * @param offset The offset into {@code srcs}.
+   * @param length The number of buffers to use.
+   * @param timeout The timeout supplier.
+   * @param options Options to pass to the native call.
+   * @return The number of bytes written.
+   * @throws IOException on error.
+   */
+  long write(ByteBuffer[] srcs, int offset, int length, AFSupplier<Integer> timeout, int options)
+      throws IOException {
+    if (offset < 0 || length < 0 || offset > srcs.length - length) {
+      throw new IndexOutOfBoundsException();
+    }
+    length = Math.min(length, NativeUnixSocket.MAX_IOV);
+
+    long total = 0;
+    boolean allDirect = true;
+    for (int i = 0; i < length; i++) {
+      ByteBuffer src = srcs[offset + i];
+      total += src.remaining();
+      allDirect &= src.isDirect();
+    }
+    if (total == 0) {
+      return 0;
+    } else if (length == 1) {
+      return write(srcs[offset], timeout, null, options);
+    }
+
+    if (allDirect && !ThreadUtil.isVirtualThread() && !isVirtualBlocking()) {
+      FileDescriptor fdesc = validFdOrException();
+      if (!blocking) {
+        options |= NativeUnixSocket.OPT_NON_BLOCKING;
+      }
+      int[] positionsAndLengths = positionsAndLengths(srcs, offset, length);
+      long count = NativeUnixSocket.writev(fdesc, srcs, offset, length, positionsAndLengths,
+          options);
+      if (count > 0) {
+        advance(srcs, offset, length, count);
+      }
+      return count;
+    }
+
+    try (Lease<MutableHolder<ByteBuffer>> lease = getPrivateDirectByteBuffer(cappedSize(total))) {
+      ByteBuffer buf = Objects.requireNonNull(lease.get().get());
+      buf.limit(Math.min(buf.capacity(), cappedSize(total)));
+      for (int i = 0; i < length && buf.hasRemaining(); i++) {
+        ByteBuffer src = srcs[offset + i];
+        int pos = src.position();
+        int limit = src.limit();
+        src.limit(pos + Math.min(src.remaining(), buf.remaining()));
+        buf.put(src);
+        src.limit(limit);
+        src.position(pos);
+      }
+      buf.flip();
+      int count = write(buf, timeout, null, options);
+      if (count > 0) {
+        advance(srcs, offset, length, count);
+      }
+      return count;
+    }
+  }
+
+  private static int cappedSize(long total) {
+    long max = TL_BUFFER_MAX_CAPACITY > 0 ? TL_BUFFER_MAX_CAPACITY : Integer.MAX_VALUE;
+    return (int) Math.min(total, max);
+  }
+
+  private static int[] positionsAndLengths(ByteBuffer[] bufs, int offset, int length) {
+    int[] positionsAndLengths = new int[length * 2];
+    for (int i = 0; i < length; i++) {
+      ByteBuffer bb = bufs[offset + i];
+      positionsAndLengths[i * 2] = bb.position();
+      positionsAndLengths[i * 2 + 1] = bb.remaining();
+    }
+    return positionsAndLengths;
+  }
+
+  private static void advance(ByteBuffer[] bufs, int offset, int length, long count) {
+    for (int i = 0; i < length && count > 0; i++) {
+      ByteBuffer bb = bufs[offset + i];
+      int n = (int) Math.min(bb.remaining(), count);
+      bb.position(bb.position() + n);
+      count -= n;
+    }
+  }
+
   /**
    * Returns a per-thread reusable byte buffer for a given capacity.
    *
@@ -199,6 +199,31 @@ public abstract class AFDatagramChannel<A extends AFSocketAddress> extends Datag
     afSocket.ensureAncillaryReceiveBufferSize(minSize);
   }
 
+  @Override
+  public final void attachFilter(AFSocketFilter filter) throws IOException {
+    getAFCore().attachFilter(filter);
+  }
+
+  @Override
+  public final void detachFilter() throws IOException {
+    getAFCore().detachFilter();
+  }
+
+  @Override
+  public final void lockFilter() throws IOException {
+    getAFCore().lockFilter();
+  }
+
+  @Override
+  public final int getReceiveQueueBytes() throws IOException {
+    return getAFCore().getReceiveQueueBytes();
+  }
+
+  @Override
+  public final int getSendQueueBytes() throws IOException {
+    return getAFCore().getSendQueueBytes();
+  }
+
   @Override
   public final <T> AFDatagramChannel<A> setOption(SocketOption<T> name, T value)
       throws IOException {
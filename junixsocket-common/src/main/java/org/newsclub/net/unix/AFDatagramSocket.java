@@ -386,6 +386,31 @@ public abstract class AFDatagramSocket<A extends AFSocketAddress> extends Datagr
     ancillaryDataSupport.ensureAncillaryReceiveBufferSize(minSize);
   }
 
+  @Override
+  public final void attachFilter(AFSocketFilter filter) throws IOException {
+    getAFImpl().getCore().attachFilter(filter);
+  }
+
+  @Override
+  public final void detachFilter() throws IOException {
+    getAFImpl().getCore().detachFilter();
+  }
+
+  @Override
+  public final void lockFilter() throws IOException {
+    getAFImpl().getCore().lockFilter();
+  }
+
+  @Override
+  public final int getReceiveQueueBytes() throws IOException {
+    return getAFImpl().getCore().getReceiveQueueBytes();
+  }
+
+  @Override
+  public final int getSendQueueBytes() throws IOException {
+    return getAFImpl().getCore().getSendQueueBytes();
+  }
+
   @Override
   public final boolean isClosed() {
     return super.isClosed() || getAFImpl().isClosed();
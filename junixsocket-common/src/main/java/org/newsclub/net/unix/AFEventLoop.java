@@ -0,0 +1,358 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.spi.AbstractSelectableChannel;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A single event loop of an {@link AFEventLoopGroup}: one thread that multiplexes its channels via
+ * its own {@link Selector}, and runs tasks submitted via {@link #execute(Runnable)}. An
+ * {@link AFAsynchronousChannelGroup} is backed by such a loop, too.
+ * <p>
+ * Ready keys are dispatched straight from the poll result, without going through the selector's
+ * selected-key set, so an idle or busy loop does not allocate per select cycle.
+ * <p>
+ * Tasks and registrations may be submitted from any thread. They are appended to a lock-free
+ * queue, and the loop's selector is woken up at most once per batch; the selector itself is only
+ * ever touched by the loop thread, so submitting threads never contend with a blocking
+ * {@code select}.
+ * <p>
+ * {@link ReadyHandler}s run on the loop thread and must therefore not block. They may change the
+ * interest set of their key directly; other threads should do so via {@link #execute(Runnable)}.
+ *
+ * @author Christian Kohlschütter
+ * @see AFEventLoopGroup
+ */
+public final class AFEventLoop implements Executor {
+  private final AFEventLoopGroup group;
+  private final int index;
+  private final AFSelector selector;
+  private final Consumer<SelectionKey> dispatch = AFEventLoop::handleReady;
+  private final Thread thread;
+  private final int cpu;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+  private final AtomicBoolean shutdown = new AtomicBoolean(false);
+  private final AtomicInteger pendingRegistrations = new AtomicInteger(0);
+  private final CountDownLatch terminated = new CountDownLatch(1);
+  private volatile int registeredChannels;
+  private volatile boolean pinned;
+  private volatile @Nullable Runnable terminationHook;
+
+  /**
+   * Handles readiness events for a channel registered with an {@link AFEventLoop}.
+   */
+  @FunctionalInterface
+  public interface ReadyHandler {
+    /**
+     * Called on the loop thread when the channel is ready for some of the operations of its
+     * interest set.
+     * <p>
+     * If this method throws an {@link IOException}, the key is cancelled and the channel is
+     * closed.
+     *
+     * @param key The selection key; {@link SelectionKey#readyOps()} tells which operations are
+     *          ready.
+     * @throws IOException on error.
+     */
+    void onReady(SelectionKey key) throws IOException;
+  }
+
+  AFEventLoop(AFEventLoopGroup group, int index, AFSelectorProvider<?> provider,
+      ThreadFactory threadFactory, int cpu) throws IOException {
+    this.group = group;
+    this.index = index;
+    this.cpu = cpu;
+    this.selector = (AFSelector) provider.openSelector();
+
+    Thread t = threadFactory.newThread(new Runnable() {
+      @Override
+      public void run() {
+        if (AFEventLoop.this.cpu >= 0 && NativeUnixSocket.isLoaded()) {
+          pinned = NativeUnixSocket.setCurrentThreadAffinity(AFEventLoop.this.cpu);
+        }
+        eventLoop();
+      }
+    });
+    if (t == null) {
+      selector.close();
+      throw new IOException("Thread factory did not create a thread");
+    }
+    this.thread = t;
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  /**
+   * Returns the group this loop belongs to.
+   *
+   * @return The group.
+   */
+  public AFEventLoopGroup group() {
+    return group;
+  }
+
+  /**
+   * Returns the index of this loop within its group.
+   *
+   * @return The index, starting at {@code 0}.
+   */
+  public int index() {
+    return index;
+  }
+
+  /**
+   * Checks if the calling thread is this loop's thread.
+   *
+   * @return {@code true} if so.
+   */
+  public boolean inEventLoop() {
+    return Thread.currentThread() == thread;
+  }
+
+  /**
+   * Checks if this loop's thread was successfully pinned to a CPU.
+   *
+   * @return {@code true} if pinned.
+   * @see AFEventLoopGroup.Builder#withCpuPinning(boolean)
+   */
+  public boolean isPinned() {
+    return pinned;
+  }
+
+  /**
+   * Returns the number of channels currently registered with this loop, including registrations
+   * that have been submitted but not yet been applied by the loop thread.
+   *
+   * @return The number of channels.
+   */
+  public int registeredChannels() {
+    return registeredChannels + pendingRegistrations.get();
+  }
+
+  /**
+   * Runs the given task on this loop's thread.
+   *
+   * @param task The task.
+   * @throws RejectedExecutionException if this loop has been shut down.
+   */
+  @Override
+  public void execute(Runnable task) {
+    if (shutdown.get()) {
+      throw new RejectedExecutionException("Event loop is shut down");
+    }
+    tasks.add(task);
+    if (!inEventLoop() && wakeupPending.compareAndSet(false, true)) {
+      selector.wakeup();
+    }
+  }
+
+  /**
+   * Registers the given channel with this loop.
+   * <p>
+   * The channel must be in non-blocking mode. Besides junixsocket channels, this includes the
+   * JDK's selectable channels (e.g., TCP {@link java.nio.channels.SocketChannel}s), so one loop
+   * can serve both. When called from another thread, the registration is applied asynchronously
+   * by the loop thread.
+   *
+   * @param channel The channel.
+   * @param ops The initial interest set.
+   * @param handler The handler to be called when the channel is ready; attached to the key.
+   * @return A future that completes with the selection key once the channel is registered.
+   */
+  public CompletableFuture<SelectionKey> register(final AbstractSelectableChannel channel,
+      final int ops, final ReadyHandler handler) {
+    final CompletableFuture<SelectionKey> future = new CompletableFuture<>();
+    if (inEventLoop()) {
+      doRegister(channel, ops, handler, future);
+      return future;
+    }
+
+    pendingRegistrations.incrementAndGet();
+    try {
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          pendingRegistrations.decrementAndGet();
+          doRegister(channel, ops, handler, future);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      pendingRegistrations.decrementAndGet();
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  private void doRegister(AbstractSelectableChannel channel, int ops, ReadyHandler handler,
+      CompletableFuture<SelectionKey> future) {
+    try {
+      future.complete(registerInLoop(channel, ops, handler));
+    } catch (ClosedChannelException | RuntimeException e) { // NOPMD.AvoidCatchingGenericException
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Registers the given channel with this loop's selector. Must be called from the loop thread.
+   *
+   * @param channel The channel.
+   * @param ops The initial interest set.
+   * @param handler The handler to be called when the channel is ready.
+   * @return The selection key.
+   * @throws ClosedChannelException if the channel is closed.
+   */
+  SelectionKey registerInLoop(AbstractSelectableChannel channel, int ops, ReadyHandler handler)
+      throws ClosedChannelException {
+    SelectionKey key = channel.register(selector, ops, handler);
+    registeredChannels = selector.keys().size();
+    return key;
+  }
+
+  /**
+   * Returns the key that represents the given channel's registration with this loop.
+   *
+   * @param channel The channel.
+   * @return The key, or {@code null} if the channel is not registered.
+   */
+  @Nullable SelectionKey keyFor(AbstractSelectableChannel channel) {
+    return channel.keyFor(selector);
+  }
+
+  /**
+   * Sets a task that is run on the loop thread once the loop terminates, after all remaining tasks
+   * have been run.
+   *
+   * @param hook The task, or {@code null}.
+   */
+  void setTerminationHook(@Nullable Runnable hook) {
+    this.terminationHook = hook;
+  }
+
+  private void eventLoop() {
+    try {
+      while (true) { // NOPMD.WhileLoopWithLiteralBoolean
+        runTasks();
+        if (shutdown.get()) {
+          break;
+        }
+
+        wakeupPending.set(false);
+        if (tasks.isEmpty()) {
+          selector.select(dispatch);
+        } else {
+          selector.selectNow(dispatch);
+        }
+        registeredChannels = selector.keys().size();
+      }
+    } catch (IOException | RuntimeException e) { // NOPMD.AvoidCatchingGenericException
+      StackTraceUtil.printStackTrace(e);
+    } finally {
+      shutdown.set(true);
+      try {
+        selector.close();
+      } catch (IOException e) {
+        // ignore
+      }
+      registeredChannels = 0;
+      runTasks();
+      Runnable hook = terminationHook;
+      if (hook != null) {
+        try {
+          hook.run();
+        } catch (RuntimeException e) { // NOPMD.AvoidCatchingGenericException
+          StackTraceUtil.printStackTrace(e);
+        }
+      }
+      terminated.countDown();
+    }
+  }
+
+  private static void handleReady(SelectionKey key) {
+    ReadyHandler handler = (ReadyHandler) key.attachment();
+    try {
+      handler.onReady(key);
+    } catch (IOException e) {
+      key.cancel();
+      try {
+        key.channel().close();
+      } catch (IOException e2) {
+        e.addSuppressed(e2);
+      }
+    } catch (RuntimeException e) { // NOPMD.AvoidCatchingGenericException
+      StackTraceUtil.printStackTrace(e);
+    }
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      try {
+        task.run();
+      } catch (RuntimeException e) { // NOPMD.AvoidCatchingGenericException
+        StackTraceUtil.printStackTrace(e);
+      }
+    }
+  }
+
+  /**
+   * Initiates an orderly shutdown: already submitted tasks are run, then the loop's selector is
+   * closed, which deregisters (but does not close) all channels.
+   */
+  void shutdown() {
+    if (shutdown.compareAndSet(false, true)) {
+      selector.wakeup();
+    }
+  }
+
+  boolean isShutdown() {
+    return shutdown.get();
+  }
+
+  boolean isTerminated() {
+    return terminated.getCount() == 0;
+  }
+
+  boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return terminated.await(timeout, unit);
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[" + index + (cpu >= 0 ? ";cpu=" + cpu : "") + "]";
+  }
+}
@@ -0,0 +1,367 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.spi.AbstractSelectableChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A group of {@link AFEventLoop}s, each running on its own thread with its own selector, so that
+ * the channels of a busy server are sharded across several cores instead of being multiplexed by
+ * a single selector thread.
+ * <p>
+ * New channels are assigned to a loop according to the group's {@link Assignment} strategy.
+ * Optionally, each loop thread can be pinned to a separate CPU (currently only supported on
+ * Linux).
+ * <p>
+ * Example:
+ * <pre><code class="language-java">
+ * try (AFEventLoopGroup group = AFEventLoopGroup.builder().withLoops(4).build()) {
+ *   channel.configureBlocking(false);
+ *   group.register(channel, SelectionKey.OP_READ, (key) -&gt; {
+ *     // runs on the loop thread
+ *   });
+ *   ...
+ * }
+ * </code></pre>
+ *
+ * @author Christian Kohlschütter
+ */
+public final class AFEventLoopGroup implements Closeable {
+  private final List<AFEventLoop> loops;
+  private final AFEventLoop[] loopsArray;
+  private final Assignment assignment;
+  private final AtomicInteger nextIndex = new AtomicInteger(0);
+
+  /**
+   * The strategy used to assign new channels to the loops of a group.
+   */
+  public enum Assignment {
+    /**
+     * Assigns channels to the loops in turn.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * Assigns channels to the loop with the fewest registered channels (ties are broken in
+     * round-robin order).
+     */
+    LEAST_LOADED;
+  }
+
+  private AFEventLoopGroup(Builder builder) throws IOException {
+    this.assignment = builder.assignment;
+
+    int numLoops = builder.loops;
+    int[] cpus = builder.cpuPinning ? allowedCpus() : null;
+    ThreadFactory threadFactory = builder.threadFactory;
+
+    AFEventLoop[] array = new AFEventLoop[numLoops];
+    try {
+      for (int i = 0; i < numLoops; i++) {
+        ThreadFactory tf = threadFactory == null ? defaultThreadFactory(i) : threadFactory;
+        array[i] = new AFEventLoop(this, i, builder.selectorProvider, tf, cpus == null ? -1
+            : cpus[i % cpus.length]);
+      }
+    } catch (IOException | RuntimeException e) { // NOPMD.AvoidCatchingGenericException
+      for (AFEventLoop loop : array) {
+        if (loop != null) {
+          // the loop thread exits right away, closing the selector
+          loop.shutdown();
+          loop.start();
+        }
+      }
+      throw e;
+    }
+    for (AFEventLoop loop : array) {
+      loop.start();
+    }
+    this.loopsArray = array;
+    this.loops = Collections.unmodifiableList(Arrays.asList(array));
+  }
+
+  /**
+   * Returns the CPUs the loop threads can be pinned to: those in the calling thread's affinity
+   * mask, which may be sparse (e.g., with {@code taskset} or a cgroup cpuset), or, if the mask is
+   * not available, {@code 0} to {@link Runtime#availableProcessors()}{@code  - 1}.
+   *
+   * @return The CPU indices.
+   */
+  private static int[] allowedCpus() {
+    int[] cpus = NativeUnixSocket.isLoaded() ? NativeUnixSocket.getCurrentThreadAffinity() : null;
+    if (cpus == null || cpus.length == 0) {
+      cpus = new int[Runtime.getRuntime().availableProcessors()];
+      for (int i = 0; i < cpus.length; i++) {
+        cpus[i] = i;
+      }
+    }
+    return cpus;
+  }
+
+  private static ThreadFactory defaultThreadFactory(final int index) {
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "junixsocket event loop #" + index);
+        t.setDaemon(true);
+        return t;
+      }
+    };
+  }
+
+  /**
+   * Creates a new {@link Builder} for an {@link AFEventLoopGroup}.
+   *
+   * @return The builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the loops of this group.
+   *
+   * @return The (unmodifiable) list of loops.
+   */
+  public List<AFEventLoop> loops() {
+    return loops;
+  }
+
+  /**
+   * Returns the loop the next channel should be assigned to, according to this group's
+   * {@link Assignment} strategy.
+   *
+   * @return The loop.
+   */
+  public AFEventLoop next() {
+    AFEventLoop[] array = loopsArray;
+    int start = (nextIndex.getAndIncrement() & Integer.MAX_VALUE) % array.length;
+    if (assignment == Assignment.ROUND_ROBIN) {
+      return array[start];
+    }
+
+    AFEventLoop best = array[start];
+    int bestLoad = best.registeredChannels();
+    for (int i = 1; i < array.length && bestLoad > 0; i++) {
+      AFEventLoop loop = array[(start + i) % array.length];
+      int load = loop.registeredChannels();
+      if (load < bestLoad) {
+        best = loop;
+        bestLoad = load;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Registers the given channel with the loop selected by {@link #next()}.
+   *
+   * @param channel The channel, in non-blocking mode.
+   * @param ops The initial interest set.
+   * @param handler The handler to be called (on the loop thread) when the channel is ready.
+   * @return A future that completes with the selection key once the channel is registered.
+   * @see AFEventLoop#register(AbstractSelectableChannel, int, AFEventLoop.ReadyHandler)
+   */
+  public CompletableFuture<SelectionKey> register(AbstractSelectableChannel channel, int ops,
+      AFEventLoop.ReadyHandler handler) {
+    return next().register(channel, ops, handler);
+  }
+
+  /**
+   * Initiates an orderly shutdown of all loops. Already submitted tasks are still run; new tasks
+   * are rejected. Registered channels are deregistered, but not closed.
+   */
+  public void shutdown() {
+    for (AFEventLoop loop : loopsArray) {
+      loop.shutdown();
+    }
+  }
+
+  /**
+   * Checks if {@link #shutdown()} has been called.
+   *
+   * @return {@code true} if shut down.
+   */
+  public boolean isShutdown() {
+    for (AFEventLoop loop : loopsArray) {
+      if (!loop.isShutdown()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks if all loops have terminated.
+   *
+   * @return {@code true} if terminated.
+   */
+  public boolean isTerminated() {
+    for (AFEventLoop loop : loopsArray) {
+      if (!loop.isTerminated()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Waits for all loops to terminate after a shutdown request.
+   *
+   * @param timeout The maximum time to wait.
+   * @param unit The unit of the timeout.
+   * @return {@code true} if all loops terminated, {@code false} if the timeout elapsed.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for (AFEventLoop loop : loopsArray) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0 && !loop.isTerminated()) {
+        return false;
+      }
+      if (!loop.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Shuts down this group (see {@link #shutdown()}), and waits for all loops to terminate, unless
+   * called from one of the group's loop threads.
+   */
+  @Override
+  public void close() throws IOException {
+    shutdown();
+    for (AFEventLoop loop : loopsArray) {
+      if (loop.inEventLoop()) {
+        return;
+      }
+    }
+    try {
+      awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Builder for {@link AFEventLoopGroup}.
+   */
+  public static final class Builder {
+    private int loops = Runtime.getRuntime().availableProcessors();
+    private Assignment assignment = Assignment.ROUND_ROBIN;
+    private boolean cpuPinning = false;
+    private @Nullable ThreadFactory threadFactory = null;
+    private AFSelectorProvider<?> selectorProvider = AFUNIXSelectorProvider.getInstance();
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the number of loops (default: the number of available processors).
+     *
+     * @param n The number of loops, at least {@code 1}.
+     * @return This builder.
+     */
+    public Builder withLoops(int n) {
+      if (n < 1) {
+        throw new IllegalArgumentException("loops");
+      }
+      this.loops = n;
+      return this;
+    }
+
+    /**
+     * Sets the strategy used to assign channels to loops (default:
+     * {@link Assignment#ROUND_ROBIN}).
+     *
+     * @param strategy The strategy.
+     * @return This builder.
+     */
+    public Builder withAssignment(Assignment strategy) {
+      this.assignment = Objects.requireNonNull(strategy);
+      return this;
+    }
+
+    /**
+     * Sets whether each loop thread should be pinned to a separate CPU (default: {@code false}).
+     * <p>
+     * The CPUs are taken from the affinity mask of the thread that builds the group, so
+     * restrictions via {@code taskset} or cgroup cpusets are honored. If there are more loops than
+     * CPUs, CPUs are shared in turn.
+     * <p>
+     * Pinning is best-effort; where unsupported or not permitted, the loop runs unpinned (see
+     * {@link AFEventLoop#isPinned()}).
+     *
+     * @param enabled {@code true} if enabled.
+     * @return This builder.
+     */
+    public Builder withCpuPinning(boolean enabled) {
+      this.cpuPinning = enabled;
+      return this;
+    }
+
+    /**
+     * Sets the factory for the loop threads (default: daemon threads named
+     * "junixsocket event loop #n").
+     *
+     * @param factory The thread factory, or {@code null} for the default.
+     * @return This builder.
+     */
+    public Builder withThreadFactory(@Nullable ThreadFactory factory) {
+      this.threadFactory = factory;
+      return this;
+    }
+
+    /**
+     * Sets the selector provider for the loops' selectors (default:
+     * {@link AFUNIXSelectorProvider#getInstance()}).
+     *
+     * @param provider The provider.
+     * @return This builder.
+     */
+    public Builder withSelectorProvider(AFSelectorProvider<?> provider) {
+      this.selectorProvider = Objects.requireNonNull(provider);
+      return this;
+    }
+
+    /**
+     * Creates the group, and starts its loops.
+     *
+     * @return The new group.
+     * @throws IOException on error.
+     */
+    public AFEventLoopGroup build() throws IOException {
+      return new AFEventLoopGroup(this);
+    }
+  }
+}
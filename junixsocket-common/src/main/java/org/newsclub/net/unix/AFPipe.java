@@ -28,6 +28,13 @@ import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
 
 /**
  * A {@link Pipe}, natively implemented.
+ * <p>
+ * On Linux, data can be moved between pipe ends and sockets without copying it to user space, via
+ * {@link SourceChannel#spliceTo(FileDescriptorAccess, long)} and
+ * {@link SinkChannel#spliceFrom(FileDescriptorAccess, long)}, and duplicated to another pipe via
+ * {@link SourceChannel#teeTo(SinkChannel, long)}. Combining these, one stream can be fanned out to
+ * several sinks in the kernel: for each additional sink, {@code tee} the source into a separate
+ * pipe and splice that pipe to the sink; finally, splice the source itself to the last sink.
  *
  * @author Christian Kohlschütter
  */
@@ -95,10 +102,7 @@ public final class AFPipe extends Pipe implements Closeable {
 
     @Override
     public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
-      if (length == 0) {
-        return 0;
-      }
-      return read(dsts[offset]);
+      return sourceCore.read(dsts, offset, length, DUMMY_TIMEOUT, options);
     }
 
     @Override
@@ -111,6 +115,45 @@ public final class AFPipe extends Pipe implements Closeable {
       return sourceCore.read(dst, DUMMY_TIMEOUT, null, options);
     }
 
+    /**
+     * Moves up to {@code count} bytes from this pipe to the given target (for example, an
+     * {@link AFSocket}, an {@link AFSocketChannel}, or the sink of another {@link AFPipe}) without
+     * copying them to user space (Linux {@code splice(2)}).
+     * <p>
+     * If this channel is in non-blocking mode, the pipe is accessed without blocking; the target
+     * blocks according to its own configuration.
+     *
+     * @param target The target.
+     * @param count The maximum number of bytes to move.
+     * @return The number of bytes moved, {@code 0} if the operation would block, or {@code -1} if
+     *         the sink of this pipe has been closed and no more data is available.
+     * @throws OperationNotSupportedSocketException if not supported by this platform.
+     * @throws IOException on error.
+     */
+    public long spliceTo(FileDescriptorAccess target, long count) throws IOException {
+      return NativeUnixSocket.splice(sourceCore.validFdOrException(), target.getFileDescriptor(),
+          count, sourceCore.isBlocking() ? 0 : NativeUnixSocket.OPT_NON_BLOCKING);
+    }
+
+    /**
+     * Duplicates up to {@code count} bytes from this pipe to the sink of another pipe, without
+     * consuming them and without copying them to user space (Linux {@code tee(2)}).
+     * <p>
+     * The duplicated data remains available in this pipe; it is typically moved on with
+     * {@link #spliceTo(FileDescriptorAccess, long)} afterwards.
+     *
+     * @param target The target pipe sink.
+     * @param count The maximum number of bytes to duplicate.
+     * @return The number of bytes duplicated, {@code 0} if the operation would block, or {@code -1}
+     *         if the sink of this pipe has been closed and no more data is available.
+     * @throws OperationNotSupportedSocketException if not supported by this platform.
+     * @throws IOException on error.
+     */
+    public long teeTo(SinkChannel target, long count) throws IOException {
+      return NativeUnixSocket.tee(sourceCore.validFdOrException(), target.getFileDescriptor(),
+          count, sourceCore.isBlocking() ? 0 : NativeUnixSocket.OPT_NON_BLOCKING);
+    }
+
     @Override
     protected void implConfigureBlocking(boolean block) throws IOException {
       sourceCore.implConfigureBlocking(block);
@@ -139,10 +182,7 @@ public final class AFPipe extends Pipe implements Closeable {
 
     @Override
     public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
-      if (length == 0) {
-        return 0;
-      }
-      return write(srcs[offset]);
+      return sinkCore.write(srcs, offset, length, DUMMY_TIMEOUT, options);
     }
 
     @Override
@@ -155,6 +195,26 @@ public final class AFPipe extends Pipe implements Closeable {
       return sinkCore.write(src, DUMMY_TIMEOUT, null, options);
     }
 
+    /**
+     * Moves up to {@code count} bytes from the given source (for example, an {@link AFSocket}, an
+     * {@link AFSocketChannel}, or the source of another {@link AFPipe}) into this pipe without
+     * copying them to user space (Linux {@code splice(2)}).
+     * <p>
+     * If this channel is in non-blocking mode, the pipe is accessed without blocking; the source
+     * blocks according to its own configuration.
+     *
+     * @param source The source.
+     * @param count The maximum number of bytes to move.
+     * @return The number of bytes moved, {@code 0} if the operation would block, or {@code -1} if
+     *         the source has reached EOF.
+     * @throws OperationNotSupportedSocketException if not supported by this platform.
+     * @throws IOException on error.
+     */
+    public long spliceFrom(FileDescriptorAccess source, long count) throws IOException {
+      return NativeUnixSocket.splice(source.getFileDescriptor(), sinkCore.validFdOrException(),
+          count, sinkCore.isBlocking() ? 0 : NativeUnixSocket.OPT_NON_BLOCKING);
+    }
+
     @Override
     protected void implConfigureBlocking(boolean block) throws IOException {
       sinkCore.implConfigureBlocking(block);
@@ -171,6 +231,36 @@ public final class AFPipe extends Pipe implements Closeable {
     }
   }
 
+  /**
+   * Returns the capacity of this pipe, i.e., the number of bytes that can be written without
+   * blocking while no data is read (Linux {@code F_GETPIPE_SZ}).
+   *
+   * @return The capacity, in bytes.
+   * @throws OperationNotSupportedSocketException if not supported by this platform.
+   * @throws IOException on error.
+   */
+  public int getCapacity() throws IOException {
+    return NativeUnixSocket.pipeCapacity(sinkCore.validFdOrException(), 0);
+  }
+
+  /**
+   * Changes the capacity of this pipe (Linux {@code F_SETPIPE_SZ}).
+   * <p>
+   * The kernel rounds the requested value up (usually to a power-of-two multiple of the page
+   * size); unprivileged processes are limited by {@code /proc/sys/fs/pipe-max-size}.
+   *
+   * @param capacity The requested capacity, in bytes (must be positive).
+   * @return The actual capacity, in bytes.
+   * @throws OperationNotSupportedSocketException if not supported by this platform.
+   * @throws IOException on error.
+   */
+  public int setCapacity(int capacity) throws IOException {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity");
+    }
+    return NativeUnixSocket.pipeCapacity(sinkCore.validFdOrException(), capacity);
+  }
+
   /**
    * Returns the options bitmask that is to be passed to native receive/send calls.
    *
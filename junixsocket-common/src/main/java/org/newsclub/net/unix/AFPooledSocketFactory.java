@@ -0,0 +1,1030 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketOption;
+import java.net.SocketOptions;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * A socket factory that keeps connections open after use, and hands them out again for subsequent
+ * connections to the same address.
+ * <p>
+ * Sockets returned by this factory are {@link PooledSocket}s; calling {@link Socket#close()} (or
+ * closing one of its streams) returns the underlying connection to the pool instead of closing it.
+ * Connections are only reused if they were left in a clean state: Connections where an I/O error
+ * occurred, where end-of-stream was reached, where input/output has been shut down, or where
+ * linger, buffer sizes or non-standard options have been changed, are closed for real. Other
+ * socket options (e.g., {@link Socket#setSoTimeout(int)}) are reverted before reuse.
+ * <p>
+ * Before an idle connection is handed out again, it is checked according to the configured
+ * {@link HealthCheck}. Idle connections are evicted after {@link #getIdleTimeout()} milliseconds.
+ * <p>
+ * This only makes sense for protocols where a connection can be reused after a request/response
+ * exchange (e.g., HTTP/1.1 keep-alive), and where the client does not leave unread data behind.
+ *
+ * @param <A> The supported address type.
+ * @author Christian Kohlschütter
+ */
+public final class AFPooledSocketFactory<A extends AFSocketAddress> extends AFSocketFactory<A>
+    implements Closeable {
+  private final AFSocketFactory<A> factory;
+  private final AFTimerWheel timerWheel;
+  private final Map<A, Pool> pools = new ConcurrentHashMap<>();
+  private final AtomicBoolean closed = new AtomicBoolean(false);
+
+  private volatile int maxIdle = 8;
+  private volatile int maxTotal = 0;
+  private volatile int maxWait = 0;
+  private volatile int idleTimeout = (int) TimeUnit.SECONDS.toMillis(60);
+  private volatile HealthCheck healthCheck = HealthCheck.PEEK;
+
+  /**
+   * Specifies how an idle connection is checked before it is handed out again.
+   */
+  public enum HealthCheck {
+    /**
+     * Do not check; only connections that have been closed locally are discarded.
+     */
+    NONE,
+
+    /**
+     * Check, without blocking, that there is neither unread data nor an end-of-stream pending on
+     * the connection, akin to a non-blocking {@code recv} with {@code MSG_PEEK}. Since an idle
+     * connection is not expected to be readable, both conditions mean the connection is discarded.
+     */
+    PEEK,
+
+    /**
+     * Like {@link #PEEK}, and additionally send a zero-length message to detect a closed peer, see
+     * {@link AFSocket#checkConnectionClosed()}. This only has an effect on platforms that support
+     * {@link AFSocketCapability#CAPABILITY_ZERO_LENGTH_SEND}.
+     */
+    PEEK_AND_ZERO_LENGTH_SEND;
+  }
+
+  /**
+   * Creates a pooled socket factory, using the given factory to establish new connections and to
+   * resolve hostnames.
+   *
+   * @param factory The factory to use for new connections.
+   */
+  public AFPooledSocketFactory(AFSocketFactory<A> factory) {
+    this(factory, AFTimerWheel.getDefault());
+  }
+
+  /**
+   * Creates a pooled socket factory, using the given factory to establish new connections and to
+   * resolve hostnames, and the given timer wheel for evicting idle connections.
+   *
+   * @param factory The factory to use for new connections.
+   * @param timerWheel The timer wheel.
+   */
+  public AFPooledSocketFactory(AFSocketFactory<A> factory, AFTimerWheel timerWheel) {
+    super();
+    this.factory = Objects.requireNonNull(factory);
+    this.timerWheel = Objects.requireNonNull(timerWheel);
+  }
+
+  /**
+   * Returns the maximum number of idle connections kept per address.
+   *
+   * @return The maximum.
+   */
+  public int getMaxIdle() {
+    return maxIdle;
+  }
+
+  /**
+   * Sets the maximum number of idle connections kept per address. Connections returned to a full
+   * pool are closed.
+   *
+   * @param maxIdle The maximum (0 = do not keep idle connections).
+   */
+  public void setMaxIdle(int maxIdle) {
+    if (maxIdle < 0) {
+      throw new IllegalArgumentException("maxIdle");
+    }
+    this.maxIdle = maxIdle;
+  }
+
+  /**
+   * Returns the maximum number of connections (idle and in use) per address.
+   *
+   * @return The maximum (0 = unlimited).
+   */
+  public int getMaxTotal() {
+    return maxTotal;
+  }
+
+  /**
+   * Sets the maximum number of connections (idle and in use) per address. When the limit is
+   * reached, requests for a new connection wait up to {@link #getMaxWait()} milliseconds for
+   * another connection to be returned.
+   *
+   * @param maxTotal The maximum (0 = unlimited).
+   */
+  public void setMaxTotal(int maxTotal) {
+    if (maxTotal < 0) {
+      throw new IllegalArgumentException("maxTotal");
+    }
+    this.maxTotal = maxTotal;
+  }
+
+  /**
+   * Returns the maximum time to wait for a connection when {@link #getMaxTotal()} is reached.
+   *
+   * @return The time in milliseconds (0 = wait indefinitely).
+   */
+  public int getMaxWait() {
+    return maxWait;
+  }
+
+  /**
+   * Sets the maximum time to wait for a connection when {@link #getMaxTotal()} is reached. Upon
+   * timeout, a {@link SocketTimeoutException} is thrown.
+   *
+   * @param maxWait The time in milliseconds (0 = wait indefinitely).
+   */
+  public void setMaxWait(int maxWait) {
+    if (maxWait < 0) {
+      throw new IllegalArgumentException("maxWait");
+    }
+    this.maxWait = maxWait;
+  }
+
+  /**
+   * Returns the time after which an idle connection is closed.
+   *
+   * @return The time in milliseconds (0 = never).
+   */
+  public int getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  /**
+   * Sets the time after which an idle connection is closed. The change only affects connections
+   * that are returned to the pool afterwards.
+   *
+   * @param idleTimeout The time in milliseconds (0 = never).
+   */
+  public void setIdleTimeout(int idleTimeout) {
+    if (idleTimeout < 0) {
+      throw new IllegalArgumentException("idleTimeout");
+    }
+    this.idleTimeout = idleTimeout;
+  }
+
+  /**
+   * Returns the health check that is applied to idle connections before they are reused.
+   *
+   * @return The health check.
+   */
+  public HealthCheck getHealthCheck() {
+    return healthCheck;
+  }
+
+  /**
+   * Sets the health check that is applied to idle connections before they are reused.
+   *
+   * @param healthCheck The health check.
+   */
+  public void setHealthCheck(HealthCheck healthCheck) {
+    this.healthCheck = Objects.requireNonNull(healthCheck);
+  }
+
+  /**
+   * Returns the number of idle connections to the given address.
+   *
+   * @param address The address.
+   * @return The number of idle connections.
+   */
+  public int getIdleCount(A address) {
+    Pool pool = pools.get(address);
+    if (pool == null) {
+      return 0;
+    }
+    synchronized (pool) {
+      return pool.idle.size();
+    }
+  }
+
+  /**
+   * Returns the number of connections (idle and in use) to the given address.
+   *
+   * @param address The address.
+   * @return The number of connections.
+   */
+  public int getTotalCount(A address) {
+    Pool pool = pools.get(address);
+    if (pool == null) {
+      return 0;
+    }
+    synchronized (pool) {
+      return pool.total;
+    }
+  }
+
+  @Override
+  public boolean isHostnameSupported(String host) {
+    return factory.isHostnameSupported(host);
+  }
+
+  @Override
+  public SocketAddress addressFromHost(String host, int port) throws SocketException {
+    return factory.addressFromHost(host, port);
+  }
+
+  /**
+   * Returns a new, unconnected socket from the underlying factory. Such sockets are not pooled.
+   *
+   * @return The socket.
+   * @throws SocketException on error.
+   */
+  @Override
+  public Socket createSocket() throws SocketException {
+    return factory.createSocket();
+  }
+
+  /**
+   * Returns a {@link PooledSocket} connected to the given address, reusing an idle connection if
+   * possible.
+   *
+   * @param addr The address to connect to.
+   * @return The socket.
+   * @throws IOException on error.
+   */
+  @Override
+  public PooledSocket connectTo(A addr) throws IOException {
+    if (closed.get()) {
+      throw new SocketException("Socket factory is closed");
+    }
+    Pool pool;
+    do {
+      pool = Java7Util.computeIfAbsent(pools, addr, (k) -> new Pool(k));
+    } while (!pool.enter());
+    try {
+      return connectTo(pool, addr);
+    } finally {
+      pool.leave();
+    }
+  }
+
+  private PooledSocket connectTo(Pool pool, A addr) throws IOException {
+    while (true) { // NOPMD.WhileLoopWithLiteralBoolean
+      IdleSocket idleSocket = pool.borrow();
+      if (idleSocket == null) {
+        break;
+      }
+      idleSocket.cancelEviction();
+      if (isHealthy(idleSocket.socket)) {
+        return new PooledSocket(pool, idleSocket.socket);
+      }
+      pool.discard(idleSocket.socket);
+    }
+
+    // pool.borrow reserved a slot for a new connection
+    Socket sock;
+    try {
+      sock = factory.connectTo(addr);
+    } catch (IOException | RuntimeException e) {
+      pool.release();
+      throw e;
+    }
+    if (!(sock instanceof AFSocket<?>)) {
+      pool.release();
+      throw new SocketException("Unsupported socket: " + sock);
+    }
+    return new PooledSocket(pool, (AFSocket<?>) sock);
+  }
+
+  private boolean isHealthy(AFSocket<?> socket) {
+    if (socket.isClosed() || !socket.isConnected()) {
+      return false;
+    }
+    try {
+      switch (healthCheck) {
+        case PEEK_AND_ZERO_LENGTH_SEND:
+          if (socket.checkConnectionClosed()) {
+            return false;
+          }
+          return !isReadable(socket);
+        case PEEK:
+          return !isReadable(socket);
+        case NONE:
+        default:
+          return true;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static boolean isReadable(AFSocket<?> socket) throws IOException {
+    AFSelector.PollFd pfd = new AFSelector.PollFd(socket.getFileDescriptor());
+    return NativeUnixSocket.poll(pfd, 0) > 0 && pfd.rops[0] != 0;
+  }
+
+  /**
+   * Closes all idle connections, and makes sure that connections currently in use are closed when
+   * they are returned. Subsequent attempts to connect will fail.
+   */
+  @Override
+  public void close() {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    for (Pool pool : pools.values()) {
+      pool.closeIdle();
+    }
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+
+  private static final class IdleSocket {
+    private final AFSocket<?> socket;
+    private AFTimerWheel.Timeout evictTimeout; // null if idle connections are kept indefinitely
+
+    IdleSocket(AFSocket<?> socket) {
+      this.socket = socket;
+    }
+
+    void cancelEviction() {
+      if (evictTimeout != null) {
+        evictTimeout.cancel();
+      }
+    }
+  }
+
+  /**
+   * The connections to one address. A pool is removed from {@link #pools} once it has no
+   * connections and no callers of {@link #connectTo(AFSocketAddress)} left.
+   */
+  private final class Pool {
+    private final A address;
+    // LIFO, so we keep reusing the warmest connections and let the others expire
+    private final Deque<IdleSocket> idle = new ArrayDeque<>();
+    private int total = 0;
+    private int callers = 0;
+    private boolean removed = false;
+
+    Pool(A address) {
+      this.address = address;
+    }
+
+    /**
+     * Registers a caller of {@link AFPooledSocketFactory#connectTo(AFSocketAddress)}, so the pool
+     * is not removed while it is being used.
+     *
+     * @return {@code false} if the pool has already been removed; it must be looked up again.
+     */
+    synchronized boolean enter() {
+      if (removed) {
+        return false;
+      }
+      callers++;
+      return true;
+    }
+
+    /**
+     * Unregisters a caller registered via {@link #enter()}.
+     */
+    synchronized void leave() {
+      callers--;
+      removeIfUnused();
+    }
+
+    private void removeIfUnused() {
+      if (total == 0 && callers == 0 && !removed) {
+        removed = true;
+        pools.remove(address, this);
+      }
+    }
+
+    /**
+     * Takes an idle connection, or reserves a slot for a new connection.
+     *
+     * @return The idle connection, or {@code null} if a new connection should be established.
+     * @throws IOException on timeout or interrupt.
+     */
+    @SuppressFBWarnings("WA_NOT_IN_LOOP")
+    synchronized IdleSocket borrow() throws IOException {
+      long deadline = 0;
+      while (true) { // NOPMD.WhileLoopWithLiteralBoolean
+        IdleSocket idleSocket = idle.pollFirst();
+        if (idleSocket != null) {
+          return idleSocket;
+        }
+        int max = maxTotal;
+        if (max <= 0 || total < max) {
+          total++;
+          return null;
+        }
+
+        int wait = maxWait;
+        long waitMillis = 0;
+        if (wait > 0) {
+          long now = System.currentTimeMillis();
+          if (deadline == 0) {
+            deadline = now + wait;
+          }
+          waitMillis = deadline - now;
+          if (waitMillis <= 0) {
+            throw new SocketTimeoutException("Timeout while waiting for a pooled connection");
+          }
+        }
+        try {
+          wait(waitMillis);
+        } catch (InterruptedException e) {
+          throw (InterruptedIOException) new InterruptedIOException(
+              "Interrupted while waiting for a pooled connection").initCause(e);
+        }
+        if (closed.get()) {
+          throw new SocketException("Socket factory is closed");
+        }
+      }
+    }
+
+    /**
+     * Releases a slot previously reserved by {@link #borrow()}.
+     */
+    synchronized void release() {
+      total--;
+      notifyAll();
+      removeIfUnused();
+    }
+
+    void discard(AFSocket<?> socket) {
+      release();
+      closeQuietly(socket);
+    }
+
+    void giveBack(AFSocket<?> socket, boolean reusable) {
+      if (reusable && !closed.get()) {
+        final IdleSocket idleSocket = new IdleSocket(socket);
+        synchronized (this) {
+          if (idle.size() < maxIdle) {
+            int timeout = idleTimeout;
+            if (timeout > 0) {
+              idleSocket.evictTimeout = timerWheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                  evict(idleSocket);
+                }
+              }, timeout, TimeUnit.MILLISECONDS);
+            }
+            idle.addFirst(idleSocket);
+            notifyAll();
+            return;
+          }
+        }
+      }
+      discard(socket);
+    }
+
+    private void evict(IdleSocket idleSocket) {
+      synchronized (this) {
+        if (!idle.remove(idleSocket)) {
+          return;
+        }
+      }
+      discard(idleSocket.socket);
+    }
+
+    void closeIdle() {
+      List<IdleSocket> toClose;
+      synchronized (this) {
+        toClose = new ArrayList<>(idle);
+        idle.clear();
+        notifyAll();
+      }
+      for (IdleSocket idleSocket : toClose) {
+        idleSocket.cancelEviction();
+        discard(idleSocket.socket);
+      }
+    }
+  }
+
+  /**
+   * A socket handed out by {@link AFPooledSocketFactory}. Closing it returns the underlying
+   * connection to the pool.
+   * <p>
+   * Once closed, the socket cannot be used anymore, even if the underlying connection is still
+   * open and used by someone else.
+   */
+  public static final class PooledSocket extends Socket {
+    private final AFPooledSocketFactory<?>.Pool pool;
+    private final AFSocket<?> socket;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    // socket options changed while borrowed (SocketOptions ID to the previous value); guarded by
+    // "this"
+    private final Map<Integer, Object> changedOptions = new HashMap<>();
+    private volatile boolean reusable = true;
+    private InputStream in;
+    private OutputStream out;
+
+    @SuppressFBWarnings("CT_CONSTRUCTOR_THROW")
+    PooledSocket(AFPooledSocketFactory<?>.Pool pool, AFSocket<?> socket) throws SocketException {
+      super((java.net.SocketImpl) null);
+      this.pool = pool;
+      this.socket = socket;
+    }
+
+    /**
+     * Returns the underlying connection, for example to access {@link AFUNIXSocket}-specific
+     * functionality.
+     * <p>
+     * The returned socket must not be closed directly; close this {@link PooledSocket} instead.
+     *
+     * @return The underlying socket.
+     * @throws SocketException if this socket has already been closed.
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public AFSocket<?> getAFSocket() throws SocketException {
+      ensureOpen();
+      return socket;
+    }
+
+    /**
+     * Marks the underlying connection as not reusable; it will be closed instead of being returned
+     * to the pool.
+     */
+    public void invalidate() {
+      reusable = false;
+    }
+
+    private void ensureOpen() throws SocketException {
+      if (closed.get()) {
+        throw new SocketClosedException("Socket is closed");
+      }
+    }
+
+    private <T extends IOException> T markBroken(T e) {
+      reusable = false;
+      return e;
+    }
+
+    /**
+     * Called before a socket option is changed, so it can be reverted once the connection is
+     * returned to the pool.
+     *
+     * @param optID The {@link SocketOptions} ID.
+     * @throws SocketException on error.
+     */
+    private void optionChanging(int optID) throws SocketException {
+      switch (optID) {
+        case SocketOptions.SO_LINGER:
+        case SocketOptions.SO_RCVBUF:
+        case SocketOptions.SO_SNDBUF:
+          // the kernel adjusts buffer sizes (e.g., doubles them on Linux), so we can't reliably
+          // restore the previous value
+          reusable = false;
+          return;
+        default:
+          synchronized (this) {
+            if (!changedOptions.containsKey(optID)) {
+              changedOptions.put(optID, socket.getAFImpl().getOption(optID));
+            }
+          }
+      }
+    }
+
+    private synchronized boolean restoreOptions() {
+      try {
+        for (Map.Entry<Integer, Object> en : changedOptions.entrySet()) {
+          socket.getAFImpl().setOption(en.getKey(), en.getValue());
+        }
+      } catch (SocketException e) {
+        return false;
+      }
+      changedOptions.clear();
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      pool.giveBack(socket, reusable && restoreOptions());
+    }
+
+    @Override
+    public boolean isClosed() {
+      return closed.get();
+    }
+
+    @Override
+    public boolean isConnected() {
+      return true;
+    }
+
+    @Override
+    public boolean isBound() {
+      return true;
+    }
+
+    @Override
+    public void connect(SocketAddress endpoint) throws IOException {
+      throw new SocketException("Already connected");
+    }
+
+    @Override
+    public void connect(SocketAddress endpoint, int timeout) throws IOException {
+      throw new SocketException("Already connected");
+    }
+
+    @Override
+    public void bind(SocketAddress bindpoint) throws IOException {
+      throw new SocketException("Already bound");
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+      return socket.getInetAddress();
+    }
+
+    @Override
+    public InetAddress getLocalAddress() {
+      return socket.getLocalAddress();
+    }
+
+    @Override
+    public int getPort() {
+      return socket.getPort();
+    }
+
+    @Override
+    public int getLocalPort() {
+      return socket.getLocalPort();
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+      return socket.getRemoteSocketAddress();
+    }
+
+    @Override
+    public SocketAddress getLocalSocketAddress() {
+      return socket.getLocalSocketAddress();
+    }
+
+    /**
+     * Always returns {@code null}, since channel access would bypass the pool.
+     *
+     * @return {@code null}.
+     */
+    @Override
+    public SocketChannel getChannel() {
+      return null;
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+      ensureOpen();
+      if (in == null) {
+        in = new PooledInputStream(socket.getInputStream());
+      }
+      return in;
+    }
+
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException {
+      ensureOpen();
+      if (out == null) {
+        out = new PooledOutputStream(socket.getOutputStream());
+      }
+      return out;
+    }
+
+    @Override
+    public void setTcpNoDelay(boolean on) throws SocketException {
+      ensureOpen();
+      optionChanging(SocketOptions.TCP_NODELAY);
+      socket.setTcpNoDelay(on);
+    }
+
+    @Override
+    public boolean getTcpNoDelay() throws SocketException {
+      ensureOpen();
+      return socket.getTcpNoDelay();
+    }
+
+    @Override
+    public void setSoLinger(boolean on, int linger) throws SocketException {
+      ensureOpen();
+      optionChanging(SocketOptions.SO_LINGER);
+      socket.setSoLinger(on, linger);
+    }
+
+    @Override
+    public int getSoLinger() throws SocketException {
+      ensureOpen();
+      return socket.getSoLinger();
+    }
+
+    @Override
+    public void sendUrgentData(int data) throws IOException {
+      ensureOpen();
+      socket.sendUrgentData(data);
+    }
+
+    @Override
+    public void setOOBInline(boolean on) throws SocketException {
+      ensureOpen();
+      optionChanging(SocketOptions.SO_OOBINLINE);
+      socket.setOOBInline(on);
+    }
+
+    @Override
+    public boolean getOOBInline() throws SocketException {
+      ensureOpen();
+      return socket.getOOBInline();
+    }
+
+    @Override
+    public synchronized void setSoTimeout(int timeout) throws SocketException {
+      ensureOpen();
+      optionChanging(SocketOptions.SO_TIMEOUT);
+      socket.setSoTimeout(timeout);
+    }
+
+    @Override
+    public synchronized int getSoTimeout() throws SocketException {
+      ensureOpen();
+      return socket.getSoTimeout();
+    }
+
+    @Override
+    public synchronized void setSendBufferSize(int size) throws SocketException {
+      ensureOpen();
+      optionChanging(SocketOptions.SO_SNDBUF);
+      socket.setSendBufferSize(size);
+    }
+
+    @Override
+    public synchronized int getSendBufferSize() throws SocketException {
+      ensureOpen();
+      return socket.getSendBufferSize();
+    }
+
+    @Override
+    public synchronized void setReceiveBufferSize(int size) throws SocketException {
+      ensureOpen();
+      optionChanging(SocketOptions.SO_RCVBUF);
+      socket.setReceiveBufferSize(size);
+    }
+
+    @Override
+    public synchronized int getReceiveBufferSize() throws SocketException {
+      ensureOpen();
+      return socket.getReceiveBufferSize();
+    }
+
+    @Override
+    public void setKeepAlive(boolean on) throws SocketException {
+      ensureOpen();
+      optionChanging(SocketOptions.SO_KEEPALIVE);
+      socket.setKeepAlive(on);
+    }
+
+    @Override
+    public boolean getKeepAlive() throws SocketException {
+      ensureOpen();
+      return socket.getKeepAlive();
+    }
+
+    @Override
+    public void setTrafficClass(int tc) throws SocketException {
+      ensureOpen();
+      optionChanging(SocketOptions.IP_TOS);
+      socket.setTrafficClass(tc);
+    }
+
+    @Override
+    public int getTrafficClass() throws SocketException {
+      ensureOpen();
+      return socket.getTrafficClass();
+    }
+
+    @Override
+    public void setReuseAddress(boolean on) throws SocketException {
+      ensureOpen();
+      optionChanging(SocketOptions.SO_REUSEADDR);
+      socket.setReuseAddress(on);
+    }
+
+    @Override
+    public boolean getReuseAddress() throws SocketException {
+      ensureOpen();
+      return socket.getReuseAddress();
+    }
+
+    @Override
+    public void shutdownInput() throws IOException {
+      ensureOpen();
+      reusable = false;
+      socket.shutdownInput();
+    }
+
+    @Override
+    public void shutdownOutput() throws IOException {
+      ensureOpen();
+      reusable = false;
+      socket.shutdownOutput();
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+      return socket.isInputShutdown();
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+      return socket.isOutputShutdown();
+    }
+
+    @Override
+    public void setPerformancePreferences(int connectionTime, int latency, int bandwidth) {
+      // ignored
+    }
+
+    @SuppressWarnings({"all", "MissingOverride" /* errorprone */})
+    public <T> T getOption(SocketOption<T> name) throws IOException {
+      Objects.requireNonNull(name);
+      ensureOpen();
+      return socket.getAFImpl().getOption(name);
+    }
+
+    @SuppressWarnings({"all", "MissingOverride" /* errorprone */})
+    public <T> Socket setOption(SocketOption<T> name, T value) throws IOException {
+      Objects.requireNonNull(name);
+      ensureOpen();
+      Integer optID = SocketOptionsMapper.resolve(name);
+      if (optID == null) {
+        // e.g., an AFSocketOption; we don't know how to restore it
+        reusable = false;
+      } else {
+        optionChanging(optID);
+      }
+      socket.getAFImpl().setOption(name, value);
+      return this;
+    }
+
+    @SuppressWarnings("all")
+    public Set<SocketOption<?>> supportedOptions() {
+      return socket.getAFImpl().supportedOptions();
+    }
+
+    @Override
+    public String toString() {
+      return super.toString() + "[" + (closed.get() ? "closed" : socket) + "]";
+    }
+
+    private final class PooledInputStream extends InputStream {
+      private final InputStream stream;
+
+      PooledInputStream(InputStream stream) {
+        super();
+        this.stream = stream;
+      }
+
+      private int checkEndOfStream(int r) {
+        if (r == -1) {
+          // the peer has closed the connection (or at least its output)
+          reusable = false;
+        }
+        return r;
+      }
+
+      @Override
+      public int read() throws IOException {
+        ensureOpen();
+        try {
+          return checkEndOfStream(stream.read());
+        } catch (IOException e) {
+          throw markBroken(e);
+        }
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        try {
+          return checkEndOfStream(stream.read(b, off, len));
+        } catch (IOException e) {
+          throw markBroken(e);
+        }
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+        ensureOpen();
+        try {
+          return stream.skip(n);
+        } catch (IOException e) {
+          throw markBroken(e);
+        }
+      }
+
+      @Override
+      public int available() throws IOException {
+        ensureOpen();
+        return stream.available();
+      }
+
+      @Override
+      public void close() throws IOException {
+        PooledSocket.this.close();
+      }
+    }
+
+    private final class PooledOutputStream extends OutputStream {
+      private final OutputStream stream;
+
+      PooledOutputStream(OutputStream stream) {
+        super();
+        this.stream = stream;
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+        ensureOpen();
+        try {
+          stream.write(b);
+        } catch (IOException e) {
+          throw markBroken(e);
+        }
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        try {
+          stream.write(b, off, len);
+        } catch (IOException e) {
+          throw markBroken(e);
+        }
+      }
+
+      @Override
+      public void flush() throws IOException {
+        ensureOpen();
+        try {
+          stream.flush();
+        } catch (IOException e) {
+          throw markBroken(e);
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        PooledSocket.this.close();
+      }
+    }
+  }
+}
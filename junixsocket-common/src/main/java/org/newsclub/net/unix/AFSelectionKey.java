@@ -17,6 +17,8 @@
  */
 package org.newsclub.net.unix;
 
+import java.io.FileDescriptor;
+import java.io.IOException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
@@ -26,7 +28,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
 final class AFSelectionKey extends SelectionKey {
   private static final int OP_INVALID = 1 << 7; // custom
   private final AFSelector sel;
-  private final AFSocketCore core;
+  private final FileDescriptor fd;
+  private final AFCore core;
+  private int fdNum = -1;
+  private final boolean foreign;
   private int ops;
   private final SelectableChannel chann;
   private final AtomicBoolean cancelled = new AtomicBoolean();
@@ -38,15 +43,36 @@ final class AFSelectionKey extends SelectionKey {
     this.sel = selector;
     this.ops = ops; // FIXME check
 
+    FileDescriptor channelFd;
+    AFCore channelCore = null;
+    boolean foreignChannel = false;
     if (ch instanceof AFDatagramChannel<?>) {
-      this.core = ((AFDatagramChannel<?>) ch).getAFCore();
+      channelCore = ((AFDatagramChannel<?>) ch).getAFCore();
+      channelFd = channelCore.fd;
     } else if (ch instanceof AFSocketChannel<?>) {
-      this.core = ((AFSocketChannel<?>) ch).getAFCore();
+      channelCore = ((AFSocketChannel<?>) ch).getAFCore();
+      channelFd = channelCore.fd;
     } else if (ch instanceof AFServerSocketChannel<?>) {
-      this.core = ((AFServerSocketChannel<?>) ch).getAFCore();
+      channelCore = ((AFServerSocketChannel<?>) ch).getAFCore();
+      channelFd = channelCore.fd;
+    } else if (ch instanceof FileDescriptorAccess) {
+      try {
+        channelFd = ((FileDescriptorAccess) ch).getFileDescriptor();
+      } catch (IOException e) {
+        throw (UnsupportedOperationException) new UnsupportedOperationException(
+            "Unsupported channel: " + ch).initCause(e);
+      }
     } else {
+      // e.g., a SocketChannel from the JDK's default SelectorProvider
+      channelFd = NativeUnixSocket.getSelectableChannelFD(ch);
+      foreignChannel = true;
+    }
+    if (channelFd == null) {
       throw new UnsupportedOperationException("Unsupported channel: " + ch);
     }
+    this.fd = channelFd;
+    this.core = channelCore;
+    this.foreign = foreignChannel;
 
     attach(att);
   }
@@ -112,8 +138,40 @@ final class AFSelectionKey extends SelectionKey {
     return opsReady & ~OP_INVALID;
   }
 
-  AFSocketCore getAFCore() {
-    return core;
+  FileDescriptor getFD() {
+    return fd;
+  }
+
+  /**
+   * Returns the native file descriptor number of the channel, which is cached while the channel is
+   * open.
+   *
+   * @return The file descriptor number, or {@code -1} if the channel has been closed.
+   * @throws IOException on error.
+   */
+  int getFDNum() throws IOException {
+    if (core != null) {
+      try {
+        return core.fdNum();
+      } catch (SocketClosedException e) {
+        return -1;
+      }
+    }
+    int num = fdNum;
+    if (num < 0 && fd.valid()) {
+      fdNum = num = NativeUnixSocket.getFD(fd);
+    }
+    return fd.valid() ? num : -1;
+  }
+
+  /**
+   * Checks if the channel is implemented by the JDK (or another third party), and therefore may
+   * defer closing its file descriptor until it is no longer registered with any selector.
+   *
+   * @return {@code true} if so.
+   */
+  boolean isForeign() {
+    return foreign;
   }
 
   void setOpsReady(int opsReady) {
@@ -28,17 +28,24 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.spi.AbstractSelectableChannel;
 import java.nio.channels.spi.AbstractSelector;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 final class AFSelector extends AbstractSelector {
   private final AFPipe selectorPipe;
   private final PollFd selectorPipePollFd;
 
+  // the native file descriptor number of the selector pipe's source, once known
+  private int selectorPipeFdNum = -1;
+
   private final ByteBuffer pipeMsgWakeUp = ByteBuffer.allocate(1);
   private final ByteBuffer pipeMsgReceiveBuffer = ByteBuffer.allocateDirect(256);
 
@@ -56,6 +63,9 @@ final class AFSelector extends AbstractSelector {
 
   private PollFd pollFd = null;
 
+  // closed JDK channels whose deferred close we need to complete, see #remove(AFSelectionKey)
+  private final List<SelectableChannel> channelsToKill = new ArrayList<>();
+
   AFSelector(AFSelectorProvider<?> provider) throws IOException {
     super(provider);
 
@@ -108,46 +118,152 @@ final class AFSelector extends AbstractSelector {
     }
   }
 
-  @SuppressWarnings("PMD.CognitiveComplexity")
-  private int select0(int timeout) throws IOException {
-    PollFd pfd;
+  // NOTE: Selector#select(Consumer), #select(Consumer, long) and #selectNow(Consumer) were added
+  // in Java 11; we cannot use @Override since this class is also compiled for Java 8.
+
+  /**
+   * Selects and performs an action on the keys whose corresponding channels are ready for I/O
+   * operations (see {@code Selector#select(Consumer, long)}, Java 11 or newer).
+   * <p>
+   * Unlike {@link #select(long)}, the selected-key set is not used. The ready keys are taken
+   * directly from the result of the poll, without any allocation per select cycle.
+   *
+   * @param action The action to perform.
+   * @param timeout The timeout in milliseconds, or {@code 0} to block indefinitely.
+   * @return The number of keys upon which the action was performed.
+   * @throws IOException on error.
+   */
+  public int select(Consumer<SelectionKey> action, long timeout) throws IOException {
+    Objects.requireNonNull(action);
+    if (timeout < 0) {
+      throw new IllegalArgumentException("Timeout must not be negative");
+    }
+    return select0(action, timeout == 0 ? -1 : (int) Math.min(timeout, Integer.MAX_VALUE));
+  }
+
+  /**
+   * Selects and performs an action on the keys whose corresponding channels are ready for I/O
+   * operations, blocking until at least one channel is selected, the selector is woken up, or the
+   * current thread is interrupted (see {@code Selector#select(Consumer)}, Java 11 or newer).
+   *
+   * @param action The action to perform.
+   * @return The number of keys upon which the action was performed.
+   * @throws IOException on error.
+   * @see #select(Consumer, long)
+   */
+  public int select(Consumer<SelectionKey> action) throws IOException {
+    return select(action, 0);
+  }
 
+  /**
+   * Selects and performs an action on the keys whose corresponding channels are ready for I/O
+   * operations, without blocking (see {@code Selector#selectNow(Consumer)}, Java 11 or newer).
+   *
+   * @param action The action to perform.
+   * @return The number of keys upon which the action was performed.
+   * @throws IOException on error.
+   * @see #select(Consumer, long)
+   */
+  public int selectNow(Consumer<SelectionKey> action) throws IOException {
+    Objects.requireNonNull(action);
+    return select0(action, 0);
+  }
+
+  private int select0(int timeout) throws IOException {
     int selectId = updateSelectCount();
 
+    PollFd pfd = poll0(timeout);
+    synchronized (this) {
+      if (pfd != null) {
+        setOpsReady(pfd, selectId); // updates keysSelected and numKeysSelected
+      }
+      return selectedKeysSet.size();
+    }
+  }
+
+  private int select0(Consumer<SelectionKey> action, int timeout) throws IOException {
+    PollFd pfd = poll0(timeout);
+    if (pfd == null) {
+      return 0;
+    }
+
+    AFSelectionKey[] keys = pfd.keys;
+    int[] rops = pfd.rops;
+    int remaining = pfd.numReady;
+    if (rops[0] != 0) {
+      remaining--; // selector pipe
+    }
+
+    // the action may register or cancel keys; this does not affect our local copy of the arrays
+    int count = 0;
+    for (int i = 1; i < rops.length && remaining > 0; i++) {
+      int r = rops[i];
+      if (r == 0) {
+        continue;
+      }
+      remaining--;
+      AFSelectionKey key = keys[i];
+      key.setOpsReady(r);
+      if (key.isValid()) {
+        count++;
+        action.accept(key);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Polls all registered keys.
+   *
+   * @param timeout The timeout in milliseconds, {@code 0} for non-blocking, {@code -1} for
+   *          indefinitely.
+   * @return The {@link PollFd} if at least one file descriptor is ready, or {@code null}.
+   * @throws IOException on error.
+   */
+  @SuppressWarnings("PMD.CognitiveComplexity")
+  private PollFd poll0(int timeout) throws IOException {
+    PollFd pfd;
+
     synchronized (this) {
       if (!isOpen()) {
         throw new ClosedSelectorException();
       }
 
+      if (!channelsToKill.isEmpty()) {
+        killChannels();
+      }
       pfd = pollFd = initPollFd(pollFd);
     }
     int num;
     try {
       begin();
-      num = NativeUnixSocket.poll(pfd, timeout);
+      if (pfd.fdNums != null) {
+        num = NativeUnixSocket.pollFds(pfd.fdNums, pfd.ops, pfd.rops, timeout);
+      } else {
+        num = NativeUnixSocket.poll(pfd, timeout);
+      }
     } finally {
       end();
     }
     synchronized (this) {
-      pfd = pollFd;
-      if (pfd != null) {
-        AFSelectionKey[] keys = pfd.keys;
-        if (keys != null) {
-          for (AFSelectionKey key : keys) {
-            if (key != null && key.hasOpInvalid()) {
-              SelectableChannel ch = key.channel();
-              if (ch != null && ch.isOpen()) {
-                ch.close();
-              }
+      AFSelectionKey[] keys = pfd.keys;
+      if (keys != null) {
+        for (AFSelectionKey key : keys) {
+          if (key != null && key.hasOpInvalid()) {
+            SelectableChannel ch = key.channel();
+            if (ch != null && ch.isOpen()) {
+              ch.close();
             }
           }
         }
       }
       if (num > 0) {
         consumeAllBytesAfterPoll();
-        setOpsReady(pfd, selectId); // updates keysSelected and numKeysSelected
+        pfd.numReady = num;
+        return pfd;
+      } else {
+        return null;
       }
-      return selectedKeysSet.size();
     }
   }
 
@@ -258,37 +374,23 @@ final class AFSelector extends AbstractSelector {
   @SuppressWarnings({"resource", "PMD.CognitiveComplexity"})
   private PollFd initPollFd(PollFd existingPollFd) throws IOException {
     synchronized (this) {
+      if (existingPollFd != null && //
+          existingPollFd.keys != null && //
+          (existingPollFd.keys.length - 1) == keysRegistered.size() && //
+          refreshPollFd(existingPollFd)) {
+        return existingPollFd;
+      }
+
       for (Iterator<AFSelectionKey> it = keysRegisteredKeySet.iterator(); it.hasNext();) {
         AFSelectionKey key = it.next();
-        if (!key.getAFCore().fd.valid() || !key.isValid()) {
+        if (!key.getFD().valid() || !key.isValid()) {
           key.cancelNoRemove();
           it.remove();
-          existingPollFd = null;
         } else {
           key.setOpsReady(0);
         }
       }
 
-      if (existingPollFd != null && //
-          existingPollFd.keys != null && //
-          (existingPollFd.keys.length - 1) == keysRegistered.size()) {
-        boolean needsUpdate = false;
-        int i = 1;
-        for (AFSelectionKey key : keysRegisteredKeySet) {
-          if (existingPollFd.keys[i] != key || !key.isValid()) { // NOPMD
-            needsUpdate = true;
-            break;
-          }
-          existingPollFd.ops[i] = key.interestOps();
-
-          i++;
-        }
-
-        if (!needsUpdate) {
-          return existingPollFd;
-        }
-      }
-
       int keysToPoll = keysRegistered.size();
       for (AFSelectionKey key : keysRegisteredKeySet) {
         if (!key.isValid()) {
@@ -304,30 +406,82 @@ final class AFSelector extends AbstractSelector {
       fds[0] = selectorPipe.sourceFD();
       ops[0] = SelectionKey.OP_READ;
 
+      int[] fdNums;
+      if (AFCore.FD_FASTPATH) {
+        fdNums = new int[size];
+        int pipeFdNum = selectorPipeFdNum;
+        if (pipeFdNum < 0) {
+          selectorPipeFdNum = pipeFdNum = NativeUnixSocket.getFD(fds[0]);
+        }
+        fdNums[0] = pipeFdNum;
+      } else {
+        fdNums = null;
+      }
+
       int i = 1;
       for (AFSelectionKey key : keysRegisteredKeySet) {
         if (!key.isValid()) {
           continue;
         }
         keys[i] = key;
-        fds[i] = key.getAFCore().fd;
+        fds[i] = key.getFD();
         ops[i] = key.interestOps();
+        if (fdNums != null) {
+          fdNums[i] = key.getFDNum();
+        }
         i++;
       }
-      return new PollFd(keys, fds, ops);
+      return new PollFd(keys, fds, fdNums, ops);
     }
   }
 
+  /**
+   * Updates the interest ops of a cached {@link PollFd}, and resets the ready ops of its keys.
+   * <p>
+   * The cached {@link PollFd} is discarded whenever a key is registered or removed, so we only
+   * need to check that its keys are still valid. This avoids iterating over the registered-keys map
+   * (and allocating an iterator) upon every select.
+   *
+   * @param pfd The cached {@link PollFd}.
+   * @return {@code true} if the {@link PollFd} can be reused, {@code false} if it must be rebuilt.
+   */
+  private static boolean refreshPollFd(PollFd pfd) {
+    AFSelectionKey[] keys = pfd.keys;
+    for (int i = 1; i < keys.length; i++) {
+      AFSelectionKey key = keys[i];
+      if (!key.isValid() || !key.getFD().valid()) {
+        return false;
+      }
+    }
+    int[] ops = pfd.ops;
+    for (int i = 1; i < keys.length; i++) {
+      AFSelectionKey key = keys[i];
+      key.setOpsReady(0);
+      ops[i] = key.interestOps();
+    }
+    return true;
+  }
+
   @Override
   protected void implCloseSelector() throws IOException {
     wakeup();
-    Set<SelectionKey> keys;
+    List<AFSelectionKey> keys;
     synchronized (this) {
-      keys = keys();
+      keys = new ArrayList<>(keysRegisteredKeySet);
       keysRegistered.clear();
     }
-    for (SelectionKey key : keys) {
-      ((AFSelectionKey) key).cancelNoRemove();
+    for (AFSelectionKey key : keys) {
+      key.cancelNoRemove();
+      if (key.isForeign()) {
+        // JDK channels would otherwise consider themselves registered forever
+        deregister(key);
+        synchronized (this) {
+          killLaterIfClosed(key);
+        }
+      }
+    }
+    synchronized (this) {
+      killChannels();
     }
     selectorPipe.close();
   }
@@ -360,6 +514,30 @@ final class AFSelector extends AbstractSelector {
     selectedKeysSet.remove(key);
     deregister(key);
     pollFd = null;
+    killLaterIfClosed(key);
+  }
+
+  private void killLaterIfClosed(AFSelectionKey key) {
+    SelectableChannel ch = key.channel();
+    if (key.isForeign() && !ch.isOpen()) {
+      // JDK channels do not close their file descriptor while registered with a selector; this
+      // is left to the selector, once the key has been deregistered. Like the JDK's selectors, we
+      // do this upon the next select, so the file descriptor is not closed while being polled.
+      channelsToKill.add(ch);
+    }
+  }
+
+  private void killChannels() {
+    for (SelectableChannel ch : channelsToKill) {
+      if (!ch.isRegistered()) {
+        try {
+          NativeUnixSocket.killSelectableChannel(ch);
+        } catch (IOException e) {
+          StackTraceUtil.printStackTrace(e);
+        }
+      }
+    }
+    channelsToKill.clear();
   }
 
   private void deregister(AFSelectionKey key) {
@@ -382,8 +560,14 @@ final class AFSelector extends AbstractSelector {
     // accessed from native code
     final int[] rops;
 
+    // the native file descriptor numbers corresponding to fds, or null if not used
+    final int[] fdNums;
+
     final AFSelectionKey[] keys;
 
+    // the number of ready file descriptors reported by the last poll
+    int numReady;
+
     PollFd(FileDescriptor pipeSourceFd) {
       this(pipeSourceFd, SelectionKey.OP_READ);
     }
@@ -392,20 +576,22 @@ final class AFSelector extends AbstractSelector {
       this.fds = new FileDescriptor[] {pipeSourceFd};
       this.ops = new int[] {op};
       this.rops = new int[1];
+      this.fdNums = null;
       this.keys = null;
     }
 
     PollFd(FileDescriptor[] fds, int[] ops) {
-      this(null, fds, ops);
+      this(null, fds, null, ops);
     }
 
     @SuppressWarnings("PMD.ArrayIsStoredDirectly")
-    PollFd(AFSelectionKey[] keys, FileDescriptor[] fds, int[] ops) {
+    PollFd(AFSelectionKey[] keys, FileDescriptor[] fds, int[] fdNums, int[] ops) {
       this.keys = keys;
-      if (fds.length != ops.length) {
+      if (fds.length != ops.length || (fdNums != null && fdNums.length != ops.length)) {
         throw new IllegalStateException();
       }
       this.fds = fds;
+      this.fdNums = fdNums;
       this.ops = ops;
       this.rops = new int[ops.length];
     }
@@ -97,6 +97,8 @@ public abstract class AFSelectorProvider<A extends AFSocketAddress> extends Sele
     }
   };
 
+  private volatile AFAsynchronousChannelProvider<A> asynchronousChannelProvider;
+
   /**
    * Constructs a new {@link AFSelectorProvider}.
    */
@@ -104,6 +106,25 @@ public abstract class AFSelectorProvider<A extends AFSocketAddress> extends Sele
     super();
   }
 
+  /**
+   * Returns the provider for {@link java.nio.channels.AsynchronousSocketChannel}s and
+   * {@link java.nio.channels.AsynchronousServerSocketChannel}s of this address family.
+   *
+   * @return The provider.
+   */
+  public final AFAsynchronousChannelProvider<A> asynchronousChannelProvider() {
+    AFAsynchronousChannelProvider<A> p = asynchronousChannelProvider;
+    if (p == null) {
+      synchronized (this) {
+        p = asynchronousChannelProvider;
+        if (p == null) {
+          asynchronousChannelProvider = p = new AFAsynchronousChannelProvider<>(this);
+        }
+      }
+    }
+    return p;
+  }
+
   /**
    * Constructs a new pipe.
    *
@@ -28,6 +28,8 @@ import java.net.SocketException;
 import java.net.SocketOption;
 import java.net.SocketOptions;
 import java.nio.channels.IllegalBlockingModeException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -482,6 +484,54 @@ public abstract class AFServerSocket<A extends AFSocketAddress> extends ServerSo
     }
   }
 
+  /**
+   * Returns the listening sockets that were passed to this process by a service manager, using
+   * systemd-style socket activation (the {@code LISTEN_FDS}, {@code LISTEN_PID} and
+   * {@code LISTEN_FDNAMES} environment variables).
+   * <p>
+   * The sockets can be of any supported address family (e.g., AF_UNIX, AF_TIPC, AF_VSOCK), and are
+   * already bound. File descriptors that do not refer to a listening stream socket are skipped. The
+   * file descriptors are adopted upon the first call; subsequent calls return the same instances.
+   * <p>
+   * Since the socket files are owned by the service manager, "delete on close" is disabled for
+   * these sockets.
+   *
+   * @return The list of inherited server sockets; empty if none were passed to this process.
+   * @throws IOException on error.
+   * @see #inheritedServerSockets(String)
+   */
+  public static List<AFServerSocket<?>> inheritedServerSockets() throws IOException {
+    List<AFServerSocket<?>> list = new ArrayList<>();
+    for (SocketActivation.InheritedServerSocket iss : SocketActivation.inheritedServerSockets()) {
+      list.add(iss.getSocket());
+    }
+    return list;
+  }
+
+  /**
+   * Returns the listening sockets that were passed to this process by a service manager, using
+   * systemd-style socket activation, and whose name (as specified in {@code LISTEN_FDNAMES}, e.g.,
+   * via {@code FileDescriptorName=} in the systemd socket unit) matches the given one.
+   * <p>
+   * Sockets without a name are named {@code "unknown"}.
+   *
+   * @param name The socket name.
+   * @return The list of matching inherited server sockets; empty if none were passed to this
+   *         process.
+   * @throws IOException on error.
+   * @see #inheritedServerSockets()
+   */
+  public static List<AFServerSocket<?>> inheritedServerSockets(String name) throws IOException {
+    Objects.requireNonNull(name);
+    List<AFServerSocket<?>> list = new ArrayList<>();
+    for (SocketActivation.InheritedServerSocket iss : SocketActivation.inheritedServerSockets()) {
+      if (name.equals(iss.getName())) {
+        list.add(iss.getSocket());
+      }
+    }
+    return list;
+  }
+
   /**
    * Checks if this {@link AFServerSocket}'s file should be removed upon {@link #close()}.
    *
@@ -0,0 +1,174 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A region of a file (such as a {@code memfd}, a POSIX shared memory object or a regular file)
+ * that is mapped into memory, and that can be unmapped explicitly via {@link #close()}.
+ * <p>
+ * Unlike a {@link java.nio.MappedByteBuffer} obtained via
+ * {@link java.nio.channels.FileChannel#map(MapMode, long, long)}, which is only unmapped once the
+ * garbage collector determines that the buffer is unreachable, the memory region (and the
+ * reference to the underlying file) is released as soon as this segment is closed.
+ * <p>
+ * Obtain an instance via {@link FileDescriptorCast}:
+ * </p>
+ * <pre><code>
+ * FileDescriptor fd = socket.getReceivedFileDescriptors()[0];
+ * try (AFSharedMemorySegment segment = FileDescriptorCast.using(fd).withMapping(
+ *     MapMode.READ_ONLY, 0, -1).as(AFSharedMemorySegment.class)) {
+ *   ByteBuffer buf = segment.buffer();
+ *   // ...
+ * }
+ * </code></pre>
+ * <p>
+ * <b>IMPORTANT:</b> Accessing a buffer obtained from this segment after the segment has been closed
+ * results in undefined behavior, and will most likely crash the VM. Make sure no other thread
+ * accesses the buffer when calling {@link #close()}. If the segment is not closed explicitly, the
+ * region is unmapped when the buffer returned by {@link #buffer()} (and all of its duplicates and
+ * slices) become unreachable (on Java 8 and older: when this segment becomes unreachable).
+ *
+ * @author Christian Kohlschütter
+ */
+public final class AFSharedMemorySegment implements Closeable {
+  private final ByteBuffer buffer;
+  private final MapMode mode;
+  private final State state;
+
+  private AFSharedMemorySegment(ByteBuffer buffer, MapMode mode, long address, long length) {
+    this.buffer = mode == MapMode.READ_ONLY ? buffer.asReadOnlyBuffer() : buffer;
+    this.mode = mode;
+    this.state = new State(buffer, address, length);
+  }
+
+  /**
+   * Maps a region of the file referred to by the given file descriptor into memory.
+   *
+   * @param fd The file descriptor.
+   * @param mode The mapping mode.
+   * @param offset The offset into the file, in bytes.
+   * @param length The length of the region, in bytes, or {@code -1} for the remainder of the file.
+   * @return The segment.
+   * @throws IOException on error, including when the region exceeds the size of the file.
+   */
+  static AFSharedMemorySegment map(FileDescriptor fd, MapMode mode, long offset, long length)
+      throws IOException {
+    final int nativeMode;
+    if (mode == MapMode.READ_ONLY) {
+      nativeMode = 0;
+    } else if (mode == MapMode.READ_WRITE) {
+      nativeMode = 1;
+    } else if (mode == MapMode.PRIVATE) {
+      nativeMode = 2;
+    } else {
+      throw new IllegalArgumentException("Unsupported mode: " + mode);
+    }
+
+    long[] mapping = new long[2];
+    ByteBuffer buf = NativeUnixSocket.mmap(fd, offset, length, nativeMode, mapping);
+    return new AFSharedMemorySegment(buf, mode, mapping[0], mapping[1]);
+  }
+
+  /**
+   * Returns a new buffer view of the entire segment, with independent position and limit.
+   * <p>
+   * For segments mapped with {@link MapMode#READ_ONLY}, the buffer is read-only.
+   *
+   * @return The buffer.
+   * @throws ClosedChannelException if the segment has been closed.
+   */
+  public ByteBuffer buffer() throws ClosedChannelException {
+    if (state.closed.get()) {
+      throw new ClosedChannelException();
+    }
+    return buffer.duplicate();
+  }
+
+  /**
+   * Returns the size of the segment, in bytes.
+   *
+   * @return The size.
+   */
+  public int size() {
+    return buffer.capacity();
+  }
+
+  /**
+   * Returns the mode this segment was mapped with.
+   *
+   * @return The mode.
+   */
+  public MapMode getMode() {
+    return mode;
+  }
+
+  /**
+   * Checks if this segment has been closed (unmapped).
+   *
+   * @return {@code true} if closed.
+   */
+  public boolean isClosed() {
+    return state.closed.get();
+  }
+
+  /**
+   * Unmaps the segment. Any subsequent access to buffers obtained from this segment results in
+   * undefined behavior.
+   */
+  @Override
+  public void close() throws IOException {
+    state.runCleaner();
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[size=" + size() + ";mode=" + mode + (isClosed() ? ";closed" : "")
+        + "]";
+  }
+
+  private static final class State extends CleanableState {
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final long address;
+    private final long length;
+
+    State(ByteBuffer observed, long address, long length) {
+      super(observed);
+      this.address = address;
+      this.length = length;
+    }
+
+    @Override
+    protected void doClean() {
+      if (closed.compareAndSet(false, true)) {
+        try {
+          NativeUnixSocket.munmap(address, length);
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+}
@@ -56,8 +56,7 @@ public abstract class AFSocket<A extends AFSocketAddress> extends Socket impleme
   private final Closeables closeables = new Closeables();
   private final AtomicBoolean created = new AtomicBoolean(false);
 
-  @SuppressWarnings("this-escape")
-  private final AFSocketChannel<A> channel = newChannel();
+  private volatile AFSocketChannel<A> channel; // created upon first use
 
   private @Nullable SocketAddressFilter connectFilter;
 
@@ -380,6 +379,73 @@ public abstract class AFSocket<A extends AFSocketAddress> extends Socket impleme
     impl.ensureAncillaryReceiveBufferSize(minSize);
   }
 
+  @Override
+  public final void attachFilter(AFSocketFilter filter) throws IOException {
+    getAFImpl().getCore().attachFilter(filter);
+  }
+
+  @Override
+  public final void detachFilter() throws IOException {
+    getAFImpl().getCore().detachFilter();
+  }
+
+  @Override
+  public final void lockFilter() throws IOException {
+    getAFImpl().getCore().lockFilter();
+  }
+
+  @Override
+  public final int getReceiveQueueBytes() throws IOException {
+    return getAFImpl().getCore().getReceiveQueueBytes();
+  }
+
+  @Override
+  public final int getSendQueueBytes() throws IOException {
+    return getAFImpl().getCore().getSendQueueBytes();
+  }
+
+  /**
+   * Returns a counter that is incremented whenever data is read from or written to this socket,
+   * via its streams or its channel.
+   * <p>
+   * The value itself has no meaning. Comparing it with an earlier value tells whether any data was
+   * transferred in the meantime, which can be used to detect idle connections. Concurrent updates
+   * may be coalesced.
+   *
+   * @return The transfer counter.
+   */
+  public final long getTransferCount() {
+    return getAFImpl().getTransferCount();
+  }
+
+  /**
+   * Returns a counter that is incremented whenever a read operation on this socket's stream or
+   * channel starts, and again when it completes.
+   * <p>
+   * An odd value means that a read is currently pending. If the value is odd and unchanged since an
+   * earlier check, the same read has been pending ever since, which can be used to enforce read
+   * deadlines.
+   *
+   * @return The read operation counter.
+   */
+  public final long getReadOperationCount() {
+    return getAFImpl().getReadOperationCount();
+  }
+
+  /**
+   * Returns a counter that is incremented whenever a write operation on this socket's stream or
+   * channel starts, and again when it completes.
+   * <p>
+   * An odd value means that a write is currently pending (for example, because the peer does not
+   * drain its receive buffer). If the value is odd and unchanged since an earlier check, the same
+   * write has been pending ever since, which can be used to enforce write deadlines.
+   *
+   * @return The write operation counter.
+   */
+  public final long getWriteOperationCount() {
+    return getAFImpl().getWriteOperationCount();
+  }
+
   private static boolean isCapDisabled(AFSocketCapability cap) {
     return Boolean.parseBoolean(System.getProperty(PROP_LIBRARY_DISABLE_CAPABILITY_PREFIX + cap
         .name(), "false"));
@@ -507,7 +573,16 @@ public abstract class AFSocket<A extends AFSocketAddress> extends Socket impleme
   @SuppressFBWarnings("EI_EXPOSE_REP")
   @Override
   public AFSocketChannel<A> getChannel() {
-    return channel;
+    AFSocketChannel<A> chann = channel;
+    if (chann == null) {
+      synchronized (this) {
+        chann = channel;
+        if (chann == null) {
+          channel = chann = newChannel();
+        }
+      }
+    }
+    return chann;
   }
 
   @SuppressWarnings("null")
@@ -246,8 +246,11 @@ public abstract class AFSocketChannel<A extends AFSocketAddress> extends SocketC
     if (length == 0) {
       return 0;
     }
-    // FIXME support more than one buffer for scatter-gather access
-    return read(dsts[offset]);
+    try {
+      return afSocket.getAFImpl().read(dsts, offset, length);
+    } catch (SocketClosedByInterruptException e) {
+      throw e.asClosedByInterruptException(); // NOPMD.PreserveStackTrace
+    }
   }
 
   @Override
@@ -255,8 +258,11 @@ public abstract class AFSocketChannel<A extends AFSocketAddress> extends SocketC
     if (length == 0) {
       return 0;
     }
-    // FIXME support more than one buffer for scatter-gather access
-    return write(srcs[offset]);
+    try {
+      return afSocket.getAFImpl().write(srcs, offset, length);
+    } catch (SocketClosedByInterruptException e) {
+      throw e.asClosedByInterruptException(); // NOPMD.PreserveStackTrace
+    }
   }
 
   @Override
@@ -268,6 +274,29 @@ public abstract class AFSocketChannel<A extends AFSocketAddress> extends SocketC
     }
   }
 
+  /**
+   * Transfers up to {@code count} bytes from the given file, starting at {@code position}, to this
+   * channel, without copying them to user space ({@code sendfile(2)}).
+   * <p>
+   * In non-blocking mode, fewer bytes than requested (possibly none) may be transferred. The file's
+   * own position is not modified.
+   *
+   * @param file The file descriptor of a regular file, e.g., from {@link java.io.FileInputStream}.
+   * @param position The position in the file.
+   * @param count The maximum number of bytes to transfer.
+   * @return The number of bytes transferred.
+   * @throws OperationNotSupportedSocketException if not supported by this platform.
+   * @throws IOException on error.
+   */
+  public final long sendFile(FileDescriptor file, long position, long count) throws IOException {
+    if (position < 0 || count < 0) {
+      throw new IllegalArgumentException();
+    }
+    AFSocketCore core = getAFCore();
+    return NativeUnixSocket.sendfile(core.validFdOrException(), file, position, count, core
+        .isBlocking() ? 0 : NativeUnixSocket.OPT_NON_BLOCKING);
+  }
+
   @Override
   public final A getLocalAddress() throws IOException {
     return getLocalSocketAddress();
@@ -303,6 +332,31 @@ public abstract class AFSocketChannel<A extends AFSocketAddress> extends SocketC
     afSocket.ensureAncillaryReceiveBufferSize(minSize);
   }
 
+  @Override
+  public final void attachFilter(AFSocketFilter filter) throws IOException {
+    getAFCore().attachFilter(filter);
+  }
+
+  @Override
+  public final void detachFilter() throws IOException {
+    getAFCore().detachFilter();
+  }
+
+  @Override
+  public final void lockFilter() throws IOException {
+    getAFCore().lockFilter();
+  }
+
+  @Override
+  public final int getReceiveQueueBytes() throws IOException {
+    return getAFCore().getReceiveQueueBytes();
+  }
+
+  @Override
+  public final int getSendQueueBytes() throws IOException {
+    return getAFCore().getSendQueueBytes();
+  }
+
   final AFSocketCore getAFCore() {
     return afSocket.getAFImpl().getCore();
   }
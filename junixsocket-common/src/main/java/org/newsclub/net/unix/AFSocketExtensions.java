@@ -17,6 +17,8 @@
  */
 package org.newsclub.net.unix;
 
+import java.io.IOException;
+
 /**
  * Defines certain methods that all junixsocket socket implementations share and extend beyond the
  * standard socket API.
@@ -52,4 +54,57 @@ public interface AFSocketExtensions {
    * @param minSize The minimum size (in bytes).
    */
   void ensureAncillaryReceiveBufferSize(int minSize);
+
+  /**
+   * Attaches a classic BPF socket filter ({@code SO_ATTACH_FILTER}), replacing any previously
+   * attached filter. Messages not accepted by the filter are dropped by the kernel.
+   *
+   * @param filter The filter.
+   * @throws IOException on error, for example if the current filter is locked, or
+   *           {@link OperationNotSupportedSocketException} if socket filters are not supported.
+   */
+  void attachFilter(AFSocketFilter filter) throws IOException;
+
+  /**
+   * Detaches the currently attached socket filter ({@code SO_DETACH_FILTER}), if any.
+   *
+   * @throws IOException on error, for example if the current filter is locked, or
+   *           {@link OperationNotSupportedSocketException} if socket filters are not supported.
+   */
+  void detachFilter() throws IOException;
+
+  /**
+   * Locks the currently attached socket filter ({@code SO_LOCK_FILTER}), so it can no longer be
+   * replaced or detached for the lifetime of the socket, even by code that has access to the file
+   * descriptor.
+   *
+   * @throws IOException on error, for example {@link OperationNotSupportedSocketException} if
+   *           socket filters are not supported.
+   */
+  void lockFilter() throws IOException;
+
+  /**
+   * Returns the number of bytes currently in the socket's receive queue, i.e., received by the
+   * kernel but not yet read ({@code SIOCINQ}).
+   * <p>
+   * This is a cheap query that does not touch the data. Note that for datagram sockets, Linux
+   * reports the size of the next pending datagram only.
+   *
+   * @return The number of bytes.
+   * @throws IOException on error, for example {@link OperationNotSupportedSocketException} if not
+   *           supported for this socket type or platform.
+   */
+  int getReceiveQueueBytes() throws IOException;
+
+  /**
+   * Returns the number of bytes currently in the socket's send queue, i.e., written but not yet
+   * consumed by the peer ({@code SIOCOUTQ}).
+   * <p>
+   * Producers can use this to throttle on the actual kernel queue depth.
+   *
+   * @return The number of bytes.
+   * @throws IOException on error, for example {@link OperationNotSupportedSocketException} if not
+   *           supported for this socket type or platform.
+   */
+  int getSendQueueBytes() throws IOException;
 }
@@ -0,0 +1,313 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.util.Arrays;
+
+/**
+ * A classic BPF (Berkeley Packet Filter) program that can be attached to a socket via
+ * {@link AFSocketExtensions#attachFilter(AFSocketFilter)}, so unwanted messages are dropped by the
+ * kernel before they are even queued for reception ({@code SO_ATTACH_FILTER}).
+ * <p>
+ * Filters for common predicates can be created using {@link #builder()}. All predicates added to
+ * the builder must match for a message to be accepted:
+ * </p>
+ * <pre><code>
+ * // accept messages of 8 to 1024 bytes whose first byte is 0x01
+ * channel.attachFilter(AFSocketFilter.builder().lengthBetween(8, 1024).byteEquals(0, 0x01)
+ *     .build());
+ * </code></pre>
+ * <p>
+ * Multi-byte values are loaded in network byte order (big-endian). Messages that are too short for
+ * a predicate's offset are dropped.
+ * <p>
+ * Socket filters are currently only supported on Linux.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class AFSocketFilter {
+  /**
+   * The maximum number of instructions in a filter program.
+   */
+  public static final int MAX_INSTRUCTIONS = 4096;
+
+  private static final int BPF_LD_W_ABS = 0x20;
+  private static final int BPF_LD_H_ABS = 0x28;
+  private static final int BPF_LD_B_ABS = 0x30;
+  private static final int BPF_LD_W_LEN = 0x80;
+  private static final int BPF_ALU_AND_K = 0x54;
+  private static final int BPF_JMP_JEQ_K = 0x15;
+  private static final int BPF_JMP_JGT_K = 0x25;
+  private static final int BPF_JMP_JGE_K = 0x35;
+  private static final int BPF_RET_K = 0x06;
+
+  /**
+   * The encoded program; two ints per instruction: {@code code << 16 | jt << 8 | jf}, and
+   * {@code k}.
+   */
+  private final int[] program;
+
+  private AFSocketFilter(int[] program) {
+    this.program = program;
+  }
+
+  /**
+   * Creates a filter from raw classic BPF instructions, as defined by {@code struct sock_filter}.
+   *
+   * @param codes The instruction opcodes.
+   * @param jts The "jump if true" offsets (0-255).
+   * @param jfs The "jump if false" offsets (0-255).
+   * @param ks The generic multi-use fields.
+   * @return The filter.
+   */
+  public static AFSocketFilter ofInstructions(short[] codes, byte[] jts, byte[] jfs, int[] ks) {
+    int n = codes.length;
+    if (jts.length != n || jfs.length != n || ks.length != n) {
+      throw new IllegalArgumentException("Array lengths must match");
+    }
+    if (n == 0 || n > MAX_INSTRUCTIONS) {
+      throw new IllegalArgumentException("Invalid number of instructions: " + n);
+    }
+    int[] program = new int[n * 2];
+    for (int i = 0; i < n; i++) {
+      program[i * 2] = encode(codes[i] & 0xFFFF, jts[i] & 0xFF, jfs[i] & 0xFF);
+      program[i * 2 + 1] = ks[i];
+    }
+    return new AFSocketFilter(program);
+  }
+
+  private static int encode(int code, int jt, int jf) {
+    return (code << 16) | (jt << 8) | jf;
+  }
+
+  /**
+   * Returns a new {@link Builder} for filters that accept messages matching all given predicates.
+   *
+   * @return The builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the number of instructions in this filter program.
+   *
+   * @return The number of instructions.
+   */
+  public int numInstructions() {
+    return program.length / 2;
+  }
+
+  int[] getProgram() {
+    return program;
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(program);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof AFSocketFilter)) {
+      return false;
+    }
+    return Arrays.equals(program, ((AFSocketFilter) obj).program);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(super.toString());
+    sb.append('[');
+    for (int i = 0; i < program.length; i += 2) {
+      if (i > 0) {
+        sb.append(';');
+      }
+      int op = program[i];
+      sb.append(String.format("{0x%02x,%d,%d,0x%08x}", op >>> 16, (op >> 8) & 0xFF, op & 0xFF,
+          program[i + 1]));
+    }
+    sb.append(']');
+    return sb.toString();
+  }
+
+  /**
+   * Builds an {@link AFSocketFilter} that accepts messages matching all given predicates.
+   */
+  public static final class Builder {
+    // Instructions are encoded like in AFSocketFilter; jumps to REJECT are resolved in build()
+    private static final int REJECT = -1;
+    private int[] code = new int[32];
+    private int len = 0;
+    private int acceptLength = -1;
+
+    private Builder() {
+    }
+
+    private void add(int op, int jt, int jf, int k) {
+      if (len + 4 > code.length) {
+        code = Arrays.copyOf(code, code.length * 2);
+      }
+      code[len++] = op;
+      code[len++] = jt;
+      code[len++] = jf;
+      code[len++] = k;
+    }
+
+    /**
+     * Only accepts messages with a byte value equal to the given value at the given offset.
+     *
+     * @param offset The offset, in bytes.
+     * @param value The byte value (0-255; negative values are treated as unsigned bytes).
+     * @return This builder.
+     */
+    public Builder byteEquals(int offset, int value) {
+      return loadAndCompare(BPF_LD_B_ABS, offset, 0xFF, value & 0xFF);
+    }
+
+    /**
+     * Only accepts messages with a byte value at the given offset that, after applying the given
+     * bit mask, is equal to the given value.
+     *
+     * @param offset The offset, in bytes.
+     * @param mask The bit mask.
+     * @param value The expected value after masking.
+     * @return This builder.
+     */
+    public Builder byteMaskEquals(int offset, int mask, int value) {
+      return loadAndCompare(BPF_LD_B_ABS, offset, mask & 0xFF, value & mask & 0xFF);
+    }
+
+    /**
+     * Only accepts messages with a 16-bit big-endian value equal to the given value at the given
+     * offset.
+     *
+     * @param offset The offset, in bytes.
+     * @param value The value (0-65535; negative values are treated as unsigned).
+     * @return This builder.
+     */
+    public Builder shortEquals(int offset, int value) {
+      return loadAndCompare(BPF_LD_H_ABS, offset, 0xFFFF, value & 0xFFFF);
+    }
+
+    /**
+     * Only accepts messages with a 32-bit big-endian value equal to the given value at the given
+     * offset.
+     *
+     * @param offset The offset, in bytes.
+     * @param value The value.
+     * @return This builder.
+     */
+    public Builder intEquals(int offset, int value) {
+      return loadAndCompare(BPF_LD_W_ABS, offset, 0xFFFFFFFF, value);
+    }
+
+    private Builder loadAndCompare(int loadOp, int offset, int mask, int value) {
+      if (offset < 0) {
+        throw new IllegalArgumentException("offset");
+      }
+      add(loadOp, 0, 0, offset);
+      final int fullMask;
+      if (loadOp == BPF_LD_B_ABS) {
+        fullMask = 0xFF;
+      } else if (loadOp == BPF_LD_H_ABS) {
+        fullMask = 0xFFFF;
+      } else {
+        fullMask = 0xFFFFFFFF;
+      }
+      if (mask != fullMask) {
+        add(BPF_ALU_AND_K, 0, 0, mask);
+      }
+      add(BPF_JMP_JEQ_K, 0, REJECT, value);
+      return this;
+    }
+
+    /**
+     * Only accepts messages whose length (in bytes) is within the given range.
+     *
+     * @param min The minimum length (inclusive).
+     * @param max The maximum length (inclusive).
+     * @return This builder.
+     */
+    public Builder lengthBetween(int min, int max) {
+      if (min < 0 || max < min) {
+        throw new IllegalArgumentException("Invalid range");
+      }
+      add(BPF_LD_W_LEN, 0, 0, 0);
+      if (min > 0) {
+        add(BPF_JMP_JGE_K, 0, REJECT, min);
+      }
+      add(BPF_JMP_JGT_K, REJECT, 0, max);
+      return this;
+    }
+
+    /**
+     * Truncates accepted messages to the given length. By default, messages are accepted in full.
+     *
+     * @param length The maximum number of bytes to keep, or {@code -1} for "all".
+     * @return This builder.
+     */
+    public Builder acceptLength(int length) {
+      if (length < -1) {
+        throw new IllegalArgumentException("length");
+      }
+      this.acceptLength = length;
+      return this;
+    }
+
+    /**
+     * Builds the filter.
+     *
+     * @return The filter.
+     * @throws IllegalStateException if the filter cannot be represented as a classic BPF program,
+     *           e.g., because there are too many predicates.
+     */
+    public AFSocketFilter build() {
+      int n = len / 4;
+      int numInstructions = n + 2; // accept, reject
+      if (numInstructions > MAX_INSTRUCTIONS) {
+        throw new IllegalStateException("Too many instructions");
+      }
+      int rejectIndex = n + 1;
+
+      int[] program = new int[numInstructions * 2];
+      for (int i = 0; i < n; i++) {
+        int jt = resolve(code[i * 4 + 1], i, rejectIndex);
+        int jf = resolve(code[i * 4 + 2], i, rejectIndex);
+        program[i * 2] = encode(code[i * 4], jt, jf);
+        program[i * 2 + 1] = code[i * 4 + 3];
+      }
+      program[n * 2] = encode(BPF_RET_K, 0, 0);
+      program[n * 2 + 1] = acceptLength; // -1 == 0xFFFFFFFF == accept all
+      program[rejectIndex * 2] = encode(BPF_RET_K, 0, 0);
+      program[rejectIndex * 2 + 1] = 0;
+      return new AFSocketFilter(program);
+    }
+
+    private static int resolve(int jump, int index, int rejectIndex) {
+      if (jump != REJECT) {
+        return jump;
+      }
+      int offset = rejectIndex - index - 1;
+      if (offset > 255) {
+        throw new IllegalStateException("Too many predicates");
+      }
+      return offset;
+    }
+  }
+}
@@ -35,10 +35,12 @@ import java.net.SocketOption;
 import java.net.SocketOptions;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -67,8 +69,8 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
   private volatile boolean closedInputStream = false;
   private volatile boolean closedOutputStream = false;
 
-  private final AFInputStream in;
-  private final AFOutputStream out;
+  private volatile AFInputStream in; // created upon first use
+  private volatile AFOutputStream out; // created upon first use
 
   private boolean reuseAddr = true;
 
@@ -76,9 +78,18 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
   private final AFAddressFamily<A> addressFamily;
 
   private int shutdownState = 0;
+  private volatile boolean boundAddressResolved = false;
 
   private AFSocketImplExtensions<A> implExtensions = null;
 
+  private volatile MemfdOffload memfdOffload = null; // only set when enabled
+
+  private final AtomicLong transferCount = new AtomicLong();
+
+  // incremented when a read (write) starts and again when it completes; odd while one is pending
+  private final AtomicLong readOps = new AtomicLong();
+  private final AtomicLong writeOps = new AtomicLong();
+
   /**
    * When the {@link AFSocketImpl} becomes unreachable (but not yet closed), we must ensure that the
    * underlying socket and all related file descriptors are closed.
@@ -166,8 +177,6 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
     this.address = InetAddress.getLoopbackAddress();
     this.core = new AFSocketStreamCore(this, fdObj, ancillaryDataSupport, addressFamily);
     this.fd = core.fd;
-    this.in = newInputStream();
-    this.out = newOutputStream();
   }
 
   /**
@@ -247,10 +256,14 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
     }
 
     AFSocketAddress socketAddress = core.socketAddress;
-    AFSocketAddress boundSocketAddress = getLocalSocketAddress();
-    if (boundSocketAddress != null) {
-      // Always resolve bound address from wildcard address, etc.
-      core.socketAddress = socketAddress = boundSocketAddress;
+    if (!boundAddressResolved) {
+      AFSocketAddress boundSocketAddress = getLocalSocketAddress();
+      if (boundSocketAddress != null) {
+        // Resolve bound address from wildcard address, etc. (only once, since every accepted
+        // socket references that address)
+        core.socketAddress = socketAddress = boundSocketAddress;
+        boundAddressResolved = true;
+      }
     }
 
     if (socketAddress == null) {
@@ -368,9 +381,15 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
   @Override
   protected final int available() throws IOException {
     FileDescriptor fdesc = core.validFdOrException();
-    try (Lease<MutableHolder<ByteBuffer>> lease = core.getPrivateDirectByteBuffer(0)) {
-      return NativeUnixSocket.available(fdesc, lease.get().get());
+    int available = NativeUnixSocket.available(fdesc, null);
+    if (available == -2) {
+      // FIONREAD is not supported for this socket; peek into a buffer instead
+      try (Lease<MutableHolder<ByteBuffer>> lease = core.getPrivateDirectByteBuffer(0)) {
+        available = NativeUnixSocket.available(fdesc, lease.get().get());
+      }
     }
+    MemfdOffload offload = memfdOffload;
+    return offload == null ? available : offload.available(available);
   }
 
   final void bind(SocketAddress addr, int options) throws IOException {
@@ -561,7 +580,16 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
       throw new SocketClosedException("Not connected/not bound");
     }
     core.validFdOrException();
-    return in;
+    AFInputStream stream = in;
+    if (stream == null) {
+      synchronized (this) {
+        stream = in;
+        if (stream == null) {
+          in = stream = newInputStream();
+        }
+      }
+    }
+    return stream;
   }
 
   @Override
@@ -570,7 +598,16 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
       throw new SocketClosedException("Not connected/not bound");
     }
     core.validFdOrException();
-    return out;
+    AFOutputStream stream = out;
+    if (stream == null) {
+      synchronized (this) {
+        stream = out;
+        if (stream == null) {
+          out = stream = newOutputStream();
+        }
+      }
+    }
+    return stream;
   }
 
   @Override
@@ -598,9 +635,18 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
 
     private final int defaultOpt = (core.isBlocking() ? 0 : NativeUnixSocket.OPT_NON_BLOCKING);
 
-    @SuppressWarnings("PMD.CognitiveComplexity")
     @Override
     public int read(byte[] buf, int off, int len) throws IOException {
+      readOps.incrementAndGet();
+      try {
+        return read0(buf, off, len);
+      } finally {
+        readOps.incrementAndGet();
+      }
+    }
+
+    @SuppressWarnings("PMD.CognitiveComplexity")
+    private int read0(byte[] buf, int off, int len) throws IOException {
       if (streamClosed) {
         throw new SocketClosedException("This InputStream has already been closed.");
       }
@@ -615,6 +661,17 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
         throw new IndexOutOfBoundsException();
       }
 
+      MemfdOffload offload = memfdOffload;
+      if (offload != null) {
+        int read = offload.read(ByteBuffer.wrap(buf, off, len));
+        if (read == -1) {
+          eofReached.set(true);
+        } else {
+          transferred(read);
+        }
+        return read;
+      }
+
       final boolean virtualBlocking = (ThreadUtil.isVirtualThread() && core.isBlocking()) || core
           .isVirtualBlocking();
       final long now;
@@ -640,8 +697,20 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
         }
 
         try {
-          read = NativeUnixSocket.read(fdesc, buf, off, len, opt, ancillaryDataSupport,
-              socketTimeout.get());
+          if (core.useFdFastPath()) {
+            int fdNum = core.fdNum();
+            boolean pinned = AFCore.isPinnable(len);
+            read = pinned ? NativeUnixSocket.checkFdResult(NativeUnixSocket.recvArray(fdNum, buf,
+                off, len, opt), fdesc) : -2;
+            if (!pinned || (read == -2 && (opt & NativeUnixSocket.OPT_NON_BLOCKING) == 0)) {
+              // nothing to read yet; wait outside of the pinned region
+              read = NativeUnixSocket.checkFdResult(NativeUnixSocket.readFd(fdNum, buf, off, len,
+                  opt, socketTimeout.get()), fdesc);
+            }
+          } else {
+            read = NativeUnixSocket.read(fdesc, buf, off, len, opt, ancillaryDataSupport,
+                socketTimeout.get());
+          }
           if (read == -2) {
             if (virtualBlocking) {
               // sleep again
@@ -670,18 +739,39 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
         break; // NOPMD.AvoidBranchingStatementAsLastInLoop virtualThreadLoop
       } while (true); // NOPMD.WhileLoopWithLiteralBoolean
 
+      transferred(read);
       return read;
     }
 
-    @SuppressWarnings("PMD.CognitiveComplexity")
     @Override
     public int read() throws IOException {
+      readOps.incrementAndGet();
+      try {
+        return read0();
+      } finally {
+        readOps.incrementAndGet();
+      }
+    }
+
+    @SuppressWarnings("PMD.CognitiveComplexity")
+    private int read0() throws IOException {
       FileDescriptor fdesc = core.validFdOrException();
 
       if (eofReached.get()) {
         return -1;
       }
 
+      MemfdOffload offload = memfdOffload;
+      if (offload != null) {
+        byte[] oneByte = new byte[1];
+        if (offload.read(ByteBuffer.wrap(oneByte)) == -1) {
+          eofReached.set(true);
+          return -1;
+        }
+        transferred(1);
+        return oneByte[0] & 0xFF;
+      }
+
       // CPD-OFF
       final boolean virtualBlocking = (ThreadUtil.isVirtualThread() && core.isBlocking()) || core
           .isVirtualBlocking();
@@ -706,8 +796,14 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
         }
 
         try {
-          int byteRead = NativeUnixSocket.read(fdesc, null, 0, 1, opt, ancillaryDataSupport,
-              socketTimeout.get());
+          int byteRead;
+          if (core.useFdFastPath()) {
+            byteRead = NativeUnixSocket.checkFdResult(NativeUnixSocket.readFd(core.fdNum(), null,
+                0, 1, opt, socketTimeout.get()), fdesc);
+          } else {
+            byteRead = NativeUnixSocket.read(fdesc, null, 0, 1, opt, ancillaryDataSupport,
+                socketTimeout.get());
+          }
           if (byteRead < 0) {
             if (byteRead == -2) {
               if (virtualBlocking) {
@@ -721,6 +817,7 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
             eofReached.set(true);
             return -1;
           } else {
+            transferred(1);
             return byteRead;
           }
         } catch (SocketTimeoutException e) {
@@ -784,11 +881,26 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
 
     private final int defaultOpt = (core.isBlocking() ? 0 : NativeUnixSocket.OPT_NON_BLOCKING);
 
-    @SuppressWarnings("PMD.CognitiveComplexity")
     @Override
     public void write(int oneByte) throws IOException {
+      writeOps.incrementAndGet();
+      try {
+        write0(oneByte);
+      } finally {
+        writeOps.incrementAndGet();
+      }
+    }
+
+    @SuppressWarnings("PMD.CognitiveComplexity")
+    private void write0(int oneByte) throws IOException {
       FileDescriptor fdesc = core.validFdOrException();
 
+      MemfdOffload offload = memfdOffload;
+      if (offload != null) {
+        transferred(offload.write(ByteBuffer.wrap(new byte[] {(byte) oneByte})));
+        return;
+      }
+
       final boolean virtualBlocking = (ThreadUtil.isVirtualThread() && core.isBlocking()) || core
           .isVirtualBlocking();
       final long now;
@@ -814,7 +926,12 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
         try {
           int written;
           do {
-            written = NativeUnixSocket.write(fdesc, null, oneByte, 1, opt, ancillaryDataSupport);
+            if (core.useFdFastPath()) {
+              written = NativeUnixSocket.checkFdResult(NativeUnixSocket.writeFd(core.fdNum(), null,
+                  oneByte, 1, opt), fdesc);
+            } else {
+              written = NativeUnixSocket.write(fdesc, null, oneByte, 1, opt, ancillaryDataSupport);
+            }
             if (written != 0) {
               break;
             }
@@ -838,11 +955,21 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
         }
         break; // NOPMD.AvoidBranchingStatementAsLastInLoop virtualThreadLoop
       } while (true); // NOPMD.WhileLoopWithLiteralBoolean
+      transferred(1);
     }
 
-    @SuppressWarnings({"PMD.CognitiveComplexity", "PMD.NPathComplexity"})
     @Override
     public void write(byte[] buf, int off, int len) throws IOException {
+      writeOps.incrementAndGet();
+      try {
+        write0(buf, off, len);
+      } finally {
+        writeOps.incrementAndGet();
+      }
+    }
+
+    @SuppressWarnings({"PMD.CognitiveComplexity", "PMD.NPathComplexity"})
+    private void write0(byte[] buf, int off, int len) throws IOException {
       if (streamClosed) {
         throw new SocketException("This OutputStream has already been closed.");
       }
@@ -857,6 +984,12 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
         return;
       }
 
+      MemfdOffload offload = memfdOffload;
+      if (offload != null) {
+        transferred(offload.write(ByteBuffer.wrap(buf, off, len)));
+        return;
+      }
+
       final boolean virtualBlocking = (ThreadUtil.isVirtualThread() && core.isBlocking()) || core
           .isVirtualBlocking();
       final long now;
@@ -883,7 +1016,22 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
 
           final int written;
           try {
-            written = NativeUnixSocket.write(fdesc, buf, off, len, opt, ancillaryDataSupport);
+            if (core.useFdFastPath()) {
+              int fdNum = core.fdNum();
+              boolean pinned = AFCore.isPinnable(len);
+              int w = pinned ? NativeUnixSocket.checkFdResult(NativeUnixSocket.sendArray(fdNum, buf,
+                  off, len, opt), fdesc) : -2;
+              if (w == -2 && (!pinned || (opt & NativeUnixSocket.OPT_NON_BLOCKING) == 0)) {
+                // send buffer full; wait outside of the pinned region
+                w = NativeUnixSocket.checkFdResult(NativeUnixSocket.writeFd(fdNum, buf, off, len,
+                    opt), fdesc);
+              } else if (w == -2) {
+                w = 0;
+              }
+              written = w;
+            } else {
+              written = NativeUnixSocket.write(fdesc, buf, off, len, opt, ancillaryDataSupport);
+            }
             if (written == 0 && virtualBlocking) {
               // try again
               park = true;
@@ -921,6 +1069,7 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
           len -= written;
           off += written;
           writtenTotal += written;
+          transferred(written);
           break; // NOPMD.AvoidBranchingStatementAsLastInLoop virtualThreadLoop
         } while (true); // NOPMD.WhileLoopWithLiteralBoolean
 
@@ -1222,11 +1371,129 @@ public abstract class AFSocketImpl<A extends AFSocketAddress> extends SocketImpl
   }
 
   final int read(ByteBuffer dst, ByteBuffer socketAddressBuffer) throws IOException {
-    return core.read(dst, socketTimeout::get, socketAddressBuffer, 0);
+    readOps.incrementAndGet();
+    try {
+      return read0(dst, socketAddressBuffer);
+    } finally {
+      readOps.incrementAndGet();
+    }
+  }
+
+  private int read0(ByteBuffer dst, ByteBuffer socketAddressBuffer) throws IOException {
+    MemfdOffload offload = memfdOffload;
+    int read;
+    if (offload != null) {
+      read = offload.read(dst);
+    } else {
+      read = core.read(dst, socketTimeout::get, socketAddressBuffer, 0);
+    }
+    transferred(read);
+    return read;
   }
 
   final int write(ByteBuffer src) throws IOException {
-    return core.write(src, socketTimeout::get);
+    writeOps.incrementAndGet();
+    try {
+      return write0(src);
+    } finally {
+      writeOps.incrementAndGet();
+    }
+  }
+
+  private int write0(ByteBuffer src) throws IOException {
+    MemfdOffload offload = memfdOffload;
+    int written;
+    if (offload != null) {
+      written = offload.write(src);
+    } else {
+      written = core.write(src, socketTimeout::get);
+    }
+    transferred(written);
+    return written;
+  }
+
+  final long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+    readOps.incrementAndGet();
+    try {
+      return read0(dsts, offset, length);
+    } finally {
+      readOps.incrementAndGet();
+    }
+  }
+
+  private long read0(ByteBuffer[] dsts, int offset, int length) throws IOException {
+    if (memfdOffload != null || ancillaryDataSupport.getAncillaryReceiveBufferSize() > 0) {
+      // ancillary messages are only received along with a single-buffer read
+      return read0(dsts[offset], null);
+    }
+    long read = core.read(dsts, offset, length, socketTimeout::get, 0);
+    transferred(read);
+    return read;
+  }
+
+  final long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+    writeOps.incrementAndGet();
+    try {
+      return write0(srcs, offset, length);
+    } finally {
+      writeOps.incrementAndGet();
+    }
+  }
+
+  private long write0(ByteBuffer[] srcs, int offset, int length) throws IOException {
+    if (memfdOffload != null || ancillaryDataSupport.hasOutboundFileDescriptors()) {
+      // ancillary messages are only sent along with a single-buffer write
+      return write0(srcs[offset]);
+    }
+    long written = core.write(srcs, offset, length, socketTimeout::get, 0);
+    transferred(written);
+    return written;
+  }
+
+  private void transferred(long count) {
+    if (count > 0) {
+      // cheaper than incrementAndGet; concurrent updates may be coalesced, which is fine
+      transferCount.lazySet(transferCount.get() + 1);
+    }
+  }
+
+  final long getTransferCount() {
+    return transferCount.get();
+  }
+
+  final long getReadOperationCount() {
+    return readOps.get();
+  }
+
+  final long getWriteOperationCount() {
+    return writeOps.get();
+  }
+
+  final void setMemfdOffloadThreshold(int threshold) throws IOException {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold");
+    }
+    synchronized (this) {
+      if (threshold == 0) {
+        memfdOffload = null;
+      } else {
+        ancillaryDataSupport.ensureAncillaryReceiveBufferSize(256);
+        memfdOffload = new MemfdOffload(core, ancillaryDataSupport, socketTimeout::get, threshold);
+      }
+    }
+  }
+
+  final int getMemfdOffloadThreshold() {
+    MemfdOffload offload = memfdOffload;
+    return offload == null ? 0 : offload.getThreshold();
+  }
+
+  final MappedByteBuffer receiveOffloadedBuffer() throws IOException {
+    MemfdOffload offload = memfdOffload;
+    if (offload == null) {
+      throw new IllegalStateException("memfd offload is not enabled");
+    }
+    return offload.receiveOffloadedBuffer();
   }
 
   @Override
@@ -0,0 +1,440 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A hashed timing wheel, suitable for managing a large number of connection-level timeouts (idle,
+ * read and write deadlines) that are frequently rescheduled.
+ * <p>
+ * Scheduling, cancelling and rescheduling a {@link Timeout} are O(1) operations. Extending a
+ * deadline (the common case when a connection sees activity) merely updates a volatile field; the
+ * timeout is moved to its new bucket lazily, when the wheel reaches its old one.
+ * <p>
+ * Expired tasks are run on the wheel's single worker thread, and therefore must not block.
+ * <p>
+ * The worker thread parks indefinitely while no timeouts are pending.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class AFTimerWheel implements Closeable {
+  private static final String PROP_TICK_MILLIS = "org.newsclub.net.unix.timer-wheel.tick-millis";
+
+  private static final int DEFAULT_TICK_MILLIS = Math.max(1, Integer.parseInt(System.getProperty(
+      PROP_TICK_MILLIS, "1")));
+  private static final int DEFAULT_WHEEL_SIZE = 512;
+
+  private static final int STATE_ACTIVE = 0;
+  private static final int STATE_CANCELLED = 1;
+  private static final int STATE_EXPIRED = 2;
+
+  private final long startTime = System.nanoTime();
+  private final long tickNanos;
+  private final Bucket[] buckets;
+  private final int mask;
+  private final boolean shared;
+
+  private final AtomicInteger pending = new AtomicInteger(0);
+  private final Thread worker;
+  private volatile boolean closed = false;
+
+  /**
+   * The next tick to be processed by the worker thread; only ever increases.
+   */
+  private volatile long currentTick = 0;
+
+  // only accessed by the worker thread
+  private final List<Timeout> expiredScratch = new ArrayList<>();
+  private final List<Timeout> relocateScratch = new ArrayList<>();
+
+  private static final class DefaultHolder {
+    private static final AFTimerWheel INSTANCE = new AFTimerWheel("junixsocket timer wheel",
+        DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE, true);
+  }
+
+  /**
+   * Creates a new timer wheel, with its own worker thread.
+   *
+   * @param name The name of the worker thread.
+   * @param tickDuration The duration of one tick (the timer resolution).
+   * @param unit The time unit of the tick duration.
+   * @param wheelSize The number of buckets (rounded up to the next power of two).
+   */
+  public AFTimerWheel(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+    this(name, tickDuration, unit, wheelSize, false);
+  }
+
+  private AFTimerWheel(String name, long tickDuration, TimeUnit unit, int wheelSize,
+      boolean shared) {
+    if (tickDuration <= 0) {
+      throw new IllegalArgumentException("tickDuration");
+    }
+    if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+      throw new IllegalArgumentException("wheelSize");
+    }
+    this.tickNanos = Math.max(1, unit.toNanos(tickDuration));
+    int size = Integer.highestOneBit(wheelSize);
+    if (size < wheelSize) {
+      size <<= 1;
+    }
+    this.buckets = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      buckets[i] = new Bucket();
+    }
+    this.mask = size - 1;
+    this.shared = shared;
+
+    this.worker = new Thread(Objects.requireNonNull(name, "name")) {
+      @Override
+      public void run() {
+        runWorker();
+      }
+    };
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Returns the shared, default timer wheel instance.
+   * <p>
+   * Its resolution is one millisecond, unless configured otherwise via the system property
+   * {@code org.newsclub.net.unix.timer-wheel.tick-millis}.
+   *
+   * @return The shared instance.
+   */
+  public static AFTimerWheel getDefault() {
+    return DefaultHolder.INSTANCE;
+  }
+
+  /**
+   * Schedules the given task to be run once the given delay has elapsed.
+   *
+   * @param task The task to run (on the wheel's worker thread; must not block).
+   * @param delay The delay.
+   * @param unit The time unit of the delay.
+   * @return The timeout, which can be cancelled or rescheduled.
+   * @throws IllegalStateException if this wheel has been closed.
+   */
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    if (closed) {
+      throw new IllegalStateException("Closed");
+    }
+    Timeout t = new Timeout(Objects.requireNonNull(task, "task"), deadlineFromNow(delay, unit));
+    if (pending.getAndIncrement() == 0) {
+      LockSupport.unpark(worker);
+    }
+    insert(t);
+    return t;
+  }
+
+  /**
+   * Returns the number of timeouts that have neither expired nor been cancelled yet.
+   *
+   * @return The number of pending timeouts.
+   */
+  public int getPendingCount() {
+    return pending.get();
+  }
+
+  /**
+   * Stops the worker thread; pending timeouts will no longer fire. Closing the shared default
+   * instance has no effect.
+   */
+  @Override
+  public void close() {
+    if (shared) {
+      return;
+    }
+    closed = true;
+    LockSupport.unpark(worker);
+  }
+
+  private long now() {
+    return System.nanoTime() - startTime;
+  }
+
+  private long deadlineFromNow(long delay, TimeUnit unit) {
+    long nanos = unit.toNanos(Math.max(0, delay));
+    long now = now();
+    long deadline = now + nanos;
+    return deadline < now ? Long.MAX_VALUE : deadline; // overflow
+  }
+
+  private long targetTick(Timeout t) {
+    return Math.max(t.deadline / tickNanos, currentTick);
+  }
+
+  private void insert(Timeout t) {
+    while (t.state.get() == STATE_ACTIVE) {
+      long tick = targetTick(t);
+      Bucket b = buckets[(int) (tick & mask)];
+      synchronized (b) {
+        if (t.state.get() != STATE_ACTIVE) {
+          return;
+        }
+        b.add(t);
+      }
+
+      if (currentTick <= tick && targetTick(t) >= tick) {
+        return;
+      }
+
+      // The worker has passed our bucket, or the deadline was moved earlier concurrently
+      synchronized (b) {
+        if (t.bucket != b) {
+          return;
+        }
+        b.remove(t);
+      }
+    }
+  }
+
+  private void runWorker() {
+    while (!closed) {
+      if (pending.get() == 0) {
+        LockSupport.park(this);
+        skipIdleTicks();
+        continue;
+      }
+      long now = now();
+      long tick = currentTick;
+      long tickEnd = (tick + 1) * tickNanos;
+      if (now < tickEnd) {
+        LockSupport.parkNanos(this, tickEnd - now);
+        continue;
+      }
+      currentTick = tick + 1;
+      processBucket((int) (tick & mask), now);
+    }
+  }
+
+  /**
+   * Skips all ticks that have passed while the worker was idle, instead of processing them one by
+   * one. Timeouts inserted concurrently may have ended up in a skipped bucket, so we sweep all
+   * buckets once.
+   */
+  private void skipIdleTicks() {
+    long now = now();
+    long nowTick = now / tickNanos;
+    if (nowTick <= currentTick) {
+      return;
+    }
+    currentTick = nowTick;
+    if (pending.get() == 0) {
+      return;
+    }
+    for (int i = 0; i < buckets.length; i++) {
+      processBucket(i, now);
+    }
+  }
+
+  private void processBucket(int index, long now) {
+    Bucket b = buckets[index];
+    if (b.head == null) {
+      return;
+    }
+
+    List<Timeout> expired = expiredScratch;
+    List<Timeout> relocate = relocateScratch;
+    synchronized (b) {
+      Timeout next;
+      for (Timeout t = b.head; t != null; t = next) {
+        next = t.next;
+        if (t.state.get() != STATE_ACTIVE) {
+          b.remove(t);
+        } else if (t.deadline <= now) {
+          b.remove(t);
+          if (t.state.compareAndSet(STATE_ACTIVE, STATE_EXPIRED)) {
+            pending.decrementAndGet();
+            expired.add(t);
+          }
+        } else if ((t.deadline / tickNanos & mask) != index) {
+          b.remove(t);
+          relocate.add(t);
+        }
+      }
+    }
+
+    for (int i = 0, n = relocate.size(); i < n; i++) {
+      insert(relocate.get(i));
+    }
+    relocate.clear();
+
+    for (int i = 0, n = expired.size(); i < n; i++) {
+      try {
+        expired.get(i).task.run();
+      } catch (RuntimeException e) {
+        // ignore; must not stop the wheel
+      }
+    }
+    expired.clear();
+  }
+
+  private static final class Bucket {
+    private volatile @Nullable Timeout head;
+    private @Nullable Timeout tail;
+
+    // must be called while holding the lock on this bucket
+    void add(Timeout t) {
+      t.bucket = this;
+      t.next = null;
+      Timeout last = tail;
+      t.prev = last;
+      if (last == null) {
+        head = t;
+      } else {
+        last.next = t;
+      }
+      tail = t;
+    }
+
+    // must be called while holding the lock on this bucket
+    void remove(Timeout t) {
+      Timeout prev = t.prev;
+      Timeout next = t.next;
+      if (prev == null) {
+        head = next;
+      } else {
+        prev.next = next;
+      }
+      if (next == null) {
+        tail = prev;
+      } else {
+        next.prev = prev;
+      }
+      t.prev = null;
+      t.next = null;
+      t.bucket = null;
+    }
+  }
+
+  /**
+   * A handle to a task scheduled with {@link AFTimerWheel#schedule(Runnable, long, TimeUnit)}.
+   *
+   * @author Christian Kohlschütter
+   */
+  public final class Timeout {
+    private final Runnable task;
+    private final AtomicInteger state = new AtomicInteger(STATE_ACTIVE);
+    private volatile long deadline;
+    private volatile @Nullable Bucket bucket;
+    private @Nullable Timeout prev;
+    private @Nullable Timeout next;
+
+    Timeout(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * Cancels this timeout. The task will not be run unless it has already expired.
+     *
+     * @return {@code true} if the timeout was cancelled by this call.
+     */
+    public boolean cancel() {
+      if (!state.compareAndSet(STATE_ACTIVE, STATE_CANCELLED)) {
+        return false;
+      }
+      pending.decrementAndGet();
+      Bucket b = bucket;
+      if (b != null) {
+        synchronized (b) {
+          if (bucket == b) {
+            b.remove(this);
+          }
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Moves the deadline of this timeout to the given delay from now.
+     * <p>
+     * Extending the deadline is very cheap. Shortening it moves the timeout to another bucket,
+     * which is still O(1).
+     *
+     * @param delay The new delay.
+     * @param unit The time unit of the delay.
+     * @return {@code true} if the timeout was rescheduled, {@code false} if it had already expired
+     *         or was cancelled.
+     */
+    public boolean reschedule(long delay, TimeUnit unit) {
+      if (state.get() != STATE_ACTIVE) {
+        return false;
+      }
+      long oldDeadline = deadline;
+      long newDeadline = deadlineFromNow(delay, unit);
+      deadline = newDeadline;
+      if (newDeadline / tickNanos >= oldDeadline / tickNanos) {
+        // lazy; the worker relocates the timeout once it reaches the current bucket
+        return true;
+      }
+
+      Bucket b = bucket;
+      if (b == null) {
+        // currently being relocated; insert will pick up the new deadline
+        return true;
+      }
+      synchronized (b) {
+        if (bucket != b) {
+          return true;
+        }
+        b.remove(this);
+      }
+      insert(this);
+      return true;
+    }
+
+    /**
+     * Returns the remaining delay until this timeout expires.
+     *
+     * @param unit The desired time unit.
+     * @return The remaining delay (may be negative if overdue).
+     */
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(deadline - now(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Checks if this timeout has expired (i.e., its task has been or is being run).
+     *
+     * @return {@code true} if expired.
+     */
+    public boolean isExpired() {
+      return state.get() == STATE_EXPIRED;
+    }
+
+    /**
+     * Checks if this timeout has been cancelled.
+     *
+     * @return {@code true} if cancelled.
+     */
+    public boolean isCancelled() {
+      return state.get() == STATE_CANCELLED;
+    }
+  }
+}
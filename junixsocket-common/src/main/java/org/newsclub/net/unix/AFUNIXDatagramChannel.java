@@ -20,8 +20,11 @@ package org.newsclub.net.unix;
 import java.io.FileDescriptor;
 import java.io.IOException;
 import java.net.ProtocolFamily;
+import java.net.SocketAddress;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
+import java.util.Objects;
 
 /**
  * A {@link DatagramChannel} implementation that works with AF_UNIX Unix domain sockets.
@@ -30,6 +33,9 @@ import java.nio.channels.DatagramChannel;
  */
 public final class AFUNIXDatagramChannel extends AFDatagramChannel<AFUNIXSocketAddress> implements
     AFUNIXSocketExtensions {
+  private final Object receiveCredentialsLock = new Object();
+  private final Object sendCredentialsLock = new Object();
+
   AFUNIXDatagramChannel(AFUNIXDatagramSocket socket) {
     super(AFUNIXSelectorProvider.getInstance(), socket);
   }
@@ -64,6 +70,13 @@ public final class AFUNIXDatagramChannel extends AFDatagramChannel<AFUNIXSocketA
     return ((AFUNIXSocketExtensions) getAFSocket()).getReceivedFileDescriptors();
   }
 
+  @Override
+  public int drainReceivedFileDescriptors(FileDescriptor[] dst, int offset, int length)
+      throws IOException {
+    return ((AFUNIXSocketExtensions) getAFSocket()).drainReceivedFileDescriptors(dst, offset,
+        length);
+  }
+
   @Override
   public void clearReceivedFileDescriptors() {
     ((AFUNIXSocketExtensions) getAFSocket()).clearReceivedFileDescriptors();
@@ -86,4 +99,57 @@ public final class AFUNIXDatagramChannel extends AFDatagramChannel<AFUNIXSocketA
   public AFUNIXSocketCredentials getPeerCredentials() throws IOException {
     return ((AFUNIXSocketExtensions) getAFSocket()).getPeerCredentials();
   }
+
+  /**
+   * Receives a datagram via this channel, along with the sender's credentials
+   * ({@code SCM_CREDENTIALS}), as if calling {@link #receive(ByteBuffer)}.
+   * <p>
+   * {@link AFUNIXSocketOptions#SO_PASSCRED} must be enabled for credentials to be received. If no
+   * datagram was available (in non-blocking mode), or if no credentials were attached, the given
+   * holder is cleared (see {@link AFUNIXMessageCredentials#isPresent()}).
+   *
+   * @param dst The buffer into which the datagram is to be transferred.
+   * @param credentials The (reusable) holder for the sender's credentials.
+   * @return The datagram's source address, or {@code null} if no datagram was available (or if the
+   *         sender is not bound to an address).
+   * @throws IOException on error.
+   */
+  public AFUNIXSocketAddress receive(ByteBuffer dst, AFUNIXMessageCredentials credentials)
+      throws IOException {
+    Objects.requireNonNull(credentials);
+    AncillaryDataSupport ancillaryDataSupport = getAFSocket().getAncillaryDataSupport();
+    ancillaryDataSupport.ensureAncillaryReceiveBufferSize(256);
+    synchronized (receiveCredentialsLock) {
+      ancillaryDataSupport.clearReceivedCredentials();
+      AFUNIXSocketAddress addr = receive(dst);
+      ancillaryDataSupport.getReceivedCredentials(credentials);
+      return addr;
+    }
+  }
+
+  /**
+   * Sends a datagram via this channel, explicitly specifying the credentials to be attached
+   * ({@code SCM_CREDENTIALS}), as if calling {@link #send(ByteBuffer, SocketAddress)}.
+   * <p>
+   * The credentials are verified by the kernel; an exception is thrown if they are not permitted.
+   *
+   * @param src The buffer containing the datagram to be sent.
+   * @param target The address to which the datagram is to be sent.
+   * @param credentials The credentials to send, or {@code null}/not present to let the kernel
+   *          attach the process' own credentials, if requested by the receiver.
+   * @return The number of bytes sent.
+   * @throws IOException on error.
+   */
+  public int send(ByteBuffer src, SocketAddress target, AFUNIXMessageCredentials credentials)
+      throws IOException {
+    AncillaryDataSupport ancillaryDataSupport = getAFSocket().getAncillaryDataSupport();
+    synchronized (sendCredentialsLock) {
+      ancillaryDataSupport.setOutboundCredentials(credentials);
+      try {
+        return send(src, target);
+      } finally {
+        ancillaryDataSupport.setOutboundCredentials(null);
+      }
+    }
+  }
 }
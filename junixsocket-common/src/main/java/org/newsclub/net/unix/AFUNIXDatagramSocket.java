@@ -83,6 +83,12 @@ public final class AFUNIXDatagramSocket extends AFDatagramSocket<AFUNIXSocketAdd
     return getAncillaryDataSupport().getReceivedFileDescriptors();
   }
 
+  @Override
+  public int drainReceivedFileDescriptors(FileDescriptor[] dst, int offset, int length)
+      throws IOException {
+    return getAncillaryDataSupport().drainReceivedFileDescriptors(dst, offset, length);
+  }
+
   @Override
   public void clearReceivedFileDescriptors() {
     getAncillaryDataSupport().clearReceivedFileDescriptors();
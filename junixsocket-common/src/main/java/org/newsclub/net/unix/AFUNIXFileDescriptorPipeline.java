@@ -0,0 +1,351 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.IllegalBlockingModeException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transfers large numbers of file descriptors over a connected AF_UNIX stream socket.
+ * <p>
+ * The number of file descriptors that can be attached to a single message is limited by the
+ * operating system (Linux, for example, supports up to 253 per {@code SCM_RIGHTS} message), as well
+ * as by the receiver's ancillary receive buffer. This class splits an arbitrarily long list of
+ * descriptors into chunks, each sent as a small frame with the chunk's descriptors attached. Chunks
+ * are pipelined, i.e., the sender does not wait for each chunk to be acknowledged. Instead, the
+ * receiver returns credits once the descriptors of a chunk have been handed to the application,
+ * and the sender never has more than {@link #getWindowSize()} descriptors in flight. This bounds
+ * the number of descriptors held by the kernel on behalf of the sender (see {@code ETOOMANYREFS}),
+ * and throttles the sender to the speed of the receiving application.
+ * <p>
+ * Both peers must use this class for the transfer, and the socket must be in blocking mode. While a
+ * transfer is in progress, no other data must be sent or received over the socket in the same
+ * direction. Descriptors that were received previously but have not been retrieved yet must be
+ * retrieved (or cleared) before calling {@link #receive(Receiver)}. This class is not thread-safe;
+ * however, one thread may send while another thread receives.
+ * <p>
+ * Example:
+ * </p>
+ * <pre><code>
+ * // sender
+ * new AFUNIXFileDescriptorPipeline(channel).send(Arrays.asList(fd1, fd2, socket, ...));
+ *
+ * // receiver
+ * new AFUNIXFileDescriptorPipeline(channel).receive((fd, index) -&gt; { ... });
+ * </code></pre>
+ *
+ * @author Christian Kohlschütter
+ */
+public final class AFUNIXFileDescriptorPipeline {
+  /**
+   * The maximum number of file descriptors sent within a single chunk.
+   */
+  public static final int MAX_CHUNK_SIZE = 253;
+
+  private static final int FRAME_LEN = 8;
+  private static final int CREDIT_LEN = 4;
+
+  private final AFUNIXSocketChannel channel;
+  private final AncillaryDataSupport ancillaryDataSupport;
+
+  private final ByteBuffer sendFrame = ByteBuffer.allocateDirect(FRAME_LEN).order(
+      ByteOrder.BIG_ENDIAN);
+  private final ByteBuffer receiveFrame = ByteBuffer.allocateDirect(FRAME_LEN).order(
+      ByteOrder.BIG_ENDIAN);
+  private final ByteBuffer sendCredit = ByteBuffer.allocateDirect(CREDIT_LEN).order(
+      ByteOrder.BIG_ENDIAN);
+  private final ByteBuffer receiveCredit = ByteBuffer.allocateDirect(CREDIT_LEN).order(
+      ByteOrder.BIG_ENDIAN);
+
+  private int chunkSize = MAX_CHUNK_SIZE;
+  private int windowSize = 2 * MAX_CHUNK_SIZE;
+  private int[] chunkFds = null;
+  private FileDescriptor[] receivedChunk = null;
+
+  /**
+   * Receives file descriptors, one at a time, in the order they were sent.
+   */
+  @FunctionalInterface
+  public interface Receiver {
+    /**
+     * Called for every received file descriptor. The receiver takes ownership of the descriptor,
+     * and should close it when no longer needed.
+     *
+     * @param fd The file descriptor.
+     * @param index The index of the descriptor within the transfer, starting at 0.
+     * @throws IOException on error; the transfer is aborted, and the descriptors that have not been
+     *           handed to the receiver yet are closed.
+     */
+    void accept(FileDescriptor fd, int index) throws IOException;
+  }
+
+  /**
+   * Creates a new pipeline for the given channel.
+   *
+   * @param channel The connected stream channel.
+   */
+  public AFUNIXFileDescriptorPipeline(AFUNIXSocketChannel channel) {
+    this.channel = channel;
+    this.ancillaryDataSupport = ((AFUNIXSocket) channel.getAFSocket())
+        .getAFImpl().ancillaryDataSupport;
+  }
+
+  /**
+   * Returns the maximum number of file descriptors sent within a single chunk.
+   *
+   * @return The chunk size.
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Sets the maximum number of file descriptors sent within a single chunk (default: 253). If the
+   * window size is smaller than the given size, it is increased accordingly.
+   *
+   * @param chunkSize The chunk size, between 1 and {@link #MAX_CHUNK_SIZE}.
+   * @return This instance.
+   */
+  public AFUNIXFileDescriptorPipeline setChunkSize(int chunkSize) {
+    if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+      throw new IllegalArgumentException("chunkSize");
+    }
+    this.chunkSize = chunkSize;
+    this.windowSize = Math.max(windowSize, chunkSize);
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of file descriptors that are sent but not acknowledged yet by the
+   * receiver.
+   *
+   * @return The window size.
+   */
+  public int getWindowSize() {
+    return windowSize;
+  }
+
+  /**
+   * Sets the maximum number of file descriptors that are sent but not acknowledged yet by the
+   * receiver (default: 506).
+   *
+   * @param windowSize The window size, at least the chunk size.
+   * @return This instance.
+   */
+  public AFUNIXFileDescriptorPipeline setWindowSize(int windowSize) {
+    if (windowSize < chunkSize) {
+      throw new IllegalArgumentException("windowSize must not be smaller than chunkSize");
+    }
+    this.windowSize = windowSize;
+    return this;
+  }
+
+  private void checkUsable() {
+    if (!channel.isBlocking()) {
+      throw new IllegalBlockingModeException();
+    }
+    if (channel.getMemfdOffloadThreshold() != 0) {
+      throw new IllegalStateException("Cannot be used along with memfd offloading");
+    }
+  }
+
+  /**
+   * Sends the given file descriptors, waiting until all of them have been accepted by the
+   * receiver. The descriptors remain owned by the caller.
+   *
+   * @param descriptors The descriptors, each either a {@link FileDescriptor} or a
+   *          {@link FileDescriptorAccess} (such as a socket or channel provided by junixsocket).
+   * @return The number of descriptors sent.
+   * @throws IOException on error.
+   */
+  public int send(List<?> descriptors) throws IOException {
+    checkUsable();
+    if (ancillaryDataSupport.hasOutboundFileDescriptors()) {
+      throw new IllegalStateException("Outbound file descriptors are already pending");
+    }
+
+    final int total = descriptors.size();
+    int sent = 0;
+    int inFlight = 0;
+    do {
+      int count = Math.min(chunkSize, total - sent);
+      while (inFlight + count > windowSize) {
+        inFlight -= readCredit(inFlight);
+      }
+
+      final int[] fds;
+      if (count == chunkSize) {
+        if (chunkFds == null || chunkFds.length != chunkSize) {
+          chunkFds = new int[chunkSize];
+        }
+        fds = chunkFds;
+      } else {
+        fds = new int[count];
+      }
+      for (int i = 0; i < count; i++) {
+        fds[i] = NativeUnixSocket.getFD(toFileDescriptor(descriptors.get(sent + i)));
+      }
+
+      sendFrame.clear();
+      sendFrame.putInt(count);
+      sendFrame.putInt(total - sent - count);
+      sendFrame.flip();
+
+      ancillaryDataSupport.setOutboundFileDescriptors(fds);
+      try {
+        while (sendFrame.hasRemaining()) {
+          channel.write(sendFrame);
+        }
+      } finally {
+        ancillaryDataSupport.setOutboundFileDescriptors((int[]) null);
+      }
+
+      sent += count;
+      inFlight += count;
+    } while (sent < total);
+
+    while (inFlight > 0) {
+      inFlight -= readCredit(inFlight);
+    }
+    return total;
+  }
+
+  private static FileDescriptor toFileDescriptor(Object obj) throws IOException {
+    if (obj instanceof FileDescriptor) {
+      return (FileDescriptor) obj;
+    } else if (obj instanceof FileDescriptorAccess) {
+      return ((FileDescriptorAccess) obj).getFileDescriptor();
+    } else if (obj == null) {
+      throw new IllegalArgumentException("Descriptor must not be null");
+    } else {
+      throw new IllegalArgumentException("Unsupported descriptor type: " + obj.getClass());
+    }
+  }
+
+  private int readCredit(int inFlight) throws IOException {
+    receiveCredit.clear();
+    readFully(receiveCredit);
+    int credit = receiveCredit.getInt(0);
+    if (credit <= 0 || credit > inFlight) {
+      throw new SocketException("Invalid credit: " + credit);
+    }
+    return credit;
+  }
+
+  /**
+   * Receives file descriptors until the sender's transfer is complete, and returns them as a list.
+   *
+   * @return The received descriptors, in the order they were sent.
+   * @throws IOException on error.
+   * @see #receive(Receiver)
+   */
+  public List<FileDescriptor> receive() throws IOException {
+    List<FileDescriptor> list = new ArrayList<>();
+    receive((fd, index) -> list.add(fd));
+    return list;
+  }
+
+  /**
+   * Receives file descriptors until the sender's transfer is complete, handing each descriptor to
+   * the given {@link Receiver} in the order they were sent.
+   * <p>
+   * Credits are returned to the sender only after the receiver has accepted all descriptors of a
+   * chunk, so a slow receiver slows down the sender accordingly.
+   *
+   * @param receiver The receiver.
+   * @return The number of descriptors received.
+   * @throws IOException on error.
+   */
+  public int receive(Receiver receiver) throws IOException {
+    checkUsable();
+    ancillaryDataSupport.ensureAncillaryReceiveBufferSize(MAX_CHUNK_SIZE * 4 + 64);
+    if (receivedChunk == null) {
+      receivedChunk = new FileDescriptor[MAX_CHUNK_SIZE];
+    }
+
+    int received = 0;
+    int remaining;
+    do {
+      receiveFrame.clear();
+      readFully(receiveFrame);
+      int count = receiveFrame.getInt(0);
+      remaining = receiveFrame.getInt(4);
+      if (count < 0 || count > MAX_CHUNK_SIZE || remaining < 0) {
+        throw new SocketException("Invalid frame: count=" + count + ", remaining=" + remaining);
+      }
+
+      int n = ancillaryDataSupport.drainReceivedFileDescriptors(receivedChunk, 0, count);
+      if (n != count) {
+        for (int i = 0; i < n; i++) {
+          NativeUnixSocket.close(receivedChunk[i]);
+          receivedChunk[i] = null;
+        }
+        throw new SocketException("Expected " + count + " file descriptors; got " + n);
+      }
+
+      int i = 0;
+      try {
+        while (i < count) {
+          FileDescriptor fd = receivedChunk[i];
+          receivedChunk[i++] = null;
+          receiver.accept(fd, received++);
+        }
+      } finally {
+        // only if the receiver failed
+        for (; i < count; i++) {
+          closeQuietly(receivedChunk[i]);
+          receivedChunk[i] = null;
+        }
+      }
+
+      if (count > 0) {
+        sendCredit.clear();
+        sendCredit.putInt(count);
+        sendCredit.flip();
+        while (sendCredit.hasRemaining()) {
+          channel.write(sendCredit);
+        }
+      }
+    } while (remaining > 0);
+
+    return received;
+  }
+
+  private static void closeQuietly(FileDescriptor fd) {
+    try {
+      NativeUnixSocket.close(fd);
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+
+  private void readFully(ByteBuffer buf) throws IOException {
+    while (buf.hasRemaining()) {
+      if (channel.read(buf) == -1) {
+        throw new EOFException("Unexpected end of stream");
+      }
+    }
+  }
+}
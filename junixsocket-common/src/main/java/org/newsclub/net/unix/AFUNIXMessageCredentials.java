@@ -0,0 +1,142 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+/**
+ * A mutable, reusable holder for the credentials (pid, uid, gid) attached to an individual AF_UNIX
+ * message ({@code SCM_CREDENTIALS}).
+ * <p>
+ * Unlike {@link AFUNIXSocketCredentials}, which describes the peer of a connection, these
+ * credentials are transmitted with each message, which is particularly useful for unconnected
+ * datagram sockets. The same instance can be reused for every received message, so authorizing a
+ * datagram requires no allocation.
+ * <p>
+ * To receive credentials, {@link AFUNIXSocketOptions#SO_PASSCRED} must be enabled on the receiving
+ * socket; the kernel then attaches the sender's credentials to every message. A sender may
+ * explicitly specify credentials, which are verified by the kernel (for example, a process can only
+ * claim its own pid, unless it has the {@code CAP_SYS_ADMIN} capability).
+ * <p>
+ * This is currently only supported on Linux.
+ *
+ * @author Christian Kohlschütter
+ * @see AFUNIXDatagramChannel#receive(java.nio.ByteBuffer, AFUNIXMessageCredentials)
+ * @see AFUNIXDatagramChannel#send(java.nio.ByteBuffer, java.net.SocketAddress,
+ *      AFUNIXMessageCredentials)
+ */
+public final class AFUNIXMessageCredentials {
+  private boolean present;
+  private int pid = -1;
+  private int uid = -1;
+  private int gid = -1;
+
+  /**
+   * Creates a new, empty holder.
+   */
+  public AFUNIXMessageCredentials() {
+  }
+
+  /**
+   * Sets the credentials to be sent explicitly.
+   *
+   * @param pid The pid.
+   * @param uid The uid.
+   * @param gid The gid.
+   * @return This instance.
+   */
+  public AFUNIXMessageCredentials set(long pid, long uid, long gid) {
+    if (pid < 0 || pid > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("pid");
+    }
+    if (uid < 0 || uid > 0xFFFFFFFFL) {
+      throw new IllegalArgumentException("uid");
+    }
+    if (gid < 0 || gid > 0xFFFFFFFFL) {
+      throw new IllegalArgumentException("gid");
+    }
+    setReceived((int) pid, (int) uid, (int) gid);
+    return this;
+  }
+
+  void setReceived(int pid, int uid, int gid) {
+    this.pid = pid;
+    this.uid = uid;
+    this.gid = gid;
+    this.present = true;
+  }
+
+  void copyTo(int[] buf) {
+    buf[0] = pid;
+    buf[1] = uid;
+    buf[2] = gid;
+  }
+
+  /**
+   * Clears the credentials.
+   */
+  public void clear() {
+    this.present = false;
+    this.pid = -1;
+    this.uid = -1;
+    this.gid = -1;
+  }
+
+  /**
+   * Checks if credentials are present, i.e., if they have been received along with the last
+   * message, or set explicitly.
+   *
+   * @return {@code true} if present.
+   */
+  public boolean isPresent() {
+    return present;
+  }
+
+  /**
+   * Returns the "pid" (process ID), or {@code -1} if not present.
+   *
+   * @return The pid, or -1.
+   */
+  public long getPid() {
+    return present ? pid : -1;
+  }
+
+  /**
+   * Returns the "uid" (user ID), or {@code -1} if not present.
+   *
+   * @return The uid, or -1.
+   */
+  public long getUid() {
+    return present ? (uid & 0xFFFFFFFFL) : -1;
+  }
+
+  /**
+   * Returns the "gid" (group ID), or {@code -1} if not present.
+   *
+   * @return The gid, or -1.
+   */
+  public long getGid() {
+    return present ? (gid & 0xFFFFFFFFL) : -1;
+  }
+
+  @Override
+  public String toString() {
+    if (!present) {
+      return super.toString() + "[not present]";
+    }
+    return super.toString() + "[pid=" + getPid() + ";uid=" + getUid() + ";gid=" + getGid() + "]";
+  }
+}
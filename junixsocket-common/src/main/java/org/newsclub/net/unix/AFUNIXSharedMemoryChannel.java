@@ -0,0 +1,619 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.DataInputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * A message channel between two processes on the same host, using shared-memory ring buffers that
+ * are negotiated over a connected {@link AFUNIXSocket}.
+ * <p>
+ * Upon {@link #open(AFUNIXSocket, int)}, each side creates an anonymous shared-memory file
+ * ({@code memfd_create} on Linux), seals it against shrinking where supported, maps it into memory,
+ * and sends it to the other side via {@code SCM_RIGHTS}. Where sealing is supported, a peer's file
+ * that is not sealed is rejected, since truncating it would crash the VM upon access. Each side
+ * writes into its own ring buffer and reads from the peer's. Messages are copied directly into and
+ * out of the shared memory; the socket is only used as a "doorbell" to wake up a peer that is
+ * waiting for data (or for space to become available).
+ * <p>
+ * A waiting side first busy-spins for a configurable number of iterations (see
+ * {@link #setSpinCount(int)}), and only then parks on the doorbell socket. With spinning, a message
+ * can be transferred without any system call.
+ * <p>
+ * Message boundaries are preserved: Each call to {@link #write(ByteBuffer)} sends exactly one
+ * message, and each call to {@link #read(ByteBuffer)} receives exactly one message. The maximum
+ * message size is half the peer's ring buffer capacity, see {@link #getMaxMessageSize()}.
+ * <p>
+ * Only one thread may read, and only one thread may write at a time; concurrent calls are
+ * serialized.
+ * <p>
+ * <b>NOTE:</b> The peer has write access to the shared memory, so this channel should only be used
+ * between processes that trust each other.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class AFUNIXSharedMemoryChannel implements ByteChannel {
+  /**
+   * The default ring buffer capacity (1 MB).
+   */
+  public static final int DEFAULT_CAPACITY = 1 << 20;
+
+  private static final int MIN_CAPACITY = 4096;
+  private static final int MAX_CAPACITY = 1 << 30;
+  // spinning is pointless if the peer cannot run at the same time
+  private static final int DEFAULT_SPIN_COUNT = Runtime.getRuntime().availableProcessors() > 1
+      ? 10_000 : 0;
+
+  private static final int HANDSHAKE_MAGIC = 0x4a585242; // "JXRB"
+  private static final int HANDSHAKE_VERSION = 1;
+  private static final int HANDSHAKE_LENGTH = 16;
+
+  // Ring header layout; fields written by different sides are kept in separate cache lines
+  private static final int OFFSET_MAGIC = 0;
+  private static final int OFFSET_CAPACITY = 4;
+  private static final int OFFSET_WRITE_POS = 64;
+  private static final int OFFSET_READ_POS = 128;
+  private static final int OFFSET_CONSUMER_WAITING = 192;
+  private static final int OFFSET_PRODUCER_WAITING = 256;
+  private static final int OFFSET_PRODUCER_CLOSED = 320;
+  private static final int OFFSET_CONSUMER_CLOSED = 384;
+  private static final int HEADER_SIZE = 448;
+
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final int RECORD_PADDING = -1;
+
+  private final AFUNIXSocket socket;
+  private final InputStream doorbellIn;
+  private final OutputStream doorbellOut;
+  private final Ring tx;
+  private final Ring rx;
+  private final AtomicBoolean closed = new AtomicBoolean(false);
+  private final Object readLock = new Object();
+  private final Object writeLock = new Object();
+  private final Object doorbellLock = new Object();
+  private final byte[] doorbellBuf = new byte[64];
+  private boolean doorbellReaderActive = false; // guarded by doorbellLock
+  private long doorbellGeneration = 0; // guarded by doorbellLock
+  private volatile boolean peerGone = false;
+  private volatile boolean blocking = true;
+  private volatile int spinCount = DEFAULT_SPIN_COUNT;
+
+  /**
+   * One direction of the channel.
+   */
+  private static final class Ring {
+    private final ByteBuffer header;
+    private final ByteBuffer data;
+    private final ByteBuffer view;
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * Our own position: the write position for our own ring, the read position for the peer's.
+     */
+    private long position = 0;
+
+    /**
+     * The last known position of the other side.
+     */
+    private long cachedLimit = 0;
+
+    Ring(MappedByteBuffer mapped, int capacity) {
+      this.header = mapped.order(ByteOrder.nativeOrder());
+      this.capacity = capacity;
+      this.mask = capacity - 1;
+
+      ByteBuffer dup = mapped.duplicate();
+      dup.position(HEADER_SIZE);
+      this.data = dup.slice().order(ByteOrder.nativeOrder());
+      this.view = data.duplicate();
+    }
+
+    int maxMessageSize() {
+      return capacity / 2 - RECORD_HEADER_SIZE;
+    }
+  }
+
+  private AFUNIXSharedMemoryChannel(AFUNIXSocket socket, Ring tx, Ring rx) throws IOException {
+    this.socket = socket;
+    this.doorbellIn = socket.getInputStream();
+    this.doorbellOut = socket.getOutputStream();
+    this.tx = tx;
+    this.rx = rx;
+  }
+
+  /**
+   * Negotiates a shared-memory channel over the given socket, using a ring buffer of
+   * {@link #DEFAULT_CAPACITY} bytes.
+   *
+   * @param socket The connected socket.
+   * @return The channel.
+   * @throws IOException on error.
+   * @see #open(AFUNIXSocket, int)
+   */
+  public static AFUNIXSharedMemoryChannel open(AFUNIXSocket socket) throws IOException {
+    return open(socket, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Negotiates a shared-memory channel over the given socket. The peer must call this method at
+   * the same time. The capacities of the two directions may differ.
+   * <p>
+   * The channel takes ownership of the socket; it must not be used for anything else afterwards,
+   * and it is closed along with the channel.
+   *
+   * @param socket The connected socket.
+   * @param capacity The capacity of the ring buffer we write to, in bytes (a power of two, at
+   *          least 4096).
+   * @return The channel.
+   * @throws IOException on error.
+   */
+  public static AFUNIXSharedMemoryChannel open(AFUNIXSocket socket, int capacity)
+      throws IOException {
+    if (capacity < MIN_CAPACITY || capacity > MAX_CAPACITY || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("capacity must be a power of two between "
+          + MIN_CAPACITY + " and " + MAX_CAPACITY);
+    }
+    if (!socket.isConnected()) {
+      throw new SocketException("Not connected");
+    }
+
+    FileDescriptor memfd = new FileDescriptor();
+    NativeUnixSocket.ensureSupported();
+    NativeUnixSocket.memfdCreate(memfd, "junixsocket-ring", HEADER_SIZE + (long) capacity);
+
+    // if we can seal our ring buffer, the peer (on the same host) can seal theirs, too
+    boolean sealed;
+    try {
+      sealed = NativeUnixSocket.memfdSeal(memfd, true);
+    } catch (IOException | RuntimeException e) {
+      NativeUnixSocket.close(memfd);
+      throw e;
+    }
+
+    Ring tx;
+    FileDescriptor[] peerFds = null;
+    int peerCapacity;
+    try {
+      MappedByteBuffer txMapped = map(memfd, HEADER_SIZE + capacity);
+      tx = new Ring(txMapped, capacity);
+      tx.header.putInt(OFFSET_MAGIC, HANDSHAKE_MAGIC);
+      tx.header.putInt(OFFSET_CAPACITY, capacity);
+
+      ByteBuffer hello = ByteBuffer.allocate(HANDSHAKE_LENGTH);
+      hello.putInt(HANDSHAKE_MAGIC);
+      hello.putInt(HANDSHAKE_VERSION);
+      hello.putInt(capacity);
+      hello.putInt(0);
+
+      socket.ensureAncillaryReceiveBufferSize(256);
+      socket.setOutboundFileDescriptors(memfd);
+      socket.getOutputStream().write(hello.array());
+
+      @SuppressWarnings("resource")
+      DataInputStream din = new DataInputStream(socket.getInputStream());
+      int magic = din.readInt();
+      int version = din.readInt();
+      peerCapacity = din.readInt();
+      din.readInt(); // reserved
+      peerFds = socket.getReceivedFileDescriptors();
+
+      if (magic != HANDSHAKE_MAGIC || version != HANDSHAKE_VERSION) {
+        throw new IOException("Unexpected handshake from peer");
+      }
+      if (peerCapacity < MIN_CAPACITY || peerCapacity > MAX_CAPACITY || Integer.bitCount(
+          peerCapacity) != 1) {
+        throw new IOException("Illegal ring buffer capacity from peer: " + peerCapacity);
+      }
+      if (peerFds == null || peerFds.length != 1) {
+        throw new IOException("Peer did not send a shared memory file descriptor");
+      }
+      if (sealed && !NativeUnixSocket.memfdIsSealed(peerFds[0], true)) {
+        // the peer could truncate the file, and accessing our mapping would then crash the VM
+        throw new IOException("Peer's shared memory file is not sealed against shrinking");
+      }
+    } catch (IOException | RuntimeException e) {
+      closeQuietly(peerFds);
+      throw e;
+    } finally {
+      NativeUnixSocket.close(memfd); // our mapping and the peer's descriptor keep it alive
+    }
+
+    Ring rx;
+    try {
+      MappedByteBuffer rxMapped = map(peerFds[0], HEADER_SIZE + peerCapacity);
+      rx = new Ring(rxMapped, peerCapacity);
+      if (rx.header.getInt(OFFSET_MAGIC) != HANDSHAKE_MAGIC || rx.header.getInt(
+          OFFSET_CAPACITY) != peerCapacity) {
+        throw new IOException("Unexpected ring buffer header from peer");
+      }
+    } finally {
+      closeQuietly(peerFds);
+    }
+
+    return new AFUNIXSharedMemoryChannel(socket, tx, rx);
+  }
+
+  private static MappedByteBuffer map(FileDescriptor fd, long size) throws IOException {
+    try (FileChannel fc = FileDescriptorCast.using(fd).as(FileChannel.class)) {
+      if (fc.size() < size) {
+        // accessing memory beyond the end of the file would crash the VM
+        throw new IOException("Shared memory segment is too small");
+      }
+      return fc.map(MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  private static void closeQuietly(FileDescriptor[] fds) {
+    if (fds == null) {
+      return;
+    }
+    for (FileDescriptor fd : fds) {
+      try {
+        NativeUnixSocket.close(fd);
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  private static int align(int len) {
+    return (len + 7) & ~7;
+  }
+
+  /**
+   * Returns the maximum size of a message that can be written to this channel.
+   *
+   * @return The maximum message size, in bytes.
+   */
+  public int getMaxMessageSize() {
+    return tx.maxMessageSize();
+  }
+
+  /**
+   * Returns the number of busy-spin iterations before a waiting reader or writer parks on the
+   * doorbell socket.
+   *
+   * @return The spin count.
+   */
+  public int getSpinCount() {
+    return spinCount;
+  }
+
+  /**
+   * Sets the number of busy-spin iterations before a waiting reader or writer parks on the doorbell
+   * socket. Higher values reduce latency at the cost of CPU usage; {@code 0} parks immediately.
+   * <p>
+   * The default is 10,000 iterations on multiprocessor systems, and 0 otherwise.
+   *
+   * @param spinCount The spin count.
+   */
+  public void setSpinCount(int spinCount) {
+    if (spinCount < 0) {
+      throw new IllegalArgumentException("spinCount");
+    }
+    this.spinCount = spinCount;
+  }
+
+  /**
+   * Checks if reads and writes block until they can be completed.
+   *
+   * @return {@code true} if blocking.
+   */
+  public boolean isBlocking() {
+    return blocking;
+  }
+
+  /**
+   * Configures whether reads and writes block until they can be completed. In non-blocking mode,
+   * {@link #read(ByteBuffer)} returns {@code 0} if no message is available, and
+   * {@link #write(ByteBuffer)} returns {@code 0} if there is not enough space in the ring buffer.
+   *
+   * @param block {@code true} if blocking.
+   */
+  public void configureBlocking(boolean block) {
+    this.blocking = block;
+  }
+
+  /**
+   * Writes one message, consisting of all remaining bytes of the given buffer.
+   *
+   * @param src The message.
+   * @return The number of bytes written (or {@code 0} in non-blocking mode if there was not enough
+   *         space).
+   * @throws IOException on error, specifically {@link BrokenPipeSocketException} if the peer has
+   *           closed the channel.
+   */
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    final int len = src.remaining();
+    final Ring ring = tx;
+    if (len > ring.maxMessageSize()) {
+      throw new IOException("Message too long: " + len + " > " + ring.maxMessageSize());
+    }
+    final int recordLength = align(RECORD_HEADER_SIZE + len);
+
+    synchronized (writeLock) {
+      ensureOpen();
+      int spins = 0;
+      while (true) { // NOPMD.WhileLoopWithLiteralBoolean
+        long pos = ring.position;
+        int idx = (int) (pos & ring.mask);
+        int toEnd = ring.capacity - idx;
+        int needed = recordLength <= toEnd ? recordLength : toEnd + recordLength;
+
+        if (ring.capacity - (pos - ring.cachedLimit) < needed) {
+          ring.cachedLimit = SharedMemoryAccess.getLongAcquire(ring.header, OFFSET_READ_POS);
+          if (ring.capacity - (pos - ring.cachedLimit) < needed) {
+            checkPeerReading(ring);
+            if (!blocking) {
+              return 0;
+            }
+            if (spins < spinCount) {
+              spins++;
+              SharedMemoryAccess.onSpinWait();
+              continue;
+            }
+
+            SharedMemoryAccess.putIntVolatile(ring.header, OFFSET_PRODUCER_WAITING, 1);
+            try {
+              long generation = doorbellGeneration();
+              ring.cachedLimit = SharedMemoryAccess.getLongVolatile(ring.header, OFFSET_READ_POS);
+              if (ring.capacity - (pos - ring.cachedLimit) < needed) {
+                awaitDoorbell(generation);
+              }
+            } finally {
+              SharedMemoryAccess.putIntVolatile(ring.header, OFFSET_PRODUCER_WAITING, 0);
+            }
+            ensureOpen();
+            continue;
+          }
+        }
+
+        if (recordLength > toEnd) {
+          ring.data.putInt(idx, RECORD_PADDING);
+          pos += toEnd;
+          idx = 0;
+        }
+        ring.data.putInt(idx, len);
+        ByteBuffer view = ring.view;
+        view.limit(idx + RECORD_HEADER_SIZE + len);
+        view.position(idx + RECORD_HEADER_SIZE);
+        view.put(src);
+
+        pos += recordLength;
+        ring.position = pos;
+        SharedMemoryAccess.putLongVolatile(ring.header, OFFSET_WRITE_POS, pos);
+        if (SharedMemoryAccess.getIntVolatile(ring.header, OFFSET_CONSUMER_WAITING) != 0) {
+          ringDoorbell();
+        }
+        return len;
+      }
+    }
+  }
+
+  /**
+   * Reads one message into the given buffer.
+   *
+   * @param dst The buffer to read into.
+   * @return The number of bytes read, {@code 0} in non-blocking mode if no message was available,
+   *         or {@code -1} if the peer has closed the channel and all messages have been read.
+   * @throws BufferOverflowException if the buffer is too small for the next message; the message
+   *           is not consumed, so the call can be retried with a larger buffer.
+   * @throws IOException on error.
+   */
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    final Ring ring = rx;
+    synchronized (readLock) {
+      ensureOpen();
+      int spins = 0;
+      while (true) { // NOPMD.WhileLoopWithLiteralBoolean
+        long pos = ring.position;
+        if (pos == ring.cachedLimit) {
+          ring.cachedLimit = SharedMemoryAccess.getLongAcquire(ring.header, OFFSET_WRITE_POS);
+          if (pos == ring.cachedLimit) {
+            if (isPeerWritingDone(ring)) {
+              ring.cachedLimit = SharedMemoryAccess.getLongVolatile(ring.header, OFFSET_WRITE_POS);
+              if (pos == ring.cachedLimit) {
+                return -1;
+              }
+              continue;
+            }
+            if (!blocking) {
+              return 0;
+            }
+            if (spins < spinCount) {
+              spins++;
+              SharedMemoryAccess.onSpinWait();
+              continue;
+            }
+
+            SharedMemoryAccess.putIntVolatile(ring.header, OFFSET_CONSUMER_WAITING, 1);
+            try {
+              long generation = doorbellGeneration();
+              ring.cachedLimit = SharedMemoryAccess.getLongVolatile(ring.header, OFFSET_WRITE_POS);
+              if (pos == ring.cachedLimit && !isPeerWritingDone(ring)) {
+                awaitDoorbell(generation);
+              }
+            } finally {
+              SharedMemoryAccess.putIntVolatile(ring.header, OFFSET_CONSUMER_WAITING, 0);
+            }
+            ensureOpen();
+            continue;
+          }
+        }
+
+        int idx = (int) (pos & ring.mask);
+        int len = ring.data.getInt(idx);
+        if (len == RECORD_PADDING) {
+          ring.position = pos + (ring.capacity - idx);
+          continue;
+        }
+        if (len < 0 || len > ring.maxMessageSize()) {
+          throw new IOException("Corrupt ring buffer");
+        }
+        if (dst.remaining() < len) {
+          throw new BufferOverflowException();
+        }
+        ByteBuffer view = ring.view;
+        view.limit(idx + RECORD_HEADER_SIZE + len);
+        view.position(idx + RECORD_HEADER_SIZE);
+        dst.put(view);
+
+        pos += align(RECORD_HEADER_SIZE + len);
+        ring.position = pos;
+        SharedMemoryAccess.putLongVolatile(ring.header, OFFSET_READ_POS, pos);
+        if (SharedMemoryAccess.getIntVolatile(ring.header, OFFSET_PRODUCER_WAITING) != 0) {
+          ringDoorbell();
+        }
+        return len;
+      }
+    }
+  }
+
+  private boolean isPeerWritingDone(Ring ring) {
+    return peerGone || SharedMemoryAccess.getIntVolatile(ring.header, OFFSET_PRODUCER_CLOSED) != 0;
+  }
+
+  private void checkPeerReading(Ring ring) throws IOException {
+    if (peerGone || SharedMemoryAccess.getIntVolatile(ring.header, OFFSET_CONSUMER_CLOSED) != 0) {
+      throw new BrokenPipeSocketException("Peer has closed the channel");
+    }
+  }
+
+  private void ensureOpen() throws ClosedChannelException {
+    if (closed.get()) {
+      throw new ClosedChannelException();
+    }
+  }
+
+  private long doorbellGeneration() {
+    synchronized (doorbellLock) {
+      return doorbellGeneration;
+    }
+  }
+
+  /**
+   * Waits until a doorbell is received, or until another thread has received one after the given
+   * generation was obtained. Callers must re-check their condition afterwards.
+   *
+   * @param generation The doorbell generation obtained before the condition was last checked.
+   * @throws IOException on error.
+   */
+  private void awaitDoorbell(long generation) throws IOException {
+    if (peerGone) {
+      return;
+    }
+    synchronized (doorbellLock) {
+      while (doorbellReaderActive) {
+        if (doorbellGeneration != generation || closed.get()) {
+          return;
+        }
+        try {
+          doorbellLock.wait();
+        } catch (InterruptedException e) {
+          throw (InterruptedIOException) new InterruptedIOException().initCause(e);
+        }
+      }
+      if (doorbellGeneration != generation) {
+        return;
+      }
+      doorbellReaderActive = true;
+    }
+
+    int count = 0;
+    try {
+      count = doorbellIn.read(doorbellBuf);
+    } catch (IOException e) {
+      if (closed.get()) {
+        throw (AsynchronousCloseException) new AsynchronousCloseException().initCause(e);
+      }
+      count = -1;
+      throw e;
+    } finally {
+      if (count < 0) {
+        peerGone = true;
+      }
+      synchronized (doorbellLock) {
+        doorbellReaderActive = false;
+        doorbellGeneration++;
+        doorbellLock.notifyAll();
+      }
+    }
+  }
+
+  private void ringDoorbell() {
+    try {
+      synchronized (doorbellOut) {
+        doorbellOut.write(1);
+      }
+    } catch (IOException e) {
+      // the peer is gone; this is detected upon the next read or write
+      peerGone = true;
+    }
+  }
+
+  @Override
+  public boolean isOpen() {
+    return !closed.get();
+  }
+
+  /**
+   * Closes this channel and the underlying socket. The peer can still read all messages that have
+   * been written before, and then receives an end-of-stream.
+   *
+   * @throws IOException on error.
+   */
+  @Override
+  @SuppressFBWarnings("NN_NAKED_NOTIFY")
+  public void close() throws IOException {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    SharedMemoryAccess.putIntVolatile(tx.header, OFFSET_PRODUCER_CLOSED, 1);
+    SharedMemoryAccess.putIntVolatile(rx.header, OFFSET_CONSUMER_CLOSED, 1);
+    synchronized (doorbellLock) {
+      doorbellLock.notifyAll();
+    }
+    socket.close();
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[" + socket + ";capacity=" + tx.capacity + "/" + rx.capacity + "]";
+  }
+}
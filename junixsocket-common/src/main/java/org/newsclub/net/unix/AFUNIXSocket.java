@@ -25,6 +25,7 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -133,6 +134,12 @@ public final class AFUNIXSocket extends AFSocket<AFUNIXSocketAddress> implements
     return ((AFUNIXSocketImpl) getAFImpl()).getReceivedFileDescriptors();
   }
 
+  @Override
+  public int drainReceivedFileDescriptors(FileDescriptor[] dst, int offset, int length)
+      throws IOException {
+    return getAFImpl().ancillaryDataSupport.drainReceivedFileDescriptors(dst, offset, length);
+  }
+
   @Override
   public void clearReceivedFileDescriptors() {
     ((AFUNIXSocketImpl) getAFImpl()).clearReceivedFileDescriptors();
@@ -151,6 +158,58 @@ public final class AFUNIXSocket extends AFSocket<AFUNIXSocketAddress> implements
     return ((AFUNIXSocketImpl) getAFImpl()).hasOutboundFileDescriptors();
   }
 
+  /**
+   * Enables or disables transferring large writes via a sealed memory file ({@code memfd} on Linux)
+   * instead of copying them through the socket buffer.
+   *
+   * When enabled, every write of at least {@code threshold} bytes is copied once, directly into the
+   * pages of a new memory file, which is then sealed and sent to the peer as a single file
+   * descriptor. Smaller writes are sent inline (header and data in a single system call). The
+   * receiving side sees the data as regular stream bytes, or can obtain the memory mapping directly
+   * via {@link #receiveOffloadedBuffer()}, without any further copy.
+   *
+   * Since the stream is framed in this mode, both sides must enable offloading (with any non-zero
+   * threshold) before exchanging any data. While enabled, the socket must be in blocking mode, and
+   * file descriptors cannot be sent or received otherwise.
+   *
+   * Memory files that are not sealed against shrinking and writing are rejected by the receiving
+   * side. On platforms that do not support sealing, offloaded writes fail with an
+   * {@link OperationNotSupportedSocketException}.
+   *
+   * @param threshold The minimum size of a write to be offloaded, or {@code 0} to disable.
+   * @throws IOException on error.
+   * @see #receiveOffloadedBuffer()
+   */
+  public void setMemfdOffloadThreshold(int threshold) throws IOException {
+    getAFImpl().setMemfdOffloadThreshold(threshold);
+  }
+
+  /**
+   * Returns the minimum size of a write to be offloaded to a memory file, or {@code 0} if disabled.
+   *
+   * @return The threshold, or {@code 0}.
+   * @see #setMemfdOffloadThreshold(int)
+   */
+  public int getMemfdOffloadThreshold() {
+    return getAFImpl().getMemfdOffloadThreshold();
+  }
+
+  /**
+   * Receives the data of the next offloaded write as a read-only memory mapping, without copying.
+   *
+   * If the next data in the stream was sent inline (or if the end of stream has been reached),
+   * {@code null} is returned, and the data can be read via the regular API. Data that has been
+   * partially read already via the regular API is returned from the current position.
+   *
+   * @return The mapped buffer, or {@code null}.
+   * @throws IOException on error.
+   * @throws IllegalStateException if offloading is not enabled.
+   * @see #setMemfdOffloadThreshold(int)
+   */
+  public MappedByteBuffer receiveOffloadedBuffer() throws IOException {
+    return getAFImpl().receiveOffloadedBuffer();
+  }
+
   /**
    * Returns <code>true</code> iff {@link AFUNIXSocket}s are supported by the current Java VM.
    *
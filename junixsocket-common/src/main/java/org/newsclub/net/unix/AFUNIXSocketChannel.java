@@ -21,6 +21,7 @@ import java.io.FileDescriptor;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.net.SocketException;
+import java.nio.MappedByteBuffer;
 
 /**
  * A selectable channel for stream-oriented connecting sockets.
@@ -59,6 +60,13 @@ public final class AFUNIXSocketChannel extends AFSocketChannel<AFUNIXSocketAddre
     return ((AFUNIXSocketExtensions) getAFSocket()).getReceivedFileDescriptors();
   }
 
+  @Override
+  public int drainReceivedFileDescriptors(FileDescriptor[] dst, int offset, int length)
+      throws IOException {
+    return ((AFUNIXSocketExtensions) getAFSocket()).drainReceivedFileDescriptors(dst, offset,
+        length);
+  }
+
   @Override
   public void clearReceivedFileDescriptors() {
     ((AFUNIXSocketExtensions) getAFSocket()).clearReceivedFileDescriptors();
@@ -81,4 +89,36 @@ public final class AFUNIXSocketChannel extends AFSocketChannel<AFUNIXSocketAddre
   public AFUNIXSocketCredentials getPeerCredentials() throws IOException {
     return ((AFUNIXSocketExtensions) getAFSocket()).getPeerCredentials();
   }
+
+  /**
+   * Enables or disables transferring large writes via a sealed memory file.
+   *
+   * @param threshold The minimum size of a write to be offloaded, or {@code 0} to disable.
+   * @throws IOException on error.
+   * @see AFUNIXSocket#setMemfdOffloadThreshold(int)
+   */
+  public void setMemfdOffloadThreshold(int threshold) throws IOException {
+    ((AFUNIXSocket) getAFSocket()).setMemfdOffloadThreshold(threshold);
+  }
+
+  /**
+   * Returns the minimum size of a write to be offloaded to a memory file, or {@code 0} if disabled.
+   *
+   * @return The threshold, or {@code 0}.
+   * @see AFUNIXSocket#getMemfdOffloadThreshold()
+   */
+  public int getMemfdOffloadThreshold() {
+    return ((AFUNIXSocket) getAFSocket()).getMemfdOffloadThreshold();
+  }
+
+  /**
+   * Receives the data of the next offloaded write as a read-only memory mapping, without copying.
+   *
+   * @return The mapped buffer, or {@code null} if the next data was sent inline.
+   * @throws IOException on error.
+   * @see AFUNIXSocket#receiveOffloadedBuffer()
+   */
+  public MappedByteBuffer receiveOffloadedBuffer() throws IOException {
+    return ((AFUNIXSocket) getAFSocket()).receiveOffloadedBuffer();
+  }
 }
@@ -0,0 +1,472 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Queries the kernel for information about AF_UNIX sockets, such as the number of pending
+ * connections in a listening socket's accept backlog, receive/send queue sizes, and peer inodes.
+ * <p>
+ * This is the same information {@code ss -x} shows; it is obtained via the Linux netlink
+ * {@code sock_diag} interface ({@code UNIX_DIAG}), using an {@code AF_NETLINK} datagram socket
+ * wrapped by junixsocket's generic socket support.
+ * <p>
+ * Instances are thread-safe, but queries are serialized. Linux only; {@link #open()} throws an
+ * {@link OperationNotSupportedSocketException} on other platforms.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class AFUNIXSocketDiagnostics implements Closeable {
+  private static final int NETLINK_SOCK_DIAG = 4;
+  private static final int SOCK_DIAG_BY_FAMILY = 20;
+
+  private static final int NLMSG_HDRLEN = 16;
+  private static final int NLMSG_ERROR = 2;
+  private static final int NLMSG_DONE = 3;
+  private static final int NLM_F_REQUEST = 0x1;
+  private static final int NLM_F_DUMP = 0x300;
+
+  private static final int AF_UNIX = 1;
+  private static final int UNIX_DIAG_REQ_LEN = 24;
+  private static final int UNIX_DIAG_MSG_LEN = 16;
+
+  private static final int UDIAG_SHOW_NAME = 0x01;
+  private static final int UDIAG_SHOW_PEER = 0x04;
+  private static final int UDIAG_SHOW_ICONS = 0x08;
+  private static final int UDIAG_SHOW_RQLEN = 0x10;
+  private static final int UDIAG_SHOW_UID = 0x40;
+  private static final int UDIAG_SHOW = UDIAG_SHOW_NAME | UDIAG_SHOW_PEER | UDIAG_SHOW_ICONS
+      | UDIAG_SHOW_RQLEN | UDIAG_SHOW_UID;
+
+  private static final int UNIX_DIAG_NAME = 0;
+  private static final int UNIX_DIAG_PEER = 2;
+  private static final int UNIX_DIAG_ICONS = 3;
+  private static final int UNIX_DIAG_RQLEN = 4;
+  private static final int UNIX_DIAG_UID = 7;
+
+  private static final int TCP_ESTABLISHED = 1;
+  private static final int TCP_LISTEN = 10;
+  private static final int ALL_STATES = 0xFFFFFFFF;
+
+  private static final int ENOENT = 2;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final AFGenericDatagramChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder
+      .nativeOrder());
+  private int seq = 0;
+
+  private AFUNIXSocketDiagnostics(AFGenericDatagramChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * Opens a new diagnostics connection to the kernel.
+   *
+   * @return The new instance.
+   * @throws OperationNotSupportedSocketException if not supported on this platform.
+   * @throws IOException on error.
+   */
+  public static AFUNIXSocketDiagnostics open() throws IOException {
+    NativeUnixSocket.ensureSupported();
+
+    FileDescriptor fd = new FileDescriptor();
+    NativeUnixSocket.createNetlinkSocket(fd, NETLINK_SOCK_DIAG);
+    boolean success = false;
+    try {
+      AFGenericDatagramChannel channel = new AFGenericDatagramSocket(fd).getChannel();
+      success = true;
+      return new AFUNIXSocketDiagnostics(channel);
+    } finally {
+      if (!success) {
+        NativeUnixSocket.close(fd);
+      }
+    }
+  }
+
+  /**
+   * Returns information about all AF_UNIX sockets in the current network namespace.
+   *
+   * @return The list of sockets.
+   * @throws IOException on error.
+   */
+  public List<SocketInfo> getAllSockets() throws IOException {
+    return query(ALL_STATES, 0, true);
+  }
+
+  /**
+   * Returns information about all listening AF_UNIX sockets in the current network namespace.
+   *
+   * @return The list of listening sockets.
+   * @throws IOException on error.
+   */
+  public List<SocketInfo> getListeningSockets() throws IOException {
+    return query(1 << TCP_LISTEN, 0, true);
+  }
+
+  /**
+   * Returns information about the given junixsocket AF_UNIX socket or channel.
+   *
+   * @param socket The socket (for example, an {@link AFUNIXServerSocket}, {@link AFUNIXSocket}, or
+   *          a corresponding channel).
+   * @return The information, or {@code null} if the kernel doesn't know about the socket (for
+   *         example, because it is closed, or not an AF_UNIX socket).
+   * @throws IOException on error.
+   */
+  public SocketInfo getSocketInfo(FileDescriptorAccess socket) throws IOException {
+    FileDescriptor fd = socket.getFileDescriptor();
+    if (fd == null || !fd.valid()) {
+      throw new SocketClosedException("Not open");
+    }
+    return getSocketInfo(NativeUnixSocket.inode(fd));
+  }
+
+  /**
+   * Returns information about the AF_UNIX socket with the given inode number.
+   *
+   * @param inode The inode number.
+   * @return The information, or {@code null} if there is no such socket.
+   * @throws IOException on error.
+   */
+  public SocketInfo getSocketInfo(long inode) throws IOException {
+    if (inode <= 0 || inode > 0xFFFFFFFFL) {
+      return null;
+    }
+    List<SocketInfo> list = query(ALL_STATES, (int) inode, false);
+    return list.isEmpty() ? null : list.get(0);
+  }
+
+  @SuppressWarnings({"PMD.CognitiveComplexity", "PMD.NcssCount"})
+  private synchronized List<SocketInfo> query(int states, int inode, boolean dump)
+      throws IOException {
+    int mySeq = ++seq;
+
+    buffer.clear();
+    buffer.putInt(NLMSG_HDRLEN + UNIX_DIAG_REQ_LEN);
+    buffer.putShort((short) SOCK_DIAG_BY_FAMILY);
+    buffer.putShort((short) (NLM_F_REQUEST | (dump ? NLM_F_DUMP : 0)));
+    buffer.putInt(mySeq);
+    buffer.putInt(0); // port ID: kernel
+    buffer.put((byte) AF_UNIX);
+    buffer.put((byte) 0); // protocol
+    buffer.putShort((short) 0); // padding
+    buffer.putInt(states);
+    buffer.putInt(inode);
+    buffer.putInt(UDIAG_SHOW);
+    buffer.putInt(-1); // no cookie
+    buffer.putInt(-1);
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+
+    List<SocketInfo> result = new ArrayList<>();
+    while (true) { // NOPMD.WhileLoopWithLiteralBoolean
+      buffer.clear();
+      int count = channel.read(buffer);
+      if (count <= 0) {
+        throw new SocketException("Unexpected end of netlink response");
+      }
+      buffer.flip();
+
+      while (buffer.remaining() >= NLMSG_HDRLEN) {
+        int msgStart = buffer.position();
+        int msgLen = buffer.getInt();
+        int msgType = buffer.getShort() & 0xFFFF;
+        buffer.getShort(); // flags
+        int msgSeq = buffer.getInt();
+        buffer.getInt(); // port ID
+        if (msgLen < NLMSG_HDRLEN || msgStart + msgLen > buffer.limit()) {
+          throw new SocketException("Malformed netlink response");
+        }
+        int msgEnd = msgStart + msgLen;
+
+        if (msgSeq == mySeq) {
+          switch (msgType) {
+            case NLMSG_DONE:
+              return result;
+            case NLMSG_ERROR:
+              int errno = -buffer.getInt();
+              if (errno == 0) {
+                break; // ACK
+              } else if (errno == ENOENT && !dump) {
+                return Collections.emptyList();
+              } else {
+                throw new SocketException("sock_diag request failed: errno " + errno);
+              }
+            case SOCK_DIAG_BY_FAMILY:
+              result.add(parseSocketInfo(buffer, msgEnd));
+              if (!dump) {
+                return result;
+              }
+              break;
+            default:
+              break;
+          }
+        }
+
+        buffer.position(Math.min(buffer.limit(), msgStart + align(msgLen)));
+      }
+    }
+  }
+
+  private static SocketInfo parseSocketInfo(ByteBuffer bb, int msgEnd) throws SocketException {
+    if (bb.position() + UNIX_DIAG_MSG_LEN > msgEnd) {
+      throw new SocketException("Malformed netlink response");
+    }
+    bb.get(); // family
+    int type = bb.get() & 0xFF;
+    int state = bb.get() & 0xFF;
+    bb.get(); // padding
+    long inode = bb.getInt() & 0xFFFFFFFFL;
+    bb.getInt(); // cookie
+    bb.getInt();
+
+    SocketInfo info = new SocketInfo(inode, type, state);
+
+    while (bb.position() + 4 <= msgEnd) {
+      int attrStart = bb.position();
+      int attrLen = bb.getShort() & 0xFFFF;
+      int attrType = bb.getShort() & 0x3FFF;
+      if (attrLen < 4 || attrStart + attrLen > msgEnd) {
+        break;
+      }
+      int payloadLen = attrLen - 4;
+      switch (attrType) {
+        case UNIX_DIAG_NAME:
+          byte[] name = new byte[payloadLen];
+          bb.get(name);
+          if (name.length > 1 && name[0] != 0 && name[name.length - 1] == 0) {
+            // filesystem paths are reported including the terminating NUL
+            name = Arrays.copyOf(name, name.length - 1);
+          }
+          info.name = name;
+          break;
+        case UNIX_DIAG_PEER:
+          info.peerInode = bb.getInt() & 0xFFFFFFFFL;
+          break;
+        case UNIX_DIAG_ICONS:
+          long[] icons = new long[payloadLen / 4];
+          for (int i = 0; i < icons.length; i++) {
+            icons[i] = bb.getInt() & 0xFFFFFFFFL;
+          }
+          info.pendingConnectionInodes = icons;
+          break;
+        case UNIX_DIAG_RQLEN:
+          info.receiveQueue = bb.getInt() & 0xFFFFFFFFL;
+          info.sendQueue = bb.getInt() & 0xFFFFFFFFL;
+          break;
+        case UNIX_DIAG_UID:
+          info.uid = bb.getInt();
+          break;
+        default:
+          break;
+      }
+      bb.position(Math.min(msgEnd, attrStart + align(attrLen)));
+    }
+    return info;
+  }
+
+  private static int align(int len) {
+    return (len + 3) & ~3;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Information about one AF_UNIX socket, as reported by the kernel.
+   */
+  public static final class SocketInfo {
+    private static final long[] NO_INODES = new long[0];
+
+    private final long inode;
+    private final int type;
+    private final int state;
+    private byte[] name;
+    private long peerInode;
+    private long[] pendingConnectionInodes = NO_INODES;
+    private long receiveQueue = -1;
+    private long sendQueue = -1;
+    private int uid = -1;
+
+    SocketInfo(long inode, int type, int state) {
+      this.inode = inode;
+      this.type = type;
+      this.state = state;
+    }
+
+    /**
+     * Returns the socket's inode number, which uniquely identifies the socket.
+     *
+     * @return The inode number.
+     */
+    public long getInode() {
+      return inode;
+    }
+
+    /**
+     * Returns the socket type.
+     *
+     * @return The socket type, or {@code null} if unknown.
+     */
+    public AFSocketType getSocketType() {
+      switch (type) {
+        case 1:
+          return AFSocketType.SOCK_STREAM;
+        case 2:
+          return AFSocketType.SOCK_DGRAM;
+        case 5:
+          return AFSocketType.SOCK_SEQPACKET;
+        default:
+          return null;
+      }
+    }
+
+    /**
+     * Checks if this is a listening socket.
+     *
+     * @return {@code true} if listening.
+     */
+    public boolean isListening() {
+      return state == TCP_LISTEN;
+    }
+
+    /**
+     * Checks if this socket is connected to a peer.
+     *
+     * @return {@code true} if connected.
+     */
+    public boolean isConnected() {
+      return state == TCP_ESTABLISHED;
+    }
+
+    /**
+     * Returns the address the socket is bound to.
+     *
+     * @return The address, or {@code null} if unbound.
+     * @throws SocketException on error.
+     */
+    public AFUNIXSocketAddress getAddress() throws SocketException {
+      return name == null || name.length == 0 ? null : AFUNIXSocketAddress.of(name);
+    }
+
+    /**
+     * Returns the inode number of the connected peer socket.
+     *
+     * @return The peer's inode number, or {@code 0} if there is no peer.
+     */
+    public long getPeerInode() {
+      return peerInode;
+    }
+
+    /**
+     * For listening sockets, returns the inode numbers of connections that are waiting to be
+     * accepted.
+     *
+     * @return The inode numbers (empty if none, or not a listening socket).
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public long[] getPendingConnectionInodes() {
+      return pendingConnectionInodes.length == 0 ? NO_INODES : pendingConnectionInodes.clone();
+    }
+
+    /**
+     * For listening sockets, returns the number of connections waiting to be accepted.
+     *
+     * @return The number of pending connections, or {@code -1} if unknown.
+     */
+    public int getPendingConnections() {
+      return isListening() ? (int) receiveQueue : -1;
+    }
+
+    /**
+     * For listening sockets, returns the maximum accept backlog, as specified upon {@code listen}
+     * (possibly capped by the kernel).
+     *
+     * @return The maximum backlog, or {@code -1} if unknown.
+     */
+    public int getMaxBacklog() {
+      return isListening() ? (int) sendQueue : -1;
+    }
+
+    /**
+     * For listening sockets, returns the saturation of the accept backlog, i.e., the ratio between
+     * pending connections and the maximum backlog.
+     *
+     * @return The saturation (usually between 0 and 1), or {@code -1} if unknown.
+     */
+    public float getBacklogSaturation() {
+      int max = getMaxBacklog();
+      if (max <= 0) {
+        return max == 0 && getPendingConnections() >= 0 ? 1 : -1;
+      }
+      return getPendingConnections() / (float) max;
+    }
+
+    /**
+     * For non-listening sockets, returns the number of bytes in the receive queue.
+     *
+     * @return The number of bytes, or {@code -1} if unknown.
+     */
+    public long getReceiveQueueBytes() {
+      return isListening() ? -1 : receiveQueue;
+    }
+
+    /**
+     * For non-listening sockets, returns the number of bytes in the send queue.
+     *
+     * @return The number of bytes, or {@code -1} if unknown.
+     */
+    public long getSendQueueBytes() {
+      return isListening() ? -1 : sendQueue;
+    }
+
+    /**
+     * Returns the user ID of the socket's owner.
+     *
+     * @return The user ID, or {@code -1} if unknown.
+     */
+    public int getUid() {
+      return uid;
+    }
+
+    @Override
+    public String toString() {
+      return super.toString() + "[inode=" + inode + ";type=" + getSocketType() + ";state=" + state
+          + (peerInode == 0 ? "" : ";peer=" + peerInode) + (isListening() ? ";pending="
+              + getPendingConnections() + "/" + getMaxBacklog() : ";rq=" + receiveQueue + ";wq="
+                  + sendQueue) + "]";
+    }
+  }
+}
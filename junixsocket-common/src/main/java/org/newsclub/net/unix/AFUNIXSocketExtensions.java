@@ -46,6 +46,22 @@ public interface AFUNIXSocketExtensions extends AFSocketExtensions {
    */
   FileDescriptor[] getReceivedFileDescriptors() throws IOException;
 
+  /**
+   * Moves up to {@code length} pending incoming {@link FileDescriptor}s that were sent as ancillary
+   * messages into the given array, in the order they were received.
+   *
+   * Unlike {@link #getReceivedFileDescriptors()}, this method does not allocate a new array, which
+   * makes it suitable for applications that receive large numbers of file descriptors.
+   *
+   * @param dst The destination array.
+   * @param offset The offset in the destination array.
+   * @param length The maximum number of file descriptors to retrieve.
+   * @return The number of file descriptors stored into the array ({@code 0} if none were
+   *         available).
+   * @throws IOException if the operation fails.
+   */
+  int drainReceivedFileDescriptors(FileDescriptor[] dst, int offset, int length) throws IOException;
+
   /**
    * Clears the queue of incoming {@link FileDescriptor}s that were sent as ancillary messages.
    */
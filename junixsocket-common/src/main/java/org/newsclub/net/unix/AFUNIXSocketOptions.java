@@ -0,0 +1,38 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+/**
+ * AF_UNIX-specific socket options.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class AFUNIXSocketOptions {
+  /**
+   * Enables receiving the sender's credentials along with every message ({@code SO_PASSCRED},
+   * Linux only).
+   *
+   * @see AFUNIXMessageCredentials
+   */
+  public static final AFSocketOption<Boolean> SO_PASSCRED = new AFSocketOption<>("SO_PASSCRED",
+      Boolean.class, 1, 16);
+
+  private AFUNIXSocketOptions() {
+    throw new IllegalStateException("No instances");
+  }
+}
@@ -20,13 +20,8 @@ package org.newsclub.net.unix;
 import java.io.Closeable;
 import java.io.FileDescriptor;
 import java.io.IOException;
-import java.net.SocketException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 
 import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
 
@@ -37,19 +32,30 @@ final class AncillaryDataSupport implements Closeable {
   private static final int MIN_ANCBUF_LEN = NativeUnixSocket.isLoaded() ? NativeUnixSocket
       .ancillaryBufMinLen() : 0;
 
-  private final Map<FileDescriptor, Integer> openReceivedFileDescriptors = Collections
-      .synchronizedMap(new HashMap<>());
-
-  private final List<FileDescriptor[]> receivedFileDescriptors = Collections.synchronizedList(
-      new ArrayList<>());
+  // created upon first receipt of file descriptors
+  private volatile ReceivedFileDescriptors receivedFileDescriptors = null;
 
   // referenced from native code
   private ByteBuffer ancillaryReceiveBuffer = EMPTY_BUFFER;
 
+  // referenced from native code; reused scratch buffer for incoming file descriptor numbers
+  @SuppressFBWarnings("URF_UNREAD_FIELD")
+  private int[] receivedFdBuffer = null;
+
   // referenced from native code
   @SuppressFBWarnings("URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
   int[] pendingFileDescriptors = null;
 
+  // referenced from native code; {pid, uid, gid} to send along with the next message, or null
+  @SuppressFBWarnings("URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+  int[] pendingCredentials = null;
+  private int[] outboundCredentialsBuffer = null;
+
+  private boolean credentialsReceived = false;
+  private int receivedPid = -1;
+  private int receivedUid = -1;
+  private int receivedGid = -1;
+
   private int[] tipcErrorInfo = null;
 
   private int[] tipcDestName = null;
@@ -63,6 +69,39 @@ final class AncillaryDataSupport implements Closeable {
     }
   }
 
+  // called from native code
+  void receiveCredentials(int pid, int uid, int gid) {
+    this.receivedPid = pid;
+    this.receivedUid = uid;
+    this.receivedGid = gid;
+    this.credentialsReceived = true;
+  }
+
+  void clearReceivedCredentials() {
+    this.credentialsReceived = false;
+  }
+
+  void getReceivedCredentials(AFUNIXMessageCredentials credentials) {
+    if (credentialsReceived) {
+      credentials.setReceived(receivedPid, receivedUid, receivedGid);
+    } else {
+      credentials.clear();
+    }
+  }
+
+  void setOutboundCredentials(AFUNIXMessageCredentials credentials) {
+    if (credentials == null || !credentials.isPresent()) {
+      this.pendingCredentials = null;
+      return;
+    }
+    int[] buf = outboundCredentialsBuffer;
+    if (buf == null) {
+      buf = outboundCredentialsBuffer = new int[3];
+    }
+    credentials.copyTo(buf);
+    this.pendingCredentials = buf;
+  }
+
   int[] getTIPCErrorInfo() {
     int[] info = tipcErrorInfo;
     tipcErrorInfo = null;
@@ -93,7 +132,7 @@ final class AncillaryDataSupport implements Closeable {
     } else if (size <= 0) {
       this.ancillaryReceiveBuffer = EMPTY_BUFFER;
     } else {
-      setAncillaryReceiveBufferSize0(Math.max(256, Math.min(MIN_ANCBUF_LEN, size)));
+      setAncillaryReceiveBufferSize0(Math.max(256, Math.max(MIN_ANCBUF_LEN, size)));
     }
   }
 
@@ -110,65 +149,84 @@ final class AncillaryDataSupport implements Closeable {
     }
   }
 
-  // called from native code
   void receiveFileDescriptors(int[] fds) throws IOException {
-    if (fds == null || fds.length == 0) {
-      return;
+    if (fds != null) {
+      receiveFileDescriptors(fds, fds.length);
     }
-    final int fdsLength = fds.length;
-    FileDescriptor[] descriptors = new FileDescriptor[fdsLength];
-    for (int i = 0; i < fdsLength; i++) {
-      final FileDescriptor fdesc = new FileDescriptor();
-      NativeUnixSocket.initFD(fdesc, fds[i]);
-      descriptors[i] = fdesc;
-
-      openReceivedFileDescriptors.put(fdesc, fds[i]);
-
-      final Closeable cleanup = new Closeable() {
+  }
 
-        @Override
-        public void close() throws IOException {
-          openReceivedFileDescriptors.remove(fdesc);
+  // called from native code
+  void receiveFileDescriptors(int[] fds, int count) throws IOException {
+    if (count <= 0) {
+      return;
+    }
+    ReceivedFileDescriptors received = receivedFileDescriptors;
+    if (received == null) {
+      synchronized (this) {
+        received = receivedFileDescriptors;
+        if (received == null) {
+          // size for at least as many descriptors as fit into the ancillary receive buffer
+          receivedFileDescriptors = received = new ReceivedFileDescriptors(Math.max(16,
+              ancillaryReceiveBuffer.capacity() / 4));
         }
-      };
-
-      try {
-        NativeUnixSocket.attachCloseable(fdesc, cleanup);
-      } catch (SocketException e) {
-        // ignore (cannot attach)
       }
     }
-
-    this.receivedFileDescriptors.add(descriptors);
+    for (int i = 0; i < count; i++) {
+      final FileDescriptor fdesc = new FileDescriptor();
+      NativeUnixSocket.initFD(fdesc, fds[i]);
+      received.add(fdesc);
+    }
   }
 
   void clearReceivedFileDescriptors() {
-    receivedFileDescriptors.clear();
+    ReceivedFileDescriptors received = receivedFileDescriptors;
+    if (received != null) {
+      while (received.poll() != null) {
+        // the descriptors are still closed along with the socket
+      }
+    }
   }
 
   FileDescriptor[] getReceivedFileDescriptors() {
-    if (receivedFileDescriptors.isEmpty()) {
+    ReceivedFileDescriptors received = receivedFileDescriptors;
+    int size;
+    if (received == null || (size = received.size()) == 0) {
       return NO_FILE_DESCRIPTORS;
     }
-    List<FileDescriptor[]> copy = new ArrayList<>(receivedFileDescriptors);
-    if (copy.isEmpty()) {
+    FileDescriptor[] fds = new FileDescriptor[size];
+    int count = drainReceivedFileDescriptors(fds, 0, size);
+    if (count == size) {
+      return fds;
+    } else if (count == 0) {
       return NO_FILE_DESCRIPTORS;
+    } else {
+      return Arrays.copyOf(fds, count);
     }
-    receivedFileDescriptors.removeAll(copy);
-    int count = 0;
-    for (FileDescriptor[] fds : copy) {
-      count += fds.length;
+  }
+
+  /**
+   * Moves up to {@code length} pending received file descriptors into the given array, in the order
+   * they were received.
+   *
+   * @param dst The destination array.
+   * @param offset The offset in the destination array.
+   * @param length The maximum number of file descriptors to retrieve.
+   * @return The number of file descriptors stored into the array.
+   */
+  int drainReceivedFileDescriptors(FileDescriptor[] dst, int offset, int length) {
+    if (offset < 0 || length < 0 || length > dst.length - offset) {
+      throw new IndexOutOfBoundsException();
     }
-    if (count == 0) {
-      return NO_FILE_DESCRIPTORS;
+    ReceivedFileDescriptors received = receivedFileDescriptors;
+    if (received == null) {
+      return 0;
     }
-    FileDescriptor[] oneArray = new FileDescriptor[count];
-    int offset = 0;
-    for (FileDescriptor[] fds : copy) {
-      System.arraycopy(fds, 0, oneArray, offset, fds.length);
-      offset += fds.length;
+    int count = 0;
+    FileDescriptor fd;
+    while (count < length && (fd = received.poll()) != null) {
+      dst[offset + count++] = fd;
     }
-    return oneArray;
+    return count;
   }
 
   void setOutboundFileDescriptors(int[] fds) {
@@ -179,6 +237,17 @@ final class AncillaryDataSupport implements Closeable {
     return this.pendingFileDescriptors != null;
   }
 
+  /**
+   * Checks if ancillary data may currently be sent or received, which requires
+   * {@code sendmsg(2)}/{@code recvmsg(2)} instead of plain {@code send(2)}/{@code recv(2)}.
+   *
+   * @return {@code true} if so.
+   */
+  boolean isInUse() {
+    return ancillaryReceiveBuffer.capacity() > 0 || pendingFileDescriptors != null
+        || pendingCredentials != null || tipcDestName != null;
+  }
+
   void setOutboundFileDescriptors(FileDescriptor... fdescs) throws IOException {
     final int[] fds;
     if (fdescs == null || fdescs.length == 0) {
@@ -196,16 +265,9 @@ final class AncillaryDataSupport implements Closeable {
 
   @Override
   public void close() {
-    synchronized (openReceivedFileDescriptors) {
-      for (FileDescriptor desc : openReceivedFileDescriptors.keySet()) {
-        if (desc.valid()) {
-          try {
-            NativeUnixSocket.close(desc);
-          } catch (Exception e) {
-            // ignore
-          }
-        }
-      }
+    ReceivedFileDescriptors received = receivedFileDescriptors;
+    if (received != null) {
+      received.closeAll();
     }
   }
 }
@@ -27,8 +27,10 @@ import java.lang.ProcessBuilder.Redirect;
 import java.net.DatagramSocket;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
@@ -62,6 +64,10 @@ import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
  * // always succeeds
  * InputStream in = FileDescriptorCast.using(fd).as(InputStream.class);
  * OutputStream in = FileDescriptorCast.using(fd).as(OutputStream.class);
+ *
+ * // succeeds if fd refers to a memfd, a shared memory object or a regular file
+ * MappedByteBuffer buf = FileDescriptorCast.using(fd).withMapping(MapMode.READ_ONLY, 0, -1).as(
+ *     MappedByteBuffer.class);
  * </code></pre>
  * <p>
  * <b>Important notes</b>
@@ -125,6 +131,23 @@ public final class FileDescriptorCast implements FileDescriptorAccess {
   private static final CastingProviderMap GLOBAL_PROVIDERS = new CastingProviderMap() {
     @Override
     protected void addProviders() {
+      // register first, so the more specific providers below take precedence for Closeable etc.
+      addProvider(MappedByteBuffer.class, new CastingProvider<MappedByteBuffer>() {
+        @Override
+        public MappedByteBuffer provideAs(FileDescriptorCast fdc,
+            Class<? super MappedByteBuffer> desiredType) throws IOException {
+          return fdc.mapBuffer();
+        }
+      });
+      addProvider(AFSharedMemorySegment.class, new CastingProvider<AFSharedMemorySegment>() {
+        @Override
+        public AFSharedMemorySegment provideAs(FileDescriptorCast fdc,
+            Class<? super AFSharedMemorySegment> desiredType) throws IOException {
+          return AFSharedMemorySegment.map(fdc.getFileDescriptor(), fdc.mapMode, fdc.mapOffset,
+              fdc.mapLength);
+        }
+      });
+
       addProvider(WritableByteChannel.class, new CastingProvider<WritableByteChannel>() {
         @SuppressWarnings("resource")
         @Override
@@ -213,6 +236,10 @@ public final class FileDescriptorCast implements FileDescriptorAccess {
   private int localPort = 0;
   private int remotePort = 0;
 
+  private MapMode mapMode = MapMode.READ_ONLY;
+  private long mapOffset = 0;
+  private long mapLength = -1;
+
   private final CastingProviderMap cpm;
 
   private FileDescriptorCast(FileDescriptor fdObj, CastingProviderMap cpm) {
@@ -538,6 +565,53 @@ public final class FileDescriptorCast implements FileDescriptorAccess {
     return this;
   }
 
+  /**
+   * Specifies the region and mode to use when casting to {@link MappedByteBuffer} or
+   * {@link AFSharedMemorySegment}. By default, the entire file is mapped read-only.
+   *
+   * The file descriptor may refer to a {@code memfd}, a POSIX shared memory object, or a regular
+   * file. The region must not exceed the current size of the file.
+   *
+   * Important: This only changes the state of this instance. The actual file descriptor is not
+   * affected.
+   *
+   * @param mode The mapping mode.
+   * @param offset The offset into the file, in bytes (must be &gt;= 0).
+   * @param length The length of the region, in bytes, or {@code -1} for the remainder of the file.
+   * @return This instance.
+   */
+  public FileDescriptorCast withMapping(MapMode mode, long offset, long length) {
+    if (offset < 0 || length < -1) {
+      throw new IllegalArgumentException();
+    }
+    this.mapMode = Objects.requireNonNull(mode);
+    this.mapOffset = offset;
+    this.mapLength = length;
+    return this;
+  }
+
+  @SuppressWarnings("resource")
+  private MappedByteBuffer mapBuffer() throws IOException {
+    if (mapMode == MapMode.READ_ONLY) {
+      // NOTE: Closing this channel would close our file descriptor
+      return mapBuffer(FD_IS_PROVIDER.apply(fdObj).getChannel());
+    } else {
+      try (FileChannel fc = RAFChannelProvider.getFileChannel(fdObj)) {
+        return mapBuffer(fc);
+      }
+    }
+  }
+
+  private MappedByteBuffer mapBuffer(FileChannel fc) throws IOException {
+    long size = fc.size();
+    long length = mapLength == -1 ? size - mapOffset : mapLength;
+    if (length < 0 || mapOffset + length > size) {
+      // accessing memory beyond the end of the file would crash the VM
+      throw new IOException("Region exceeds file size");
+    }
+    return fc.map(mapMode, mapOffset, length);
+  }
+
   /**
    * Casts this instance to the desired type.
    *
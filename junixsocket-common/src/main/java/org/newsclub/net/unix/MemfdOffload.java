@@ -0,0 +1,323 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.IllegalBlockingModeException;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Frames the data of a stream socket such that large writes can be transferred via a sealed memory
+ * file descriptor ({@code memfd}) instead of being copied through the socket buffer.
+ *
+ * Every write is prefixed with a header: a non-negative {@code int} length for data that follows
+ * inline, or {@code -1} followed by a {@code long} length for data that is contained in the memory
+ * file attached to the header via {@code SCM_RIGHTS}.
+ *
+ * Framing is required since the kernel does not reliably tell where in the stream an ancillary file
+ * descriptor belongs. Consequently, both sides must enable offloading before exchanging data.
+ *
+ * @author Christian Kohlschütter
+ */
+final class MemfdOffload {
+  private static final int OFFLOAD_MARKER = -1;
+  private static final int INLINE_HEADER_LEN = 4;
+  private static final int OFFLOAD_HEADER_LEN = INLINE_HEADER_LEN + 8;
+
+  private final AFCore core;
+  private final AncillaryDataSupport ancillaryDataSupport;
+  private final AFSupplier<Integer> timeout;
+  private final int threshold;
+
+  private final Object readLock = new Object();
+  private final Object writeLock = new Object();
+
+  private final ByteBuffer readHeader = ByteBuffer.allocateDirect(OFFLOAD_HEADER_LEN).order(
+      ByteOrder.BIG_ENDIAN);
+  private final ByteBuffer writeHeader = ByteBuffer.allocateDirect(OFFLOAD_HEADER_LEN).order(
+      ByteOrder.BIG_ENDIAN);
+
+  private long inlineRemaining = 0;
+  private MappedByteBuffer mapped = null;
+  private boolean eof = false;
+
+  MemfdOffload(AFCore core, AncillaryDataSupport ancillaryDataSupport,
+      AFSupplier<Integer> timeout, int threshold) {
+    this.core = core;
+    this.ancillaryDataSupport = ancillaryDataSupport;
+    this.timeout = timeout;
+    this.threshold = threshold;
+  }
+
+  int getThreshold() {
+    return threshold;
+  }
+
+  private void checkBlocking() {
+    if (!core.isBlocking()) {
+      throw new IllegalBlockingModeException();
+    }
+  }
+
+  /**
+   * Writes all remaining bytes of the given buffer, either inline or via a memory file.
+   *
+   * @param src The source buffer.
+   * @return The number of bytes written.
+   * @throws IOException on error.
+   */
+  int write(ByteBuffer src) throws IOException {
+    int len = src.remaining();
+    if (len == 0) {
+      return 0;
+    }
+    checkBlocking();
+    synchronized (writeLock) {
+      if (len >= threshold) {
+        writeOffloaded(src, len);
+      } else {
+        writeHeader.clear();
+        writeHeader.putInt(len);
+        writeHeader.flip();
+        writeFully(writeHeader, src);
+      }
+    }
+    return len;
+  }
+
+  private void writeOffloaded(ByteBuffer src, int len) throws IOException {
+    FileDescriptor memfd = new FileDescriptor();
+    NativeUnixSocket.memfdCreate(memfd, "junixsocket-offload", len);
+    try {
+      // copy straight into the file's pages; writing via a FileChannel would copy heap buffers
+      // twice (into a temporary direct buffer, then into the page cache). The mapping must be gone
+      // before the file can be sealed against writing.
+      try (AFSharedMemorySegment segment = AFSharedMemorySegment.map(memfd, MapMode.READ_WRITE, 0,
+          len)) {
+        segment.buffer().put(src);
+      }
+      // the peer only accepts sealed files, since it maps them into memory
+      if (!NativeUnixSocket.memfdSeal(memfd, false)) {
+        throw new OperationNotSupportedSocketException("Cannot seal memory file");
+      }
+
+      writeHeader.clear();
+      writeHeader.putInt(OFFLOAD_MARKER);
+      writeHeader.putLong(len);
+      writeHeader.flip();
+
+      ancillaryDataSupport.setOutboundFileDescriptors(memfd);
+      try {
+        writeFully(writeHeader);
+      } finally {
+        ancillaryDataSupport.setOutboundFileDescriptors((int[]) null);
+      }
+    } finally {
+      NativeUnixSocket.close(memfd);
+    }
+  }
+
+  private void writeFully(ByteBuffer src) throws IOException {
+    while (src.hasRemaining()) {
+      core.write(src, timeout);
+    }
+  }
+
+  private void writeFully(ByteBuffer header, ByteBuffer body) throws IOException {
+    // one writev for header and body, instead of one write each
+    ByteBuffer[] srcs = {header, body};
+    while (header.hasRemaining()) {
+      core.write(srcs, 0, 2, timeout, 0);
+    }
+    writeFully(body);
+  }
+
+  /**
+   * Reads into the given buffer, transparently copying data from received memory files.
+   *
+   * @param dst The destination buffer.
+   * @return The number of bytes read, or -1 upon end of stream.
+   * @throws IOException on error.
+   */
+  int read(ByteBuffer dst) throws IOException {
+    if (!dst.hasRemaining()) {
+      return 0;
+    }
+    checkBlocking();
+    synchronized (readLock) {
+      while (inlineRemaining == 0 && mapped == null) {
+        if (!nextFrame()) {
+          return -1;
+        }
+      }
+
+      if (mapped != null) {
+        int n = Math.min(dst.remaining(), mapped.remaining());
+        ByteBuffer slice = mapped.duplicate();
+        slice.limit(slice.position() + n);
+        dst.put(slice);
+        mapped.position(mapped.position() + n);
+        if (!mapped.hasRemaining()) {
+          mapped = null;
+        }
+        return n;
+      }
+
+      int count;
+      int limit = dst.limit();
+      if (dst.remaining() > inlineRemaining) {
+        dst.limit(dst.position() + (int) inlineRemaining);
+      }
+      try {
+        count = core.read(dst, timeout);
+      } finally {
+        dst.limit(limit);
+      }
+      if (count == -1) {
+        throw new EOFException("Unexpected end of stream");
+      }
+      inlineRemaining -= count;
+      return count;
+    }
+  }
+
+  /**
+   * Returns the data of the next offloaded write as a read-only memory mapping, or {@code null} if
+   * the next data was sent inline (or the end of stream has been reached).
+   *
+   * @return The mapped buffer, or {@code null}.
+   * @throws IOException on error.
+   */
+  MappedByteBuffer receiveOffloadedBuffer() throws IOException {
+    checkBlocking();
+    synchronized (readLock) {
+      while (inlineRemaining == 0 && mapped == null) {
+        if (!nextFrame()) {
+          return null;
+        }
+      }
+      MappedByteBuffer buf = mapped;
+      mapped = null;
+      return buf;
+    }
+  }
+
+  /**
+   * Returns the number of bytes that can be read without blocking.
+   *
+   * @param socketAvailable The number of bytes available in the socket's receive buffer.
+   * @return The number of bytes.
+   */
+  int available(int socketAvailable) {
+    synchronized (readLock) {
+      if (mapped != null) {
+        return mapped.remaining();
+      } else if (inlineRemaining > 0) {
+        return (int) Math.min(inlineRemaining, socketAvailable);
+      } else {
+        return 0;
+      }
+    }
+  }
+
+  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
+  private boolean nextFrame() throws IOException {
+    if (eof) {
+      return false;
+    }
+    if (readHeader.position() < INLINE_HEADER_LEN) {
+      readHeader.limit(INLINE_HEADER_LEN);
+      if (!readFully(readHeader, true)) {
+        eof = true;
+        return false;
+      }
+    }
+    int len = readHeader.getInt(0);
+    if (len != OFFLOAD_MARKER) {
+      readHeader.clear();
+      if (len < 0) {
+        throw new SocketException("Invalid frame header: " + len);
+      }
+      inlineRemaining = len;
+      return true;
+    }
+
+    readHeader.limit(OFFLOAD_HEADER_LEN);
+    readFully(readHeader, false);
+    long size = readHeader.getLong(INLINE_HEADER_LEN);
+    readHeader.clear();
+
+    FileDescriptor[] fds = ancillaryDataSupport.getReceivedFileDescriptors();
+    if (fds.length != 1) {
+      for (FileDescriptor fd : fds) {
+        NativeUnixSocket.close(fd);
+      }
+      throw new SocketException("Expected exactly one file descriptor for offloaded data; got "
+          + fds.length);
+    }
+
+    try (FileInputStream fin = new FileInputStream(fds[0]); FileChannel fc = fin.getChannel()) {
+      if (size < 0 || size > Integer.MAX_VALUE || fc.size() < size) {
+        throw new SocketException("Invalid size for offloaded data: " + size);
+      } else if (size == 0) {
+        // nothing to read; don't let read return 0 for an empty frame
+        return true;
+      }
+      // an unsealed file could be truncated by the sender while mapped, causing SIGBUS upon access
+      if (!NativeUnixSocket.memfdIsSealed(fds[0], false)) {
+        throw new SocketException("Offloaded data is not sealed against modification");
+      }
+      mapped = fc.map(MapMode.READ_ONLY, 0, size);
+    } finally {
+      NativeUnixSocket.close(fds[0]);
+    }
+    return true;
+  }
+
+  /**
+   * Reads until the buffer's limit has been reached. If interrupted (e.g., by a socket timeout),
+   * the buffer's position is retained, so the read can be resumed later.
+   *
+   * @param buf The buffer.
+   * @param eofAllowed If {@code true}, an end of stream before the first byte is not an error.
+   * @return {@code false} iff the end of stream was reached before reading the first byte.
+   * @throws IOException on error.
+   */
+  private boolean readFully(ByteBuffer buf, boolean eofAllowed) throws IOException {
+    while (buf.hasRemaining()) {
+      int count = core.read(buf, timeout);
+      if (count == -1) {
+        if (eofAllowed && buf.position() == 0) {
+          return false;
+        }
+        throw new EOFException("Unexpected end of stream");
+      }
+    }
+    return true;
+  }
+}
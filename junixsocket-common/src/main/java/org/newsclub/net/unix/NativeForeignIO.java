@@ -0,0 +1,104 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Direct {@code recv(2)}/{@code send(2)} calls via the Foreign Function &amp; Memory API, bypassing
+ * JNI for plain data transfers on stream sockets.
+ * <p>
+ * The Foreign Function &amp; Memory API requires Java 22 or newer (see
+ * {@code src/main/java22-ffm}); this implementation is never available.
+ *
+ * @author Christian Kohlschütter
+ */
+final class NativeForeignIO {
+  private static final String PROP_REQUIRED = "org.newsclub.net.unix.ffm.required";
+
+  static {
+    if (Boolean.parseBoolean(System.getProperty(PROP_REQUIRED, "false"))) {
+      throw new IllegalStateException("Foreign Function & Memory backend is required ("
+          + PROP_REQUIRED + ") but not available on this Java version");
+    }
+  }
+
+  private NativeForeignIO() {
+    throw new IllegalStateException("No instances");
+  }
+
+  /**
+   * Checks if this backend can be used.
+   *
+   * @return {@code true} if so.
+   */
+  static boolean isAvailable() {
+    return false;
+  }
+
+  /**
+   * Checks if heap {@link ByteBuffer}s can be passed directly (without copying) for the given
+   * options.
+   *
+   * @param options The options.
+   * @return {@code true} if so.
+   */
+  static boolean supportsHeapBuffers(int options) {
+    return false;
+  }
+
+  /**
+   * Receives data from a stream socket, like {@code NativeUnixSocket.receive} without sender
+   * address or ancillary data.
+   *
+   * @param fdesc The file descriptor (used for error handling).
+   * @param fd The native file descriptor number.
+   * @param buf The buffer (see {@link #supportsHeapBuffers(int)}).
+   * @param offset The offset in the buffer, at or after its position.
+   * @param length The maximum number of bytes to receive.
+   * @param options The options.
+   * @return The number of bytes received, {@code 0} if no data is available on a non-blocking
+   *         socket, or {@code -1} upon EOF.
+   * @throws IOException on error.
+   */
+  static int receive(FileDescriptor fdesc, int fd, ByteBuffer buf, int offset, int length,
+      int options) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Sends data to a stream socket, like {@code NativeUnixSocket.send} without target address or
+   * ancillary data.
+   *
+   * @param fdesc The file descriptor (used for error handling).
+   * @param fd The native file descriptor number.
+   * @param buf The buffer (see {@link #supportsHeapBuffers(int)}).
+   * @param offset The offset in the buffer, at or after its position.
+   * @param length The maximum number of bytes to send.
+   * @param options The options.
+   * @return The number of bytes sent, or {@code 0} if the send buffer is full on a non-blocking
+   *         socket.
+   * @throws IOException on error.
+   */
+  static int send(FileDescriptor fdesc, int fd, ByteBuffer buf, int offset, int length,
+      int options) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+}
@@ -27,6 +27,7 @@ import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.spi.AbstractSelectableChannel;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -69,6 +70,12 @@ final class NativeUnixSocket {
 
   static final int BIND_OPT_REUSE = 1;
 
+  /**
+   * The maximum number of buffers used in one {@link #readv(FileDescriptor, ByteBuffer[], int, int,
+   * int[], int)} / {@link #writev(FileDescriptor, ByteBuffer[], int, int, int[], int)} call.
+   */
+  static final int MAX_IOV = 64;
+
   static final int SOCKETSTATUS_INVALID = -1;
   static final int SOCKETSTATUS_UNKNOWN = 0;
   static final int SOCKETSTATUS_BOUND = 1;
@@ -81,6 +88,13 @@ final class NativeUnixSocket {
   static final int SHUT_WR = 1;
   static final int SHUT_RD_WR = 2;
 
+  /**
+   * Results of the primitive file descriptor calls ({@link #recvFd(int, ByteBuffer, int, int, int)},
+   * etc.) at or below this value indicate an error, with {@code errno} being
+   * {@code ERRNO_RESULT_BASE - result}; see {@link #checkFdResult(int, FileDescriptor)}.
+   */
+  static final int ERRNO_RESULT_BASE = -1000;
+
   @ExcludeFromCodeCoverageGeneratedReport(reason = "unreachable")
   private NativeUnixSocket() {
     throw new UnsupportedOperationException("No instances");
@@ -225,6 +239,72 @@ final class NativeUnixSocket {
   static native int write(FileDescriptor fd, byte[] buf, int off, int len, int options,
       AncillaryDataSupport ancillaryDataSupport) throws IOException;
 
+  /**
+   * Reads data from an {@link AFSocketImpl}, like
+   * {@link #read(FileDescriptor, byte[], int, int, int, AncillaryDataSupport, int)}, but without
+   * ancillary data, and identifying the socket by its native file descriptor number.
+   *
+   * @param fd The native file descriptor number.
+   * @param buf The buffer to read into, or {@code null} if a single byte should be read.
+   * @param off The buffer offset.
+   * @param len The maximum number of bytes to read. Must be 1 if {@code buf} is {@code null}.
+   * @param options Options.
+   * @param timeoutMillis The receive timeout, if enforced by polling.
+   * @return The number of bytes read, -1 upon EOF, -2 if nothing could be read, the byte itself iff
+   *         {@code buf} was {@code null}, or an errno result (see {@link #ERRNO_RESULT_BASE}).
+   * @throws IOException upon error.
+   */
+  static native int readFd(int fd, byte[] buf, int off, int len, int options, int timeoutMillis)
+      throws IOException;
+
+  /**
+   * Writes data to an {@link AFSocketImpl}, like
+   * {@link #write(FileDescriptor, byte[], int, int, int, AncillaryDataSupport)}, but without
+   * ancillary data, and identifying the socket by its native file descriptor number.
+   *
+   * @param fd The native file descriptor number.
+   * @param buf The buffer to write from, or {@code null} if a single byte should be written.
+   * @param off The buffer offset, or the byte to write if {@code buf} is {@code null}.
+   * @param len The number of bytes to write. Must be 1 if {@code buf} is {@code null}.
+   * @param options Options.
+   * @return The number of bytes written (which could be 0), or an errno result (see
+   *         {@link #ERRNO_RESULT_BASE}).
+   * @throws IOException upon error.
+   */
+  static native int writeFd(int fd, byte[] buf, int off, int len, int options) throws IOException;
+
+  /**
+   * Receives data from a stream socket directly into a Java byte array, which is pinned for the
+   * duration of a {@code recv(2)} call that never blocks (see {@link AFCore#HEAP_PIN_THRESHOLD}).
+   *
+   * @param fd The native file descriptor number.
+   * @param buf The buffer to read into.
+   * @param off The buffer offset.
+   * @param len The maximum number of bytes to read.
+   * @param options Options.
+   * @return The number of bytes read, -1 upon EOF, -2 if nothing could be read without blocking, or
+   *         an errno result (see {@link #ERRNO_RESULT_BASE}).
+   * @throws IOException upon error.
+   */
+  static native int recvArray(int fd, byte[] buf, int off, int len, int options)
+      throws IOException;
+
+  /**
+   * Sends data to a stream socket directly from a Java byte array, which is pinned for the duration
+   * of a {@code send(2)} call that never blocks (see {@link AFCore#HEAP_PIN_THRESHOLD}).
+   *
+   * @param fd The native file descriptor number.
+   * @param buf The buffer to write from.
+   * @param off The buffer offset.
+   * @param len The number of bytes to write.
+   * @param options Options.
+   * @return The number of bytes written, -2 if nothing could be written without blocking, or an
+   *         errno result (see {@link #ERRNO_RESULT_BASE}).
+   * @throws IOException upon error.
+   */
+  static native int sendArray(int fd, byte[] buf, int off, int len, int options)
+      throws IOException;
+
   static native int receive(FileDescriptor fd, ByteBuffer directBuffer, int offset, int length,
       ByteBuffer directSocketAddressOut, int options, AncillaryDataSupport ancillaryDataSupport,
       int timeoutMillis) throws IOException;
@@ -233,6 +313,72 @@ final class NativeUnixSocket {
       ByteBuffer directSocketAddress, int addrLen, int options,
       AncillaryDataSupport ancillaryDataSupport) throws IOException;
 
+  /**
+   * Receives data from a stream socket, like
+   * {@link #receive(FileDescriptor, ByteBuffer, int, int, ByteBuffer, int, AncillaryDataSupport, int)},
+   * but without sender address or ancillary data, and identifying the socket by its native file
+   * descriptor number.
+   *
+   * @param fd The native file descriptor number.
+   * @param directBuffer The direct buffer.
+   * @param offset The offset in the buffer.
+   * @param length The maximum number of bytes to receive.
+   * @param options Options.
+   * @return The number of bytes received, {@code 0} if no data is available on a non-blocking
+   *         socket, {@code -1} upon EOF, or an errno result (see {@link #ERRNO_RESULT_BASE}).
+   * @throws IOException upon error.
+   */
+  static native int recvFd(int fd, ByteBuffer directBuffer, int offset, int length, int options)
+      throws IOException;
+
+  /**
+   * Sends data to a stream socket, like
+   * {@link #send(FileDescriptor, ByteBuffer, int, int, ByteBuffer, int, int, AncillaryDataSupport)},
+   * but without target address or ancillary data, and identifying the socket by its native file
+   * descriptor number.
+   *
+   * @param fd The native file descriptor number.
+   * @param directBuffer The direct buffer.
+   * @param offset The offset in the buffer.
+   * @param length The maximum number of bytes to send.
+   * @param options Options.
+   * @return The number of bytes sent, {@code 0} if the send buffer is full on a non-blocking
+   *         socket, or an errno result (see {@link #ERRNO_RESULT_BASE}).
+   * @throws IOException upon error.
+   */
+  static native int sendFd(int fd, ByteBuffer directBuffer, int offset, int length, int options)
+      throws IOException;
+
+  /**
+   * Checks the result of a primitive file descriptor call, such as
+   * {@link #recvFd(int, ByteBuffer, int, int, int)}, and throws the exception that corresponds to
+   * an errno result.
+   *
+   * @param result The result.
+   * @param fdToClose The file descriptor to close for certain errors (e.g., {@code EPIPE}).
+   * @return The result, if it does not indicate an error.
+   * @throws IOException if the result indicates an error.
+   */
+  static int checkFdResult(int result, FileDescriptor fdToClose) throws IOException {
+    if (result <= ERRNO_RESULT_BASE) {
+      throwErrnumException(ERRNO_RESULT_BASE - result, fdToClose);
+      throw new SocketException("errno " + (ERRNO_RESULT_BASE - result)); // unreachable
+    }
+    return result;
+  }
+
+  /**
+   * Throws the exception that corresponds to the given {@code errno} value, exactly like the native
+   * I/O calls do. Used by code paths that call into libc without JNI.
+   *
+   * @param errnum The {@code errno} value.
+   * @param fdToClose The file descriptor to close for certain errors (e.g., {@code EPIPE}), or
+   *          {@code null}.
+   * @throws IOException always (unless an unchecked exception type applies).
+   */
+  static native void throwErrnumException(int errnum, FileDescriptor fdToClose)
+      throws IOException;
+
   static native void close(FileDescriptor fd) throws IOException;
 
   static native void shutdown(FileDescriptor fd, int mode) throws IOException;
@@ -248,8 +394,30 @@ final class NativeUnixSocket {
   static native void setSocketOption(FileDescriptor fd, int level, int optionName, Object value)
       throws IOException;
 
+  /**
+   * Returns the number of bytes that can be read without blocking (an estimate).
+   *
+   * @param fd The file descriptor.
+   * @param buf A direct buffer to peek into if the number cannot be determined otherwise, or
+   *          {@code null}.
+   * @return The number of bytes, or {@code -2} if {@code buf} was {@code null} but peeking is
+   *         required.
+   * @throws IOException on error.
+   */
   static native int available(FileDescriptor fd, ByteBuffer buf) throws IOException;
 
+  /**
+   * Returns the number of bytes currently held in the kernel's receive or send queue of the given
+   * socket ({@code SIOCINQ}/{@code SIOCOUTQ} on Linux, {@code FIONREAD}/{@code FIONWRITE} or
+   * {@code SO_NWRITE} elsewhere).
+   *
+   * @param fd The socket file descriptor.
+   * @param sendQueue {@code true} for the send queue, {@code false} for the receive queue.
+   * @return The number of bytes.
+   * @throws IOException on error, {@link OperationNotSupportedSocketException} if not supported.
+   */
+  static native int queueBytes(FileDescriptor fd, boolean sendQueue) throws IOException;
+
   static native AFUNIXSocketCredentials peerCredentials(FileDescriptor fd,
       AFUNIXSocketCredentials creds) throws IOException;
 
@@ -302,6 +470,18 @@ final class NativeUnixSocket {
 
   static native int poll(PollFd pollFd, int timeout) throws IOException;
 
+  /**
+   * Polls the given native file descriptor numbers, like {@link #poll(PollFd, int)}.
+   *
+   * @param fds The native file descriptor numbers.
+   * @param ops The interest ops, per file descriptor.
+   * @param rops The ready ops, per file descriptor (output).
+   * @param timeout The timeout in milliseconds, {@code -1} for "no timeout".
+   * @return The number of file descriptors that are ready.
+   * @throws IOException on error.
+   */
+  static native int pollFds(int[] fds, int[] ops, int[] rops, int timeout) throws IOException;
+
   static native void configureBlocking(FileDescriptor fd, boolean blocking) throws IOException;
 
   /**
@@ -319,6 +499,24 @@ final class NativeUnixSocket {
 
   static native void deregisterSelectionKey(AbstractSelectableChannel chann, SelectionKey key);
 
+  /**
+   * Retrieves the {@link FileDescriptor} of a selectable channel implemented by the JDK (e.g.,
+   * {@link java.nio.channels.SocketChannel}, {@link java.nio.channels.Pipe.SourceChannel}).
+   *
+   * @param chann The channel.
+   * @return The file descriptor, or {@code null} if not available.
+   */
+  static native FileDescriptor getSelectableChannelFD(SelectableChannel chann);
+
+  /**
+   * Completes the close of a JDK-implemented selectable channel that was deferred while the
+   * channel was registered with a selector (see {@code sun.nio.ch.SelChImpl#kill()}).
+   *
+   * @param chann The channel, closed and no longer registered with any selector.
+   * @throws IOException on error.
+   */
+  static native void killSelectableChannel(SelectableChannel chann) throws IOException;
+
   static native byte[] tipcGetNodeId(int peer) throws IOException;
 
   static native byte[] tipcGetLinkName(int peer, int bearerId) throws IOException;
@@ -333,6 +531,213 @@ final class NativeUnixSocket {
 
   static native int systemResolveCtlId(FileDescriptor fd, String ctlName) throws IOException;
 
+  /**
+   * Creates an anonymous shared-memory file ({@code memfd_create} on Linux, {@code shm_open} and
+   * {@code shm_unlink} elsewhere) of the given size.
+   *
+   * @param fd The file descriptor to initialize.
+   * @param name The name, for debugging purposes only (may be ignored).
+   * @param size The initial size, in bytes.
+   * @throws IOException on error.
+   */
+  static native void memfdCreate(FileDescriptor fd, String name, long size) throws IOException;
+
+  /**
+   * Seals a file created by {@link #memfdCreate(FileDescriptor, String, long)} against any further
+   * modification (shrinking, growing and writing), or, if it should remain writable, against
+   * shrinking only.
+   *
+   * @param fd The file descriptor.
+   * @param writable If {@code true}, only seal against shrinking.
+   * @return {@code true} if sealed, {@code false} if sealing is not supported.
+   * @throws IOException on error.
+   */
+  static native boolean memfdSeal(FileDescriptor fd, boolean writable) throws IOException;
+
+  /**
+   * Checks if the given file is sealed against shrinking (and, unless it is meant to be writable,
+   * against writing), such that a memory mapping of it remains valid.
+   *
+   * @param fd The file descriptor.
+   * @param writable If {@code true}, only check for the seal against shrinking.
+   * @return {@code true} if sealed, {@code false} if not sealed, or if sealing is not supported.
+   * @throws IOException on error.
+   */
+  static native boolean memfdIsSealed(FileDescriptor fd, boolean writable) throws IOException;
+
+  /**
+   * Maps a region of the given file into memory.
+   *
+   * @param fd The file descriptor.
+   * @param offset The offset into the file, in bytes (does not need to be page-aligned).
+   * @param length The length of the region, or {@code -1} for the remainder of the file.
+   * @param mode 0 = read-only, 1 = read-write (shared), 2 = private (copy-on-write).
+   * @param mapping An array of length 2, receiving the mapping's base address and length, to be
+   *          used with {@link #munmap(long, long)}.
+   * @return A direct byte buffer pointing to the requested region.
+   * @throws IOException on error.
+   */
+  static native ByteBuffer mmap(FileDescriptor fd, long offset, long length, int mode,
+      long[] mapping) throws IOException;
+
+  /**
+   * Unmaps a memory region mapped via {@link #mmap(FileDescriptor, long, long, int, long[])}.
+   *
+   * @param address The base address of the mapping.
+   * @param length The length of the mapping.
+   * @throws IOException on error.
+   */
+  static native void munmap(long address, long length) throws IOException;
+
+  /**
+   * Attaches a classic BPF socket filter.
+   *
+   * @param fd The socket file descriptor.
+   * @param program The program, two ints per instruction ({@code code << 16 | jt << 8 | jf},
+   *          {@code k}).
+   * @throws IOException on error.
+   */
+  static native void attachFilter(FileDescriptor fd, int[] program) throws IOException;
+
+  /**
+   * Detaches a previously attached socket filter.
+   *
+   * @param fd The socket file descriptor.
+   * @throws IOException on error.
+   */
+  static native void detachFilter(FileDescriptor fd) throws IOException;
+
+  /**
+   * Locks the currently attached socket filter.
+   *
+   * @param fd The socket file descriptor.
+   * @throws IOException on error.
+   */
+  static native void lockFilter(FileDescriptor fd) throws IOException;
+
+  /**
+   * Reads into multiple direct byte buffers at once (scatter read).
+   *
+   * @param fd The file descriptor.
+   * @param buffers The direct byte buffers.
+   * @param offset The offset into {@code buffers}.
+   * @param length The number of buffers to use (at most {@link #MAX_IOV} are used).
+   * @param positionsAndLengths Two ints per buffer (starting at index 0 for
+   *          {@code buffers[offset]}): position and number of bytes.
+   * @param options Options, such as {@link #OPT_NON_BLOCKING}.
+   * @return The number of bytes read, {@code 0} if non-blocking and no data is available, or
+   *         {@code -1} upon EOF.
+   * @throws IOException on error.
+   */
+  static native long readv(FileDescriptor fd, ByteBuffer[] buffers, int offset, int length,
+      int[] positionsAndLengths, int options) throws IOException;
+
+  /**
+   * Writes from multiple direct byte buffers at once (gather write).
+   *
+   * @param fd The file descriptor.
+   * @param buffers The direct byte buffers.
+   * @param offset The offset into {@code buffers}.
+   * @param length The number of buffers to use (at most {@link #MAX_IOV} are used).
+   * @param positionsAndLengths Two ints per buffer (starting at index 0 for
+   *          {@code buffers[offset]}): position and number of bytes.
+   * @param options Options, such as {@link #OPT_NON_BLOCKING}.
+   * @return The number of bytes written, or {@code 0} if non-blocking and nothing could be written.
+   * @throws IOException on error.
+   */
+  static native long writev(FileDescriptor fd, ByteBuffer[] buffers, int offset, int length,
+      int[] positionsAndLengths, int options) throws IOException;
+
+  /**
+   * Moves data from one file descriptor to another without copying it to user space (Linux
+   * {@code splice(2)}); at least one of them must be a pipe.
+   *
+   * @param fdIn The source file descriptor.
+   * @param fdOut The target file descriptor.
+   * @param length The maximum number of bytes to move.
+   * @param options Options, such as {@link #OPT_NON_BLOCKING}.
+   * @return The number of bytes moved, {@code 0} if the operation would block, or {@code -1} upon
+   *         EOF.
+   * @throws IOException on error.
+   */
+  static native long splice(FileDescriptor fdIn, FileDescriptor fdOut, long length, int options)
+      throws IOException;
+
+  /**
+   * Duplicates data from one pipe to another without consuming it (Linux {@code tee(2)}).
+   *
+   * @param fdIn The source pipe (read end).
+   * @param fdOut The target pipe (write end).
+   * @param length The maximum number of bytes to duplicate.
+   * @param options Options, such as {@link #OPT_NON_BLOCKING}.
+   * @return The number of bytes duplicated, {@code 0} if the operation would block, or {@code -1}
+   *         upon EOF.
+   * @throws IOException on error.
+   */
+  static native long tee(FileDescriptor fdIn, FileDescriptor fdOut, long length, int options)
+      throws IOException;
+
+  /**
+   * Transfers bytes from a file to a socket without copying them to user space
+   * ({@code sendfile(2)}; Linux, macOS and FreeBSD).
+   *
+   * @param fdOut The socket.
+   * @param fdIn The file.
+   * @param position The position in the file to start from; the file offset is not modified.
+   * @param count The maximum number of bytes to transfer.
+   * @param options Options, such as {@link #OPT_NON_BLOCKING}.
+   * @return The number of bytes transferred, or {@code 0} if non-blocking and nothing could be
+   *         transferred.
+   * @throws IOException on error, {@link OperationNotSupportedSocketException} if not supported.
+   */
+  static native long sendfile(FileDescriptor fdOut, FileDescriptor fdIn, long position,
+      long count, int options) throws IOException;
+
+  /**
+   * Gets or sets the capacity of a pipe ({@code F_GETPIPE_SZ}/{@code F_SETPIPE_SZ}).
+   *
+   * @param fd Either end of the pipe.
+   * @param newCapacity The new capacity, or {@code 0} to only query the current capacity.
+   * @return The (new) capacity, in bytes.
+   * @throws IOException on error.
+   */
+  static native int pipeCapacity(FileDescriptor fd, int newCapacity) throws IOException;
+
+  /**
+   * Creates a datagram socket of address family {@code AF_NETLINK} (Linux only).
+   *
+   * @param fd The file descriptor to initialize.
+   * @param protocol The netlink protocol, e.g., {@code NETLINK_SOCK_DIAG}.
+   * @throws IOException on error, {@link OperationNotSupportedSocketException} if not supported.
+   */
+  static native void createNetlinkSocket(FileDescriptor fd, int protocol) throws IOException;
+
+  /**
+   * Returns the inode number of the given file descriptor, as returned by {@code fstat(2)}.
+   *
+   * @param fd The file descriptor.
+   * @return The inode number, or {@code 0} if not available on this platform.
+   * @throws IOException on error.
+   */
+  static native long inode(FileDescriptor fd) throws IOException;
+
+  /**
+   * Restricts the calling thread to the given CPU, where supported (Linux {@code sched_setaffinity}).
+   *
+   * @param cpu The CPU index.
+   * @return {@code true} if the affinity was set, {@code false} if unsupported or not permitted.
+   */
+  static native boolean setCurrentThreadAffinity(int cpu);
+
+  /**
+   * Returns the CPUs the calling thread may run on, where supported (Linux
+   * {@code sched_getaffinity}). This takes restrictions via {@code taskset}, cgroups/cpusets etc.
+   * into account, unlike {@link Runtime#availableProcessors()}, which only returns a count.
+   *
+   * @return The CPU indices, in ascending order, or {@code null} if unsupported.
+   */
+  static native int[] getCurrentThreadAffinity();
+
   static void setLoaded(boolean successful) {
     LOADED.compareAndSet(false, successful);
   }
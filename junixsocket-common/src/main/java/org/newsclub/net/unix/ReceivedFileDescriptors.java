@@ -0,0 +1,214 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.FileDescriptor;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps track of file descriptors received via ancillary messages.
+ * <p>
+ * Received descriptors are queued in a pre-sized, lock-free ring buffer (a bounded MPMC queue as
+ * described by Dmitry Vyukov) until they are retrieved by the user. Should the ring buffer be full,
+ * descriptors spill over into a synchronized overflow queue.
+ * <p>
+ * In addition, all received descriptors are registered in a table, so they can be closed when the
+ * socket is closed. Slots whose descriptors have been closed already are reused, so no explicit
+ * deregistration (and no per-descriptor cleanup hook) is necessary. The table is guarded by a lock,
+ * so that a registration cannot get lost while the table is being grown.
+ *
+ * @author Christian Kohlschütter
+ */
+final class ReceivedFileDescriptors {
+  private final int mask;
+  private final AtomicLongArray sequence;
+  private final AtomicReferenceArray<FileDescriptor> ring;
+  private final AtomicLong enqueuePos = new AtomicLong();
+  private final AtomicLong dequeuePos = new AtomicLong();
+
+  private final Object overflowLock = new Object();
+  private ArrayDeque<FileDescriptor> overflow = null; // guarded by overflowLock
+  private volatile int overflowSize = 0;
+
+  private final Object openLock = new Object();
+  private FileDescriptor[] open; // guarded by openLock
+  private int openHint = 0; // guarded by openLock
+
+  /**
+   * Creates a new instance.
+   *
+   * @param capacity The expected maximum number of pending descriptors (will be rounded up to the
+   *          next power of two).
+   */
+  ReceivedFileDescriptors(int capacity) {
+    int cap = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.mask = cap - 1;
+    this.sequence = new AtomicLongArray(cap);
+    for (int i = 0; i < cap; i++) {
+      sequence.set(i, i);
+    }
+    this.ring = new AtomicReferenceArray<>(cap);
+    this.open = new FileDescriptor[cap];
+  }
+
+  /**
+   * Adds a newly received file descriptor.
+   *
+   * @param fd The file descriptor.
+   */
+  void add(FileDescriptor fd) {
+    register(fd);
+    if (overflowSize != 0 || !offer(fd)) {
+      synchronized (overflowLock) {
+        if (overflow == null) {
+          overflow = new ArrayDeque<>();
+        }
+        overflow.add(fd);
+        overflowSize = overflow.size();
+      }
+    }
+  }
+
+  /**
+   * Retrieves and removes the oldest pending file descriptor.
+   *
+   * @return The file descriptor, or {@code null} if there are none pending.
+   */
+  FileDescriptor poll() {
+    FileDescriptor fd = pollRing();
+    if (fd != null || overflowSize == 0) {
+      return fd;
+    }
+    synchronized (overflowLock) {
+      fd = overflow.poll();
+      overflowSize = overflow.size();
+      return fd;
+    }
+  }
+
+  /**
+   * Returns an estimate of the number of pending file descriptors.
+   *
+   * @return The estimated number.
+   */
+  int size() {
+    long n = enqueuePos.get() - dequeuePos.get();
+    return (int) Math.max(0, Math.min(n, mask + 1)) + overflowSize;
+  }
+
+  private boolean offer(FileDescriptor fd) {
+    long pos = enqueuePos.get();
+    int idx;
+    while (true) { // NOPMD.WhileLoopWithLiteralBoolean
+      idx = (int) (pos & mask);
+      long dif = sequence.get(idx) - pos;
+      if (dif == 0) {
+        if (enqueuePos.compareAndSet(pos, pos + 1)) {
+          break;
+        }
+        pos = enqueuePos.get();
+      } else if (dif < 0) {
+        return false; // full
+      } else {
+        pos = enqueuePos.get();
+      }
+    }
+    ring.lazySet(idx, fd);
+    sequence.set(idx, pos + 1);
+    return true;
+  }
+
+  private FileDescriptor pollRing() {
+    long pos = dequeuePos.get();
+    int idx;
+    while (true) { // NOPMD.WhileLoopWithLiteralBoolean
+      idx = (int) (pos & mask);
+      long dif = sequence.get(idx) - (pos + 1);
+      if (dif == 0) {
+        if (dequeuePos.compareAndSet(pos, pos + 1)) {
+          break;
+        }
+        pos = dequeuePos.get();
+      } else if (dif < 0) {
+        return null; // empty
+      } else {
+        pos = dequeuePos.get();
+      }
+    }
+    FileDescriptor fd = ring.get(idx);
+    ring.lazySet(idx, null);
+    sequence.set(idx, pos + mask + 1);
+    return fd;
+  }
+
+  private void register(FileDescriptor fd) {
+    synchronized (openLock) {
+      FileDescriptor[] table = open;
+      int len = table.length;
+      for (int i = 0; i < len; i++) {
+        int idx = (openHint + i) & (len - 1);
+        FileDescriptor existing = table[idx];
+        if (existing == null || !existing.valid()) {
+          table[idx] = fd;
+          openHint = idx + 1;
+          return;
+        }
+      }
+      grow();
+      open[openHint++] = fd;
+    }
+  }
+
+  private void grow() {
+    FileDescriptor[] table = open;
+    FileDescriptor[] newTable = new FileDescriptor[table.length * 2];
+    int n = 0;
+    for (FileDescriptor fd : table) {
+      if (fd != null && fd.valid()) {
+        newTable[n++] = fd;
+      }
+    }
+    open = newTable;
+    openHint = n;
+  }
+
+  /**
+   * Closes all received file descriptors that have not been closed yet, including those that have
+   * already been retrieved.
+   */
+  void closeAll() {
+    FileDescriptor[] table;
+    synchronized (openLock) {
+      table = open;
+      open = new FileDescriptor[table.length];
+      openHint = 0;
+    }
+    for (FileDescriptor fd : table) {
+      if (fd != null && fd.valid()) {
+        try {
+          NativeUnixSocket.close(fd);
+        } catch (Exception e) {
+          // ignore
+        }
+      }
+    }
+  }
+}
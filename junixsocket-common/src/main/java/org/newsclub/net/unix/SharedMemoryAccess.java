@@ -0,0 +1,70 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Ordered accesses to shared memory that is mapped into another process, such as the header fields
+ * of {@link AFUNIXSharedMemoryChannel}'s ring buffers.
+ * <p>
+ * All indices must be naturally aligned, and the buffer must be a direct buffer.
+ *
+ * @author Christian Kohlschütter
+ */
+final class SharedMemoryAccess {
+  private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class,
+      ByteOrder.nativeOrder());
+  private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+      ByteOrder.nativeOrder());
+
+  private SharedMemoryAccess() {
+    throw new IllegalStateException("No instances");
+  }
+
+  static int getIntVolatile(ByteBuffer bb, int index) {
+    return (int) INTS.getVolatile(bb, index);
+  }
+
+  static void putIntVolatile(ByteBuffer bb, int index, int value) {
+    INTS.setVolatile(bb, index, value);
+  }
+
+  static long getLongAcquire(ByteBuffer bb, int index) {
+    return (long) LONGS.getAcquire(bb, index);
+  }
+
+  static void putLongRelease(ByteBuffer bb, int index, long value) {
+    LONGS.setRelease(bb, index, value);
+  }
+
+  static long getLongVolatile(ByteBuffer bb, int index) {
+    return (long) LONGS.getVolatile(bb, index);
+  }
+
+  static void putLongVolatile(ByteBuffer bb, int index, long value) {
+    LONGS.setVolatile(bb, index, value);
+  }
+
+  static void onSpinWait() {
+    Thread.onSpinWait();
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Support for systemd-style socket activation, i.e., adopting listening sockets that were passed to
+ * this process by a service manager via the {@code LISTEN_FDS}, {@code LISTEN_PID} and
+ * {@code LISTEN_FDNAMES} environment variables.
+ * <p>
+ * The passed file descriptors start at {@code 3} ({@code SD_LISTEN_FDS_START}), and are already
+ * bound and listening. They can be of any supported address family (e.g., AF_UNIX, AF_TIPC,
+ * AF_VSOCK).
+ *
+ * @author Christian Kohlschütter
+ * @see <a href="https://www.freedesktop.org/software/systemd/man/latest/sd_listen_fds.html">
+ *      sd_listen_fds(3)</a>
+ */
+final class SocketActivation {
+  static final int LISTEN_FDS_START = 3;
+
+  /**
+   * The name assigned to sockets without a corresponding entry in {@code LISTEN_FDNAMES}.
+   */
+  static final String UNKNOWN_NAME = "unknown";
+
+  private static List<InheritedServerSocket> inheritedServerSockets;
+
+  static final class InheritedServerSocket {
+    private final String name;
+    private final AFServerSocket<?> socket;
+
+    InheritedServerSocket(String name, AFServerSocket<?> socket) {
+      this.name = name;
+      this.socket = socket;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    AFServerSocket<?> getSocket() {
+      return socket;
+    }
+  }
+
+  private SocketActivation() {
+    throw new IllegalStateException("No instances");
+  }
+
+  /**
+   * Returns the listening sockets passed to this process. The file descriptors are adopted upon
+   * the first call; subsequent calls return the same instances.
+   *
+   * @return The list of inherited server sockets (may be empty).
+   * @throws IOException on error.
+   */
+  static synchronized List<InheritedServerSocket> inheritedServerSockets() throws IOException {
+    if (inheritedServerSockets == null) {
+      inheritedServerSockets = Collections.unmodifiableList(adopt(System.getenv()));
+    }
+    return inheritedServerSockets;
+  }
+
+  static List<InheritedServerSocket> adopt(Map<String, String> env) throws IOException {
+    int numFds = parseListenFds(env, ProcessUtil.getPid());
+    if (numFds <= 0) {
+      return Collections.emptyList();
+    }
+
+    String fdNames = env.get("LISTEN_FDNAMES");
+    String[] names = fdNames == null ? new String[0] : fdNames.split(":", -1);
+
+    List<InheritedServerSocket> list = new ArrayList<>(numFds);
+    for (int i = 0; i < numFds; i++) {
+      String name = i < names.length && !names[i].isEmpty() ? names[i] : UNKNOWN_NAME;
+
+      FileDescriptor fdObj = new FileDescriptor();
+      NativeUnixSocket.initFD(fdObj, LISTEN_FDS_START + i);
+
+      AFServerSocket<?> socket;
+      try {
+        socket = FileDescriptorCast.using(fdObj).as(AFServerSocket.class);
+      } catch (ClassCastException | SocketException e) {
+        // not a listening stream socket (e.g., a datagram socket, a FIFO, or an accepted
+        // connection)
+        continue;
+      }
+
+      // the socket file is owned by the service manager
+      socket.setDeleteOnClose(false);
+
+      list.add(new InheritedServerSocket(name, socket));
+    }
+    return list;
+  }
+
+  /**
+   * Returns the number of file descriptors passed to the process with the given ID.
+   * <p>
+   * Like {@code sd_listen_fds(3)}, sockets are only accepted if {@code LISTEN_PID} is set and
+   * matches the current process. If the current process ID cannot be determined, no sockets are
+   * accepted, since they may have been meant for another process (e.g., our parent).
+   *
+   * @param env The environment.
+   * @param pid The current process ID, or {@code -1} if unknown.
+   * @return The number of passed file descriptors, or {@code 0}.
+   */
+  static int parseListenFds(Map<String, String> env, long pid) {
+    String listenFds = env.get("LISTEN_FDS");
+    String listenPid = env.get("LISTEN_PID");
+    if (listenFds == null || listenPid == null || pid == -1) {
+      return 0;
+    }
+
+    try {
+      if (Long.parseLong(listenPid) != pid) {
+        // meant for another process
+        return 0;
+      }
+      return Integer.parseInt(listenFds);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
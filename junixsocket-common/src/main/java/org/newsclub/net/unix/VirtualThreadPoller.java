@@ -42,7 +42,7 @@ interface VirtualThreadPoller {
    * @param mode The mode (bitmask of {@link SelectionKey#OP_READ}, {@link SelectionKey#OP_WRITE},
    *          {@link SelectionKey#OP_ACCEPT}, {@link SelectionKey#OP_CONNECT})
    * @param now The refence time (in millis) for the timeout
-   * @param timeout (in seconds), or 0 for infinite
+   * @param timeout (in milliseconds), or 0 for infinite
    * @param closeOnInterrupt Callback to call upon interrupt (usually to close the resource working
    *          on the file descriptor)
    * @throws SocketTimeoutException on timeout
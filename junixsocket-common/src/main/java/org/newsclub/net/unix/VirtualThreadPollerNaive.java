@@ -27,6 +27,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.LockSupport;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -35,12 +37,14 @@ import org.newsclub.net.unix.AFSelector.PollFd;
 /**
  * "Naive" implementation of {@link VirtualThreadPoller}, using
  * {@link NativeUnixSocket#poll(PollFd, int)} on non-virtual threads.
+ * <p>
+ * Timeouts are enforced with millisecond precision via {@link AFTimerWheel#getDefault()}, which
+ * unparks the waiting thread once its deadline has passed.
  *
  * @author Christian Kohlschütter
  */
 final class VirtualThreadPollerNaive implements VirtualThreadPoller {
-  private static final int POLL_INTERVAL_MILLIS = 1_000; // should remain at 1 second to simplify
-                                                         // socket timeout handling
+  private static final int POLL_INTERVAL_MILLIS = 1_000;
 
   private static final Map<FileDescriptor, PollJob> POLL_JOBS = new ConcurrentHashMap<>();
 
@@ -71,8 +75,18 @@ final class VirtualThreadPollerNaive implements VirtualThreadPoller {
           Thread thread = Thread.currentThread();
           PollFd pfd = new PollFd(new FileDescriptor[] {fd}, new int[] {mode});
           do {
+            int pollTimeout = POLL_INTERVAL_MILLIS;
+            int timeoutMillis = timeout.get();
+            if (timeoutMillis > 0) {
+              long remaining = timeoutMillis - (System.currentTimeMillis() - now);
+              if (remaining <= 0) {
+                // handle in calling thread
+                break;
+              }
+              pollTimeout = (int) Math.min(pollTimeout, remaining);
+            }
             try {
-              NativeUnixSocket.poll(pfd, POLL_INTERVAL_MILLIS);
+              NativeUnixSocket.poll(pfd, pollTimeout);
             } catch (IOException e) {
               return e;
             }
@@ -82,14 +96,6 @@ final class VirtualThreadPollerNaive implements VirtualThreadPoller {
             if (pfd.rops[0] != 0) {
               break;
             }
-
-            int timeoutSecs = timeout.get();
-            if (timeoutSecs > 0) {
-              if (((System.currentTimeMillis() - now) / 1_000) >= timeoutSecs) {
-                // handle in calling thread
-                break;
-              }
-            }
           } while (true); // NOPMD.WhileLoopWithLiteralBoolean
         } finally {
           Thread threadToWake = null;
@@ -121,10 +127,31 @@ final class VirtualThreadPollerNaive implements VirtualThreadPoller {
         timeout));
     AFFuture<@Nullable IOException> future = job.trigger(virtualThread);
 
+    final AtomicBoolean timedOut;
+    final AFTimerWheel.Timeout wheelTimeout;
+    int timeoutMillis = timeout.get();
+    if (timeoutMillis > 0) {
+      timedOut = new AtomicBoolean(false);
+      wheelTimeout = AFTimerWheel.getDefault().schedule(() -> {
+        timedOut.set(true);
+        LockSupport.unpark(virtualThread);
+      }, timeoutMillis - (System.currentTimeMillis() - now), TimeUnit.MILLISECONDS);
+    } else {
+      timedOut = null;
+      wheelTimeout = null;
+    }
+
     LockSupport.park();
+    if (wheelTimeout != null) {
+      wheelTimeout.cancel();
+    }
     if (virtualThread.isInterrupted()) {
       throw SocketClosedByInterruptException.newInstanceAndClose(closeOnInterrupt);
     }
+    if (timedOut != null && timedOut.get()) {
+      // don't wait for the poll job; it will terminate by itself at the deadline
+      throw new SocketTimeoutException();
+    }
 
     try {
       IOException ex = future.get();
@@ -138,9 +165,9 @@ final class VirtualThreadPollerNaive implements VirtualThreadPoller {
       throw SocketClosedByInterruptException.newInstanceAndClose(closeOnInterrupt); // NOPMD.PreserveStackTrace
     }
 
-    int timeoutSecs = timeout.get();
-    if (timeoutSecs > 0) {
-      if (((System.currentTimeMillis() - now) / 1_000) >= timeoutSecs) {
+    timeoutMillis = timeout.get();
+    if (timeoutMillis > 0) {
+      if ((System.currentTimeMillis() - now) >= timeoutMillis) {
         throw new SocketTimeoutException();
       }
     }
@@ -0,0 +1,352 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+
+/**
+ * Direct {@code recv(2)}/{@code send(2)} calls via the Foreign Function &amp; Memory API, bypassing
+ * JNI for plain data transfers on stream sockets.
+ * <p>
+ * The semantics mirror {@code receive.c}/{@code send.c}; errors are turned into exceptions by the
+ * JNI library, so the exception types remain the same as with the JNI-only code path.
+ * <p>
+ * This backend is only enabled on Linux on x86_64, aarch64 and riscv64 (whose errno and flag
+ * values are hard-coded below), and only when native access has been granted to junixsocket (e.g.,
+ * {@code --enable-native-access=org.newsclub.net.unix}, or
+ * {@code --enable-native-access=ALL-UNNAMED} on the classpath), so no "restricted method" warnings
+ * are emitted. It can be disabled via the system property
+ * {@code org.newsclub.net.unix.ffm.disabled=true}. Conversely, with
+ * {@code org.newsclub.net.unix.ffm.required=true}, junixsocket fails to initialize if this backend
+ * cannot be used (e.g., for testing).
+ *
+ * @author Christian Kohlschütter
+ */
+final class NativeForeignIO {
+  private static final String PROP_DISABLED = "org.newsclub.net.unix.ffm.disabled";
+  private static final String PROP_REQUIRED = "org.newsclub.net.unix.ffm.required";
+
+  // Linux values (x86_64, aarch64, riscv64; other architectures, e.g. mips, differ)
+  private static final int EINTR = 4;
+  private static final int ENOENT = 2;
+  private static final int EAGAIN = 11;
+  private static final int ENOMEM = 12;
+  private static final int ENOTSOCK = 88;
+  private static final int ENOBUFS = 105;
+  private static final int MSG_PEEK = 0x2;
+  private static final int MSG_DONTWAIT = 0x40;
+
+  private static final StructLayout CAPTURE_LAYOUT;
+  private static final long ERRNO_OFFSET;
+  private static final ThreadLocal<MemorySegment> TL_CAPTURE;
+
+  private static final MethodHandle RECV;
+  private static final MethodHandle RECV_CRITICAL;
+  private static final MethodHandle READ;
+  private static final MethodHandle READ_CRITICAL;
+  private static final MethodHandle SEND;
+  private static final MethodHandle SEND_CRITICAL;
+  private static final MethodHandle WRITE;
+  private static final MethodHandle WRITE_CRITICAL;
+
+  private static final boolean AVAILABLE;
+
+  static {
+    StructLayout captureLayout = null;
+    long errnoOffset = 0;
+    MethodHandle recv = null;
+    MethodHandle recvCritical = null;
+    MethodHandle read = null;
+    MethodHandle readCritical = null;
+    MethodHandle send = null;
+    MethodHandle sendCritical = null;
+    MethodHandle write = null;
+    MethodHandle writeCritical = null;
+    boolean available = false;
+
+    if (isEnabled()) {
+      try {
+        Linker linker = Linker.nativeLinker();
+        SymbolLookup libc = linker.defaultLookup();
+
+        captureLayout = Linker.Option.captureStateLayout();
+        errnoOffset = captureLayout.byteOffset(MemoryLayout.PathElement.groupElement("errno"));
+
+        Linker.Option captureErrno = Linker.Option.captureCallState("errno");
+        Linker.Option critical = Linker.Option.critical(true);
+
+        // ssize_t recv(int, void *, size_t, int), ssize_t send(int, const void *, size_t, int)
+        FunctionDescriptor fdRecvSend = FunctionDescriptor.of(ValueLayout.JAVA_LONG,
+            ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT);
+        // ssize_t read(int, void *, size_t), ssize_t write(int, const void *, size_t)
+        FunctionDescriptor fdReadWrite = FunctionDescriptor.of(ValueLayout.JAVA_LONG,
+            ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG);
+
+        MemorySegment recvAddr = libc.find("recv").orElseThrow();
+        MemorySegment readAddr = libc.find("read").orElseThrow();
+        MemorySegment sendAddr = libc.find("send").orElseThrow();
+        MemorySegment writeAddr = libc.find("write").orElseThrow();
+
+        recv = linker.downcallHandle(recvAddr, fdRecvSend, captureErrno);
+        recvCritical = linker.downcallHandle(recvAddr, fdRecvSend, captureErrno, critical);
+        read = linker.downcallHandle(readAddr, fdReadWrite, captureErrno);
+        readCritical = linker.downcallHandle(readAddr, fdReadWrite, captureErrno, critical);
+        send = linker.downcallHandle(sendAddr, fdRecvSend, captureErrno);
+        sendCritical = linker.downcallHandle(sendAddr, fdRecvSend, captureErrno, critical);
+        write = linker.downcallHandle(writeAddr, fdReadWrite, captureErrno);
+        writeCritical = linker.downcallHandle(writeAddr, fdReadWrite, captureErrno, critical);
+
+        available = true;
+      } catch (RuntimeException | LinkageError e) {
+        available = false;
+      }
+    }
+
+    CAPTURE_LAYOUT = captureLayout;
+    ERRNO_OFFSET = errnoOffset;
+    TL_CAPTURE = available ? ThreadLocal.withInitial(() -> Arena.ofAuto().allocate(
+        CAPTURE_LAYOUT)) : null;
+    RECV = recv;
+    RECV_CRITICAL = recvCritical;
+    READ = read;
+    READ_CRITICAL = readCritical;
+    SEND = send;
+    SEND_CRITICAL = sendCritical;
+    WRITE = write;
+    WRITE_CRITICAL = writeCritical;
+    AVAILABLE = available;
+
+    if (!available && Boolean.parseBoolean(System.getProperty(PROP_REQUIRED, "false"))) {
+      throw new IllegalStateException("Foreign Function & Memory backend is required ("
+          + PROP_REQUIRED + ") but not available");
+    }
+  }
+
+  private NativeForeignIO() {
+    throw new IllegalStateException("No instances");
+  }
+
+  private static boolean isEnabled() {
+    if (Boolean.parseBoolean(System.getProperty(PROP_DISABLED, "false"))) {
+      return false;
+    }
+    if (!"Linux".equals(System.getProperty("os.name"))) {
+      return false;
+    }
+    switch (System.getProperty("os.arch", "")) {
+      case "amd64":
+      case "x86_64":
+      case "aarch64":
+      case "riscv64":
+        break;
+      default:
+        return false;
+    }
+    // we still need the JNI library for everything else (and for turning errors into exceptions)
+    return NativeUnixSocket.isLoaded() && NativeForeignIO.class.getModule()
+        .isNativeAccessEnabled();
+  }
+
+  /**
+   * Checks if this backend can be used.
+   *
+   * @return {@code true} if so.
+   */
+  static boolean isAvailable() {
+    return AVAILABLE;
+  }
+
+  /**
+   * Checks if heap {@link ByteBuffer}s can be passed directly (without copying) for the given
+   * options.
+   * <p>
+   * This is only the case for non-blocking operations, since heap memory must not be accessed from
+   * a potentially blocking native call.
+   *
+   * @param options The options.
+   * @return {@code true} if so.
+   */
+  static boolean supportsHeapBuffers(int options) {
+    return AVAILABLE && (options & NativeUnixSocket.OPT_NON_BLOCKING) != 0;
+  }
+
+  private static MemorySegment segment(ByteBuffer buf, int offset, int length) {
+    return MemorySegment.ofBuffer(buf).asSlice(offset - buf.position(), length);
+  }
+
+  private static int errno(MemorySegment capture) {
+    return capture.get(ValueLayout.JAVA_INT, ERRNO_OFFSET);
+  }
+
+  /**
+   * Receives data from a stream socket, like {@code NativeUnixSocket.receive} without sender
+   * address or ancillary data.
+   *
+   * @param fdesc The file descriptor (used for error handling).
+   * @param fd The native file descriptor number.
+   * @param buf The buffer (see {@link #supportsHeapBuffers(int)}).
+   * @param offset The offset in the buffer, at or after its position.
+   * @param length The maximum number of bytes to receive.
+   * @param options The options.
+   * @return The number of bytes received, {@code 0} if no data is available on a non-blocking
+   *         socket, or {@code -1} upon EOF.
+   * @throws IOException on error.
+   */
+  static int receive(FileDescriptor fdesc, int fd, ByteBuffer buf, int offset, int length,
+      int options) throws IOException {
+    final boolean nonBlocking = (options & NativeUnixSocket.OPT_NON_BLOCKING) != 0;
+    final boolean peek = (options & NativeUnixSocket.OPT_PEEK) != 0;
+    final MemorySegment seg = segment(buf, offset, length);
+    final MemorySegment capture = TL_CAPTURE.get();
+
+    long count;
+    int errnum = 0;
+    try {
+      do {
+        if ((options & NativeUnixSocket.OPT_NON_SOCKET) != 0 && !peek) {
+          count = read(capture, fd, seg, length, nonBlocking);
+        } else {
+          int flags = peek ? MSG_PEEK : 0;
+          if (nonBlocking) {
+            count = (long) RECV_CRITICAL.invokeExact(capture, fd, seg, (long) length, flags
+                | MSG_DONTWAIT);
+          } else {
+            count = (long) RECV.invokeExact(capture, fd, seg, (long) length, flags);
+          }
+          if (count == -1 && errno(capture) == ENOTSOCK) {
+            // unexpected non-socket, try again with read
+            count = read(capture, fd, seg, length, nonBlocking);
+          }
+        }
+        if (count == -1) {
+          errnum = errno(capture);
+        }
+      } while (count == -1 && errnum == EINTR);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) { // NOPMD.AvoidCatchingThrowable
+      throw new IllegalStateException(e);
+    }
+
+    if (count > 0) {
+      return (int) count;
+    } else if (count == 0) {
+      // end of stream
+      return -1;
+    } else if (errnum == EAGAIN) {
+      // no data on non-blocking socket, or receive timeout on blocking socket
+      return nonBlocking ? 0 : -1;
+    } else if (errnum == ENOENT) {
+      return -1;
+    } else {
+      NativeUnixSocket.throwErrnumException(errnum, fdesc);
+      return -1;
+    }
+  }
+
+  private static long read(MemorySegment capture, int fd, MemorySegment seg, int length,
+      boolean nonBlocking) throws Throwable {
+    if (nonBlocking) {
+      return (long) READ_CRITICAL.invokeExact(capture, fd, seg, (long) length);
+    } else {
+      return (long) READ.invokeExact(capture, fd, seg, (long) length);
+    }
+  }
+
+  /**
+   * Sends data to a stream socket, like {@code NativeUnixSocket.send} without target address or
+   * ancillary data.
+   *
+   * @param fdesc The file descriptor (used for error handling).
+   * @param fd The native file descriptor number.
+   * @param buf The buffer (see {@link #supportsHeapBuffers(int)}).
+   * @param offset The offset in the buffer, at or after its position.
+   * @param length The maximum number of bytes to send.
+   * @param options The options.
+   * @return The number of bytes sent, or {@code 0} if the send buffer is full on a non-blocking
+   *         socket.
+   * @throws IOException on error.
+   */
+  static int send(FileDescriptor fdesc, int fd, ByteBuffer buf, int offset, int length,
+      int options) throws IOException {
+    final boolean nonBlocking = (options & NativeUnixSocket.OPT_NON_BLOCKING) != 0;
+    final MemorySegment seg = segment(buf, offset, length);
+    final MemorySegment capture = TL_CAPTURE.get();
+
+    long count = -1;
+    int errnum = 0;
+    try {
+      for (int loop = 0; loop < 3; loop++) {
+        if ((options & NativeUnixSocket.OPT_NON_SOCKET) != 0) {
+          count = write(capture, fd, seg, length, nonBlocking);
+        } else {
+          if (nonBlocking) {
+            count = (long) SEND_CRITICAL.invokeExact(capture, fd, seg, (long) length,
+                MSG_DONTWAIT);
+          } else {
+            count = (long) SEND.invokeExact(capture, fd, seg, (long) length, 0);
+          }
+          if (count == -1 && errno(capture) == ENOTSOCK) {
+            // unexpected non-socket, try again with write
+            count = write(capture, fd, seg, length, nonBlocking);
+          }
+        }
+        if (count >= 0) {
+          break;
+        }
+        errnum = errno(capture);
+        if (errnum != EINTR) {
+          break;
+        }
+      }
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) { // NOPMD.AvoidCatchingThrowable
+      throw new IllegalStateException(e);
+    }
+
+    if (count >= 0) {
+      return (int) count;
+    } else if (errnum == EAGAIN || ((errnum == ENOBUFS || errnum == ENOMEM) && nonBlocking)) {
+      return 0;
+    } else {
+      NativeUnixSocket.throwErrnumException(errnum, fdesc);
+      return 0;
+    }
+  }
+
+  private static long write(MemorySegment capture, int fd, MemorySegment seg, int length,
+      boolean nonBlocking) throws Throwable {
+    if (nonBlocking) {
+      return (long) WRITE_CRITICAL.invokeExact(capture, fd, seg, (long) length);
+    } else {
+      return (long) WRITE.invokeExact(capture, fd, seg, (long) length);
+    }
+  }
+}
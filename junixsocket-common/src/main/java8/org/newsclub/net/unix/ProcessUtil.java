@@ -0,0 +1,46 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Some process-related helper methods.
+ *
+ * @author Christian Kohlschütter
+ */
+final class ProcessUtil {
+  private ProcessUtil() {
+    throw new IllegalStateException("No instances");
+  }
+
+  /**
+   * Returns the process ID of the current process.
+   *
+   * @return The process ID, or {@code -1} if it cannot be determined.
+   */
+  static long getPid() {
+    // no ProcessHandle in Java 8
+    try {
+      return Long.parseLong(new File("/proc/self").getCanonicalFile().getName());
+    } catch (IOException | NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Ordered accesses to shared memory that is mapped into another process, such as the header fields
+ * of {@link AFUNIXSharedMemoryChannel}'s ring buffers.
+ * <p>
+ * All indices must be naturally aligned, and the buffer must be a direct buffer.
+ * <p>
+ * Java 7/8 lack {@code VarHandle}s, so plain buffer accesses are surrounded by explicit memory
+ * fences: {@code sun.misc.Unsafe}'s {@code loadFence}, {@code storeFence} and {@code fullFence}
+ * where available (Java 8), or otherwise a volatile write followed by a volatile read of the same
+ * field, which acts as a full fence.
+ *
+ * @author Christian Kohlschütter
+ */
+final class SharedMemoryAccess {
+  private static final MethodHandle LOAD_FENCE;
+  private static final MethodHandle STORE_FENCE;
+  private static final MethodHandle FULL_FENCE;
+
+  private static volatile int sync;
+
+  static {
+    MethodHandle loadFence = null;
+    MethodHandle storeFence = null;
+    MethodHandle fullFence = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field f = unsafeClass.getDeclaredField("theUnsafe");
+      f.setAccessible(true);
+      Object unsafe = f.get(null);
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      loadFence = lookup.unreflect(unsafeClass.getMethod("loadFence")).bindTo(unsafe);
+      storeFence = lookup.unreflect(unsafeClass.getMethod("storeFence")).bindTo(unsafe);
+      fullFence = lookup.unreflect(unsafeClass.getMethod("fullFence")).bindTo(unsafe);
+    } catch (Exception | LinkageError e) {
+      // Java 7, or Unsafe is not accessible; use the volatile fallback
+      loadFence = null;
+      storeFence = null;
+      fullFence = null;
+    }
+    LOAD_FENCE = loadFence;
+    STORE_FENCE = storeFence;
+    FULL_FENCE = fullFence;
+  }
+
+  private SharedMemoryAccess() {
+    throw new IllegalStateException("No instances");
+  }
+
+  private static ByteBuffer ordered(ByteBuffer bb) {
+    if (bb.order() != ByteOrder.nativeOrder()) {
+      throw new IllegalArgumentException("Buffer must be in native byte order");
+    }
+    return bb;
+  }
+
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  private static void fence(MethodHandle unsafeFence) {
+    if (unsafeFence == null) {
+      volatileFence();
+      return;
+    }
+    try {
+      unsafeFence.invokeExact();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) { // NOPMD
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static int volatileFence() {
+    // a volatile store followed by a volatile load (StoreLoad), which no access can be reordered
+    // across
+    sync = 0;
+    return sync;
+  }
+
+  static int getIntVolatile(ByteBuffer bb, int index) {
+    fence(FULL_FENCE);
+    int v = ordered(bb).getInt(index);
+    fence(LOAD_FENCE);
+    return v;
+  }
+
+  static void putIntVolatile(ByteBuffer bb, int index, int value) {
+    fence(STORE_FENCE);
+    ordered(bb).putInt(index, value);
+    fence(FULL_FENCE);
+  }
+
+  static long getLongAcquire(ByteBuffer bb, int index) {
+    long v = ordered(bb).getLong(index);
+    fence(LOAD_FENCE);
+    return v;
+  }
+
+  static void putLongRelease(ByteBuffer bb, int index, long value) {
+    fence(STORE_FENCE);
+    ordered(bb).putLong(index, value);
+  }
+
+  static long getLongVolatile(ByteBuffer bb, int index) {
+    fence(FULL_FENCE);
+    return getLongAcquire(bb, index);
+  }
+
+  static void putLongVolatile(ByteBuffer bb, int index, long value) {
+    putLongRelease(bb, index, value);
+    fence(FULL_FENCE);
+  }
+
+  static void onSpinWait() {
+    // Thread.onSpinWait is not available
+  }
+}
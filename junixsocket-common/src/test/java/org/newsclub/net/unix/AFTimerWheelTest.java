@@ -0,0 +1,114 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class AFTimerWheelTest {
+  @Test
+  public void testExpiry() throws Exception {
+    try (AFTimerWheel wheel = new AFTimerWheel("test", 1, TimeUnit.MILLISECONDS, 64)) {
+      int n = 1000;
+      CountDownLatch cdl = new CountDownLatch(n);
+      AtomicInteger early = new AtomicInteger();
+      for (int i = 0; i < n; i++) {
+        long delay = i % 200;
+        long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        wheel.schedule(() -> {
+          if (System.nanoTime() < due) {
+            early.incrementAndGet();
+          }
+          cdl.countDown();
+        }, delay, TimeUnit.MILLISECONDS);
+      }
+      assertTrue(cdl.await(5, TimeUnit.SECONDS));
+      assertEquals(0, early.get());
+      assertEquals(0, wheel.getPendingCount());
+    }
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    try (AFTimerWheel wheel = new AFTimerWheel("test", 1, TimeUnit.MILLISECONDS, 64)) {
+      AtomicInteger fired = new AtomicInteger();
+      AFTimerWheel.Timeout timeout = wheel.schedule(fired::incrementAndGet, 20,
+          TimeUnit.MILLISECONDS);
+      assertTrue(timeout.cancel());
+      assertFalse(timeout.cancel());
+      assertTrue(timeout.isCancelled());
+      assertEquals(0, wheel.getPendingCount());
+
+      Thread.sleep(50);
+      assertEquals(0, fired.get());
+      assertFalse(timeout.isExpired());
+      assertFalse(timeout.reschedule(10, TimeUnit.MILLISECONDS));
+    }
+  }
+
+  @Test
+  public void testRescheduleLater() throws Exception {
+    try (AFTimerWheel wheel = new AFTimerWheel("test", 1, TimeUnit.MILLISECONDS, 16)) {
+      CountDownLatch cdl = new CountDownLatch(1);
+      AFTimerWheel.Timeout timeout = wheel.schedule(cdl::countDown, 50, TimeUnit.MILLISECONDS);
+      for (int i = 0; i < 10; i++) {
+        Thread.sleep(10);
+        assertTrue(timeout.reschedule(50, TimeUnit.MILLISECONDS));
+      }
+      assertEquals(1, cdl.getCount());
+      assertTrue(cdl.await(5, TimeUnit.SECONDS));
+      assertTrue(timeout.isExpired());
+    }
+  }
+
+  @Test
+  public void testRescheduleEarlier() throws Exception {
+    assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+      try (AFTimerWheel wheel = new AFTimerWheel("test", 1, TimeUnit.MILLISECONDS, 16)) {
+        CountDownLatch cdl = new CountDownLatch(1);
+        AFTimerWheel.Timeout timeout = wheel.schedule(cdl::countDown, 1, TimeUnit.HOURS);
+        assertTrue(timeout.reschedule(5, TimeUnit.MILLISECONDS));
+        cdl.await();
+      }
+    });
+  }
+
+  @Test
+  public void testAfterIdle() throws Exception {
+    try (AFTimerWheel wheel = new AFTimerWheel("test", 1, TimeUnit.MILLISECONDS, 16)) {
+      CountDownLatch cdl = new CountDownLatch(2);
+      wheel.schedule(cdl::countDown, 1, TimeUnit.MILLISECONDS);
+      Thread.sleep(100); // longer than one rotation
+      wheel.schedule(cdl::countDown, 1, TimeUnit.MILLISECONDS);
+      assertTrue(cdl.await(1, TimeUnit.SECONDS));
+    }
+  }
+}
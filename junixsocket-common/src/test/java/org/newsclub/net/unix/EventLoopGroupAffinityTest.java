@@ -0,0 +1,89 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Tests that {@link AFEventLoopGroup} pins its loops to the CPUs of the current affinity mask.
+ *
+ * @author Christian Kohlschütter
+ */
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class EventLoopGroupAffinityTest {
+  private static int[] affinity() {
+    int[] cpus = NativeUnixSocket.getCurrentThreadAffinity();
+    assumeTrue(cpus != null, "sched_getaffinity is not supported");
+    return cpus;
+  }
+
+  @Test
+  public void testAffinityMask() throws Exception {
+    int[] cpus = affinity();
+    assertTrue(cpus.length > 0);
+    for (int i = 1; i < cpus.length; i++) {
+      assertTrue(cpus[i - 1] < cpus[i]);
+    }
+  }
+
+  @Test
+  public void testPinningHonorsRestrictedMask() throws Exception {
+    int[] cpus = affinity();
+    // a mask that does not start at CPU 0, if possible (like a cgroup cpuset or taskset)
+    final int cpu = cpus[cpus.length - 1];
+
+    CompletableFuture<AFEventLoopGroup> groupFuture = new CompletableFuture<>();
+    Thread t = new Thread(() -> {
+      try {
+        assertTrue(NativeUnixSocket.setCurrentThreadAffinity(cpu));
+        assertArrayEquals(new int[] {cpu}, NativeUnixSocket.getCurrentThreadAffinity());
+        groupFuture.complete(AFEventLoopGroup.builder().withLoops(3).withCpuPinning(true)
+            .build());
+      } catch (Throwable e) { // NOPMD
+        groupFuture.completeExceptionally(e);
+      }
+    });
+    t.start();
+
+    try (AFEventLoopGroup group = groupFuture.get(5, TimeUnit.SECONDS)) {
+      assertNotNull(group);
+      CountDownLatch latch = new CountDownLatch(3);
+      for (AFEventLoop loop : group.loops()) {
+        loop.execute(latch::countDown);
+      }
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      for (AFEventLoop loop : group.loops()) {
+        assertTrue(loop.isPinned(), loop.toString());
+        assertTrue(loop.toString().endsWith(";cpu=" + cpu + "]"), loop.toString());
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Checks the retained heap per idle connection.
+ *
+ * @author Christian Kohlschütter
+ */
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION",
+    "DM_GC"})
+public abstract class FootprintTest<A extends SocketAddress> extends SocketTestBase<A> {
+  private static final int NUM_CONNECTIONS = 256;
+
+  protected FootprintTest(AddressSpecifics<A> asp) {
+    super(asp);
+  }
+
+  /**
+   * Returns the maximum number of bytes an idle socket (connected or accepted) may retain on the
+   * heap.
+   *
+   * @return The maximum number of bytes.
+   */
+  protected int maxBytesPerIdleSocket() {
+    return 768;
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
+  private static void closeAll(List<? extends Closeable> closeables) throws IOException {
+    for (Closeable cl : closeables) {
+      cl.close();
+    }
+    closeables.clear();
+  }
+
+  @Test
+  public void testBytesPerIdleConnection() throws Exception {
+    List<Socket> sockets = new ArrayList<>(NUM_CONNECTIONS * 2);
+    try (ServerSocket serverSocket = newServerSocketBindOn(newTempAddress())) {
+      SocketAddress addr = serverSocket.getLocalSocketAddress();
+
+      // warm up
+      for (int i = 0; i < 16; i++) {
+        Socket sock = newSocket();
+        sock.connect(addr);
+        sockets.add(sock);
+        sockets.add(serverSocket.accept());
+      }
+      closeAll(sockets);
+
+      long before = usedHeap();
+      for (int i = 0; i < NUM_CONNECTIONS; i++) {
+        Socket sock = newSocket();
+        sock.connect(addr);
+        sockets.add(sock);
+        sockets.add(serverSocket.accept());
+      }
+      long after = usedHeap();
+
+      long bytesPerSocket = (after - before) / sockets.size();
+      assertTrue(bytesPerSocket <= maxBytesPerIdleSocket(), "Idle sockets should retain at most "
+          + maxBytesPerIdleSocket() + " bytes each; got: " + bytesPerSocket);
+    } finally {
+      closeAll(sockets);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.FileDescriptor;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+
+import org.junit.jupiter.api.Test;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Measures the per-call overhead of the native methods that identify a socket by its
+ * {@link FileDescriptor}, compared to the ones that take the native file descriptor number (see
+ * {@link AFCore#FD_FASTPATH}).
+ * <p>
+ * All calls operate on an idle non-blocking socket, so they return immediately, and the numbers
+ * mostly reflect the cost of crossing the JNI boundary.
+ * <p>
+ * The test can be configured as follows (all system properties):
+ * <ul>
+ * <li><code>org.newsclub.net.unix.native-call-overhead-test.iterations</code> (default:
+ * 100000)</li>
+ * </ul>
+ *
+ * @author Christian Kohlschütter
+ */
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class NativeCallOverheadTest {
+  private static final int ITERATIONS = Integer.getInteger(
+      "org.newsclub.net.unix.native-call-overhead-test.iterations", 100000);
+
+  @FunctionalInterface
+  private interface NativeCall {
+    int call() throws Exception;
+  }
+
+  private static long nanosPerCall(String name, NativeCall call, int expected) throws Exception {
+    // warm up (class loading, JIT)
+    for (int i = 0; i < ITERATIONS; i++) {
+      assertEquals(expected, call.call());
+    }
+
+    long time = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      call.call();
+    }
+    time = System.nanoTime() - time;
+
+    long nanos = time / ITERATIONS;
+    System.out.println("NativeCallOverheadTest: " + name + ": " + nanos + " ns per call");
+    return nanos;
+  }
+
+  @Test
+  public void testPerCallOverhead() throws Exception {
+    assumeTrue(AFCore.FD_FASTPATH, "File descriptor fast path is not available");
+
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+    try {
+      AFUNIXSocketChannel ch = pair.getSocket1();
+      ch.configureBlocking(false);
+
+      FileDescriptor fd = ch.getFileDescriptor();
+      int fdNum = ch.getAFCore().fdNum();
+      assertEquals(NativeUnixSocket.getFD(fd), fdNum);
+
+      ByteBuffer buf = ByteBuffer.allocateDirect(64);
+      int opt = NativeUnixSocket.OPT_NON_BLOCKING;
+
+      nanosPerCall("noop", () -> {
+        NativeUnixSocket.noop();
+        return 0;
+      }, 0);
+      nanosPerCall("getFD", () -> NativeUnixSocket.getFD(fd), fdNum);
+
+      // nothing to receive: both return 0 (EAGAIN)
+      nanosPerCall("receive(FileDescriptor)", () -> NativeUnixSocket.receive(fd, buf, 0, 64, null,
+          opt, null, 0), 0);
+      nanosPerCall("recvFd(int)", () -> NativeUnixSocket.recvFd(fdNum, buf, 0, 64, opt), 0);
+
+      // a writable socket with nothing to read
+      AFSelector.PollFd pfd = new AFSelector.PollFd(new FileDescriptor[] {fd}, new int[] {
+          SelectionKey.OP_READ | SelectionKey.OP_WRITE});
+      int[] fds = {fdNum};
+      int[] ops = {SelectionKey.OP_READ | SelectionKey.OP_WRITE};
+      int[] rops = new int[1];
+      nanosPerCall("poll(PollFd)", () -> NativeUnixSocket.poll(pfd, 0), 1);
+      assertEquals(SelectionKey.OP_WRITE, pfd.rops[0]);
+      nanosPerCall("pollFds(int[])", () -> NativeUnixSocket.pollFds(fds, ops, rops, 0), 1);
+      assertEquals(SelectionKey.OP_WRITE, rops[0]);
+    } finally {
+      pair.close();
+    }
+  }
+}
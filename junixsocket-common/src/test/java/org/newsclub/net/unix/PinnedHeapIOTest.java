@@ -0,0 +1,133 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Tests transfers that access heap arrays directly, without copying through a direct buffer (see
+ * {@link AFCore#HEAP_PIN_THRESHOLD}).
+ *
+ * @author Christian Kohlschütter
+ */
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class PinnedHeapIOTest {
+  private static byte[] pattern(int len) {
+    byte[] b = new byte[len];
+    for (int i = 0; i < len; i++) {
+      b[i] = (byte) (i * 31 + 7);
+    }
+    return b;
+  }
+
+  @Test
+  public void testSendRecvArray() throws Exception {
+    assumeTrue(AFCore.FD_FASTPATH, "File descriptor fast path is not available");
+
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+    try {
+      int fd1 = pair.getSocket1().getAFCore().fdNum();
+      int fd2 = pair.getSocket2().getAFCore().fdNum();
+
+      // blocking sockets: never blocks while the array is pinned
+      byte[] in = new byte[16];
+      assertEquals(-2, NativeUnixSocket.recvArray(fd2, in, 0, in.length, 0));
+
+      byte[] out = pattern(10);
+      assertEquals(6, NativeUnixSocket.sendArray(fd1, out, 2, 6, 0));
+      assertEquals(4, NativeUnixSocket.recvArray(fd2, in, 3, 4,
+          NativeUnixSocket.OPT_NON_BLOCKING));
+      assertEquals(2, NativeUnixSocket.recvArray(fd2, in, 7, 9, 0));
+      assertArrayEquals(Arrays.copyOfRange(out, 2, 8), Arrays.copyOfRange(in, 3, 9));
+      assertEquals(0, in[2]);
+      assertEquals(0, in[9]);
+
+      pair.getSocket1().close();
+      assertEquals(-1, NativeUnixSocket.recvArray(fd2, in, 0, in.length, 0));
+    } finally {
+      pair.close();
+    }
+  }
+
+  @Test
+  public void testBlockingPipeIsNotPinned() throws Exception {
+    assumeTrue(AFCore.FD_FASTPATH, "File descriptor fast path is not available");
+
+    try (AFPipe pipe = AFPipe.open()) {
+      pipe.sink().write(ByteBuffer.wrap(new byte[] {42}));
+
+      int fd = NativeUnixSocket.getFD(pipe.sourceFD());
+      byte[] in = new byte[4];
+      // read(2) on a blocking pipe could block, so nothing is read
+      assertEquals(-2, NativeUnixSocket.recvArray(fd, in, 0, in.length, pipe.getOptions()));
+
+      pipe.source().configureBlocking(false);
+      assertEquals(1, NativeUnixSocket.recvArray(fd, in, 0, in.length, pipe.getOptions()
+          | NativeUnixSocket.OPT_NON_BLOCKING));
+      assertEquals(42, in[0]);
+    }
+  }
+
+  @Test
+  public void testNonBlockingHeapBuffers() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+    try {
+      pair.getSocket1().configureBlocking(false);
+      pair.getSocket2().configureBlocking(false);
+
+      for (int len : new int[] {1, 1000, AFCore.HEAP_PIN_THRESHOLD, AFCore.HEAP_PIN_THRESHOLD
+          + 1}) {
+        byte[] data = pattern(len);
+
+        // slices, so that array offsets are non-zero
+        ByteBuffer src = ByteBuffer.allocate(len + 5);
+        src.position(5);
+        src.put(data);
+        src.position(5);
+        src = src.slice();
+
+        ByteBuffer dst = ByteBuffer.allocate(len + 3);
+        dst.position(3);
+        dst = dst.slice();
+
+        while (src.hasRemaining() || dst.hasRemaining()) {
+          if (src.hasRemaining()) {
+            pair.getSocket1().write(src);
+          }
+          pair.getSocket2().read(dst);
+        }
+
+        assertArrayEquals(data, Arrays.copyOfRange(dst.array(), dst.arrayOffset(), dst
+            .arrayOffset() + len), "len=" + len);
+      }
+    } finally {
+      pair.close();
+    }
+  }
+}
@@ -19,9 +19,12 @@ package org.newsclub.net.unix;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.channels.Pipe;
 import java.nio.channels.Pipe.SinkChannel;
 import java.nio.channels.Pipe.SourceChannel;
@@ -130,4 +133,111 @@ public final class PipeTest {
     // System.out.println("AFPipe: passes/msec " + passesPerMsec);
     assertNotEquals(0, passesPerMsec);
   }
+
+  /**
+   * Tests scatter/gather I/O with mixed heap and direct buffers.
+   *
+   * @throws IOException on error.
+   */
+  @Test
+  public void testScatterGather() throws IOException {
+    for (boolean direct : new boolean[] {true, false}) {
+      try (AFPipe pipe = AFPipe.open()) {
+        ByteBuffer[] out = {
+            ByteBuffer.allocateDirect(3), direct ? ByteBuffer.allocateDirect(5) : ByteBuffer
+                .allocate(5), ByteBuffer.allocateDirect(2)};
+        byte v = 0;
+        for (ByteBuffer bb : out) {
+          while (bb.hasRemaining()) {
+            bb.put(v++);
+          }
+          bb.flip();
+        }
+        assertEquals(10, pipe.sink().write(out));
+        for (ByteBuffer bb : out) {
+          assertEquals(0, bb.remaining());
+        }
+
+        ByteBuffer[] in = {
+            ByteBuffer.allocateDirect(4), direct ? ByteBuffer.allocateDirect(4) : ByteBuffer
+                .allocate(4), ByteBuffer.allocateDirect(4)};
+        long total = 0;
+        while (total < 10) {
+          total += pipe.source().read(in);
+        }
+        assertEquals(10, total);
+        assertEquals(4, in[0].position());
+        assertEquals(4, in[1].position());
+        assertEquals(2, in[2].position());
+
+        v = 0;
+        for (ByteBuffer bb : in) {
+          bb.flip();
+          while (bb.hasRemaining()) {
+            assertEquals(v++, bb.get());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests changing the pipe capacity.
+   *
+   * @throws IOException on error.
+   */
+  @Test
+  public void testCapacity() throws IOException {
+    assumeTrue("Linux".equals(System.getProperty("os.name")), "F_SETPIPE_SZ is Linux-only");
+
+    try (AFPipe pipe = AFPipe.open()) {
+      int capacity = pipe.setCapacity(256 * 1024);
+      assertTrue(capacity >= 256 * 1024, "capacity: " + capacity);
+      assertEquals(capacity, pipe.getCapacity());
+    }
+  }
+
+  /**
+   * Tests fanning out a stream to two sockets via tee/splice, without reading it in Java.
+   *
+   * @throws IOException on error.
+   */
+  @Test
+  public void testTeeSpliceFanOut() throws IOException {
+    assumeTrue("Linux".equals(System.getProperty("os.name")), "splice/tee are Linux-only");
+
+    byte[] data = "Hello, fan-out".getBytes(StandardCharsets.UTF_8);
+
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair1 = AFUNIXSocketPair.open();
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair2 = AFUNIXSocketPair.open();
+    try (AFPipe source = AFPipe.open(); AFPipe copy = AFPipe.open();
+        AFUNIXSocketChannel out1 = pair1.getSocket1(); AFUNIXSocketChannel in1 = pair1
+            .getSocket2(); AFUNIXSocketChannel out2 = pair2.getSocket1();
+        AFUNIXSocketChannel in2 = pair2.getSocket2()) {
+      source.sink().write(ByteBuffer.wrap(data));
+
+      assertEquals(data.length, source.source().teeTo(copy.sink(), data.length));
+      assertEquals(data.length, copy.source().spliceTo(out1, data.length));
+      assertEquals(data.length, source.source().spliceTo(out2, data.length));
+
+      for (AFUNIXSocketChannel in : new AFUNIXSocketChannel[] {in1, in2}) {
+        ByteBuffer bb = ByteBuffer.allocate(data.length);
+        while (bb.hasRemaining()) {
+          in.read(bb);
+        }
+        assertEquals(new String(data, StandardCharsets.UTF_8), new String(bb.array(),
+            StandardCharsets.UTF_8));
+      }
+
+      // and back into a pipe
+      out1.write(ByteBuffer.wrap(data));
+      assertEquals(data.length, copy.sink().spliceFrom(in1, data.length));
+      ByteBuffer bb = ByteBuffer.allocate(data.length);
+      while (bb.hasRemaining()) {
+        copy.source().read(bb);
+      }
+      assertEquals(new String(data, StandardCharsets.UTF_8), new String(bb.array(),
+          StandardCharsets.UTF_8));
+    }
+  }
 }
@@ -0,0 +1,91 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class ReceivedFileDescriptorsTest {
+  private static final int THREADS = 8;
+  private static final int FDS_PER_THREAD = 100;
+
+  @Test
+  public void testConcurrentAddCloseAll() throws Exception {
+    File f = File.createTempFile("jux", ".bin");
+    List<FileInputStream> streams = new ArrayList<>();
+    try {
+      FileDescriptor[][] fds = new FileDescriptor[THREADS][FDS_PER_THREAD];
+      for (FileDescriptor[] threadFds : fds) {
+        for (int i = 0; i < FDS_PER_THREAD; i++) {
+          FileInputStream in = new FileInputStream(f); // NOPMD
+          streams.add(in);
+          threadFds[i] = in.getFD();
+        }
+      }
+
+      // a small initial capacity, so the table of open descriptors grows while adding
+      ReceivedFileDescriptors rfd = new ReceivedFileDescriptors(2);
+      CyclicBarrier barrier = new CyclicBarrier(THREADS);
+      List<CompletableFuture<Void>> futures = new ArrayList<>();
+      for (FileDescriptor[] threadFds : fds) {
+        futures.add(CompletableFuture.runAsync(() -> {
+          try {
+            barrier.await();
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+          for (FileDescriptor fd : threadFds) {
+            rfd.add(fd);
+          }
+        }, r -> new Thread(r).start()));
+      }
+      for (CompletableFuture<Void> cf : futures) {
+        cf.get(30, TimeUnit.SECONDS);
+      }
+      assertEquals(THREADS * FDS_PER_THREAD, rfd.size());
+
+      rfd.closeAll();
+      for (FileDescriptor[] threadFds : fds) {
+        for (FileDescriptor fd : threadFds) {
+          assertFalse(fd.valid(), "All registered descriptors should have been closed");
+        }
+      }
+    } finally {
+      for (FileInputStream in : streams) {
+        in.close();
+      }
+      Files.delete(f.toPath());
+    }
+  }
+}
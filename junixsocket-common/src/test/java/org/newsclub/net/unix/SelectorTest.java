@@ -32,7 +32,6 @@ import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
-import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
@@ -251,7 +250,7 @@ public abstract class SelectorTest<A extends SocketAddress> extends SocketTestBa
 
       int numAcceptable = 0;
       int numReadable = 0;
-      int numClosedChannelException = 0;
+      int numEndOfStream = 0;
 
       long timeout = 5000;
       selectLoop : while (timeout > 0) {
@@ -286,32 +285,31 @@ public abstract class SelectorTest<A extends SocketAddress> extends SocketTestBa
             if (key.isReadable()) {
               numReadable++;
               SocketChannel channel = (SocketChannel) key.channel();
-              try {
-                buffer.clear();
-                int numRead = channel.read(buffer);
-                switch (numReadable) {
-                  case 1:
-                    assertEquals("Hello", new String(buffer.array(), 0, numRead,
-                        StandardCharsets.UTF_8));
-                    break;
-                  case 2:
-                    fail("Should have thrown ClosedChannelException");
-                    break;
-                  default:
-                    fail("Should not have been reached");
-                    break;
-                }
-                break selectLoop;
-              } catch (ClosedChannelException e) {
-                // channel.close(); // not strictly necessary -- will be closed via Cleaner
-                numClosedChannelException++;
+              buffer.clear();
+              int numRead = channel.read(buffer);
+              if (numRead == -1) {
+                numEndOfStream++;
                 if (!checkInvalid) {
                   key.cancel();
                   if (numReadable >= 2) {
                     break selectLoop;
                   }
                 }
+                continue;
               }
+              switch (numReadable) {
+                case 1:
+                  assertEquals("Hello", new String(buffer.array(), 0, numRead,
+                      StandardCharsets.UTF_8));
+                  break;
+                case 2:
+                  fail("Should have reached end-of-stream");
+                  break;
+                default:
+                  fail("Should not have been reached");
+                  break;
+              }
+              break selectLoop;
             }
           }
         }
@@ -335,9 +333,9 @@ public abstract class SelectorTest<A extends SocketAddress> extends SocketTestBa
       if (!checkInvalid) {
         // invalid
       } else {
-        if (numClosedChannelException == 0) { // either the client closed and data didn't make it
-                                              // through, or the second select correctly said
-                                              // nothing was readable
+        if (numEndOfStream == 0) { // either the client closed and data didn't make it
+                                   // through, or the second select correctly said
+                                   // nothing was readable
           if (clientCloseImmediately) {
             if (numReadable != 0) {
               assertEquals(1, numReadable);
@@ -345,7 +343,7 @@ public abstract class SelectorTest<A extends SocketAddress> extends SocketTestBa
           }
         } else {
           assertEquals(2, numReadable);
-          assertEquals(1, numClosedChannelException);
+          assertEquals(1, numEndOfStream);
         }
       }
 
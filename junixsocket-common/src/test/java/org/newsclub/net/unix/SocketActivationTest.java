@@ -0,0 +1,72 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class SocketActivationTest {
+  @Test
+  public void testNoListenFds() throws Exception {
+    assertTrue(SocketActivation.adopt(Collections.<String, String> emptyMap()).isEmpty());
+  }
+
+  @Test
+  public void testOtherPid() throws Exception {
+    Map<String, String> env = new HashMap<>();
+    env.put("LISTEN_FDS", "1");
+    env.put("LISTEN_PID", "-42");
+    assertTrue(SocketActivation.adopt(env).isEmpty());
+  }
+
+  @Test
+  public void testListenPid() throws Exception {
+    Map<String, String> env = new HashMap<>();
+    env.put("LISTEN_FDS", "2");
+    // not explicitly meant for us
+    assertEquals(0, SocketActivation.parseListenFds(env, 1234));
+
+    env.put("LISTEN_PID", "1234");
+    assertEquals(2, SocketActivation.parseListenFds(env, 1234));
+    assertEquals(0, SocketActivation.parseListenFds(env, 4321));
+
+    // our own PID is unknown
+    assertEquals(0, SocketActivation.parseListenFds(env, -1));
+  }
+
+  @Test
+  public void testInvalidListenFds() throws Exception {
+    Map<String, String> env = new HashMap<>();
+    env.put("LISTEN_FDS", "abc");
+    assertTrue(SocketActivation.adopt(env).isEmpty());
+  }
+
+  @Test
+  public void testNoInheritedSockets() throws Exception {
+    // unless we're run under a socket-activating service manager
+    if (System.getenv("LISTEN_FDS") == null) {
+      assertTrue(AFServerSocket.inheritedServerSockets().isEmpty());
+    }
+  }
+}
@@ -0,0 +1,375 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFPooledSocketFactory;
+import org.newsclub.net.unix.AFPooledSocketFactory.PooledSocket;
+import org.newsclub.net.unix.AFSocket;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXServerSocket;
+import org.newsclub.net.unix.AFUNIXSocket;
+import org.newsclub.net.unix.AFUNIXSocketAddress;
+import org.newsclub.net.unix.AFUNIXSocketFactory;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@AFSocketCapabilityRequirement(AFSocketCapability.CAPABILITY_UNIX_DOMAIN)
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class AFPooledSocketFactoryTest {
+  private AFUNIXSocketAddress address;
+  private AFUNIXServerSocket server;
+  private Thread serverThread;
+  private final List<Socket> accepted = new ArrayList<>();
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    address = AFUNIXSocketAddress.ofNewTempFile();
+    server = AFUNIXServerSocket.bindOn(address);
+    serverThread = new Thread("pooled-echo-server") {
+      @Override
+      public void run() {
+        try {
+          while (!server.isClosed()) {
+            AFUNIXSocket sock = server.accept();
+            synchronized (accepted) {
+              accepted.add(sock);
+            }
+            new Thread(() -> echo(sock)).start();
+          }
+        } catch (IOException e) {
+          // server closed
+        }
+      }
+    };
+    serverThread.start();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    server.close();
+    synchronized (accepted) {
+      for (Socket sock : accepted) {
+        sock.close();
+      }
+    }
+    serverThread.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  private static void echo(Socket sock) {
+    try (InputStream in = sock.getInputStream(); OutputStream out = sock.getOutputStream()) {
+      int b;
+      while ((b = in.read()) != -1) {
+        out.write(b);
+      }
+    } catch (IOException e) {
+      // peer closed
+    }
+  }
+
+  private int acceptedCount() {
+    synchronized (accepted) {
+      return accepted.size();
+    }
+  }
+
+  private static void assertEcho(Socket sock, int b) throws IOException {
+    sock.getOutputStream().write(b);
+    assertEquals(b, sock.getInputStream().read());
+  }
+
+  private static AFPooledSocketFactory<AFUNIXSocketAddress> newFactory() {
+    return new AFPooledSocketFactory<>(new AFUNIXSocketFactory.URIScheme());
+  }
+
+  @Test
+  public void testReuse() throws Exception {
+    try (AFPooledSocketFactory<AFUNIXSocketAddress> factory = newFactory()) {
+      AFSocket<?> first;
+      try (PooledSocket sock = factory.connectTo(address)) {
+        assertEcho(sock, 1);
+        first = sock.getAFSocket();
+      }
+      assertEquals(1, factory.getIdleCount(address));
+
+      try (PooledSocket sock = factory.connectTo(address)) {
+        assertEcho(sock, 2);
+        assertSame(first, sock.getAFSocket());
+        assertEquals(0, factory.getIdleCount(address));
+      }
+      assertEquals(1, factory.getTotalCount(address));
+      assertEquals(1, acceptedCount());
+    }
+  }
+
+  @Test
+  public void testClosedSocketCannotBeUsed() throws Exception {
+    try (AFPooledSocketFactory<AFUNIXSocketAddress> factory = newFactory()) {
+      PooledSocket sock = factory.connectTo(address);
+      OutputStream out = sock.getOutputStream();
+      sock.close();
+      sock.close(); // no-op
+
+      assertTrue(sock.isClosed());
+      assertThrows(SocketException.class, () -> out.write(1));
+      assertThrows(SocketException.class, sock::getInputStream);
+      assertEquals(1, factory.getIdleCount(address));
+    }
+  }
+
+  @Test
+  public void testBrokenConnectionIsDiscarded() throws Exception {
+    try (AFPooledSocketFactory<AFUNIXSocketAddress> factory = newFactory()) {
+      AFSocket<?> first;
+      try (PooledSocket sock = factory.connectTo(address)) {
+        assertEcho(sock, 1);
+        first = sock.getAFSocket();
+      }
+
+      synchronized (accepted) {
+        for (Socket s : accepted) {
+          s.close();
+        }
+      }
+
+      // the peer has closed the connection while it was idle; the health check detects this
+      try (PooledSocket sock = factory.connectTo(address)) {
+        assertNotSame(first, sock.getAFSocket());
+        assertEcho(sock, 2);
+      }
+      assertTrue(first.isClosed());
+      assertEquals(1, factory.getTotalCount(address));
+    }
+  }
+
+  @Test
+  public void testSocketOptions() throws Exception {
+    try (AFPooledSocketFactory<AFUNIXSocketAddress> factory = newFactory()) {
+      try (PooledSocket sock = factory.connectTo(address)) {
+        assertTrue(sock.supportedOptions().contains(StandardSocketOptions.SO_SNDBUF));
+
+        assertSame(sock, sock.setOption(StandardSocketOptions.SO_SNDBUF, 65536));
+        int size = sock.getOption(StandardSocketOptions.SO_SNDBUF);
+        assertEquals(sock.getAFSocket().getSendBufferSize(), size);
+        assertEquals(size, sock.getAFSocket().getOption(StandardSocketOptions.SO_SNDBUF));
+
+        assertEcho(sock, 1);
+        sock.close();
+        assertThrows(SocketException.class, () -> sock.getOption(StandardSocketOptions.SO_SNDBUF));
+      }
+    }
+  }
+
+  @Test
+  public void testChangedSocketOptionsAreRestored() throws Exception {
+    try (AFPooledSocketFactory<AFUNIXSocketAddress> factory = newFactory()) {
+      AFSocket<?> first;
+      int timeout;
+      boolean reuseAddress;
+      try (PooledSocket sock = factory.connectTo(address)) {
+        first = sock.getAFSocket();
+        timeout = first.getSoTimeout();
+        reuseAddress = first.getReuseAddress();
+        sock.setSoTimeout(timeout + 2000);
+        sock.setReuseAddress(!reuseAddress);
+        assertEquals(timeout + 2000, first.getSoTimeout());
+      }
+
+      try (PooledSocket sock = factory.connectTo(address)) {
+        assertSame(first, sock.getAFSocket());
+        assertEquals(timeout, sock.getSoTimeout());
+        assertEquals(reuseAddress, sock.getReuseAddress());
+      }
+    }
+  }
+
+  @Test
+  public void testChangedBufferSizeIsNotReused() throws Exception {
+    try (AFPooledSocketFactory<AFUNIXSocketAddress> factory = newFactory()) {
+      AFSocket<?> underlying;
+      try (PooledSocket sock = factory.connectTo(address)) {
+        underlying = sock.getAFSocket();
+        sock.setReceiveBufferSize(32768);
+      }
+      assertTrue(underlying.isClosed());
+      assertEquals(0, factory.getIdleCount(address));
+    }
+  }
+
+  @Test
+  public void testEndOfStreamIsNotReused() throws Exception {
+    try (AFPooledSocketFactory<AFUNIXSocketAddress> factory = newFactory()) {
+      factory.setHealthCheck(AFPooledSocketFactory.HealthCheck.NONE);
+
+      AFSocket<?> underlying;
+      try (PooledSocket sock = factory.connectTo(address)) {
+        underlying = sock.getAFSocket();
+        assertEcho(sock, 1);
+        synchronized (accepted) {
+          for (Socket s : accepted) {
+            s.close();
+          }
+        }
+        assertEquals(-1, sock.getInputStream().read());
+      }
+      assertTrue(underlying.isClosed());
+      assertEquals(0, factory.getTotalCount(address));
+    }
+  }
+
+  @Test
+  public void testPoolIsRecreatedAfterBecomingEmpty() throws Exception {
+    try (AFPooledSocketFactory<AFUNIXSocketAddress> factory = newFactory()) {
+      for (int i = 0; i < 3; i++) {
+        try (PooledSocket sock = factory.connectTo(address)) {
+          assertEcho(sock, i);
+          sock.invalidate();
+        }
+        assertEquals(0, factory.getTotalCount(address));
+      }
+
+      AFSocket<?> first;
+      try (PooledSocket sock = factory.connectTo(address)) {
+        first = sock.getAFSocket();
+        assertEcho(sock, 3); // ensures that the server has accepted the connection
+      }
+      try (PooledSocket sock = factory.connectTo(address)) {
+        assertSame(first, sock.getAFSocket());
+      }
+      assertEquals(4, acceptedCount());
+    }
+  }
+
+  @Test
+  public void testInvalidatedIsNotReused() throws Exception {
+    try (AFPooledSocketFactory<AFUNIXSocketAddress> factory = newFactory()) {
+      PooledSocket sock = factory.connectTo(address);
+      AFSocket<?> underlying = sock.getAFSocket();
+      sock.invalidate();
+      sock.close();
+
+      assertTrue(underlying.isClosed());
+      assertEquals(0, factory.getIdleCount(address));
+      assertEquals(0, factory.getTotalCount(address));
+    }
+  }
+
+  @Test
+  public void testMaxIdle() throws Exception {
+    try (AFPooledSocketFactory<AFUNIXSocketAddress> factory = newFactory()) {
+      factory.setMaxIdle(2);
+
+      List<PooledSocket> socks = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        socks.add(factory.connectTo(address));
+      }
+      assertEquals(4, factory.getTotalCount(address));
+      for (PooledSocket sock : socks) {
+        sock.close();
+      }
+      assertEquals(2, factory.getIdleCount(address));
+      assertEquals(2, factory.getTotalCount(address));
+    }
+  }
+
+  @Test
+  public void testMaxTotal() throws Exception {
+    try (AFPooledSocketFactory<AFUNIXSocketAddress> factory = newFactory()) {
+      factory.setMaxTotal(1);
+      factory.setMaxWait(100);
+
+      PooledSocket sock = factory.connectTo(address);
+      assertThrows(SocketTimeoutException.class, () -> factory.connectTo(address));
+
+      CountDownLatch borrowed = new CountDownLatch(1);
+      Thread t = new Thread(() -> {
+        try (PooledSocket other = factory.connectTo(address)) {
+          borrowed.countDown();
+        } catch (IOException e) {
+          // fails the assertion below
+        }
+      });
+      factory.setMaxWait(0);
+      t.start();
+      Thread.sleep(50);
+      assertEquals(1, borrowed.getCount());
+      sock.close();
+      assertTrue(borrowed.await(5, TimeUnit.SECONDS));
+      t.join();
+    }
+  }
+
+  @Test
+  public void testIdleEviction() throws Exception {
+    try (AFPooledSocketFactory<AFUNIXSocketAddress> factory = newFactory()) {
+      factory.setIdleTimeout(50);
+
+      AFSocket<?> underlying;
+      try (PooledSocket sock = factory.connectTo(address)) {
+        underlying = sock.getAFSocket();
+      }
+      assertEquals(1, factory.getIdleCount(address));
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (factory.getIdleCount(address) > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(0, factory.getIdleCount(address));
+      assertTrue(underlying.isClosed());
+    }
+  }
+
+  @Test
+  public void testCloseFactory() throws Exception {
+    AFPooledSocketFactory<AFUNIXSocketAddress> factory = newFactory();
+    PooledSocket idle = factory.connectTo(address);
+    PooledSocket busy = factory.connectTo(address);
+    AFSocket<?> idleSocket = idle.getAFSocket();
+    AFSocket<?> busySocket = busy.getAFSocket();
+    idle.close();
+
+    factory.close();
+    assertTrue(idleSocket.isClosed());
+    assertThrows(SocketException.class, () -> factory.connectTo(address));
+
+    busy.close();
+    assertTrue(busySocket.isClosed());
+  }
+}
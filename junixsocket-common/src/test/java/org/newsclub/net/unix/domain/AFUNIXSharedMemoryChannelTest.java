@@ -0,0 +1,189 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXSharedMemoryChannel;
+import org.newsclub.net.unix.AFUNIXSocket;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+import org.newsclub.net.unix.BrokenPipeSocketException;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@AFSocketCapabilityRequirement({
+    AFSocketCapability.CAPABILITY_UNIX_DOMAIN, AFSocketCapability.CAPABILITY_FILE_DESCRIPTORS})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class AFUNIXSharedMemoryChannelTest {
+  private static AFUNIXSharedMemoryChannel[] openPair(int capacity1, int capacity2)
+      throws IOException, InterruptedException, ExecutionException {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+    CompletableFuture<AFUNIXSharedMemoryChannel> second = CompletableFuture.supplyAsync(() -> {
+      try {
+        return AFUNIXSharedMemoryChannel.open((AFUNIXSocket) pair.getSecond().socket(),
+            capacity2);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    AFUNIXSharedMemoryChannel first = AFUNIXSharedMemoryChannel.open((AFUNIXSocket) pair
+        .getFirst().socket(), capacity1);
+    return new AFUNIXSharedMemoryChannel[] {first, second.get()};
+  }
+
+  private static byte[] message(int seq, int len) {
+    byte[] b = new byte[len];
+    for (int i = 0; i < len; i++) {
+      b[i] = (byte) (seq + i);
+    }
+    return b;
+  }
+
+  @Test
+  public void testPingPong() throws Exception {
+    AFUNIXSharedMemoryChannel[] pair = openPair(4096, 8192);
+    try (AFUNIXSharedMemoryChannel a = pair[0]; AFUNIXSharedMemoryChannel b = pair[1]) {
+      assertEquals(4096 / 2 - 8, a.getMaxMessageSize());
+      assertEquals(8192 / 2 - 8, b.getMaxMessageSize());
+
+      ByteBuffer buf = ByteBuffer.allocate(8192);
+      for (int i = 0; i < 1000; i++) {
+        a.write(ByteBuffer.wrap(message(i, i % 100)));
+        buf.clear();
+        assertEquals(i % 100, b.read(buf));
+        buf.flip();
+        b.write(buf);
+        buf.clear();
+        assertEquals(i % 100, a.read(buf));
+        assertArrayEquals(message(i, i % 100), Arrays.copyOf(buf.array(), buf.position()));
+      }
+    }
+  }
+
+  @Test
+  public void testStreamWithWrapAround() throws Exception {
+    AFUNIXSharedMemoryChannel[] pair = openPair(4096, 4096);
+    try (AFUNIXSharedMemoryChannel a = pair[0]; AFUNIXSharedMemoryChannel b = pair[1]) {
+      final int numMessages = 20_000;
+      a.setSpinCount(10);
+      b.setSpinCount(10);
+
+      CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+        try {
+          for (int i = 0; i < numMessages; i++) {
+            a.write(ByteBuffer.wrap(message(i, (i * 31) % a.getMaxMessageSize())));
+          }
+          a.close();
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      });
+
+      ByteBuffer buf = ByteBuffer.allocate(b.getMaxMessageSize());
+      for (int i = 0; i < numMessages; i++) {
+        buf.clear();
+        int len = b.read(buf);
+        assertEquals((i * 31) % a.getMaxMessageSize(), len);
+        byte[] expected = message(i, len);
+        for (int j = 0; j < len; j++) {
+          assertEquals(expected[j], buf.get(j));
+        }
+      }
+      buf.clear();
+      assertEquals(-1, b.read(buf));
+      writer.get(10, TimeUnit.SECONDS);
+
+      assertThrows(BrokenPipeSocketException.class, () -> {
+        for (int i = 0; i < 10; i++) {
+          b.write(ByteBuffer.allocate(b.getMaxMessageSize()));
+        }
+      });
+    }
+  }
+
+  @Test
+  public void testNonBlocking() throws Exception {
+    AFUNIXSharedMemoryChannel[] pair = openPair(4096, 4096);
+    try (AFUNIXSharedMemoryChannel a = pair[0]; AFUNIXSharedMemoryChannel b = pair[1]) {
+      a.configureBlocking(false);
+      b.configureBlocking(false);
+
+      ByteBuffer buf = ByteBuffer.allocate(4096);
+      assertEquals(0, b.read(buf));
+
+      int written = 0;
+      while (a.write(ByteBuffer.allocate(1000)) > 0) {
+        written++;
+      }
+      assertEquals(4, written);
+      for (int i = 0; i < written; i++) {
+        buf.clear();
+        assertEquals(1000, b.read(buf));
+      }
+      assertEquals(0, b.read(buf));
+    }
+  }
+
+  @Test
+  public void testBufferTooSmall() throws Exception {
+    AFUNIXSharedMemoryChannel[] pair = openPair(4096, 4096);
+    try (AFUNIXSharedMemoryChannel a = pair[0]; AFUNIXSharedMemoryChannel b = pair[1]) {
+      a.write(ByteBuffer.wrap(message(1, 100)));
+      assertThrows(BufferOverflowException.class, () -> b.read(ByteBuffer.allocate(99)));
+      assertEquals(100, b.read(ByteBuffer.allocate(100)));
+      assertThrows(IOException.class, () -> a.write(ByteBuffer.allocate(a.getMaxMessageSize()
+          + 1)));
+    }
+  }
+
+  @Test
+  public void testParkAndWakeup() throws Exception {
+    AFUNIXSharedMemoryChannel[] pair = openPair(4096, 4096);
+    try (AFUNIXSharedMemoryChannel a = pair[0]; AFUNIXSharedMemoryChannel b = pair[1]) {
+      a.setSpinCount(0);
+      b.setSpinCount(0);
+
+      CompletableFuture<Integer> reader = CompletableFuture.supplyAsync(() -> {
+        try {
+          return b.read(ByteBuffer.allocate(100));
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      });
+      Thread.sleep(100);
+      a.write(ByteBuffer.allocate(42));
+      int len = reader.get(5, TimeUnit.SECONDS);
+      assertEquals(42, len);
+    }
+  }
+}
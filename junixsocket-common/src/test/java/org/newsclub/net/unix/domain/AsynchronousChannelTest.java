@@ -0,0 +1,236 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFAsynchronousChannelGroup;
+import org.newsclub.net.unix.AFAsynchronousChannelProvider;
+import org.newsclub.net.unix.AFAsynchronousServerSocketChannel;
+import org.newsclub.net.unix.AFAsynchronousSocketChannel;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXSelectorProvider;
+import org.newsclub.net.unix.AFUNIXSocketAddress;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class AsynchronousChannelTest {
+  private static final AFAsynchronousChannelProvider<AFUNIXSocketAddress> PROVIDER =
+      AFUNIXSelectorProvider.getInstance().asynchronousChannelProvider();
+
+  private static final class Result<V> implements CompletionHandler<V, Object> {
+    private final CompletableFuture<V> future = new CompletableFuture<>();
+    private volatile Thread thread;
+
+    @Override
+    public void completed(V result, Object attachment) {
+      thread = Thread.currentThread();
+      future.complete(result);
+    }
+
+    @Override
+    public void failed(Throwable exc, Object attachment) {
+      thread = Thread.currentThread();
+      future.completeExceptionally(exc);
+    }
+
+    V get() throws Exception {
+      return future.get(5, TimeUnit.SECONDS);
+    }
+
+    Throwable getFailure() throws Exception {
+      try {
+        future.get(5, TimeUnit.SECONDS);
+      } catch (java.util.concurrent.ExecutionException e) {
+        return e.getCause();
+      }
+      throw new AssertionError("Expected failure");
+    }
+  }
+
+  @Test
+  public void testEcho() throws Exception {
+    AFUNIXSocketAddress addr = AFUNIXSocketAddress.ofNewTempFile();
+    AFAsynchronousChannelGroup group = PROVIDER.openAsynchronousChannelGroup();
+    try (AFAsynchronousServerSocketChannel<AFUNIXSocketAddress> server = PROVIDER
+        .openAsynchronousServerSocketChannel(group);
+        AFAsynchronousSocketChannel<AFUNIXSocketAddress> client = PROVIDER
+            .openAsynchronousSocketChannel(group)) {
+      server.bind(addr);
+
+      final AtomicReference<AsynchronousSocketChannel> acceptedRef = new AtomicReference<>();
+      server.accept(null, new CompletionHandler<AsynchronousSocketChannel, Object>() {
+        @Override
+        public void completed(final AsynchronousSocketChannel accepted, Object attachment) {
+          acceptedRef.set(accepted);
+          final ByteBuffer bb = ByteBuffer.allocate(64);
+          accepted.read(bb, 5, TimeUnit.SECONDS, null, new CompletionHandler<Integer, Object>() {
+            @Override
+            public void completed(Integer count, Object att) {
+              bb.flip();
+              accepted.write(bb);
+            }
+
+            @Override
+            public void failed(Throwable exc, Object att) {
+            }
+          });
+        }
+
+        @Override
+        public void failed(Throwable exc, Object attachment) {
+        }
+      });
+
+      client.connect(addr).get(5, TimeUnit.SECONDS);
+      assertEquals(addr, client.getRemoteAddress());
+
+      byte[] msg = "Hello async".getBytes(StandardCharsets.UTF_8);
+      assertEquals(msg.length, client.write(ByteBuffer.wrap(msg)).get(5, TimeUnit.SECONDS));
+
+      ByteBuffer in = ByteBuffer.allocate(64);
+      while (in.position() < msg.length) {
+        assertTrue(client.read(in).get(5, TimeUnit.SECONDS) > 0);
+      }
+      assertEquals("Hello async", new String(in.array(), 0, in.position(),
+          StandardCharsets.UTF_8));
+
+      AsynchronousSocketChannel accepted = acceptedRef.get();
+      if (accepted != null) {
+        accepted.close();
+      }
+    } finally {
+      group.shutdownNow();
+      assertTrue(group.awaitTermination(5, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testReadyCompletesInline() throws Exception {
+    AFUNIXSocketAddress addr = AFUNIXSocketAddress.ofNewTempFile();
+    try (AFAsynchronousServerSocketChannel<AFUNIXSocketAddress> server = PROVIDER
+        .openAsynchronousServerSocketChannel(null);
+        AFAsynchronousSocketChannel<AFUNIXSocketAddress> client = PROVIDER
+            .openAsynchronousSocketChannel(null)) {
+      server.bind(addr);
+      client.connect(addr).get(5, TimeUnit.SECONDS);
+
+      try (AsynchronousSocketChannel accepted = server.accept().get(5, TimeUnit.SECONDS)) {
+        client.write(ByteBuffer.wrap(new byte[] {1, 2, 3})).get(5, TimeUnit.SECONDS);
+
+        Result<Integer> result = new Result<>();
+        ByteBuffer bb = ByteBuffer.allocate(16);
+        // data is already available, so the handler must be invoked on this thread
+        for (int i = 0; i < 100 && bb.position() < 3; i++) {
+          if (i > 0) {
+            Thread.sleep(10);
+            result = new Result<>();
+          }
+          accepted.read(bb, 0, TimeUnit.MILLISECONDS, null, result);
+          result.get();
+        }
+        assertEquals(3, bb.position());
+        assertSame(Thread.currentThread(), result.thread);
+      }
+    }
+  }
+
+  @Test
+  public void testReadTimeout() throws Exception {
+    AFUNIXSocketAddress addr = AFUNIXSocketAddress.ofNewTempFile();
+    try (AFAsynchronousServerSocketChannel<AFUNIXSocketAddress> server = PROVIDER
+        .openAsynchronousServerSocketChannel(null);
+        AFAsynchronousSocketChannel<AFUNIXSocketAddress> client = PROVIDER
+            .openAsynchronousSocketChannel(null)) {
+      server.bind(addr);
+      client.connect(addr).get(5, TimeUnit.SECONDS);
+      try (AsynchronousSocketChannel accepted = server.accept().get(5, TimeUnit.SECONDS)) {
+        Result<Integer> result = new Result<>();
+        client.read(ByteBuffer.allocate(16), 100, TimeUnit.MILLISECONDS, null, result);
+        assertTrue(result.getFailure() instanceof InterruptedByTimeoutException);
+
+        assertThrows(IllegalStateException.class, () -> client.read(ByteBuffer.allocate(16)));
+      }
+    }
+  }
+
+  @Test
+  public void testEndOfStream() throws Exception {
+    AFUNIXSocketAddress addr = AFUNIXSocketAddress.ofNewTempFile();
+    try (AFAsynchronousServerSocketChannel<AFUNIXSocketAddress> server = PROVIDER
+        .openAsynchronousServerSocketChannel(null);
+        AFAsynchronousSocketChannel<AFUNIXSocketAddress> client = PROVIDER
+            .openAsynchronousSocketChannel(null)) {
+      server.bind(addr);
+      client.connect(addr).get(5, TimeUnit.SECONDS);
+
+      // pending read, completed by the event loop once the peer closes
+      Result<Integer> result = new Result<>();
+      try (AsynchronousSocketChannel accepted = server.accept().get(5, TimeUnit.SECONDS)) {
+        client.read(ByteBuffer.allocate(16), 5, TimeUnit.SECONDS, null, result);
+        assertFalse(result.future.isDone());
+      }
+      assertEquals(-1, result.get());
+
+      // immediate reads
+      assertEquals(-1, client.read(ByteBuffer.allocate(16)).get(5, TimeUnit.SECONDS));
+      Result<Long> scattering = new Result<>();
+      client.read(new ByteBuffer[] {ByteBuffer.allocate(8), ByteBuffer.allocate(8)}, 0, 2, 5,
+          TimeUnit.SECONDS, null, scattering);
+      assertEquals(-1L, scattering.get());
+      assertTrue(client.isOpen());
+    }
+  }
+
+  @Test
+  public void testCloseFailsPendingRead() throws Exception {
+    AFUNIXSocketAddress addr = AFUNIXSocketAddress.ofNewTempFile();
+    try (AFAsynchronousServerSocketChannel<AFUNIXSocketAddress> server = PROVIDER
+        .openAsynchronousServerSocketChannel(null);
+        AFAsynchronousSocketChannel<AFUNIXSocketAddress> client = PROVIDER
+            .openAsynchronousSocketChannel(null)) {
+      server.bind(addr);
+      client.connect(addr).get(5, TimeUnit.SECONDS);
+      try (AsynchronousSocketChannel accepted = server.accept().get(5, TimeUnit.SECONDS)) {
+        Result<Integer> result = new Result<>();
+        client.read(ByteBuffer.allocate(16), 0, TimeUnit.MILLISECONDS, null, result);
+        client.close();
+        assertTrue(result.getFailure() instanceof AsynchronousCloseException);
+      }
+    }
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFChannelFlow;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXDatagramChannel;
+import org.newsclub.net.unix.AFUNIXSelectorProvider;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class ChannelFlowTest {
+
+  /**
+   * Collects received data, requesting one buffer at a time when {@code autoRequest} is set.
+   */
+  private static final class Collector implements Flow.Subscriber<ByteBuffer> {
+    private final boolean autoRequest;
+    private final List<byte[]> items = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private volatile Flow.Subscription subscription;
+
+    Collector(boolean autoRequest) {
+      this.autoRequest = autoRequest;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription s) {
+      subscription = s;
+      s.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+      byte[] bytes = new byte[item.remaining()];
+      item.get(bytes);
+      items.add(bytes);
+      if (autoRequest) {
+        subscription.request(1);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      done.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      done.complete(null);
+    }
+
+    int totalBytes() {
+      int total = 0;
+      for (byte[] b : items) {
+        total += b.length;
+      }
+      return total;
+    }
+  }
+
+  @Test
+  public void testEcho() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openSocketChannelPair();
+    try (AFChannelFlow echo = AFChannelFlow.of(pair.getSocket1())) {
+      echo.publisher().subscribe(echo.subscriber());
+
+      AFUNIXSocketChannel client = pair.getSocket2();
+      byte[] data = new byte[1024 * 1024];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = (byte) (i * 31);
+      }
+
+      CompletableFuture<byte[]> received = CompletableFuture.supplyAsync(() -> {
+        ByteBuffer bb = ByteBuffer.allocate(data.length);
+        try {
+          while (bb.hasRemaining()) {
+            if (client.read(bb) < 0) {
+              break;
+            }
+          }
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+        return bb.array();
+      });
+
+      ByteBuffer out = ByteBuffer.wrap(data);
+      while (out.hasRemaining()) {
+        client.write(out);
+      }
+      client.shutdownOutput();
+
+      assertArrayEquals(data, received.get(10, TimeUnit.SECONDS));
+      echo.whenSubscriberDone().get(10, TimeUnit.SECONDS);
+    } finally {
+      pair.close();
+    }
+  }
+
+  @Test
+  public void testReadsOnlyOnDemand() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openSocketChannelPair();
+    try (AFChannelFlow flow = AFChannelFlow.of(pair.getSocket1())) {
+      Collector collector = new Collector(false);
+      flow.publisher().subscribe(collector);
+
+      AFUNIXSocketChannel sender = pair.getSocket2();
+      sender.configureBlocking(false);
+
+      // without further demand, unread data stays in the kernel, and the sender eventually stalls
+      ByteBuffer chunk = ByteBuffer.allocate(4096);
+      long sent = 0;
+      long deadline = System.currentTimeMillis() + 5000;
+      while (System.currentTimeMillis() < deadline) {
+        chunk.clear();
+        int written = sender.write(chunk);
+        if (written == 0) {
+          Thread.sleep(50);
+          chunk.clear();
+          written = sender.write(chunk);
+          if (written == 0) {
+            break;
+          }
+        }
+        sent += written;
+      }
+      assertTrue(sender.write(ByteBuffer.allocate(1)) == 0, "Sender should be stalled");
+      assertEquals(1, collector.items.size());
+
+      collector.subscription.request(Long.MAX_VALUE);
+      sender.close();
+      collector.done.get(10, TimeUnit.SECONDS);
+      assertEquals(sent, collector.totalBytes());
+    } finally {
+      pair.close();
+    }
+  }
+
+  @Test
+  public void testDatagrams() throws Exception {
+    AFUNIXSocketPair<AFUNIXDatagramChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openDatagramChannelPair();
+    try (AFChannelFlow flow = AFChannelFlow.of(pair.getSocket1());
+        AFChannelFlow senderFlow = AFChannelFlow.of(pair.getSocket2())) {
+      Collector collector = new Collector(true);
+      flow.publisher().subscribe(collector);
+
+      SubmissionPublisherShim upstream = new SubmissionPublisherShim();
+      upstream.subscribe(senderFlow.subscriber());
+      upstream.submit("one");
+      upstream.submit("two");
+      upstream.submit("three");
+      upstream.close();
+      senderFlow.whenSubscriberDone().get(10, TimeUnit.SECONDS);
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (collector.items.size() < 3 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(3, collector.items.size());
+      assertEquals("one", new String(collector.items.get(0), StandardCharsets.UTF_8));
+      assertEquals("two", new String(collector.items.get(1), StandardCharsets.UTF_8));
+      assertEquals("three", new String(collector.items.get(2), StandardCharsets.UTF_8));
+    } finally {
+      pair.close();
+    }
+  }
+
+  @Test
+  public void testSingleSubscriber() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openSocketChannelPair();
+    try (AFChannelFlow flow = AFChannelFlow.of(pair.getSocket1())) {
+      flow.publisher().subscribe(new Collector(false));
+
+      Collector second = new Collector(false);
+      flow.publisher().subscribe(second);
+      AtomicReference<Throwable> error = new AtomicReference<>();
+      second.done.whenComplete((v, t) -> error.set(t));
+      assertTrue(error.get() instanceof IllegalStateException);
+    } finally {
+      pair.close();
+    }
+  }
+
+  @Test
+  public void testCloseTerminatesPublisher() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openSocketChannelPair();
+    try {
+      AFChannelFlow flow = AFChannelFlow.of(pair.getSocket1());
+      Collector collector = new Collector(true);
+      flow.publisher().subscribe(collector);
+      flow.close();
+
+      AtomicInteger failures = new AtomicInteger();
+      try {
+        collector.done.get(10, TimeUnit.SECONDS);
+      } catch (java.util.concurrent.ExecutionException e) {
+        failures.incrementAndGet();
+      }
+      assertEquals(1, failures.get());
+    } finally {
+      pair.close();
+    }
+  }
+
+  /**
+   * A minimal synchronous publisher of strings, honoring demand.
+   */
+  private static final class SubmissionPublisherShim implements Flow.Publisher<ByteBuffer> {
+    private final java.util.concurrent.SubmissionPublisher<ByteBuffer> delegate =
+        new java.util.concurrent.SubmissionPublisher<>();
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+      delegate.subscribe(subscriber);
+    }
+
+    void submit(String s) {
+      delegate.submit(ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    void close() {
+      delegate.close();
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFSocketType;
+import org.newsclub.net.unix.AFUNIXDatagramChannel;
+import org.newsclub.net.unix.AFUNIXSelectorProvider;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Tests that non-blocking reads report end-of-stream (by returning {@code -1}, as specified by
+ * {@link java.nio.channels.ReadableByteChannel#read(ByteBuffer)}) once the peer has closed a stream
+ * connection, whereas datagram sockets are not affected.
+ */
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class EndOfStreamNonBlockingTest {
+
+  @Test
+  public void testStreamPeerClosed() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openSocketChannelPair();
+    try {
+      pair.getSocket1().write(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+      pair.getSocket1().close();
+
+      AFUNIXSocketChannel ch = pair.getSocket2();
+      ch.configureBlocking(false);
+      assertEquals(3, ch.read(ByteBuffer.allocateDirect(16)));
+
+      // end-of-stream is reported in non-blocking mode (as in the blocking case) instead of
+      // returning 0 ("no data yet") forever, regardless of the buffer type
+      for (ByteBuffer bb : new ByteBuffer[] {
+          ByteBuffer.allocateDirect(16), ByteBuffer.allocate(16), ByteBuffer.allocateDirect(16)}) {
+        assertEquals(-1, ch.read(bb));
+      }
+      // the channel itself remains open
+      assertTrue(ch.isOpen());
+    } finally {
+      pair.close();
+    }
+  }
+
+  @Test
+  public void testDatagram() throws Exception {
+    AFUNIXSocketPair<AFUNIXDatagramChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openDatagramChannelPair();
+    try {
+      pair.getSocket1().write(ByteBuffer.wrap(new byte[] {42}));
+
+      AFUNIXDatagramChannel ch = pair.getSocket2();
+      ch.configureBlocking(false);
+      ByteBuffer bb = ByteBuffer.allocateDirect(16);
+      assertEquals(1, ch.read(bb));
+      assertEquals(42, bb.get(0));
+
+      // no datagram pending, which is not end-of-stream
+      assertEquals(0, ch.read(bb));
+      assertEquals(0, ch.read(bb));
+      assertTrue(ch.isOpen());
+    } finally {
+      pair.close();
+    }
+  }
+
+  @Test
+  public void testSeqpacketDatagram() throws Exception {
+    AFUNIXSocketPair<AFUNIXDatagramChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openDatagramChannelPair(AFSocketType.SOCK_SEQPACKET);
+    try {
+      AFUNIXDatagramChannel ch = pair.getSocket2();
+      ch.configureBlocking(false);
+
+      // datagram mode is signalled by the caller, not inferred from the socket type
+      assertEquals(0, ch.read(ByteBuffer.allocateDirect(16)));
+      assertTrue(ch.isOpen());
+    } finally {
+      pair.close();
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFEventLoop;
+import org.newsclub.net.unix.AFEventLoopGroup;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXSelectorProvider;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class EventLoopGroupTest {
+
+  private static final AFEventLoop.ReadyHandler ECHO = (key) -> {
+    AFUNIXSocketChannel ch = (AFUNIXSocketChannel) key.channel();
+    ByteBuffer bb = ByteBuffer.allocate(64);
+    if (ch.read(bb) < 0) {
+      ch.close();
+      return;
+    }
+    bb.flip();
+    while (bb.hasRemaining()) {
+      ch.write(bb);
+    }
+  };
+
+  @Test
+  public void testRoundRobin() throws Exception {
+    try (AFEventLoopGroup group = AFEventLoopGroup.builder().withLoops(3).build()) {
+      assertEquals(3, group.loops().size());
+      AFEventLoop first = group.next();
+      AFEventLoop second = group.next();
+      AFEventLoop third = group.next();
+      assertNotSame(first, second);
+      assertNotSame(second, third);
+      assertNotSame(first, third);
+      assertSame(first, group.next());
+    }
+  }
+
+  @Test
+  public void testLeastLoaded() throws Exception {
+    List<AFUNIXSocketPair<AFUNIXSocketChannel>> pairs = new ArrayList<>();
+    try (AFEventLoopGroup group = AFEventLoopGroup.builder().withLoops(2).withAssignment(
+        AFEventLoopGroup.Assignment.LEAST_LOADED).build()) {
+      AFEventLoop busy = group.loops().get(0);
+      for (int i = 0; i < 4; i++) {
+        AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+        pairs.add(pair);
+        pair.getSocket1().configureBlocking(false);
+        busy.register(pair.getSocket1(), SelectionKey.OP_READ, ECHO).get(5, TimeUnit.SECONDS);
+      }
+      assertEquals(4, busy.registeredChannels());
+
+      for (int i = 0; i < 3; i++) {
+        assertSame(group.loops().get(1), group.next());
+      }
+    } finally {
+      for (AFUNIXSocketPair<AFUNIXSocketChannel> pair : pairs) {
+        pair.close();
+      }
+    }
+  }
+
+  @Test
+  public void testEchoAcrossLoops() throws Exception {
+    final int numLoops = 4;
+    final int numChannels = 16;
+    List<AFUNIXSocketPair<AFUNIXSocketChannel>> pairs = new ArrayList<>();
+    try (AFEventLoopGroup group = AFEventLoopGroup.builder().withLoops(numLoops)
+        .withSelectorProvider(AFUNIXSelectorProvider.getInstance()).build()) {
+      List<CompletableFuture<SelectionKey>> futures = new ArrayList<>();
+      for (int i = 0; i < numChannels; i++) {
+        AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+        pairs.add(pair);
+        pair.getSocket1().configureBlocking(false);
+        futures.add(group.register(pair.getSocket1(), SelectionKey.OP_READ, ECHO));
+      }
+      for (CompletableFuture<SelectionKey> f : futures) {
+        f.get(5, TimeUnit.SECONDS);
+      }
+      for (AFEventLoop loop : group.loops()) {
+        assertEquals(numChannels / numLoops, loop.registeredChannels());
+      }
+
+      for (int i = 0; i < numChannels; i++) {
+        AFUNIXSocketChannel client = pairs.get(i).getSocket2();
+        byte[] msg = ("Hello " + i).getBytes("UTF-8");
+        client.write(ByteBuffer.wrap(msg));
+        ByteBuffer in = ByteBuffer.allocate(msg.length);
+        while (in.hasRemaining()) {
+          if (client.read(in) < 0) {
+            break;
+          }
+        }
+        assertEquals(ByteBuffer.wrap(msg), in.flip());
+      }
+    } finally {
+      for (AFUNIXSocketPair<AFUNIXSocketChannel> pair : pairs) {
+        pair.close();
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentRegistration() throws Exception {
+    final int numThreads = 8;
+    final int perThread = 8;
+    List<AFUNIXSocketPair<AFUNIXSocketChannel>> pairs = new ArrayList<>();
+    for (int i = 0; i < numThreads * perThread; i++) {
+      AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+      pair.getSocket1().configureBlocking(false);
+      pairs.add(pair);
+    }
+
+    try (AFEventLoopGroup group = AFEventLoopGroup.builder().withLoops(2).withAssignment(
+        AFEventLoopGroup.Assignment.LEAST_LOADED).build()) {
+      final CountDownLatch start = new CountDownLatch(1);
+      List<CompletableFuture<SelectionKey>> futures = new ArrayList<>();
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < numThreads; t++) {
+        final int offset = t * perThread;
+        Thread thread = new Thread(() -> {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < perThread; i++) {
+            CompletableFuture<SelectionKey> f = group.register(pairs.get(offset + i).getSocket1(),
+                SelectionKey.OP_READ, ECHO);
+            synchronized (futures) {
+              futures.add(f);
+            }
+          }
+        });
+        threads.add(thread);
+        thread.start();
+      }
+      start.countDown();
+      for (Thread thread : threads) {
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+      }
+
+      synchronized (futures) {
+        assertEquals(numThreads * perThread, futures.size());
+        for (CompletableFuture<SelectionKey> f : futures) {
+          assertTrue(f.get(5, TimeUnit.SECONDS).isValid());
+        }
+      }
+      int total = 0;
+      for (AFEventLoop loop : group.loops()) {
+        total += loop.registeredChannels();
+      }
+      assertEquals(numThreads * perThread, total);
+    } finally {
+      for (AFUNIXSocketPair<AFUNIXSocketChannel> pair : pairs) {
+        pair.close();
+      }
+    }
+  }
+
+  @Test
+  public void testCpuPinning() throws Exception {
+    try (AFEventLoopGroup group = AFEventLoopGroup.builder().withLoops(2).withCpuPinning(true)
+        .build()) {
+      // pinning is best-effort; the loops must work either way
+      final CountDownLatch latch = new CountDownLatch(2);
+      for (AFEventLoop loop : group.loops()) {
+        loop.execute(latch::countDown);
+      }
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testShutdown() throws Exception {
+    AFEventLoopGroup group = AFEventLoopGroup.builder().withLoops(2).build();
+    AFEventLoop loop = group.next();
+
+    CompletableFuture<Boolean> inLoop = new CompletableFuture<>();
+    loop.execute(() -> inLoop.complete(loop.inEventLoop()));
+    assertTrue(inLoop.get(5, TimeUnit.SECONDS));
+
+    group.shutdown();
+    assertTrue(group.isShutdown());
+    assertTrue(group.awaitTermination(5, TimeUnit.SECONDS));
+    assertTrue(group.isTerminated());
+    assertThrows(RejectedExecutionException.class, () -> loop.execute(() -> {
+    }));
+
+    try (AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open()) {
+      pair.getSocket1().configureBlocking(false);
+      CompletableFuture<SelectionKey> f = loop.register(pair.getSocket1(), SelectionKey.OP_READ,
+          (key) -> {
+          });
+      assertTrue(f.isCompletedExceptionally());
+    }
+  }
+}
@@ -25,25 +25,34 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.lang.ProcessBuilder.Redirect;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSharedMemorySegment;
 import org.newsclub.net.unix.AFSocketAddress;
 import org.newsclub.net.unix.AFSocketCapability;
 import org.newsclub.net.unix.AFSocketCapabilityRequirement;
@@ -419,6 +428,78 @@ public class FileDescriptorCastTest {
     }
   }
 
+  @Test
+  public void testMappedByteBuffer() throws Exception {
+    File f = File.createTempFile("jux", ".bin");
+    try (FileOutputStream out = new FileOutputStream(f)) {
+      out.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    }
+    try (FileInputStream in = new FileInputStream(f)) {
+      FileDescriptorCast fdc = FileDescriptorCast.using(in.getFD());
+      assertTrue(fdc.isAvailable(MappedByteBuffer.class));
+
+      MappedByteBuffer buf = fdc.as(MappedByteBuffer.class);
+      assertEquals(8, buf.remaining());
+      buf = fdc.withMapping(MapMode.READ_ONLY, 3, 4).as(MappedByteBuffer.class);
+      assertEquals(4, buf.remaining());
+      assertEquals(4, buf.get());
+      assertTrue(buf.isReadOnly());
+
+      assertThrows(IOException.class, () -> fdc.withMapping(MapMode.READ_ONLY, 4, 5).as(
+          MappedByteBuffer.class));
+
+      // the original descriptor is still usable
+      assertEquals(1, in.read());
+    } finally {
+      Files.delete(f.toPath());
+    }
+  }
+
+  @Test
+  @AFSocketCapabilityRequirement(AFSocketCapability.CAPABILITY_FILE_DESCRIPTORS)
+  public void testSharedMemorySegment() throws Exception {
+    File f = File.createTempFile("jux", ".bin");
+    try (AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+        RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+      raf.setLength(8192);
+
+      pair.getFirst().setOutboundFileDescriptors(raf.getFD());
+      pair.getFirst().write(ByteBuffer.allocate(1));
+      pair.getSecond().ensureAncillaryReceiveBufferSize(256);
+      pair.getSecond().read(ByteBuffer.allocate(1));
+      FileDescriptor[] fds = pair.getSecond().getReceivedFileDescriptors();
+      assertEquals(1, fds.length);
+
+      AFSharedMemorySegment segment = FileDescriptorCast.using(fds[0]).withMapping(
+          MapMode.READ_WRITE, 4096, -1).as(AFSharedMemorySegment.class);
+      try {
+        assertEquals(4096, segment.size());
+        assertEquals(MapMode.READ_WRITE, segment.getMode());
+        ByteBuffer buf = segment.buffer();
+        buf.putInt(0, 0x12345678);
+      } finally {
+        segment.close();
+      }
+      assertTrue(segment.isClosed());
+      assertThrows(ClosedChannelException.class, segment::buffer);
+
+      raf.seek(4096);
+      assertEquals(0x12345678, raf.readInt());
+
+      try (AFSharedMemorySegment ro = FileDescriptorCast.using(fds[0]).as(
+          AFSharedMemorySegment.class)) {
+        assertEquals(8192, ro.size());
+        assertTrue(ro.buffer().isReadOnly());
+        assertEquals(0x12345678, ro.buffer().getInt(4096));
+      }
+
+      assertThrows(IOException.class, () -> FileDescriptorCast.using(fds[0]).withMapping(
+          MapMode.READ_ONLY, 0, 8193).as(AFSharedMemorySegment.class));
+    } finally {
+      Files.delete(f.toPath());
+    }
+  }
+
   /**
    * Passes a socket to a newly created Java process as "standard input". The new process sends back
    * "Hello world" over that socket.
@@ -0,0 +1,292 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXFileDescriptorPipeline;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+import org.newsclub.net.unix.FileDescriptorAccess;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+import com.kohlschutter.util.SystemPropertyUtil;
+
+/**
+ * Tests {@link AFUNIXFileDescriptorPipeline}, and measures the number of file descriptors that can
+ * be transferred per second (see {@code ThroughputTest} for the system properties controlling the
+ * duration of the measurement).
+ *
+ * @author Christian Kohlschütter
+ */
+@AFSocketCapabilityRequirement({
+    AFSocketCapability.CAPABILITY_UNIX_DOMAIN, AFSocketCapability.CAPABILITY_FILE_DESCRIPTORS})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class FileDescriptorPipelineTest {
+  private static final int ENABLED = SystemPropertyUtil.getIntSystemProperty(
+      "org.newsclub.net.unix.throughput-test.enabled", 1);
+  private static final int NUM_SECONDS = SystemPropertyUtil.getIntSystemProperty(
+      "org.newsclub.net.unix.throughput-test.seconds", 0);
+  private static final int NUM_MILLISECONDS = Math.max(50, NUM_SECONDS * 1000);
+
+  private static final int NUM_DISTINCT = 16;
+
+  private static void withDistinctDescriptors(DescriptorsConsumer consumer) throws Exception {
+    Path tmpFile = Files.createTempFile("junixsocket", ".pipeline");
+    List<FileInputStream> streams = new ArrayList<>();
+    try {
+      try (FileOutputStream fos = new FileOutputStream(tmpFile.toFile())) {
+        for (int i = 0; i < NUM_DISTINCT; i++) {
+          fos.write(i);
+        }
+      }
+
+      // each descriptor refers to the same file, but with a different file position
+      FileDescriptor[] fds = new FileDescriptor[NUM_DISTINCT];
+      for (int i = 0; i < NUM_DISTINCT; i++) {
+        FileInputStream fin = new FileInputStream(tmpFile.toFile());
+        streams.add(fin);
+        assertEquals(i, fin.skip(i));
+        fds[i] = fin.getFD();
+      }
+      consumer.accept(fds);
+    } finally {
+      for (FileInputStream fin : streams) {
+        fin.close();
+      }
+      Files.deleteIfExists(tmpFile);
+    }
+  }
+
+  @FunctionalInterface
+  private interface DescriptorsConsumer {
+    void accept(FileDescriptor[] fds) throws Exception;
+  }
+
+  @Test
+  public void testTransferInOrder() throws Exception {
+    final int numFds = 2000;
+    withDistinctDescriptors((fds) -> {
+      List<Object> list = new ArrayList<>(numFds);
+      for (int i = 0; i < numFds; i++) {
+        FileDescriptor fd = fds[i % NUM_DISTINCT];
+        if (i % 3 == 0) {
+          list.add((FileDescriptorAccess) () -> fd);
+        } else {
+          list.add(fd);
+        }
+      }
+
+      AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+      try (AFUNIXSocketChannel a = pair.getFirst(); AFUNIXSocketChannel b = pair.getSecond()) {
+        CompletableFuture<Integer> sender = CompletableFuture.supplyAsync(() -> {
+          try {
+            return new AFUNIXFileDescriptorPipeline(a).setChunkSize(100).send(list);
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        });
+
+        AtomicInteger next = new AtomicInteger();
+        int received = new AFUNIXFileDescriptorPipeline(b).receive((fd, index) -> {
+          assertEquals(next.getAndIncrement(), index);
+          try (FileInputStream fin = new FileInputStream(fd)) {
+            // don't read, since all duplicates share the same file position
+            assertEquals(index % NUM_DISTINCT, fin.getChannel().position(),
+                "File descriptors must be received in order");
+          }
+        });
+        assertEquals(numFds, received);
+        assertEquals(numFds, (int) sender.get(30, TimeUnit.SECONDS));
+
+        // the pipeline leaves the stream in a clean state
+        assertEquals(0, new AFUNIXFileDescriptorPipeline(b).send(Collections.emptyList()));
+        assertEquals(0, new AFUNIXFileDescriptorPipeline(a).receive().size());
+      }
+    });
+  }
+
+  @Test
+  public void testBackPressure() throws Exception {
+    final int numFds = 50;
+    withDistinctDescriptors((fds) -> {
+      List<FileDescriptor> list = new ArrayList<>(numFds);
+      for (int i = 0; i < numFds; i++) {
+        list.add(fds[i % NUM_DISTINCT]);
+      }
+
+      AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+      try (AFUNIXSocketChannel a = pair.getFirst(); AFUNIXSocketChannel b = pair.getSecond()) {
+        AtomicInteger accepted = new AtomicInteger();
+        CompletableFuture<Integer> receiver = CompletableFuture.supplyAsync(() -> {
+          try {
+            return new AFUNIXFileDescriptorPipeline(b).receive((fd, index) -> {
+              new FileInputStream(fd).close();
+              if (index % 10 == 9) {
+                try {
+                  Thread.sleep(10);
+                } catch (InterruptedException e) {
+                  throw new IllegalStateException(e);
+                }
+              }
+              accepted.incrementAndGet();
+            });
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        });
+
+        AFUNIXFileDescriptorPipeline pipeline = new AFUNIXFileDescriptorPipeline(a).setChunkSize(
+            5);
+        assertThrows(IllegalArgumentException.class, () -> pipeline.setWindowSize(4));
+        pipeline.setWindowSize(10);
+        assertEquals(numFds, pipeline.send(list));
+        assertEquals(numFds, accepted.get(), "send must only return after all were accepted");
+        assertEquals(numFds, (int) receiver.get(30, TimeUnit.SECONDS));
+      }
+    });
+  }
+
+  private static long countOpenDescriptors(Path fdDir) throws IOException {
+    try (Stream<Path> stream = Files.list(fdDir)) {
+      return stream.count();
+    }
+  }
+
+  @Test
+  public void testReceiverFailureClosesUndelivered() throws Exception {
+    Path fdDir = Paths.get("/proc/self/fd");
+    assumeTrue(Files.isDirectory(fdDir), "Cannot count open file descriptors");
+
+    final int numFds = 10;
+    withDistinctDescriptors((fds) -> {
+      List<FileDescriptor> list = new ArrayList<>(numFds);
+      for (int i = 0; i < numFds; i++) {
+        list.add(fds[i % NUM_DISTINCT]);
+      }
+
+      AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+      try (AFUNIXSocketChannel a = pair.getFirst(); AFUNIXSocketChannel b = pair.getSecond()) {
+        CompletableFuture<Integer> sender = CompletableFuture.supplyAsync(() -> {
+          try {
+            return new AFUNIXFileDescriptorPipeline(a).setChunkSize(numFds).send(list);
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        });
+
+        long openBefore = countOpenDescriptors(fdDir);
+        assertThrows(IOException.class, () -> new AFUNIXFileDescriptorPipeline(b).receive((fd,
+            index) -> {
+          new FileInputStream(fd).close();
+          if (index == 2) {
+            throw new IOException("Simulated failure");
+          }
+        }));
+        assertEquals(openBefore, countOpenDescriptors(fdDir),
+            "Descriptors not handed to the receiver should have been closed");
+
+        // the sender is still waiting for credits
+        b.close();
+        assertThrows(ExecutionException.class, () -> sender.get(30, TimeUnit.SECONDS));
+      }
+    });
+  }
+
+  @Test
+  public void testNonBlockingNotSupported() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+    try (AFUNIXSocketChannel a = pair.getFirst(); AFUNIXSocketChannel b = pair.getSecond()) {
+      a.configureBlocking(false);
+      assertThrows(IllegalBlockingModeException.class, () -> new AFUNIXFileDescriptorPipeline(a)
+          .send(Collections.emptyList()));
+      assertThrows(IllegalArgumentException.class, () -> new AFUNIXFileDescriptorPipeline(b)
+          .setChunkSize(254));
+    }
+  }
+
+  @Test
+  public void testThroughput() throws Exception {
+    assumeTrue(ENABLED > 0, "Throughput tests are disabled");
+    withDistinctDescriptors((fds) -> {
+      List<FileDescriptor> list = new ArrayList<>();
+      for (int i = 0; i < 10 * AFUNIXFileDescriptorPipeline.MAX_CHUNK_SIZE; i++) {
+        list.add(fds[i % NUM_DISTINCT]);
+      }
+
+      AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+      try (AFUNIXSocketChannel a = pair.getFirst(); AFUNIXSocketChannel b = pair.getSecond()) {
+        CompletableFuture<Long> receiver = CompletableFuture.supplyAsync(() -> {
+          AFUNIXFileDescriptorPipeline pipeline = new AFUNIXFileDescriptorPipeline(b);
+          long total = 0;
+          try {
+            int n;
+            while ((n = pipeline.receive((fd, index) -> new FileInputStream(fd).close())) > 0) {
+              total += n;
+            }
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+          return total;
+        });
+
+        AFUNIXFileDescriptorPipeline pipeline = new AFUNIXFileDescriptorPipeline(a);
+        long sent = 0;
+        long time = System.currentTimeMillis();
+        long end = time + NUM_MILLISECONDS;
+        do {
+          sent += pipeline.send(list);
+        } while (System.currentTimeMillis() < end);
+        time = System.currentTimeMillis() - time;
+        pipeline.send(Collections.emptyList());
+
+        assertEquals(sent, (long) receiver.get(30, TimeUnit.SECONDS));
+        assertTrue(sent > 0);
+        if (NUM_SECONDS > 0) {
+          // Tests are too short to be meaningful (other than for code coverage) otherwise
+          System.out.println("ThroughputTest (AF_UNIX file descriptor pipeline): " + (1000f * sent
+              / time) + " fds/s");
+        }
+      }
+    });
+  }
+}
@@ -34,6 +34,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.DatagramPacket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.time.Duration;
 
@@ -45,6 +46,8 @@ import org.newsclub.net.unix.AFSocketCapabilityRequirement;
 import org.newsclub.net.unix.AFUNIXDatagramSocket;
 import org.newsclub.net.unix.AFUNIXSocket;
 import org.newsclub.net.unix.AFUNIXSocketAddress;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
 import org.newsclub.net.unix.ImplUtil;
 import org.newsclub.net.unix.SocketTestBase;
 
@@ -431,4 +434,61 @@ public final class FileDescriptorsTest extends SocketTestBase<AFUNIXSocketAddres
       }
     });
   }
+
+  @Test
+  public void testDrainReceivedFileDescriptors() throws Exception {
+    final int numFds = 300;
+    final File tmpFile = SocketTestBase.newTempFile();
+    try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
+      for (int i = 0; i < numFds; i++) {
+        fos.write(i);
+      }
+    }
+
+    try (AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open()) {
+      AFUNIXSocketChannel sender = pair.getFirst();
+      AFUNIXSocketChannel receiver = pair.getSecond();
+      receiver.setAncillaryReceiveBufferSize(1024);
+
+      // each descriptor refers to the same file, but with a different file position
+      ByteBuffer bb = ByteBuffer.allocate(1);
+      for (int i = 0; i < numFds; i++) {
+        try (FileInputStream fin = new FileInputStream(tmpFile)) {
+          assertEquals(i, fin.skip(i));
+          sender.setOutboundFileDescriptors(fin.getFD());
+          sender.write(ByteBuffer.allocate(1));
+        }
+        bb.clear();
+        assertEquals(1, receiver.read(bb));
+      }
+
+      FileDescriptor[] fds = new FileDescriptor[numFds + 10];
+      assertEquals(0, receiver.drainReceivedFileDescriptors(fds, 0, 0));
+      int count = receiver.drainReceivedFileDescriptors(fds, 5, 100);
+      assertEquals(100, count);
+      count += receiver.drainReceivedFileDescriptors(fds, 5 + count, fds.length - 5 - count);
+      assertEquals(numFds, count);
+      assertEquals(0, receiver.drainReceivedFileDescriptors(fds, 0, fds.length));
+      assertArrayEquals(new FileDescriptor[0], receiver.getReceivedFileDescriptors());
+
+      for (int i = 0; i < numFds; i++) {
+        FileDescriptor fd = fds[5 + i];
+        assertTrue(fd.valid());
+        if (i % 2 == 0) {
+          // closed by us
+          try (FileInputStream fin = new FileInputStream(fd)) {
+            assertEquals(i & 0xFF, fin.read(), "File descriptors must be received in order");
+          }
+          assertFalse(fd.valid());
+        }
+      }
+
+      receiver.close();
+      for (int i = 0; i < numFds; i++) {
+        assertFalse(fds[5 + i].valid(), "Received descriptors are closed along with the socket");
+      }
+    } finally {
+      Files.deleteIfExists(tmpFile.toPath());
+    }
+  }
 }
@@ -0,0 +1,226 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXSocket;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@AFSocketCapabilityRequirement({
+    AFSocketCapability.CAPABILITY_UNIX_DOMAIN, AFSocketCapability.CAPABILITY_FILE_DESCRIPTORS})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class MemfdOffloadTest {
+  private static final int THRESHOLD = 64 * 1024;
+
+  private static byte[] data(int seed, int len) {
+    byte[] b = new byte[len];
+    for (int i = 0; i < len; i++) {
+      b[i] = (byte) (seed + i * 7);
+    }
+    return b;
+  }
+
+  private static AFUNIXSocketPair<AFUNIXSocketChannel> openPair() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+    pair.getFirst().setMemfdOffloadThreshold(THRESHOLD);
+    pair.getSecond().setMemfdOffloadThreshold(THRESHOLD);
+    return pair;
+  }
+
+  @Test
+  public void testMixedStream() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = openPair();
+    try (AFUNIXSocketChannel a = pair.getFirst(); AFUNIXSocketChannel b = pair.getSecond()) {
+      assertEquals(THRESHOLD, a.getMemfdOffloadThreshold());
+      int[] sizes = {1, 100, THRESHOLD - 1, THRESHOLD, 5 * 1024 * 1024, 3, 2 * THRESHOLD};
+
+      CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+        try {
+          OutputStream out = a.socket().getOutputStream();
+          for (int i = 0; i < sizes.length; i++) {
+            out.write(data(i, sizes[i]));
+          }
+          out.write(42);
+          a.close();
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      });
+
+      DataInputStream in = new DataInputStream(b.socket().getInputStream());
+      for (int i = 0; i < sizes.length; i++) {
+        byte[] buf = new byte[sizes[i]];
+        in.readFully(buf);
+        assertArrayEquals(data(i, sizes[i]), buf);
+      }
+      assertEquals(42, in.read());
+      assertEquals(-1, in.read());
+      writer.get(30, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testChannelAndMappedBuffer() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = openPair();
+    try (AFUNIXSocketChannel a = pair.getFirst(); AFUNIXSocketChannel b = pair.getSecond()) {
+      byte[] large = data(1, 1024 * 1024);
+
+      CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+        try {
+          assertEquals(5, a.write(ByteBuffer.wrap(data(0, 5))));
+          ByteBuffer direct = ByteBuffer.allocateDirect(large.length);
+          direct.put(large);
+          direct.flip();
+          assertEquals(large.length, a.write(direct));
+          a.write(ByteBuffer.wrap(large));
+          a.close();
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      });
+
+      // inline data first
+      assertNull(b.receiveOffloadedBuffer());
+      ByteBuffer small = ByteBuffer.allocate(100);
+      assertEquals(5, b.read(small));
+
+      MappedByteBuffer mapped = b.receiveOffloadedBuffer();
+      assertNotNull(mapped);
+      assertEquals(large.length, mapped.remaining());
+      byte[] received = new byte[large.length];
+      mapped.get(received);
+      assertArrayEquals(large, received);
+
+      // partially read via the regular API, then take the rest as a mapping
+      ByteBuffer part = ByteBuffer.allocate(1000);
+      assertEquals(1000, b.read(part));
+      mapped = b.receiveOffloadedBuffer();
+      assertNotNull(mapped);
+      assertEquals(large.length - 1000, mapped.remaining());
+      assertEquals(large[1000], mapped.get());
+
+      assertNull(b.receiveOffloadedBuffer());
+      assertEquals(-1, b.read(small));
+      writer.get(30, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testAvailable() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = openPair();
+    try (AFUNIXSocketChannel a = pair.getFirst(); AFUNIXSocketChannel b = pair.getSecond()) {
+      a.write(ByteBuffer.wrap(data(0, 2 * THRESHOLD)));
+      InputStream in = ((AFUNIXSocket) b.socket()).getInputStream();
+      assertEquals(0, in.available()); // the header has not been read yet
+      assertEquals(data(0, 1)[0], (byte) in.read());
+      assertEquals(2 * THRESHOLD - 1, in.available());
+    }
+  }
+
+  @Test
+  public void testNonBlockingNotSupported() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = openPair();
+    try (AFUNIXSocketChannel a = pair.getFirst(); AFUNIXSocketChannel b = pair.getSecond()) {
+      a.configureBlocking(false);
+      assertThrows(IllegalBlockingModeException.class, () -> a.write(ByteBuffer.allocate(1)));
+
+      a.setMemfdOffloadThreshold(0);
+      b.setMemfdOffloadThreshold(0);
+      assertEquals(1, a.write(ByteBuffer.allocate(1)));
+      assertThrows(IllegalStateException.class, b::receiveOffloadedBuffer);
+    }
+  }
+
+  @Test
+  public void testEmptyFramesAreSkipped() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+    File f = File.createTempFile("jux", ".bin");
+    try (AFUNIXSocketChannel a = pair.getFirst(); AFUNIXSocketChannel b = pair.getSecond();
+        FileOutputStream out = new FileOutputStream(f)) {
+      b.setMemfdOffloadThreshold(THRESHOLD);
+
+      // hand-crafted empty inline frame, empty offload frame, then one byte inline
+      assertEquals(4, a.write(ByteBuffer.allocate(4)));
+      ByteBuffer header = ByteBuffer.allocate(12);
+      header.putInt(-1);
+      header.putLong(0);
+      header.flip();
+      a.setOutboundFileDescriptors(out.getFD());
+      assertEquals(12, a.write(header));
+      ByteBuffer data = ByteBuffer.allocate(5);
+      data.putInt(1);
+      data.put((byte) 'x');
+      data.flip();
+      assertEquals(5, a.write(data));
+
+      ByteBuffer dst = ByteBuffer.allocate(16);
+      assertEquals(1, b.read(dst));
+      assertEquals('x', dst.get(0));
+    } finally {
+      Files.delete(f.toPath());
+    }
+  }
+
+  @Test
+  public void testUnsealedFileRejected() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+    File f = File.createTempFile("jux", ".bin");
+    try (AFUNIXSocketChannel a = pair.getFirst(); AFUNIXSocketChannel b = pair.getSecond();
+        FileOutputStream out = new FileOutputStream(f)) {
+      out.write(data(0, 16));
+      b.setMemfdOffloadThreshold(THRESHOLD);
+
+      // a hand-crafted offload frame, referring to a regular (unsealed) file
+      ByteBuffer header = ByteBuffer.allocate(12);
+      header.putInt(-1);
+      header.putLong(16);
+      header.flip();
+      a.setOutboundFileDescriptors(out.getFD());
+      assertEquals(12, a.write(header));
+
+      assertThrows(SocketException.class, () -> b.read(ByteBuffer.allocate(16)));
+    } finally {
+      Files.delete(f.toPath());
+    }
+  }
+}
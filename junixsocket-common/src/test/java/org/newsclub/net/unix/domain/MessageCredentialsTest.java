@@ -0,0 +1,141 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXDatagramChannel;
+import org.newsclub.net.unix.AFUNIXMessageCredentials;
+import org.newsclub.net.unix.AFUNIXSocketCredentials;
+import org.newsclub.net.unix.AFUNIXSocketOptions;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@AFSocketCapabilityRequirement({
+    AFSocketCapability.CAPABILITY_UNIX_DOMAIN, AFSocketCapability.CAPABILITY_UNIX_DATAGRAMS})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class MessageCredentialsTest {
+  @BeforeEach
+  public void checkLinux() {
+    assumeTrue("Linux".equals(System.getProperty("os.name")), "SCM_CREDENTIALS is Linux-only");
+  }
+
+  @Test
+  public void testReceiveCredentials() throws Exception {
+    AFUNIXSocketPair<AFUNIXDatagramChannel> pair = AFUNIXSocketPair.openDatagram();
+    try (AFUNIXDatagramChannel a = pair.getSocket1(); AFUNIXDatagramChannel b = pair
+        .getSocket2()) {
+      AFUNIXSocketCredentials peer = b.getPeerCredentials();
+      assertNotNull(peer);
+
+      AFUNIXMessageCredentials creds = new AFUNIXMessageCredentials();
+      ByteBuffer dst = ByteBuffer.allocate(64);
+
+      // not requested
+      a.send(ByteBuffer.allocate(1), null);
+      b.receive(dst, creds);
+      assertEquals(1, dst.position());
+      assertFalse(creds.isPresent());
+      assertEquals(-1, creds.getPid());
+
+      b.setOption(AFUNIXSocketOptions.SO_PASSCRED, true);
+      assertTrue(b.getOption(AFUNIXSocketOptions.SO_PASSCRED));
+
+      for (int i = 0; i < 3; i++) {
+        dst.clear();
+        a.send(ByteBuffer.wrap(new byte[] {(byte) i}), null);
+        b.receive(dst, creds); // socket pairs are unnamed, so the address is null
+        assertEquals(1, dst.position());
+        assertTrue(creds.isPresent());
+        assertEquals(ProcessHandle.current().pid(), creds.getPid());
+        assertEquals(peer.getUid(), creds.getUid());
+        assertEquals(peer.getGid(), creds.getGid());
+      }
+
+      // non-blocking receive without any datagram clears the holder
+      b.configureBlocking(false);
+      dst.clear();
+      assertNull(b.receive(dst, creds));
+      assertEquals(0, dst.position());
+      assertFalse(creds.isPresent());
+    }
+  }
+
+  @Test
+  public void testSendExplicitCredentials() throws Exception {
+    AFUNIXSocketPair<AFUNIXDatagramChannel> pair = AFUNIXSocketPair.openDatagram();
+    try (AFUNIXDatagramChannel a = pair.getSocket1(); AFUNIXDatagramChannel b = pair
+        .getSocket2()) {
+      b.setOption(AFUNIXSocketOptions.SO_PASSCRED, true);
+      AFUNIXSocketCredentials peer = b.getPeerCredentials();
+      long pid = ProcessHandle.current().pid();
+
+      AFUNIXMessageCredentials out = new AFUNIXMessageCredentials().set(pid, peer.getUid(), peer
+          .getGid());
+      assertEquals(1, a.send(ByteBuffer.allocate(1), null, out));
+
+      AFUNIXMessageCredentials in = new AFUNIXMessageCredentials();
+      b.receive(ByteBuffer.allocate(1), in);
+      assertEquals(pid, in.getPid());
+      assertEquals(peer.getUid(), in.getUid());
+
+      // credentials are only sent with the call that specified them
+      assertEquals(1, a.send(ByteBuffer.allocate(1), null));
+      in.clear();
+      b.receive(ByteBuffer.allocate(1), in);
+      assertEquals(pid, in.getPid());
+
+      if (peer.getUid() != 0) {
+        // only privileged processes may claim another process' pid
+        AFUNIXMessageCredentials fake = new AFUNIXMessageCredentials().set(1, peer.getUid(), peer
+            .getGid());
+        assertThrows(SocketException.class, () -> a.send(ByteBuffer.allocate(1), null, fake));
+      }
+    }
+  }
+
+  @Test
+  public void testHolder() {
+    AFUNIXMessageCredentials creds = new AFUNIXMessageCredentials();
+    assertFalse(creds.isPresent());
+    creds.set(123, 0xFFFFFFFEL, 5);
+    assertTrue(creds.isPresent());
+    assertEquals(123, creds.getPid());
+    assertEquals(0xFFFFFFFEL, creds.getUid());
+    assertEquals(5, creds.getGid());
+    creds.clear();
+    assertFalse(creds.isPresent());
+    assertEquals(-1, creds.getUid());
+    assertThrows(IllegalArgumentException.class, () -> creds.set(-1, 0, 0));
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocket;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXDatagramChannel;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class QueueBytesTest {
+  @Test
+  public void testStreamQueues() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+    try (AFUNIXSocketChannel a = pair.getSocket1(); AFUNIXSocketChannel b = pair.getSocket2()) {
+      assertEquals(0, b.getReceiveQueueBytes());
+
+      a.write(ByteBuffer.allocate(100));
+      assertEquals(100, b.getReceiveQueueBytes());
+
+      AFSocket<?> sock = b.socket();
+      assertEquals(100, sock.getReceiveQueueBytes());
+      assertEquals(100, sock.getInputStream().available());
+
+      if ("Linux".equals(System.getProperty("os.name"))) {
+        // Linux accounts unread data to the sender until the receiver consumes it
+        assertTrue(a.getSendQueueBytes() >= 100, "send queue: " + a.getSendQueueBytes());
+      }
+
+      ByteBuffer bb = ByteBuffer.allocate(100);
+      while (bb.hasRemaining()) {
+        b.read(bb);
+      }
+      assertEquals(0, b.getReceiveQueueBytes());
+      if ("Linux".equals(System.getProperty("os.name"))) {
+        assertEquals(0, a.getSendQueueBytes());
+      }
+    }
+  }
+
+  @Test
+  public void testDatagramQueue() throws Exception {
+    assumeTrue("Linux".equals(System.getProperty("os.name")),
+        "Datagram queue semantics are platform-specific");
+
+    AFUNIXSocketPair<AFUNIXDatagramChannel> pair = AFUNIXSocketPair.openDatagram();
+    try (AFUNIXDatagramChannel a = pair.getSocket1(); AFUNIXDatagramChannel b = pair
+        .getSocket2()) {
+      a.send(ByteBuffer.allocate(10), null);
+      a.send(ByteBuffer.allocate(20), null);
+
+      // Linux reports the size of the next datagram
+      assertEquals(10, b.getReceiveQueueBytes());
+      b.receive(ByteBuffer.allocate(64));
+      assertEquals(20, b.getReceiveQueueBytes());
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXSelectorProvider;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Tests scattering reads and gathering writes with more than one buffer.
+ */
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class ScatterGatherTest {
+  private static ByteBuffer direct(String s) {
+    byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+    ByteBuffer bb = ByteBuffer.allocateDirect(b.length);
+    bb.put(b);
+    bb.flip();
+    return bb;
+  }
+
+  private static ByteBuffer heap(String s) {
+    return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static String contents(ByteBuffer bb) {
+    bb.flip();
+    byte[] b = new byte[bb.remaining()];
+    bb.get(b);
+    return new String(b, StandardCharsets.US_ASCII);
+  }
+
+  @Test
+  public void testGatheringWriteScatteringRead() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openSocketChannelPair();
+    try {
+      ByteBuffer[] srcs = {heap("ab"), direct("cde"), heap(""), heap("fghi")};
+      assertEquals(9, pair.getSocket1().write(srcs));
+      for (ByteBuffer src : srcs) {
+        assertFalse(src.hasRemaining());
+      }
+
+      ByteBuffer[] dsts = {ByteBuffer.allocate(4), ByteBuffer.allocateDirect(2), ByteBuffer
+          .allocate(16)};
+      assertEquals(9, pair.getSocket2().read(dsts));
+      assertEquals("abcd", contents(dsts[0]));
+      assertEquals("ef", contents(dsts[1]));
+      assertEquals("ghi", contents(dsts[2]));
+    } finally {
+      pair.close();
+    }
+  }
+
+  @Test
+  public void testOffsetAndLength() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openSocketChannelPair();
+    try {
+      ByteBuffer[] srcs = {heap("ab"), direct("cde"), heap("fg"), heap("hi")};
+      assertEquals(5, pair.getSocket1().write(srcs, 1, 2));
+      assertEquals(2, srcs[0].remaining());
+      assertEquals(2, srcs[3].remaining());
+
+      ByteBuffer[] dsts = {ByteBuffer.allocate(8), ByteBuffer.allocate(1), ByteBuffer.allocate(
+          2), ByteBuffer.allocate(8)};
+      pair.getSocket1().configureBlocking(false);
+      pair.getSocket2().configureBlocking(false);
+      assertEquals(3, pair.getSocket2().read(dsts, 1, 2));
+      assertEquals(0, dsts[0].position());
+      assertEquals(0, dsts[3].position());
+      assertEquals("c", contents(dsts[1]));
+      assertEquals("de", contents(dsts[2]));
+
+      ByteBuffer rest = ByteBuffer.allocate(8);
+      assertEquals(2, pair.getSocket2().read(new ByteBuffer[] {rest}));
+      assertEquals("fg", contents(rest));
+
+      // nothing left to read
+      assertEquals(0, pair.getSocket2().read(dsts, 0, 1));
+    } finally {
+      pair.close();
+    }
+  }
+}
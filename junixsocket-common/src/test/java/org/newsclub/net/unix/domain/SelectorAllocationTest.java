@@ -0,0 +1,190 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXSelectorProvider;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Verifies that {@link Selector#selectNow(Consumer)} does not allocate on the heap per select
+ * cycle, even with a large number of registered keys.
+ * <p>
+ * The test can be configured as follows (all system properties):
+ * <ul>
+ * <li><code>org.newsclub.net.unix.selector-allocation-test.keys</code> (default: 10000; capped by
+ * the number of file descriptors this process may still open)</li>
+ * <li><code>org.newsclub.net.unix.selector-allocation-test.ready</code> (default: 100)</li>
+ * <li><code>org.newsclub.net.unix.selector-allocation-test.cycles</code> (default: 1000)</li>
+ * </ul>
+ *
+ * @author Christian Kohlschütter
+ */
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class SelectorAllocationTest {
+  private static final int NUM_KEYS = Integer.getInteger(
+      "org.newsclub.net.unix.selector-allocation-test.keys", 10000);
+  private static final int NUM_READY = Integer.getInteger(
+      "org.newsclub.net.unix.selector-allocation-test.ready", 100);
+  private static final int NUM_CYCLES = Integer.getInteger(
+      "org.newsclub.net.unix.selector-allocation-test.cycles", 1000);
+
+  /**
+   * Returns a function that measures the bytes allocated by the current thread, or {@code null}
+   * if not supported by the JVM (com.sun.management.ThreadMXBean is not part of the Java SE API,
+   * and {@code getCurrentThreadAllocatedBytes} requires Java 14 or newer).
+   */
+  private static Method allocatedBytesMethod() {
+    try {
+      Class<?> mxBeanClass = Class.forName("com.sun.management.ThreadMXBean");
+      if (!mxBeanClass.isInstance(ManagementFactory.getThreadMXBean())) {
+        return null;
+      }
+      Method m = mxBeanClass.getMethod("getCurrentThreadAllocatedBytes");
+      long value = (Long) m.invoke(ManagementFactory.getThreadMXBean());
+      return value < 0 ? null : m;
+    } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static long allocatedBytes(Method m) throws ReflectiveOperationException {
+    return (Long) m.invoke(ManagementFactory.getThreadMXBean());
+  }
+
+  /**
+   * Returns the number of keys to register: the configured number, but at most what fits into
+   * three quarters of the file descriptors that can still be opened (RLIMIT_NOFILE minus those
+   * already open), so the test does not fail with "Too many open files" on systems with a low
+   * limit (commonly 1024). The limit is queried via com.sun.management.UnixOperatingSystemMXBean,
+   * where available.
+   */
+  private static int numKeys() throws IOException {
+    try {
+      Class<?> mxBeanClass = Class.forName("com.sun.management.UnixOperatingSystemMXBean");
+      Object mxBean = ManagementFactory.getOperatingSystemMXBean();
+      if (!mxBeanClass.isInstance(mxBean)) {
+        return NUM_KEYS;
+      }
+      Method maxCount = mxBeanClass.getMethod("getMaxFileDescriptorCount");
+      Method openCount = mxBeanClass.getMethod("getOpenFileDescriptorCount");
+
+      // a socket pair may take more than two descriptors, so measure
+      long open = (Long) openCount.invoke(mxBean);
+      long perPair;
+      try (AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open()) {
+        perPair = Math.max(2, (Long) openCount.invoke(mxBean) - open);
+      }
+
+      long available = ((Long) maxCount.invoke(mxBean) - open) * 3 / 4;
+      return (int) Math.min(NUM_KEYS, available / perPair * 2);
+    } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+      return NUM_KEYS;
+    }
+  }
+
+  @Test
+  @SuppressWarnings("PMD.CognitiveComplexity")
+  public void testSelectNowConsumerDoesNotAllocate() throws Exception {
+    Method allocatedBytes = allocatedBytesMethod();
+    assumeTrue(allocatedBytes != null, "Thread allocation measurement not supported");
+
+    int numKeys = numKeys();
+    assumeTrue(numKeys >= 2 * NUM_READY, "Not enough file descriptors available for " + numKeys
+        + " sockets");
+
+    List<AFUNIXSocketPair<AFUNIXSocketChannel>> pairs = new ArrayList<>();
+    try (Selector selector = AFUNIXSelectorProvider.provider().openSelector()) {
+      try {
+        for (int i = 0; i < numKeys / 2; i++) {
+          pairs.add(AFUNIXSocketPair.open());
+        }
+      } catch (IOException e) {
+        assumeTrue(false, "Cannot open " + numKeys + " sockets: " + e);
+      }
+
+      for (AFUNIXSocketPair<AFUNIXSocketChannel> pair : pairs) {
+        pair.getSocket1().configureBlocking(false);
+        pair.getSocket1().register(selector, SelectionKey.OP_READ);
+        pair.getSocket2().configureBlocking(false);
+        pair.getSocket2().register(selector, SelectionKey.OP_READ);
+      }
+      assertEquals(pairs.size() * 2, selector.keys().size());
+
+      // make some channels readable; since we never read, they stay ready
+      int numReady = Math.min(NUM_READY, pairs.size());
+      for (int i = 0; i < numReady; i++) {
+        pairs.get(i * pairs.size() / numReady).getSocket2().write(ByteBuffer.wrap(new byte[1]));
+      }
+
+      final int[] numSelected = new int[1];
+      Consumer<SelectionKey> action = (key) -> {
+        if (key.isReadable()) {
+          numSelected[0]++;
+        }
+      };
+
+      // warm up (class loading, JIT)
+      for (int i = 0; i < NUM_CYCLES; i++) {
+        selector.selectNow(action);
+      }
+
+      numSelected[0] = 0;
+      long time = System.nanoTime();
+      long before = allocatedBytes(allocatedBytes);
+      for (int i = 0; i < NUM_CYCLES; i++) {
+        selector.selectNow(action);
+      }
+      long allocated = allocatedBytes(allocatedBytes) - before;
+      time = System.nanoTime() - time;
+
+      assertEquals(numReady * NUM_CYCLES, numSelected[0]);
+
+      // a single allocation per cycle would amount to at least 16 bytes per cycle; allow for
+      // the constant overhead of the measurement itself
+      assertTrue(allocated < NUM_CYCLES, "Expected no allocation per select cycle; allocated "
+          + allocated + " bytes in " + NUM_CYCLES + " cycles (" + (time / NUM_CYCLES)
+          + " ns per cycle)");
+    } finally {
+      for (AFUNIXSocketPair<AFUNIXSocketChannel> pair : pairs) {
+        pair.close();
+      }
+    }
+  }
+}
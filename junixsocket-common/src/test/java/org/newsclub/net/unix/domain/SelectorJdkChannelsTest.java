@@ -0,0 +1,158 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXSelectorProvider;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Tests polling JDK channels (TCP, pipes) alongside junixsocket channels with a single junixsocket
+ * selector.
+ */
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class SelectorJdkChannelsTest {
+
+  private static Set<Object> selectUntil(Selector selector, int expected) throws Exception {
+    Set<Object> ready = new HashSet<>();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (ready.size() < expected && System.currentTimeMillis() < deadline) {
+      selector.select((key) -> ready.add(key.attachment()), 100);
+    }
+    return ready;
+  }
+
+  @Test
+  public void testMixedChannels() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> unixPair = AFUNIXSelectorProvider.getInstance()
+        .openSocketChannelPair();
+    Pipe pipe = Pipe.open();
+    try (Selector selector = AFUNIXSelectorProvider.getInstance().openSelector();
+        ServerSocketChannel tcpServer = ServerSocketChannel.open()) {
+      tcpServer.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+      tcpServer.configureBlocking(false);
+      tcpServer.register(selector, SelectionKey.OP_ACCEPT, "tcpServer");
+
+      unixPair.getSocket1().configureBlocking(false);
+      unixPair.getSocket1().register(selector, SelectionKey.OP_READ, "unix");
+
+      pipe.source().configureBlocking(false);
+      pipe.source().register(selector, SelectionKey.OP_READ, "pipe");
+
+      assertEquals(0, selector.selectNow());
+
+      try (SocketChannel tcpClient = SocketChannel.open(tcpServer.getLocalAddress())) {
+        unixPair.getSocket2().write(ByteBuffer.wrap(new byte[] {1}));
+        pipe.sink().write(ByteBuffer.wrap(new byte[] {2}));
+
+        Set<Object> ready = selectUntil(selector, 3);
+        assertTrue(ready.contains("tcpServer"), "TCP server should be acceptable");
+        assertTrue(ready.contains("unix"), "AF_UNIX socket should be readable");
+        assertTrue(ready.contains("pipe"), "Pipe should be readable");
+
+        // bridge data from TCP to AF_UNIX within the same loop
+        SocketChannel tcpAccepted = tcpServer.accept();
+        assertNotNull(tcpAccepted);
+        tcpAccepted.configureBlocking(false);
+        tcpAccepted.register(selector, SelectionKey.OP_READ, "tcpAccepted");
+
+        unixPair.getSocket1().read(ByteBuffer.allocate(1));
+        pipe.source().read(ByteBuffer.allocate(1));
+
+        tcpClient.write(ByteBuffer.wrap("Hello".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(selectUntil(selector, 1).contains("tcpAccepted"));
+
+        ByteBuffer bb = ByteBuffer.allocate(64);
+        tcpAccepted.read(bb);
+        bb.flip();
+        unixPair.getSocket1().write(bb);
+
+        ByteBuffer in = ByteBuffer.allocate(64);
+        unixPair.getSocket2().read(in);
+        assertEquals("Hello", new String(in.array(), 0, in.position(), StandardCharsets.UTF_8));
+      }
+    } finally {
+      unixPair.close();
+      pipe.source().close();
+      pipe.sink().close();
+    }
+  }
+
+  @Test
+  public void testCloseRegisteredJdkChannel() throws Exception {
+    Pipe pipe = Pipe.open();
+    try (Selector selector = AFUNIXSelectorProvider.getInstance().openSelector()) {
+      pipe.source().configureBlocking(false);
+      pipe.source().register(selector, SelectionKey.OP_READ);
+      selector.selectNow();
+
+      // The JDK defers closing the file descriptor until the channel is deregistered from all
+      // selectors; our selector must complete the close, or the file descriptor would leak
+      pipe.source().close();
+      assertFalse(pipe.source().isRegistered());
+      selector.selectNow();
+
+      // writing to a pipe whose read end is closed fails with EPIPE
+      assertThrows(IOException.class, () -> pipe.sink().write(ByteBuffer.wrap(new byte[1])));
+    } finally {
+      pipe.sink().close();
+    }
+  }
+
+  @Test
+  public void testCloseSelectorDeregistersJdkChannel() throws Exception {
+    Pipe pipe = Pipe.open();
+    try {
+      Selector selector = AFUNIXSelectorProvider.getInstance().openSelector();
+      pipe.source().configureBlocking(false);
+      pipe.source().register(selector, SelectionKey.OP_READ);
+      assertTrue(pipe.source().isRegistered());
+      selector.close();
+      assertFalse(pipe.source().isRegistered());
+    } finally {
+      pipe.source().close();
+      pipe.sink().close();
+    }
+  }
+}
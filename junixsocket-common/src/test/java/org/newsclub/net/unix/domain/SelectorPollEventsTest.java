@@ -0,0 +1,157 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXSelectorProvider;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Tests how the events reported by {@code poll(2)} are mapped to the ready operations of a
+ * junixsocket selector.
+ */
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class SelectorPollEventsTest {
+
+  @Test
+  public void testNoInterestOpsNotInvalidated() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openSocketChannelPair();
+    try (Selector selector = AFUNIXSelectorProvider.getInstance().openSelector();
+        AFUNIXSocketChannel unconnected = AFUNIXSocketChannel.open()) {
+      // poll reports POLLHUP for a stream socket that is not connected yet
+      unconnected.configureBlocking(false);
+      SelectionKey idleKey = unconnected.register(selector, 0);
+
+      pair.getSocket1().configureBlocking(false);
+      SelectionKey readKey = pair.getSocket1().register(selector, SelectionKey.OP_READ);
+      pair.getSocket2().write(ByteBuffer.wrap(new byte[] {1}));
+
+      assertEquals(1, selector.select(5000));
+      assertEquals(Collections.singleton(readKey), selector.selectedKeys());
+      assertTrue(idleKey.isValid());
+      assertTrue(unconnected.isOpen());
+
+      // polling again does not invalidate it either
+      assertEquals(1, pair.getSocket1().read(ByteBuffer.allocate(1)));
+      selector.selectedKeys().clear();
+      assertEquals(0, selector.selectNow());
+      assertTrue(idleKey.isValid());
+    } finally {
+      pair.close();
+    }
+  }
+
+  @Test
+  public void testHangupReportedAsReady() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openSocketChannelPair();
+    try (Selector selector = AFUNIXSelectorProvider.getInstance().openSelector()) {
+      AFUNIXSocketChannel ch = pair.getSocket1();
+      ch.configureBlocking(false);
+      SelectionKey key = ch.register(selector, SelectionKey.OP_READ);
+
+      // data still buffered when the peer hangs up must not get lost
+      pair.getSocket2().write(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+      pair.getSocket2().close();
+
+      assertEquals(1, selector.select(5000));
+      assertTrue(key.isValid());
+      assertTrue(key.isReadable());
+      assertTrue(ch.isOpen());
+
+      ByteBuffer bb = ByteBuffer.allocate(16);
+      assertEquals(3, ch.read(bb));
+      // end-of-stream in non-blocking mode
+      assertEquals(-1, ch.read(bb));
+
+      // the key stays ready (level-triggered), like with the JDK's selectors
+      selector.selectedKeys().clear();
+      assertEquals(1, selector.selectNow());
+      assertTrue(key.isValid());
+      assertTrue(key.isReadable());
+    } finally {
+      pair.close();
+    }
+  }
+
+  @Test
+  public void testHangupReportedAsWritable() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openSocketChannelPair();
+    try (Selector selector = AFUNIXSelectorProvider.getInstance().openSelector()) {
+      AFUNIXSocketChannel ch = pair.getSocket1();
+      ch.configureBlocking(false);
+      SelectionKey key = ch.register(selector, SelectionKey.OP_WRITE);
+
+      pair.getSocket2().close();
+
+      assertEquals(1, selector.select(5000));
+      assertTrue(key.isValid());
+      assertTrue(key.isWritable());
+      assertFalse(key.isReadable());
+
+      // the write reports the condition, not the selector
+      assertThrows(IOException.class, () -> ch.write(ByteBuffer.wrap(new byte[] {1})));
+    } finally {
+      pair.close();
+    }
+  }
+
+  @Test
+  public void testHangupReportedToConsumer() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openSocketChannelPair();
+    try (Selector selector = AFUNIXSelectorProvider.getInstance().openSelector()) {
+      AFUNIXSocketChannel ch = pair.getSocket1();
+      ch.configureBlocking(false);
+      SelectionKey key = ch.register(selector, SelectionKey.OP_READ);
+
+      pair.getSocket2().close();
+
+      List<SelectionKey> ready = new ArrayList<>();
+      assertEquals(1, selector.select(ready::add, 5000));
+      assertEquals(Collections.singletonList(key), ready);
+      assertTrue(key.isValid());
+      assertEquals(SelectionKey.OP_READ, key.readyOps());
+      assertEquals(-1, ch.read(ByteBuffer.allocate(16)));
+    } finally {
+      pair.close();
+    }
+  }
+}
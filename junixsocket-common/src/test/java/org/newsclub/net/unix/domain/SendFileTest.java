@@ -0,0 +1,94 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXSelectorProvider;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+import org.newsclub.net.unix.OperationNotSupportedSocketException;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Tests {@link AFUNIXSocketChannel#sendFile(java.io.FileDescriptor, long, long)}.
+ */
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class SendFileTest {
+  @Test
+  public void testSendFile() throws Exception {
+    byte[] data = new byte[100000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 13 + 1);
+    }
+    File f = File.createTempFile("jux", ".sendfile");
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSelectorProvider.getInstance()
+        .openSocketChannelPair();
+    try (FileInputStream fin = new FileInputStream(f)) {
+      Files.write(f.toPath(), data);
+      pair.getSocket1().configureBlocking(false);
+      pair.getSocket2().configureBlocking(false);
+
+      int position = 123;
+      int count = 50000;
+      ByteBuffer in = ByteBuffer.allocate(count);
+
+      long sent = 0;
+      try {
+        while (sent < count) {
+          sent += pair.getSocket1().sendFile(fin.getFD(), position + sent, count - sent);
+          pair.getSocket2().read(in);
+        }
+      } catch (OperationNotSupportedSocketException e) {
+        // not supported on this platform
+        return;
+      }
+      while (in.hasRemaining()) {
+        pair.getSocket2().read(in);
+      }
+
+      assertArrayEquals(Arrays.copyOfRange(data, position, position + count), in.array());
+
+      // the file's own position is not modified
+      assertEquals(0, fin.getChannel().position());
+
+      // nothing to send beyond the end of the file
+      assertEquals(0, pair.getSocket1().sendFile(fin.getFD(), data.length, 1));
+
+      assertThrows(IllegalArgumentException.class, () -> pair.getSocket1().sendFile(fin.getFD(),
+          -1, 1));
+    } finally {
+      pair.close();
+      Files.delete(f.toPath());
+    }
+  }
+}
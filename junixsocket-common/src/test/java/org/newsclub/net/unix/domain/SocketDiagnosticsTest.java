@@ -0,0 +1,97 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXServerSocket;
+import org.newsclub.net.unix.AFUNIXSocket;
+import org.newsclub.net.unix.AFUNIXSocketAddress;
+import org.newsclub.net.unix.AFUNIXSocketDiagnostics;
+import org.newsclub.net.unix.AFUNIXSocketDiagnostics.SocketInfo;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class SocketDiagnosticsTest {
+  @Test
+  public void testListenerBacklog() throws Exception {
+    assumeTrue("Linux".equals(System.getProperty("os.name")), "sock_diag is Linux-only");
+
+    AFUNIXSocketAddress addr = AFUNIXSocketAddress.ofNewTempFile();
+    try (AFUNIXSocketDiagnostics diag = AFUNIXSocketDiagnostics.open();
+        AFUNIXServerSocket server = AFUNIXServerSocket.newInstance()) {
+      server.bind(addr, 5);
+
+      SocketInfo info = diag.getSocketInfo(server);
+      assertNotNull(info);
+      assertTrue(info.isListening());
+      assertEquals(0, info.getPendingConnections());
+      assertEquals(5, info.getMaxBacklog());
+      assertEquals(addr, info.getAddress());
+
+      try (AFUNIXSocket c1 = AFUNIXSocket.connectTo(addr);
+          AFUNIXSocket c2 = AFUNIXSocket.connectTo(addr)) {
+        info = diag.getSocketInfo(server);
+        assertNotNull(info);
+        assertEquals(2, info.getPendingConnections());
+        assertEquals(2, info.getPendingConnectionInodes().length);
+        assertEquals(0.4f, info.getBacklogSaturation(), 0.001f);
+
+        boolean found = false;
+        for (SocketInfo si : diag.getListeningSockets()) {
+          if (si.getInode() == info.getInode()) {
+            found = true;
+            assertEquals(2, si.getPendingConnections());
+          }
+        }
+        assertTrue(found, "listener not found in dump");
+
+        try (AFUNIXSocket accepted = server.accept()) {
+          info = diag.getSocketInfo(server);
+          assertNotNull(info);
+          assertEquals(1, info.getPendingConnections());
+
+          SocketInfo acceptedInfo = diag.getSocketInfo(accepted);
+          assertNotNull(acceptedInfo);
+          assertTrue(acceptedInfo.isConnected());
+          assertEquals(diag.getSocketInfo(c1).getInode(), acceptedInfo.getPeerInode());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testUnknownInode() throws Exception {
+    assumeTrue("Linux".equals(System.getProperty("os.name")), "sock_diag is Linux-only");
+
+    try (AFUNIXSocketDiagnostics diag = AFUNIXSocketDiagnostics.open()) {
+      assertNull(diag.getSocketInfo(0));
+      assertNull(diag.getSocketInfo(0xFFFFFFFEL));
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFSocketFilter;
+import org.newsclub.net.unix.AFUNIXDatagramChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@AFSocketCapabilityRequirement({
+    AFSocketCapability.CAPABILITY_UNIX_DOMAIN, AFSocketCapability.CAPABILITY_UNIX_DATAGRAMS})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class SocketFilterTest {
+  private static void send(AFUNIXDatagramChannel ch, int... bytes) throws Exception {
+    byte[] b = new byte[bytes.length];
+    for (int i = 0; i < b.length; i++) {
+      b[i] = (byte) bytes[i];
+    }
+    ch.send(ByteBuffer.wrap(b), null);
+  }
+
+  private static List<byte[]> receiveAll(AFUNIXDatagramChannel ch) throws Exception {
+    List<byte[]> list = new ArrayList<>();
+    ByteBuffer bb = ByteBuffer.allocate(64);
+    while (true) { // NOPMD.WhileLoopWithLiteralBoolean
+      bb.clear();
+      ch.receive(bb);
+      if (bb.position() == 0) {
+        return list;
+      }
+      bb.flip();
+      byte[] b = new byte[bb.remaining()];
+      bb.get(b);
+      list.add(b);
+    }
+  }
+
+  @Test
+  public void testFilter() throws Exception {
+    assumeTrue("Linux".equals(System.getProperty("os.name")), "Socket filters are Linux-only");
+
+    AFUNIXSocketPair<AFUNIXDatagramChannel> pair = AFUNIXSocketPair.openDatagram();
+    try (AFUNIXDatagramChannel a = pair.getSocket1(); AFUNIXDatagramChannel b = pair
+        .getSocket2()) {
+      b.configureBlocking(false);
+      b.attachFilter(AFSocketFilter.builder().lengthBetween(2, 4).byteEquals(0, 0xAB)
+          .byteMaskEquals(1, 0x0F, 0x03).build());
+
+      send(a, 0xAB, 0x13); // accepted
+      send(a, 0xAB); // too short
+      send(a, 0xAB, 0x03, 0, 0, 0); // too long
+      send(a, 0xAA, 0x03); // wrong first byte
+      send(a, 0xAB, 0x14); // wrong masked second byte
+      send(a, 0xAB, 0xF3, 0x01); // accepted
+
+      List<byte[]> received = receiveAll(b);
+      assertEquals(2, received.size());
+      assertArrayEquals(new byte[] {(byte) 0xAB, 0x13}, received.get(0));
+      assertArrayEquals(new byte[] {(byte) 0xAB, (byte) 0xF3, 0x01}, received.get(1));
+
+      b.attachFilter(AFSocketFilter.builder().intEquals(0, 0x01020304).acceptLength(5).build());
+      send(a, 1, 2, 3, 4, 5, 6, 7); // accepted, but truncated
+      send(a, 1, 2, 3); // too short for the predicate
+      received = receiveAll(b);
+      assertEquals(1, received.size());
+      assertArrayEquals(new byte[] {1, 2, 3, 4, 5}, received.get(0));
+
+      b.detachFilter();
+      b.detachFilter(); // no-op
+      send(a, 0);
+      assertEquals(1, receiveAll(b).size());
+
+      b.attachFilter(AFSocketFilter.builder().shortEquals(0, 0x0102).build());
+      b.lockFilter();
+      assertThrows(SocketException.class, b::detachFilter);
+      assertThrows(SocketException.class, () -> b.attachFilter(AFSocketFilter.builder()
+          .build()));
+      send(a, 1, 2);
+      send(a, 2, 1);
+      assertEquals(1, receiveAll(b).size());
+    }
+  }
+
+  @Test
+  public void testBuilder() throws Exception {
+    AFSocketFilter acceptAll = AFSocketFilter.builder().build();
+    assertEquals(2, acceptAll.numInstructions());
+    assertEquals(acceptAll, AFSocketFilter.ofInstructions(new short[] {0x06, 0x06}, new byte[2],
+        new byte[2], new int[] {-1, 0}));
+
+    // load byte, compare, load length, 2 comparisons, accept, reject
+    assertEquals(7, AFSocketFilter.builder().byteEquals(3, 1).lengthBetween(1, 2).build()
+        .numInstructions());
+
+    AFSocketFilter.Builder builder = AFSocketFilter.builder();
+    for (int i = 0; i < 200; i++) {
+      builder.byteEquals(i, i);
+    }
+    assertThrows(IllegalStateException.class, builder::build);
+    assertThrows(IllegalArgumentException.class, () -> AFSocketFilter.builder().lengthBetween(3,
+        2));
+  }
+}
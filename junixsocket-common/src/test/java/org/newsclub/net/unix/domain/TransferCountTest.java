@@ -0,0 +1,76 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocket;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXSocketAddress;
+import org.newsclub.net.unix.AFUNIXSocketChannel;
+import org.newsclub.net.unix.AFUNIXSocketPair;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Tests {@link AFSocket#getTransferCount()}.
+ */
+@AFSocketCapabilityRequirement({AFSocketCapability.CAPABILITY_UNIX_DOMAIN})
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class TransferCountTest {
+  @Test
+  public void testStreamsAndChannels() throws Exception {
+    AFUNIXSocketPair<AFUNIXSocketChannel> pair = AFUNIXSocketPair.open();
+    try {
+      AFSocket<AFUNIXSocketAddress> s1 = pair.getSocket1().socket();
+      AFSocket<AFUNIXSocketAddress> s2 = pair.getSocket2().socket();
+
+      long c1 = s1.getTransferCount();
+      long c2 = s2.getTransferCount();
+
+      s1.getOutputStream().write(new byte[] {1, 2, 3});
+      assertNotEquals(c1, s1.getTransferCount());
+      assertEquals(c2, s2.getTransferCount());
+
+      assertEquals(1, s2.getInputStream().read());
+      assertNotEquals(c2, s2.getTransferCount());
+
+      c2 = s2.getTransferCount();
+      pair.getSocket2().read(ByteBuffer.allocate(2));
+      assertNotEquals(c2, s2.getTransferCount());
+
+      // nothing transferred
+      c2 = s2.getTransferCount();
+      pair.getSocket2().configureBlocking(false);
+      assertEquals(0, pair.getSocket2().read(ByteBuffer.allocate(2)));
+      assertEquals(c2, s2.getTransferCount());
+
+      c1 = s1.getTransferCount();
+      pair.getSocket1().write(ByteBuffer.wrap(new byte[] {4}));
+      assertNotEquals(c1, s1.getTransferCount());
+    } finally {
+      pair.close();
+    }
+  }
+}
@@ -54,9 +54,13 @@ struct cmsghdr* junixsocket_CMSG_NXTHDR (struct msghdr *mhdr, struct cmsghdr *cm
 static jclass class_AncillaryDataSupport = NULL;
 static jfieldID fieldID_ancillaryReceiveBuffer = NULL;
 static jfieldID fieldID_pendingFileDescriptors = NULL;
+static jfieldID fieldID_receivedFdBuffer = NULL;
+static jfieldID fieldID_pendingCredentials = NULL;
 
 static jmethodID kSetTipcErrorInfo = NULL;
 static jmethodID kSetTipcDestName = NULL;
+static jmethodID kReceiveFileDescriptors = NULL;
+static jmethodID kReceiveCredentials = NULL;
 
 jfieldID getFieldID_ancillaryReceiveBuffer(void) {
     return fieldID_ancillaryReceiveBuffer;
@@ -64,6 +68,18 @@ jfieldID getFieldID_ancillaryReceiveBuffer(void) {
 jfieldID getFieldID_pendingFileDescriptors(void) {
     return fieldID_pendingFileDescriptors;
 }
+jfieldID getFieldID_receivedFdBuffer(void) {
+    return fieldID_receivedFdBuffer;
+}
+jmethodID getMethodID_receiveFileDescriptors(void) {
+    return kReceiveFileDescriptors;
+}
+jfieldID getFieldID_pendingCredentials(void) {
+    return fieldID_pendingCredentials;
+}
+jmethodID getMethodID_receiveCredentials(void) {
+    return kReceiveCredentials;
+}
 jmethodID getMethodID_setTipcErrorInfo(void) {
     return kSetTipcErrorInfo;
 }
@@ -75,6 +91,10 @@ void init_ancillary(JNIEnv *env) {
     class_AncillaryDataSupport = findClassAndGlobalRef(env, "org/newsclub/net/unix/AncillaryDataSupport");
     fieldID_ancillaryReceiveBuffer = (*env)->GetFieldID(env, class_AncillaryDataSupport, "ancillaryReceiveBuffer", "Ljava/nio/ByteBuffer;");
     fieldID_pendingFileDescriptors = (*env)->GetFieldID(env, class_AncillaryDataSupport, "pendingFileDescriptors", "[I");
+    fieldID_receivedFdBuffer = (*env)->GetFieldID(env, class_AncillaryDataSupport, "receivedFdBuffer", "[I");
+    kReceiveFileDescriptors = (*env)->GetMethodID(env, class_AncillaryDataSupport, "receiveFileDescriptors", "([II)V");
+    fieldID_pendingCredentials = (*env)->GetFieldID(env, class_AncillaryDataSupport, "pendingCredentials", "[I");
+    kReceiveCredentials = (*env)->GetMethodID(env, class_AncillaryDataSupport, "receiveCredentials", "(III)V");
 
     kSetTipcErrorInfo = (*env)->GetMethodID(env, class_AncillaryDataSupport, "setTipcErrorInfo", "(II)V");
     kSetTipcDestName = (*env)->GetMethodID(env, class_AncillaryDataSupport, "setTipcDestName", "(III)V");
@@ -83,6 +103,10 @@ void destroy_ancillary(JNIEnv *env) {
     releaseClassGlobalRef(env, class_AncillaryDataSupport);
     fieldID_ancillaryReceiveBuffer = NULL;
     fieldID_pendingFileDescriptors = NULL;
+    fieldID_receivedFdBuffer = NULL;
+    kReceiveFileDescriptors = NULL;
+    fieldID_pendingCredentials = NULL;
+    kReceiveCredentials = NULL;
     kSetTipcErrorInfo = NULL;
     kSetTipcDestName = NULL;
 }
@@ -34,6 +34,10 @@ void destroy_ancillary(JNIEnv *env);
 
 jfieldID getFieldID_ancillaryReceiveBuffer(void);
 jfieldID getFieldID_pendingFileDescriptors(void);
+jfieldID getFieldID_receivedFdBuffer(void);
+jmethodID getMethodID_receiveFileDescriptors(void);
+jfieldID getFieldID_pendingCredentials(void);
+jmethodID getMethodID_receiveCredentials(void);
 jmethodID getMethodID_setTipcErrorInfo(void);
 jmethodID getMethodID_setTipcDestName(void);
 
@@ -251,6 +251,20 @@ extern "C" {
 #  include <arpa/inet.h>
 #  define junixsocket_have_tipc 1
 
+#  if __has_include(<linux/sockios.h>)
+#    include <linux/sockios.h> // SIOCINQ, SIOCOUTQ
+#  endif
+
+#  if __has_include(<linux/netlink.h>)
+#    include <linux/netlink.h>
+#    define junixsocket_have_netlink 1
+#  endif
+
+#  if __has_include(<linux/filter.h>)
+#    include <linux/filter.h>
+#    define junixsocket_have_socket_filter 1
+#  endif
+
 // This is not strictly necessary for Linux proper,
 // but enabling this feature unbreaks Linux emulation on FreeBSD
 // (disabled until we can figure out how to avoid the overhead unless we're in Linuxulator)
@@ -235,7 +235,7 @@ void _throwErrnumException(JNIEnv* env, int errnum, jobject fdToClose)
 void _throwSockoptErrnumException(JNIEnv* env, int errnum, jobject fd)
 {
     // when setsockopt returns an error with EINVAL, it may mean the socket was shut down already
-    if(errnum == EINVAL) {
+    if(errnum == EINVAL && fd != NULL) {
         int handle = _getFD(env, fd);
         struct sockaddr addr = {0};
         socklen_t len = 0;
@@ -248,3 +248,13 @@ void _throwSockoptErrnumException(JNIEnv* env, int errnum, jobject fd)
 
     _throwErrnumException(env, errnum, fd);
 }
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    throwErrnumException
+ * Signature: (ILjava/io/FileDescriptor;)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_throwErrnumException
+ (JNIEnv *env, jclass clazz CK_UNUSED, jint errnum, jobject fd) {
+    _throwErrnumException(env, errnum, fd);
+}
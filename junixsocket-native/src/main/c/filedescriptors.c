@@ -414,6 +414,32 @@ jboolean checkNonBlocking0(int handle, int errnum, int options) {
 #endif
 }
 
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    inode
+ * Signature: (Ljava/io/FileDescriptor;)J
+ */
+JNIEXPORT jlong JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_inode
+ (JNIEnv *env, jclass clazz CK_UNUSED, jobject fd) {
+#if defined(_WIN32)
+    CK_ARGUMENT_POTENTIALLY_UNUSED(env);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fd);
+    return 0;
+#else
+    int handle = _getFD(env, fd);
+    if(handle < 0) {
+        _throwException(env, kExceptionSocketException, "Socket is closed");
+        return -1;
+    }
+    struct stat st;
+    if(fstat(handle, &st) != 0) {
+        _throwErrnumException(env, errno, fd);
+        return -1;
+    }
+    return (jlong)st.st_ino;
+#endif
+}
+
 /*
  * Class:     org_newsclub_net_unix_NativeUnixSocket
  * Method:    primaryType
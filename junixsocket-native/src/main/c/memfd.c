@@ -0,0 +1,266 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "memfd.h"
+
+#include "exceptions.h"
+#include "filedescriptors.h"
+
+#if junixsocket_have_shm_open
+static unsigned int shm_counter = 0;
+
+static int shm_open_anonymous(void) {
+    char shmName[64];
+    for(int attempt = 0; attempt < 100; attempt++) {
+        snprintf(shmName, sizeof(shmName), "/jux-%ld-%lx-%u", (long)getpid(),
+                 (unsigned long)time(NULL), __sync_fetch_and_add(&shm_counter, 1));
+        int handle = shm_open(shmName, O_RDWR | O_CREAT | O_EXCL, 0600);
+        if(handle >= 0) {
+            shm_unlink(shmName);
+#  if defined(FD_CLOEXEC)
+            fcntl(handle, F_SETFD, FD_CLOEXEC); // best effort
+#  endif
+            return handle;
+        } else if(errno != EEXIST) {
+            return -1;
+        }
+    }
+    errno = EEXIST;
+    return -1;
+}
+#endif
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    memfdCreate
+ * Signature: (Ljava/io/FileDescriptor;Ljava/lang/String;J)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_memfdCreate
+ (JNIEnv *env, jclass clazz CK_UNUSED, jobject fd, jstring name, jlong size) {
+#if junixsocket_have_memfd || junixsocket_have_shm_open
+    if(size < 0) {
+        _throwException(env, kExceptionInvalidArgumentSocketException, "size");
+        return;
+    }
+
+    int handle;
+#  if junixsocket_have_memfd
+    const char *nameChars = (*env)->GetStringUTFChars(env, name, NULL);
+    if(nameChars == NULL) {
+        return; // OutOfMemoryError thrown
+    }
+#    if defined(MFD_ALLOW_SEALING)
+    handle = memfd_create(nameChars, MFD_CLOEXEC | MFD_ALLOW_SEALING);
+#    else
+    handle = memfd_create(nameChars, MFD_CLOEXEC);
+#    endif
+    (*env)->ReleaseStringUTFChars(env, name, nameChars);
+#  else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(name);
+    handle = shm_open_anonymous();
+#  endif
+
+    if(handle < 0) {
+        _throwErrnumException(env, errno, NULL);
+        return;
+    }
+
+    if(size > 0 && ftruncate(handle, (off_t)size) != 0) {
+        int errnum = errno;
+        close(handle);
+        _throwErrnumException(env, errnum, NULL);
+        return;
+    }
+
+    _initFD(env, fd, handle);
+#else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fd);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(name);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(size);
+    _throwException(env, kExceptionOperationNotSupportedSocketException,
+                    "Anonymous shared memory is not supported on this platform");
+#endif
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    memfdSeal
+ * Signature: (Ljava/io/FileDescriptor;Z)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_memfdSeal
+ (JNIEnv *env, jclass clazz CK_UNUSED, jobject fd, jboolean writable) {
+#if junixsocket_have_memfd && defined(F_ADD_SEALS)
+    int handle = _getFD(env, fd);
+    // a writable file can only be protected against shrinking (which would fault existing mappings)
+    int seals = writable ? F_SEAL_SHRINK : (F_SEAL_SHRINK | F_SEAL_GROW | F_SEAL_WRITE | F_SEAL_SEAL);
+    if(fcntl(handle, F_ADD_SEALS, seals) == 0) {
+        return true;
+    }
+    switch(errno) {
+        case EINVAL:
+        case EPERM:
+            // not a memfd, or sealing not allowed
+            return false;
+        default:
+            _throwErrnumException(env, errno, NULL);
+            return false;
+    }
+#else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(env);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fd);
+    return false;
+#endif
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    memfdIsSealed
+ * Signature: (Ljava/io/FileDescriptor;Z)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_memfdIsSealed
+ (JNIEnv *env, jclass clazz CK_UNUSED, jobject fd, jboolean writable) {
+#if junixsocket_have_memfd && defined(F_GET_SEALS)
+    int handle = _getFD(env, fd);
+    int seals = fcntl(handle, F_GET_SEALS);
+    if(seals >= 0) {
+        int required = writable ? F_SEAL_SHRINK : (F_SEAL_SHRINK | F_SEAL_WRITE);
+        return (seals & required) == required;
+    }
+    switch(errno) {
+        case EINVAL:
+            // not a file that supports sealing
+            return false;
+        default:
+            _throwErrnumException(env, errno, NULL);
+            return false;
+    }
+#else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(env);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fd);
+    return false;
+#endif
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    mmap
+ * Signature: (Ljava/io/FileDescriptor;JJI[J)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_mmap
+ (JNIEnv *env, jclass clazz CK_UNUSED, jobject fd, jlong offset, jlong length, jint mode,
+  jlongArray mapping) {
+#if junixsocket_have_mmap
+    int handle = _getFD(env, fd);
+    if(offset < 0) {
+        _throwException(env, kExceptionInvalidArgumentSocketException, "offset");
+        return NULL;
+    }
+    struct stat st;
+    if(fstat(handle, &st) != 0) {
+        _throwErrnumException(env, errno, NULL);
+        return NULL;
+    }
+    if(length < 0) {
+        length = (jlong)st.st_size - offset;
+        if(length < 0) {
+            _throwException(env, kExceptionInvalidArgumentSocketException, "offset");
+            return NULL;
+        }
+    } else if(offset + length > (jlong)st.st_size) {
+        // accessing memory beyond the end of the file would crash the VM (SIGBUS)
+        _throwException(env, kExceptionInvalidArgumentSocketException,
+                        "Region exceeds file size");
+        return NULL;
+    }
+    if(length == 0 || length > INT_MAX) {
+        _throwException(env, kExceptionInvalidArgumentSocketException, "length");
+        return NULL;
+    }
+
+    int prot;
+    int flags;
+    switch(mode) {
+        case 0: // READ_ONLY
+            prot = PROT_READ;
+            flags = MAP_SHARED;
+            break;
+        case 1: // READ_WRITE
+            prot = PROT_READ | PROT_WRITE;
+            flags = MAP_SHARED;
+            break;
+        case 2: // PRIVATE
+            prot = PROT_READ | PROT_WRITE;
+            flags = MAP_PRIVATE;
+            break;
+        default:
+            _throwException(env, kExceptionInvalidArgumentSocketException, "mode");
+            return NULL;
+    }
+
+    // mmap requires a page-aligned offset
+    long pageSize = sysconf(_SC_PAGESIZE);
+    jlong delta = (pageSize > 0) ? (offset % pageSize) : 0;
+    size_t mappedLength = (size_t)(length + delta);
+
+    void *addr = mmap(NULL, mappedLength, prot, flags, handle, (off_t)(offset - delta));
+    if(addr == MAP_FAILED) {
+        _throwErrnumException(env, errno, NULL);
+        return NULL;
+    }
+
+    jobject buf = (*env)->NewDirectByteBuffer(env, (char*)addr + delta, length);
+    if(buf == NULL) {
+        munmap(addr, mappedLength);
+        return NULL;
+    }
+
+    jlong values[2] = {(jlong)(intptr_t)addr, (jlong)mappedLength};
+    (*env)->SetLongArrayRegion(env, mapping, 0, 2, values);
+    return buf;
+#else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fd);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(offset);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(length);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(mode);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(mapping);
+    _throwException(env, kExceptionOperationNotSupportedSocketException,
+                    "Memory mapping is not supported on this platform");
+    return NULL;
+#endif
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    munmap
+ * Signature: (JJ)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_munmap
+ (JNIEnv *env, jclass clazz CK_UNUSED, jlong address, jlong length) {
+#if junixsocket_have_mmap
+    if(address == 0 || length <= 0) {
+        return;
+    }
+    if(munmap((void*)(intptr_t)address, (size_t)length) != 0) {
+        _throwErrnumException(env, errno, NULL);
+    }
+#else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(env);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(address);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(length);
+#endif
+}
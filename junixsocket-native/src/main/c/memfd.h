@@ -0,0 +1,36 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifndef memfd_h
+#define memfd_h
+
+#include "config.h"
+
+#if defined(_WIN32) || __TOS_MVS__ || __TANDEM || _TPF_SOURCE
+// not supported
+#else
+#  include <sys/mman.h>
+#  define junixsocket_have_mmap 1
+#  if defined(__linux__) && defined(MFD_CLOEXEC)
+#    define junixsocket_have_memfd 1
+#  elif defined(__MACH__) || defined(__FreeBSD__) || defined(__NetBSD__) || defined(__OpenBSD__) || defined(__DragonFly__) || defined(__sun)
+#    define junixsocket_have_shm_open 1
+#  endif
+#endif
+
+#endif /* memfd_h */
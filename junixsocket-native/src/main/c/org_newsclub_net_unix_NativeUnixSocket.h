@@ -53,6 +53,8 @@ extern "C" {
 #define org_newsclub_net_unix_NativeUnixSocket_SHUT_WR 1L
 #undef org_newsclub_net_unix_NativeUnixSocket_SHUT_RD_WR
 #define org_newsclub_net_unix_NativeUnixSocket_SHUT_RD_WR 2L
+#undef org_newsclub_net_unix_NativeUnixSocket_ERRNO_RESULT_BASE
+#define org_newsclub_net_unix_NativeUnixSocket_ERRNO_RESULT_BASE -1000L
 /*
  * Class:     org_newsclub_net_unix_NativeUnixSocket
  * Method:    init
@@ -253,6 +255,14 @@ JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_setSocketOpti
 JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_available
   (JNIEnv *, jclass, jobject, jobject);
 
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    queueBytes
+ * Signature: (Ljava/io/FileDescriptor;Z)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_queueBytes
+  (JNIEnv *, jclass, jobject, jboolean);
+
 /*
  * Class:     org_newsclub_net_unix_NativeUnixSocket
  * Method:    peerCredentials
@@ -477,6 +487,230 @@ JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_vsockGetLocal
 JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_systemResolveCtlId
   (JNIEnv *, jclass, jobject, jstring);
 
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    memfdCreate
+ * Signature: (Ljava/io/FileDescriptor;Ljava/lang/String;J)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_memfdCreate
+  (JNIEnv *, jclass, jobject, jstring, jlong);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    memfdSeal
+ * Signature: (Ljava/io/FileDescriptor;Z)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_memfdSeal
+  (JNIEnv *, jclass, jobject, jboolean);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    memfdIsSealed
+ * Signature: (Ljava/io/FileDescriptor;Z)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_memfdIsSealed
+  (JNIEnv *, jclass, jobject, jboolean);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    mmap
+ * Signature: (Ljava/io/FileDescriptor;JJI[J)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_mmap
+  (JNIEnv *, jclass, jobject, jlong, jlong, jint, jlongArray);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    munmap
+ * Signature: (JJ)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_munmap
+  (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    attachFilter
+ * Signature: (Ljava/io/FileDescriptor;[I)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_attachFilter
+  (JNIEnv *, jclass, jobject, jintArray);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    detachFilter
+ * Signature: (Ljava/io/FileDescriptor;)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_detachFilter
+  (JNIEnv *, jclass, jobject);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    lockFilter
+ * Signature: (Ljava/io/FileDescriptor;)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_lockFilter
+  (JNIEnv *, jclass, jobject);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    readv
+ * Signature: (Ljava/io/FileDescriptor;[Ljava/nio/ByteBuffer;II[II)J
+ */
+JNIEXPORT jlong JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_readv
+  (JNIEnv *, jclass, jobject, jobjectArray, jint, jint, jintArray, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    writev
+ * Signature: (Ljava/io/FileDescriptor;[Ljava/nio/ByteBuffer;II[II)J
+ */
+JNIEXPORT jlong JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_writev
+  (JNIEnv *, jclass, jobject, jobjectArray, jint, jint, jintArray, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    splice
+ * Signature: (Ljava/io/FileDescriptor;Ljava/io/FileDescriptor;JI)J
+ */
+JNIEXPORT jlong JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_splice
+  (JNIEnv *, jclass, jobject, jobject, jlong, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    tee
+ * Signature: (Ljava/io/FileDescriptor;Ljava/io/FileDescriptor;JI)J
+ */
+JNIEXPORT jlong JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_tee
+  (JNIEnv *, jclass, jobject, jobject, jlong, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    pipeCapacity
+ * Signature: (Ljava/io/FileDescriptor;I)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_pipeCapacity
+  (JNIEnv *, jclass, jobject, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    createNetlinkSocket
+ * Signature: (Ljava/io/FileDescriptor;I)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_createNetlinkSocket
+  (JNIEnv *, jclass, jobject, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    inode
+ * Signature: (Ljava/io/FileDescriptor;)J
+ */
+JNIEXPORT jlong JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_inode
+  (JNIEnv *, jclass, jobject);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    sendfile
+ * Signature: (Ljava/io/FileDescriptor;Ljava/io/FileDescriptor;JJI)J
+ */
+JNIEXPORT jlong JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_sendfile
+  (JNIEnv *, jclass, jobject, jobject, jlong, jlong, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    setCurrentThreadAffinity
+ * Signature: (I)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_setCurrentThreadAffinity
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    getCurrentThreadAffinity
+ * Signature: ()[I
+ */
+JNIEXPORT jintArray JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_getCurrentThreadAffinity
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    getSelectableChannelFD
+ * Signature: (Ljava/nio/channels/SelectableChannel;)Ljava/io/FileDescriptor;
+ */
+JNIEXPORT jobject JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_getSelectableChannelFD
+  (JNIEnv *, jclass, jobject);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    killSelectableChannel
+ * Signature: (Ljava/nio/channels/SelectableChannel;)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_killSelectableChannel
+  (JNIEnv *, jclass, jobject);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    throwErrnumException
+ * Signature: (ILjava/io/FileDescriptor;)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_throwErrnumException
+  (JNIEnv *, jclass, jint, jobject);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    recvFd
+ * Signature: (ILjava/nio/ByteBuffer;III)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_recvFd
+  (JNIEnv *, jclass, jint, jobject, jint, jint, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    sendFd
+ * Signature: (ILjava/nio/ByteBuffer;III)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_sendFd
+  (JNIEnv *, jclass, jint, jobject, jint, jint, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    readFd
+ * Signature: (I[BIIII)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_readFd
+  (JNIEnv *, jclass, jint, jbyteArray, jint, jint, jint, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    writeFd
+ * Signature: (I[BIII)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_writeFd
+  (JNIEnv *, jclass, jint, jbyteArray, jint, jint, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    pollFds
+ * Signature: ([I[I[II)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_pollFds
+  (JNIEnv *, jclass, jintArray, jintArray, jintArray, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    recvArray
+ * Signature: (I[BIII)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_recvArray
+  (JNIEnv *, jclass, jint, jbyteArray, jint, jint, jint);
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    sendArray
+ * Signature: (I[BIII)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_sendArray
+  (JNIEnv *, jclass, jint, jbyteArray, jint, jint, jint);
+
 #ifdef __cplusplus
 }
 #endif
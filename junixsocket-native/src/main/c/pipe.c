@@ -78,3 +78,129 @@ JNIEXPORT jboolean JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_initPipe
 
      return false;
  }
+
+#if defined(junixsocket_have_splice)
+static jlong spliceResult(JNIEnv *env, ssize_t count, int handleIn, int handleOut, jint opt) {
+    if(count > 0) {
+        return (jlong)count;
+    } else if(count == 0) {
+        // EOF
+        return -1;
+    }
+
+    int theError = errno;
+    if(theError == EAGAIN || theError == EWOULDBLOCK) {
+        if((opt & org_newsclub_net_unix_NativeUnixSocket_OPT_NON_BLOCKING) != 0
+           || checkNonBlocking(handleIn, theError) || checkNonBlocking(handleOut, theError)) {
+            return 0;
+        }
+    }
+    _throwErrnumException(env, theError, NULL);
+    return -1;
+}
+
+static size_t spliceLength(jlong length) {
+    // Linux never transfers more than this in one go
+    return length > 0x7ffff000 ? 0x7ffff000 : (size_t)length;
+}
+#endif
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    splice
+ * Signature: (Ljava/io/FileDescriptor;Ljava/io/FileDescriptor;JI)J
+ */
+JNIEXPORT jlong JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_splice
+ (JNIEnv *env, jclass clazz CK_UNUSED, jobject fdIn, jobject fdOut, jlong length, jint opt) {
+#if defined(junixsocket_have_splice)
+    if(length <= 0) {
+        return 0;
+    }
+    int handleIn = _getFD(env, fdIn);
+    int handleOut = _getFD(env, fdOut);
+
+    unsigned int flags = SPLICE_F_MOVE;
+    if((opt & org_newsclub_net_unix_NativeUnixSocket_OPT_NON_BLOCKING) != 0) {
+        flags |= SPLICE_F_NONBLOCK;
+    }
+
+    ssize_t count;
+    do {
+        count = splice(handleIn, NULL, handleOut, NULL, spliceLength(length), flags);
+    } while(count == (ssize_t)-1 && errno == EINTR);
+
+    return spliceResult(env, count, handleIn, handleOut, opt);
+#else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fdIn);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fdOut);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(length);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(opt);
+    _throwException(env, kExceptionOperationNotSupportedSocketException, "splice is not supported");
+    return -1;
+#endif
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    tee
+ * Signature: (Ljava/io/FileDescriptor;Ljava/io/FileDescriptor;JI)J
+ */
+JNIEXPORT jlong JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_tee
+ (JNIEnv *env, jclass clazz CK_UNUSED, jobject fdIn, jobject fdOut, jlong length, jint opt) {
+#if defined(junixsocket_have_splice)
+    if(length <= 0) {
+        return 0;
+    }
+    int handleIn = _getFD(env, fdIn);
+    int handleOut = _getFD(env, fdOut);
+
+    unsigned int flags = 0;
+    if((opt & org_newsclub_net_unix_NativeUnixSocket_OPT_NON_BLOCKING) != 0) {
+        flags |= SPLICE_F_NONBLOCK;
+    }
+
+    ssize_t count;
+    do {
+        count = tee(handleIn, handleOut, spliceLength(length), flags);
+    } while(count == (ssize_t)-1 && errno == EINTR);
+
+    return spliceResult(env, count, handleIn, handleOut, opt);
+#else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fdIn);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fdOut);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(length);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(opt);
+    _throwException(env, kExceptionOperationNotSupportedSocketException, "tee is not supported");
+    return -1;
+#endif
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    pipeCapacity
+ * Signature: (Ljava/io/FileDescriptor;I)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_pipeCapacity
+ (JNIEnv *env, jclass clazz CK_UNUSED, jobject fd, jint newCapacity) {
+#if defined(F_GETPIPE_SZ) && defined(F_SETPIPE_SZ)
+    int handle = _getFD(env, fd);
+
+    int ret;
+    if(newCapacity > 0) {
+        ret = fcntl(handle, F_SETPIPE_SZ, (int)newCapacity);
+    } else {
+        ret = fcntl(handle, F_GETPIPE_SZ);
+    }
+    if(ret == -1) {
+        _throwErrnumException(env, errno, fd);
+        return -1;
+    }
+    return ret;
+#else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fd);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(newCapacity);
+    _throwException(env, kExceptionOperationNotSupportedSocketException,
+                    "Changing the pipe capacity is not supported");
+    return -1;
+#endif
+}
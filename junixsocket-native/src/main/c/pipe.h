@@ -10,4 +10,8 @@
 
 #include "config.h"
 
+#if defined(__linux__) && defined(SPLICE_F_NONBLOCK)
+#  define junixsocket_have_splice 1
+#endif
+
 #endif /* pipe_h */
@@ -77,7 +77,12 @@ static int eventToOp(int event) {
     if((event & POLLOUT)) {
         op |= (OP_WRITE | OP_CONNECT); // will be masked accordingly later
     }
-    if((event & ((POLLERR | POLLHUP | POLLNVAL))) != 0) {
+    if((event & (POLLERR | POLLHUP)) != 0) {
+        // like Java's own selectors, report the socket as ready, so the subsequent I/O operation
+        // observes end-of-stream (after any data still buffered) or the pending error
+        op |= (OP_READ | OP_ACCEPT | OP_WRITE | OP_CONNECT);
+    }
+    if((event & POLLNVAL) != 0) {
         op |= OP_INVALID;
     }
     return op;
@@ -304,6 +309,11 @@ JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_available
                 return 0;
             }
 
+            if(buffer == NULL) {
+                // let the caller retry with a buffer to peek into
+                return -2;
+            }
+
             struct jni_direct_byte_buffer_ref dataBufferRef =
             getDirectByteBufferRef (env, buffer, 0, 0);
             if(dataBufferRef.size == -1) {
@@ -314,7 +324,7 @@ JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_available
                 return 0;
             }
 
-            ssize_t count = recv(handle, (char*)&dataBufferRef.buf, dataBufferRef.size, MSG_PEEK
+            ssize_t count = recv(handle, (char*)dataBufferRef.buf, dataBufferRef.size, MSG_PEEK
 #if defined(MSG_TRUNC)
                                  | MSG_TRUNC // ask for the correct amount in case our buffer is too small
 #endif
@@ -334,6 +344,111 @@ JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_available
     return count;
 }
 
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    queueBytes
+ * Signature: (Ljava/io/FileDescriptor;Z)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_queueBytes
+ (JNIEnv * env, jclass clazz CK_UNUSED, jobject fd, jboolean sendQueue)
+{
+    int handle = _getFD(env, fd);
+    if (handle < 0) {
+        _throwException(env, kExceptionSocketException, "Socket is closed");
+        return -1;
+    }
+
+    int ret;
+#if defined(_WIN32)
+    u_long count = 0;
+    if(sendQueue) {
+        _throwException(env, kExceptionOperationNotSupportedSocketException,
+                        "Send queue size is not available on this platform");
+        return -1;
+    }
+    ret = ioctlsocket(handle, FIONREAD, &count);
+#else
+    int count = 0;
+    if(sendQueue) {
+#  if defined(SIOCOUTQ)
+        ret = ioctl(handle, SIOCOUTQ, &count);
+#  elif defined(FIONWRITE)
+        ret = ioctl(handle, FIONWRITE, &count);
+#  elif defined(SO_NWRITE)
+        socklen_t len = sizeof(count);
+        ret = getsockopt(handle, SOL_SOCKET, SO_NWRITE, &count, &len);
+#  else
+        _throwException(env, kExceptionOperationNotSupportedSocketException,
+                        "Send queue size is not available on this platform");
+        return -1;
+#  endif
+    } else {
+#  if defined(_AIX)
+        ret = ioctlx(handle, FIONREAD, &count, 0);
+#  elif defined(SIOCINQ)
+        ret = ioctl(handle, SIOCINQ, &count);
+#  else
+        ret = ioctl(handle, FIONREAD, &count);
+#  endif
+    }
+#endif
+
+    if(ret == -1) {
+        int myerr = socket_errno;
+        if(myerr == ENOTTY || myerr == EOPNOTSUPP || myerr == EINVAL) {
+            // e.g., TIPC/VSOCK on Linux may not implement this call; listening sockets
+            _throwException(env, kExceptionOperationNotSupportedSocketException,
+                            "Queue size is not available for this socket");
+        } else {
+            _throwErrnumException(env, myerr, fd);
+        }
+        return -1;
+    }
+
+    return count < 0 ? 0 : (jint)count;
+}
+
+/*
+ * Polls the given file descriptors, and stores the ready ops (as requested in buf) in ropsObj.
+ */
+static jint pollAndStoreReadyOps(JNIEnv *env, struct pollfd *pollFd, jint *buf, jsize nfds,
+                                 jint timeout, jintArray ropsObj) {
+#if __TOS_MVS__
+    if(timeout == -1) {
+        // polling on datagram sockets hangs if we don't set a short timeout on z/OS
+        timeout = 1000;
+    }
+#endif
+
+#if defined(_OS400)
+    if(timeout == -1) {
+        // unclear why, but a timeout of -1 returns EINVAL
+        timeout = INT_MAX;
+    }
+#endif
+
+#if defined(_WIN32)
+    int ret = WSAPoll(pollFd, nfds, timeout);
+#else
+    int ret = poll(pollFd, nfds, timeout);
+#endif
+    if(ret == -1) {
+        _throwSockoptErrnumException(env, socket_errno, NULL);
+        return 0;
+    }
+
+    for(int i=0; i<nfds;i++) {
+        int revents = pollFd[i].revents;
+        if((revents & POLLNVAL) != 0) {
+            buf[i] |= OP_INVALID;
+        }
+        buf[i] &= eventToOp(revents);
+    }
+
+    (*env)->SetIntArrayRegion(env, ropsObj, 0, nfds, buf);
+    return ret;
+}
+
 /*
  * Class:     org_newsclub_net_unix_NativeUnixSocket
  * Method:    poll
@@ -372,52 +487,62 @@ JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_poll
         struct pollfd *pfd = &pollFd[i];
         if(fdObj) {
             int fd = _getFD(env, fdObj);
-            pfd->fd = fd;
+            // keys without interest ops must not be reported as invalid just because
+            // poll signals POLLHUP (e.g., for a not-yet-connected stream socket)
+            pfd->fd = (buf[i] == 0) ? -1 : fd;
             pfd->events = opToEvent(buf[i]);
+            (*env)->DeleteLocalRef(env, fdObj);
         } else {
             pfd->fd = 0;
             pfd->events = 0;
         }
 }
 
-#if __TOS_MVS__
-    if(timeout == -1) {
-        // polling on datagram sockets hangs if we don't set a short timeout on z/OS
-        timeout = 1000;
+    int ret = pollAndStoreReadyOps(env, pollFd, buf, nfds, timeout, ropsObj);
+
+    free(buf);
+    free(pollFd);
+    return ret;
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    pollFds
+ * Signature: ([I[I[II)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_pollFds
+(JNIEnv *env, jclass clazz CK_UNUSED, jintArray fdsObj, jintArray opsObj, jintArray ropsObj, jint timeout) {
+    jsize nfds = (*env)->GetArrayLength(env, fdsObj);
+    if(nfds == 0) {
+        return 0;
     }
-#endif
 
-#if defined(_OS400)
-    if(timeout == -1) {
-        // unclear why, but a timeout of -1 returns EINVAL
-        timeout = INT_MAX;
+    struct pollfd* pollFd = calloc(nfds, sizeof(struct pollfd));
+    if(pollFd == NULL) {
+        return 0;
     }
-#endif
 
-#if defined(_WIN32)
-    int ret = WSAPoll(pollFd, nfds, timeout);
-#else
-    int ret = poll(pollFd, nfds, timeout);
-#endif
-    if(ret == -1) {
-        ret = 0;
-        _throwSockoptErrnumException(env, socket_errno, NULL);
-        goto end;
+    // one allocation for both file descriptors and ops
+    jint *fds = calloc(2 * (size_t)nfds, sizeof(jint));
+    if(fds == NULL) {
+        free(pollFd);
+        return 0;
     }
+    jint *buf = fds + nfds;
 
+    (*env)->GetIntArrayRegion(env, fdsObj, 0, nfds, fds);
+    (*env)->GetIntArrayRegion(env, opsObj, 0, nfds, buf);
     for(int i=0; i<nfds;i++) {
-        int revents = pollFd[i].revents;
-        if((revents & (POLLERR|POLLHUP|POLLNVAL)) != 0) {
-            buf[i] |= OP_INVALID;
-        }
-        buf[i] &= eventToOp(revents);
+        struct pollfd *pfd = &pollFd[i];
+        // keys without interest ops must not be reported as invalid just because
+        // poll signals POLLHUP (e.g., for a not-yet-connected stream socket)
+        pfd->fd = (buf[i] == 0) ? -1 : fds[i];
+        pfd->events = opToEvent(buf[i]);
     }
 
-    (*env)->SetIntArrayRegion(env, ropsObj, 0, nfds, buf);
-
+    int ret = pollAndStoreReadyOps(env, pollFd, buf, nfds, timeout, ropsObj);
 
-end:
-    free(buf);
+    free(fds);
     free(pollFd);
     return ret;
 }
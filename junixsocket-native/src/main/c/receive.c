@@ -33,6 +33,14 @@ struct jux_tipc_errinfo {
 };
 #endif
 
+/*
+ * Returns true if receiving 0 bytes always means end-of-stream, as for connection-oriented sockets
+ * and pipes (unlike datagram sockets, which may receive zero-length datagrams).
+ */
+static jboolean isStreamMode(jint opt) {
+    return (opt & org_newsclub_net_unix_NativeUnixSocket_OPT_DGRAM_MODE) == 0;
+}
+
 static int optToFlags(jint opt) {
     int flags = 0;
     if ((opt & (org_newsclub_net_unix_NativeUnixSocket_OPT_PEEK)) != 0) {
@@ -121,6 +129,11 @@ static ssize_t recvmsg_wrapper(JNIEnv * env, int handle, jbyte *buf, jint length
         *senderBufLen = msg.msg_namelen;
     }
 
+    if(count == -1) {
+        // the control buffer may still contain data from a previous call; don't parse it again
+        return count;
+    }
+
     if((msg.msg_flags & MSG_CTRUNC) != 0) {
         errno = ENOBUFS;
         count = -1;
@@ -158,20 +171,48 @@ static ssize_t recvmsg_wrapper(JNIEnv * env, int handle, jbyte *buf, jint length
             CK_STATIC_ASSERT(sizeof(int)==sizeof(jint));
 
             if(numFds > 0) {
-                jintArray fdArray = (*env)->NewIntArray(env, numFds);
-                jint *fdBuf = (*env)->GetIntArrayElements(env, fdArray,
-                                                          NULL);
-
-                memcpy(fdBuf, data, numFds * sizeof(int));
+                // reuse the scratch array, sized to fit a full ancillary receive buffer
+                jintArray fdArray = (*env)->GetObjectField(env, ancSupp, getFieldID_receivedFdBuffer());
+                if(fdArray == NULL || (*env)->GetArrayLength(env, fdArray) < numFds) {
+                    jsize fdArrayLen = (jsize)(controlLen / sizeof(int));
+                    fdArray = (*env)->NewIntArray(env, numFds > fdArrayLen ? numFds : fdArrayLen);
+                    if(fdArray == NULL) {
+                        // OutOfMemoryError thrown; don't leak the descriptors we just received
+                        for(int i = 0; i < numFds; i++) {
+                            int fd;
+                            memcpy(&fd, data + i * sizeof(int), sizeof(int));
+                            close(fd);
+                        }
+                        return -1;
+                    }
+                    (*env)->SetObjectField(env, ancSupp, getFieldID_receivedFdBuffer(), fdArray);
+                }
 
-                (*env)->ReleaseIntArrayElements(env, fdArray, fdBuf, 0);
+                CK_IGNORE_CAST_ALIGN_BEGIN // CMSG_DATA is suitably aligned
+                (*env)->SetIntArrayRegion(env, fdArray, 0, numFds, (jint*)data);
+                CK_IGNORE_CAST_ALIGN_END
 
-                callObjectSetter(env, ancSupp, "receiveFileDescriptors",
-                                 "([I)V", fdArray);
+                (*env)->CallVoidMethod(env, ancSupp, getMethodID_receiveFileDescriptors(), fdArray,
+                                       (jint)numFds);
+                if((*env)->ExceptionCheck(env)) {
+                    return -1;
+                }
             } else if(numFds < 0) {
                 _throwException(env, kExceptionSocketException, "No buffer space available");
                 return -1;
             }
+#if defined(SCM_CREDENTIALS)
+        } else if(cmsg->cmsg_level == SOL_SOCKET && cmsg->cmsg_type == SCM_CREDENTIALS
+                  && len >= sizeof(struct ucred)) {
+            struct ucred cr;
+            memcpy(&cr, data, sizeof(cr));
+
+            (*env)->CallVoidMethod(env, ancSupp, getMethodID_receiveCredentials(), (jint)cr.pid,
+                                   (jint)cr.uid, (jint)cr.gid);
+            if((*env)->ExceptionCheck(env)) {
+                return -1;
+            }
+#endif
 #if junixsocket_have_tipc
         } else if(cmsg->cmsg_level == SOL_TIPC && cmsg->cmsg_type == TIPC_ERRINFO && len == 8) {
             CK_IGNORE_CAST_ALIGN_BEGIN
@@ -370,11 +411,14 @@ JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_receive
     }
 
     if(checkNonBlocking0(handle, theError, opt)) {
+        if(count == 0) {
+            // end-of-stream (like in the blocking case), or an empty datagram
+            // NOTE: errno is not reset by a successful recv, so check the socket mode instead
+            return isStreamMode(opt) ? -1 : 0;
+        }
         theError = errno;
-         // no data on non-blocking socket, or terminated connection?
-        if(count == 0 && theError != 0) {
-            _throwException(env, kExceptionClosedChannelException, NULL);
-        } else if(theError == 0 || theError == EAGAIN || theError == EWOULDBLOCK || theError == ETIMEDOUT
+        // no data on non-blocking socket?
+        if(theError == 0 || theError == EAGAIN || theError == EWOULDBLOCK || theError == ETIMEDOUT
 #if defined(_WIN32)
                   || theError == WSAETIMEDOUT
 #endif
@@ -399,3 +443,295 @@ JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_receive
 
     return (jint)count;
 }
+
+/*
+ * Encodes an errno value as a result of the primitive file descriptor calls (recvFd, readFd, etc.),
+ * which have no FileDescriptor object at hand, and therefore let the Java side throw the exception.
+ */
+static jint errnoResult(int errnum) {
+    return (jint)(org_newsclub_net_unix_NativeUnixSocket_ERRNO_RESULT_BASE - errnum);
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    recvFd
+ * Signature: (ILjava/nio/ByteBuffer;III)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_recvFd
+(JNIEnv *env, jclass clazz CK_UNUSED, jint handle, jobject buffer, jint offset, jint length, jint opt) {
+    const jboolean nonBlocking = (opt & org_newsclub_net_unix_NativeUnixSocket_OPT_NON_BLOCKING) != 0;
+
+#if defined(junixsocket_use_poll_for_read)
+    int ret = pollWithTimeout(env, NULL, handle, 0);
+    if(ret < 1) {
+        if(checkNonBlocking0(handle, socket_errno, opt)) {
+            // non-blocking socket
+            return 0;
+        } else if(ret == -1) {
+            return (*env)->ExceptionCheck(env) ? -1 : errnoResult(errno);
+        } else {
+            // timeout on blocking socket
+            _throwException(env, kExceptionSocketTimeoutException, "timeout");
+            return -1;
+        }
+    }
+#endif
+
+    struct jni_direct_byte_buffer_ref dataBufferRef =
+    getDirectByteBufferRef (env, buffer, (size_t)offset, 0);
+    if(dataBufferRef.size == -1) {
+        _throwException(env, kExceptionSocketException, "Cannot get buffer");
+        return -1;
+    } else if(dataBufferRef.buf == NULL) {
+        _throwException(env, kExceptionNullPointerException, "buffer");
+        return -1;
+    }
+    if(dataBufferRef.size < length) {
+        length = (jint)dataBufferRef.size;
+    }
+
+    ssize_t count = recv_wrapper(handle, dataBufferRef.buf, length, NULL, NULL, opt);
+    if(count > 0) {
+        return (jint)count;
+    } else if(count == 0) {
+        // end of stream
+        return -1;
+    }
+
+    int errnum = socket_errno;
+    if(errnum == EAGAIN || errnum == EWOULDBLOCK) {
+        // no data on non-blocking socket, or receive timeout on blocking socket
+        return nonBlocking ? 0 : -1;
+    } else if(errnum == ENOENT) {
+        return -1;
+    } else {
+        return errnoResult(errnum);
+    }
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    readFd
+ * Signature: (I[BIIII)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_readFd
+(JNIEnv *env, jclass clazz CK_UNUSED, jint handle, jbyteArray jbuf, jint offset, jint length, jint opt, jint hardTimeoutMillis) {
+    CK_ARGUMENT_POTENTIALLY_UNUSED(hardTimeoutMillis);
+
+    // Performance: In order to read a single byte, simply don't specify a receive buffer.
+    if(jbuf) {
+        jsize bufLen = (*env)->GetArrayLength(env, jbuf);
+        if(offset < 0 || length < 0 || offset >= bufLen) {
+            _throwException(env, kExceptionSocketException, "Illegal offset or length");
+            return -1;
+        }
+
+        jint maxRead = bufLen - offset;
+        if(length > maxRead) {
+            length = maxRead;
+        }
+    } else if(length != 1) {
+        _throwException(env, kExceptionIndexOutOfBoundsException, "Illegal length");
+        return -1;
+    }
+
+#if defined(junixsocket_use_poll_for_read)
+    int ret = pollWithTimeout(env, NULL, handle, hardTimeoutMillis);
+    if(ret < 1) {
+        if(checkNonBlocking(handle, socket_errno)) {
+            // non-blocking socket
+            return 0;
+        } else if(ret == -1) {
+            return (*env)->ExceptionCheck(env) ? -1 : errnoResult(errno);
+        } else {
+            // timeout on blocking socket
+            _throwException(env, kExceptionSocketTimeoutException, "timeout");
+            return -1;
+        }
+    }
+#endif
+
+    jbyte oneByte;
+    jbyte *buf = jbuf ? malloc((size_t)length) : &oneByte;
+    if(buf == NULL) {
+        return -1; // OOME
+    }
+
+    ssize_t count = recv_wrapper(handle, buf, length, NULL, NULL, opt);
+
+    jint returnValue;
+    if(count < 0) {
+        int errnum = socket_errno;
+        if(errnum == EWOULDBLOCK) {
+            returnValue = -2;
+        } else {
+            returnValue = errnoResult(errnum);
+        }
+    } else if(count == 0) {
+        // read(2)/recv return 0 on EOF. Java returns -1.
+        returnValue = -1;
+    } else if(jbuf) {
+        (*env)->SetByteArrayRegion(env, jbuf, offset, (jsize)count, buf);
+
+        returnValue = (jint)count;
+    } else {
+        // Directly return the byte we just read.
+        returnValue = (*buf & 0xFF);
+    }
+
+    if(jbuf) {
+        free(buf);
+    }
+    return returnValue;
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    recvArray
+ * Signature: (I[BIII)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_recvArray
+(JNIEnv *env, jclass clazz CK_UNUSED, jint handle, jbyteArray jbuf, jint offset, jint length, jint opt) {
+    jsize bufLen = (*env)->GetArrayLength(env, jbuf);
+    if(offset < 0 || length < 0 || length > (bufLen - offset)) {
+        _throwException(env, kExceptionIndexOutOfBoundsException, "Illegal offset or length");
+        return -1;
+    }
+
+    const jboolean nonBlocking = (opt & org_newsclub_net_unix_NativeUnixSocket_OPT_NON_BLOCKING) != 0;
+    const jboolean nonSocket = (opt & org_newsclub_net_unix_NativeUnixSocket_OPT_NON_SOCKET) != 0;
+    const int flags = optToFlags(opt);
+
+    // The array is pinned while we're in the call below, which therefore must never block.
+#if defined(MSG_DONTWAIT)
+    const int dontWait = MSG_DONTWAIT;
+#else
+    const int dontWait = 0;
+    if(!nonBlocking) {
+        return -2;
+    }
+#endif
+    if(nonSocket && !nonBlocking) {
+        // read(2) would block
+        return -2;
+    }
+
+    jbyte *buf = (*env)->GetPrimitiveArrayCritical(env, jbuf, NULL);
+    if(buf == NULL) {
+        return -1; // OOME
+    }
+
+    ssize_t count;
+    int errnum;
+    do {
+        if(nonSocket && flags == 0) {
+            count = read(handle, (char*)(buf + offset), length);
+        } else {
+            count = recv(handle, (char*)(buf + offset), length, flags | dontWait);
+            if(count == -1 && socket_errno == ENOTSOCK && nonBlocking && flags == 0) {
+                // unexpected non-socket, try again with read
+                count = read(handle, (char*)(buf + offset), length);
+            }
+        }
+        errnum = (count == -1) ? socket_errno : 0;
+    } while(count == -1 && errnum == EINTR);
+
+    (*env)->ReleasePrimitiveArrayCritical(env, jbuf, buf, count > 0 ? 0 : JNI_ABORT);
+
+    if(count > 0) {
+        return (jint)count;
+    } else if(count == 0) {
+        // end of stream
+        return length == 0 ? 0 : -1;
+    } else if(errnum == EAGAIN || errnum == EWOULDBLOCK || errnum == ENOTSOCK) {
+        return -2;
+    } else if(errnum == ENOENT) {
+        return -1;
+    } else {
+        return errnoResult(errnum);
+    }
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    readv
+ * Signature: (Ljava/io/FileDescriptor;[Ljava/nio/ByteBuffer;II[II)J
+ */
+JNIEXPORT jlong JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_readv
+(JNIEnv *env, jclass clazz CK_UNUSED, jobject fd, jobjectArray buffers, jint offset, jint length, jintArray positionsAndLengths, jint opt) {
+    int handle = _getFD(env, fd);
+    if(handle < 0) {
+        _throwException(env, kExceptionSocketException, "Socket is closed");
+        return -1;
+    }
+
+    struct iovec iov[junixsocket_max_iov];
+    int numIov = fillIovecs(env, iov, buffers, offset, length, positionsAndLengths);
+    if(numIov < 0) {
+        return -1; // exception thrown
+    } else if(numIov == 0) {
+        return 0;
+    }
+
+    ssize_t count;
+    do {
+#if defined(_WIN32)
+        // no readv for sockets; use the first buffer only
+        count = recv(handle, iov[0].iov_base, (int)iov[0].iov_len, 0);
+#else
+        count = readv(handle, iov, numIov);
+#endif
+    } while(count == (ssize_t)-1 && (socket_errno == EINTR));
+
+    if(count == 0) {
+        // EOF
+        return -1;
+    } else if(count > 0) {
+        return (jlong)count;
+    }
+
+    int theError = socket_errno;
+    if(checkNonBlocking0(handle, theError, opt)) {
+        return 0;
+    }
+    _throwErrnumException(env, theError, fd);
+    return -1;
+}
+
+int fillIovecs(JNIEnv *env, struct iovec *iov, jobjectArray buffers, jint offset, jint length,
+               jintArray positionsAndLengths) {
+    if(length > junixsocket_max_iov) {
+        length = junixsocket_max_iov;
+    }
+    if(offset < 0 || length < 0 || offset + length > (*env)->GetArrayLength(env, buffers)
+       || (*env)->GetArrayLength(env, positionsAndLengths) < length * 2) {
+        _throwException(env, kExceptionIndexOutOfBoundsException, "Illegal offset or length");
+        return -1;
+    }
+
+    jint posLen[junixsocket_max_iov * 2];
+    (*env)->GetIntArrayRegion(env, positionsAndLengths, 0, length * 2, posLen);
+
+    int numIov = 0;
+    for(jint i = 0; i < length; i++) {
+        jint pos = posLen[i * 2];
+        jint len = posLen[i * 2 + 1];
+        if(len <= 0) {
+            continue;
+        } else if(pos < 0) {
+            _throwException(env, kExceptionIndexOutOfBoundsException, "Illegal position");
+            return -1;
+        }
+        jobject buffer = (*env)->GetObjectArrayElement(env, buffers, offset + i);
+        struct jni_direct_byte_buffer_ref ref = getDirectByteBufferRef(env, buffer, (size_t)pos, (size_t)len);
+        (*env)->DeleteLocalRef(env, buffer);
+        if(ref.buf == NULL || ref.size < len) {
+            _throwException(env, kExceptionSocketException, "Cannot get buffer");
+            return -1;
+        }
+        iov[numIov].iov_base = ref.buf;
+        iov[numIov].iov_len = (size_t)len;
+        numIov++;
+    }
+    return numIov;
+}
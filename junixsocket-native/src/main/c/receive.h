@@ -22,5 +22,17 @@
 #include "config.h"
 #include "address.h"
 
+// maximum number of buffers per scatter/gather call (smaller than any IOV_MAX)
+#define junixsocket_max_iov 64
+
+#if defined(_WIN32)
+struct iovec {
+    void *iov_base;
+    size_t iov_len;
+};
+#endif
+
+int fillIovecs(JNIEnv *env, struct iovec *iov, jobjectArray buffers, jint offset, jint length,
+               jintArray positionsAndLengths);
 
 #endif /* receive_h */
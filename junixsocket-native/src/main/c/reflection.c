@@ -202,6 +202,53 @@ JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_deregisterSel
     }
 }
 
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    getSelectableChannelFD
+ * Signature: (Ljava/nio/channels/SelectableChannel;)Ljava/io/FileDescriptor;
+ */
+JNIEXPORT jobject JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_getSelectableChannelFD
+ (JNIEnv * env, jclass clazz CK_UNUSED, jobject chann)
+{
+    if(chann == NULL) {
+        return NULL;
+    }
+
+    // The JDK's selectable channels (sun.nio.ch.SocketChannelImpl, ServerSocketChannelImpl,
+    // DatagramChannelImpl, SourceChannelImpl, SinkChannelImpl) keep their file descriptor in
+    // a private field "fd"; JNI is not subject to module encapsulation.
+    jclass instanceClass = (*env)->GetObjectClass(env, chann);
+    jfieldID fieldID = (*env)->GetFieldID(env, instanceClass, "fd", "Ljava/io/FileDescriptor;");
+    if(fieldID == NULL) {
+        (*env)->ExceptionClear(env);
+        return NULL;
+    }
+    return (*env)->GetObjectField(env, chann, fieldID);
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    killSelectableChannel
+ * Signature: (Ljava/nio/channels/SelectableChannel;)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_killSelectableChannel
+ (JNIEnv * env, jclass clazz CK_UNUSED, jobject chann)
+{
+    if(chann == NULL) {
+        return;
+    }
+
+    // sun.nio.ch.SelChImpl#kill() completes a close that was deferred while the channel
+    // was registered with a selector
+    jclass instanceClass = (*env)->GetObjectClass(env, chann);
+    jmethodID methodID = (*env)->GetMethodID(env, instanceClass, "kill", "()V");
+    if(methodID == NULL) {
+        (*env)->ExceptionClear(env);
+        return;
+    }
+    (*env)->CallVoidMethod(env, chann, methodID);
+}
+
 jboolean supportsLargePorts(void) {
     return cap_largePorts;
 }
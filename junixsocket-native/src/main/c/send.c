@@ -26,6 +26,10 @@
 #include "jniutil.h"
 #include "vsock.h"
 
+#if defined(__linux__)
+#  include <sys/sendfile.h>
+#endif
+
 #if __TOS_MVS__
 #  include <sched.h>
 #elif __TANDEM
@@ -122,9 +126,17 @@ ssize_t sendmsg_wrapper(JNIEnv * env, int handle, jbyte *buf, jint length, jux_s
 #else
 
     jintArray ancFds = ancSupp == NULL ? NULL : (*env)->GetObjectField(env, ancSupp, getFieldID_pendingFileDescriptors());
-    if (ancFds == NULL) {
+    jintArray ancCreds = ancSupp == NULL ? NULL : (*env)->GetObjectField(env, ancSupp, getFieldID_pendingCredentials());
+    if (ancFds == NULL && ancCreds == NULL) {
         return send_wrapper(handle, buf, length, sendTo, sendToLen, opt);
     }
+#if !defined(SCM_CREDENTIALS)
+    if(ancCreds != NULL) {
+        _throwException(env, kExceptionOperationNotSupportedSocketException,
+                        "Sending credentials is not supported on this platform");
+        return -1;
+    }
+#endif
 
     fixupSocketAddress(handle, sendTo, sendToLen);
 
@@ -132,17 +144,31 @@ ssize_t sendmsg_wrapper(JNIEnv * env, int handle, jbyte *buf, jint length, jux_s
     struct msghdr msg = {.msg_name = (struct sockaddr*)sendTo, .msg_namelen =
         sendToLen, .msg_iov = &iov, .msg_iovlen = 1 };
 
-    char *control = NULL;
+    jsize ancFdsLen = ancFds == NULL ? 0 : (*env)->GetArrayLength(env, ancFds);
+
+    size_t controlSize = 0;
     if(ancFds != NULL) {
-        jsize ancFdsLen = (*env)->GetArrayLength(env, ancFds);
-        msg.msg_controllen = (socklen_t)CMSG_SPACE((socklen_t)ancFdsLen * sizeof(jint));
-        control = msg.msg_control = malloc(msg.msg_controllen);
+        controlSize += CMSG_SPACE((socklen_t)ancFdsLen * sizeof(jint));
+    }
+#if defined(SCM_CREDENTIALS)
+    if(ancCreds != NULL) {
+        controlSize += CMSG_SPACE(sizeof(struct ucred));
+    }
+#endif
+
+    char *control = msg.msg_control = calloc(1, controlSize);
+    if(control == NULL) {
+        _throwException(env, kExceptionSocketException, "Out of memory");
+        return -1;
+    }
+    msg.msg_controllen = (socklen_t)controlSize;
 
-        socklen_t controlLen = 0;
-        struct cmsghdr *cmsg = CMSG_FIRSTHDR(&msg);
+    socklen_t controlLen = 0;
+    struct cmsghdr *cmsg = CMSG_FIRSTHDR(&msg);
+    if(ancFds != NULL) {
         cmsg->cmsg_level = SOL_SOCKET;
         cmsg->cmsg_type = SCM_RIGHTS;
-        controlLen += (cmsg->cmsg_len = (socklen_t)CMSG_LEN((socklen_t)ancFdsLen * sizeof(jint)));
+        controlLen = (cmsg->cmsg_len = (socklen_t)CMSG_LEN((socklen_t)ancFdsLen * sizeof(jint)));
         unsigned char *data = CMSG_DATA(cmsg);
 
         jint *ancBuf = NULL;
@@ -152,15 +178,29 @@ ssize_t sendmsg_wrapper(JNIEnv * env, int handle, jbyte *buf, jint length, jux_s
             (*env)->ReleaseIntArrayElements(env, ancFds, ancBuf, JNI_ABORT); // ancFds is unmodified
         }
 
-        cmsg = junixsocket_CMSG_NXTHDR(&msg, cmsg);
-        if(cmsg == NULL) {
-            // FIXME: not enough space in header?
-        }
+        (*env)->SetObjectField(env, ancSupp, getFieldID_pendingFileDescriptors(), NULL);
 
-        msg.msg_controllen = controlLen;
+        cmsg = ancCreds == NULL ? NULL : junixsocket_CMSG_NXTHDR(&msg, cmsg);
+    }
+#if defined(SCM_CREDENTIALS)
+    if(ancCreds != NULL && cmsg != NULL) {
+        jint credVals[3];
+        (*env)->GetIntArrayRegion(env, ancCreds, 0, 3, credVals);
+        if((*env)->ExceptionCheck(env)) {
+            free(control);
+            return -1;
+        }
+        struct ucred cr = {.pid = (pid_t)credVals[0], .uid = (uid_t)credVals[1], .gid = (gid_t)credVals[2]};
 
-        (*env)->SetObjectField(env, ancSupp, getFieldID_pendingFileDescriptors(), NULL);
+        cmsg->cmsg_level = SOL_SOCKET;
+        cmsg->cmsg_type = SCM_CREDENTIALS;
+        cmsg->cmsg_len = (socklen_t)CMSG_LEN(sizeof(cr));
+        memcpy(CMSG_DATA(cmsg), &cr, sizeof(cr));
+        controlLen = (socklen_t)(((char*)cmsg - control) + cmsg->cmsg_len);
     }
+#endif
+
+    msg.msg_controllen = controlLen;
 
     ssize_t count;
 
@@ -188,9 +228,7 @@ ssize_t sendmsg_wrapper(JNIEnv * env, int handle, jbyte *buf, jint length, jux_s
                              )
                             ));
 
-    if(control) {
-        free(control);
-    }
+    free(control);
 
     return count;
 #endif
@@ -309,3 +347,250 @@ JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_send
 
     return (jint)ret;
 }
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    sendFd
+ * Signature: (ILjava/nio/ByteBuffer;III)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_sendFd
+(JNIEnv *env, jclass clazz CK_UNUSED, jint handle, jobject buffer, jint offset, jint length, jint opt) {
+    struct jni_direct_byte_buffer_ref dataBufferRef =
+    getDirectByteBufferRef (env, buffer, (size_t)offset, 0);
+    if(dataBufferRef.size == -1) {
+        _throwException(env, kExceptionSocketException, "Cannot get buffer");
+        return -1;
+    } else if(dataBufferRef.buf == NULL) {
+        _throwException(env, kExceptionNullPointerException, "buffer");
+        return -1;
+    }
+    if(dataBufferRef.size < length) {
+        length = (int)dataBufferRef.size;
+    }
+
+    ssize_t ret = send_wrapper(handle, dataBufferRef.buf, length, NULL, 0, opt);
+    if(ret < 0) {
+        int errnum = socket_errno;
+        if(errnum == EAGAIN || errnum == EWOULDBLOCK || ((errnum == ENOBUFS || errnum == ENOMEM) && (opt & org_newsclub_net_unix_NativeUnixSocket_OPT_NON_BLOCKING) != 0)) {
+            return 0;
+        }
+        return (jint)(org_newsclub_net_unix_NativeUnixSocket_ERRNO_RESULT_BASE - errnum);
+    }
+
+    return (jint)ret;
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    writeFd
+ * Signature: (I[BIII)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_writeFd
+(JNIEnv *env, jclass clazz CK_UNUSED, jint handle, jbyteArray jbuf, jint offset, jint length, jint opt) {
+    // Performance: In order to write a single byte, simply don't specify a receive buffer.
+    // "offset" contains the byte to write, and length must be 1
+    if(jbuf) {
+        jsize bufLen = (*env)->GetArrayLength(env, jbuf);
+        if(offset < 0 || length < 0 || (length > (bufLen - offset))) {
+            _throwException(env, kExceptionIndexOutOfBoundsException, "Illegal offset or length");
+            return -1;
+        }
+    } else if(length != 1) {
+        _throwException(env, kExceptionIndexOutOfBoundsException, "Illegal length");
+        return -1;
+    }
+
+    jbyte oneByte;
+    jbyte *buf = jbuf ? malloc(length) : &oneByte;
+    if(buf == NULL) {
+        return -1; // OOME
+    }
+
+    if(jbuf) {
+        (*env)->GetByteArrayRegion(env, jbuf, offset, length, buf);
+    } else {
+        *buf = (jbyte)offset;
+    }
+
+    ssize_t count = send_wrapper(handle, buf, length, NULL, 0, opt);
+    int errnum = count == -1 ? socket_errno : 0;
+
+    if(jbuf) {
+        free(buf);
+    }
+
+    if(count == -1) {
+        if(checkNonBlocking0(handle, errnum, opt)) {
+            return 0;
+        } else {
+            return (jint)(org_newsclub_net_unix_NativeUnixSocket_ERRNO_RESULT_BASE - errnum);
+        }
+    }
+
+    return (jint)count;
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    sendArray
+ * Signature: (I[BIII)I
+ */
+JNIEXPORT jint JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_sendArray
+(JNIEnv *env, jclass clazz CK_UNUSED, jint handle, jbyteArray jbuf, jint offset, jint length, jint opt) {
+    jsize bufLen = (*env)->GetArrayLength(env, jbuf);
+    if(offset < 0 || length < 0 || length > (bufLen - offset)) {
+        _throwException(env, kExceptionIndexOutOfBoundsException, "Illegal offset or length");
+        return -1;
+    }
+
+    const jboolean nonBlocking = (opt & org_newsclub_net_unix_NativeUnixSocket_OPT_NON_BLOCKING) != 0;
+    const jboolean nonSocket = (opt & org_newsclub_net_unix_NativeUnixSocket_OPT_NON_SOCKET) != 0;
+
+    // The array is pinned while we're in the call below, which therefore must never block.
+#if defined(MSG_DONTWAIT)
+    const int dontWait = MSG_DONTWAIT;
+#else
+    const int dontWait = 0;
+    if(!nonBlocking) {
+        return -2;
+    }
+#endif
+    if(nonSocket && !nonBlocking) {
+        // write(2) would block
+        return -2;
+    }
+
+    jbyte *buf = (*env)->GetPrimitiveArrayCritical(env, jbuf, NULL);
+    if(buf == NULL) {
+        return -1; // OOME
+    }
+
+    ssize_t count;
+    int errnum;
+    do {
+        if(nonSocket) {
+            count = write(handle, (char*)(buf + offset), length);
+        } else {
+            count = send(handle, (char*)(buf + offset), length, dontWait);
+            if(count == -1 && socket_errno == ENOTSOCK && nonBlocking) {
+                // unexpected non-socket, try again with write
+                count = write(handle, (char*)(buf + offset), length);
+            }
+        }
+        errnum = (count == -1) ? socket_errno : 0;
+    } while(count == -1 && errnum == EINTR);
+
+    (*env)->ReleasePrimitiveArrayCritical(env, jbuf, buf, JNI_ABORT);
+
+    if(count >= 0) {
+        return (jint)count;
+    } else if(errnum == EAGAIN || errnum == EWOULDBLOCK || errnum == ENOBUFS || errnum == ENOMEM
+              || errnum == ENOTSOCK) {
+        return -2;
+    } else {
+        return (jint)(org_newsclub_net_unix_NativeUnixSocket_ERRNO_RESULT_BASE - errnum);
+    }
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    writev
+ * Signature: (Ljava/io/FileDescriptor;[Ljava/nio/ByteBuffer;II[II)J
+ */
+JNIEXPORT jlong JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_writev
+(JNIEnv *env, jclass clazz CK_UNUSED, jobject fd, jobjectArray buffers, jint offset, jint length, jintArray positionsAndLengths, jint opt) {
+    int handle = _getFD(env, fd);
+    if(handle < 0) {
+        _throwException(env, kExceptionSocketException, "Socket is closed");
+        return -1;
+    }
+
+    struct iovec iov[junixsocket_max_iov];
+    int numIov = fillIovecs(env, iov, buffers, offset, length, positionsAndLengths);
+    if(numIov < 0) {
+        return -1; // exception thrown
+    } else if(numIov == 0) {
+        return 0;
+    }
+
+    ssize_t count;
+    do {
+#if defined(_WIN32)
+        // no writev for sockets; use the first buffer only
+        count = send(handle, iov[0].iov_base, (int)iov[0].iov_len, 0);
+#else
+        count = writev(handle, iov, numIov);
+#endif
+    } while(count == (ssize_t)-1 && (socket_errno == EINTR));
+
+    if(count >= 0) {
+        return (jlong)count;
+    }
+
+    int theError = socket_errno;
+    if(checkNonBlocking0(handle, theError, opt)) {
+        return 0;
+    }
+    _throwErrnumException(env, theError, fd);
+    return -1;
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    sendfile
+ * Signature: (Ljava/io/FileDescriptor;Ljava/io/FileDescriptor;JJI)J
+ */
+JNIEXPORT jlong JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_sendfile
+ (JNIEnv *env, jclass clazz CK_UNUSED, jobject fdOut, jobject fdIn, jlong position, jlong count,
+  jint opt) {
+#if defined(__linux__) || defined(__APPLE__) || defined(__FreeBSD__)
+    if(count <= 0) {
+        return 0;
+    }
+    int handleOut = _getFD(env, fdOut);
+    int handleIn = _getFD(env, fdIn);
+
+    ssize_t sent;
+#  if defined(__linux__)
+    off_t offset = (off_t)position;
+    size_t len = count > 0x7ffff000 ? 0x7ffff000 : (size_t)count;
+    do {
+        sent = sendfile(handleOut, handleIn, &offset, len);
+    } while(sent == (ssize_t)-1 && errno == EINTR);
+#  else
+    off_t len = (off_t)count;
+    int ret;
+    do {
+#    if defined(__APPLE__)
+        ret = sendfile(handleIn, handleOut, (off_t)position, &len, NULL, 0);
+#    else
+        off_t sbytes = 0;
+        ret = sendfile(handleIn, handleOut, (off_t)position, (size_t)len, NULL, &sbytes, 0);
+        len = sbytes;
+#    endif
+        // partial transfers are reported via len, even if interrupted or would block
+    } while(ret == -1 && errno == EINTR && len == 0);
+    sent = (ret == -1 && len == 0) ? -1 : (ssize_t)len;
+#  endif
+
+    if(sent >= 0) {
+        return (jlong)sent;
+    }
+
+    int theError = errno;
+    if(checkNonBlocking0(handleOut, theError, opt)) {
+        return 0;
+    }
+    _throwErrnumException(env, theError, fdOut);
+    return -1;
+#else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fdOut);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fdIn);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(position);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(count);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(opt);
+    _throwException(env, kExceptionOperationNotSupportedSocketException,
+                    "sendfile is not supported");
+    return -1;
+#endif
+}
@@ -170,6 +170,43 @@ JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_createSocket
     _initFD(env, fd, handle);
 }
 
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    createNetlinkSocket
+ * Signature: (Ljava/io/FileDescriptor;I)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_createNetlinkSocket
+(JNIEnv * env, jclass clazz CK_UNUSED, jobject fd, jint protocol) {
+#if defined(junixsocket_have_netlink)
+    int handle = _getFD(env, fd);
+
+    if(handle > 0) {
+        // already initialized
+        _throwException(env, kExceptionSocketException, "Already created");
+        return;
+    }
+
+    handle = socket(AF_NETLINK, SOCK_DGRAM | SOCK_CLOEXEC, protocol);
+    if(handle < 0) {
+        int errnum = socket_errno;
+        if(errnum == EAFNOSUPPORT || errnum == EPROTONOSUPPORT) {
+            _throwException(env, kExceptionOperationNotSupportedSocketException,
+                            "Netlink protocol is not supported");
+        } else {
+            _throwErrnumException(env, errnum, fd);
+        }
+        return;
+    }
+
+    _initFD(env, fd, handle);
+#else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fd);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(protocol);
+    _throwException(env, kExceptionOperationNotSupportedSocketException,
+                    "Netlink is not supported on this platform");
+#endif
+}
+
 /*
  * Class:     org_newsclub_net_unix_NativeUnixSocket
  * Method:    socketStatus
@@ -215,6 +215,8 @@ JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_setSocketOpti
 
 static jint optionDomainToNative(jint domain) {
     switch(domain) {
+        case 1:
+            return SOL_SOCKET;
 #if junixsocket_have_tipc
         case 271:
             return SOL_TIPC;
@@ -226,6 +228,15 @@ static jint optionDomainToNative(jint domain) {
 
 static jint optionNameToNative(jint domain, jint optionName) {
     switch(domain) {
+        case 1: // SOL_SOCKET
+            switch(optionName) {
+#if defined(SO_PASSCRED)
+                case 16:
+                    return SO_PASSCRED;
+#endif
+                default:
+                    return -1;
+            }
         case 271: // TIPC
             if(optionName >= 127 && optionName <= 138) {
                 // allow compiling with older kernel headers by not using constants here
@@ -395,3 +406,101 @@ JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_setSocketOpti
 end:
     free(valPtr);
 }
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    attachFilter
+ * Signature: (Ljava/io/FileDescriptor;[I)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_attachFilter
+(JNIEnv *env, jclass clazz CK_UNUSED, jobject fd, jintArray program)
+{
+#if defined(junixsocket_have_socket_filter) && defined(SO_ATTACH_FILTER)
+    int handle = _getFD(env, fd);
+
+    jsize len = (*env)->GetArrayLength(env, program);
+    if(len <= 0 || (len % 2) != 0 || len / 2 > BPF_MAXINSNS) {
+        _throwException(env, kExceptionInvalidArgumentSocketException, "Invalid filter program");
+        return;
+    }
+    unsigned short numInstructions = (unsigned short)(len / 2);
+
+    struct sock_filter *filter = calloc(numInstructions, sizeof(struct sock_filter));
+    if(filter == NULL) {
+        _throwException(env, kExceptionSocketException, "Out of memory");
+        return;
+    }
+
+    jint *code = (*env)->GetIntArrayElements(env, program, NULL);
+    if(code == NULL) {
+        free(filter);
+        return; // OutOfMemoryError thrown
+    }
+    for(unsigned short i = 0; i < numInstructions; i++) {
+        jint op = code[i * 2];
+        filter[i].code = (__u16)((op >> 16) & 0xFFFF);
+        filter[i].jt = (__u8)((op >> 8) & 0xFF);
+        filter[i].jf = (__u8)(op & 0xFF);
+        filter[i].k = (__u32)code[i * 2 + 1];
+    }
+    (*env)->ReleaseIntArrayElements(env, program, code, JNI_ABORT);
+
+    struct sock_fprog prog = {.len = numInstructions, .filter = filter};
+    int ret = setsockopt(handle, SOL_SOCKET, SO_ATTACH_FILTER, &prog, sizeof(prog));
+    if(ret == -1) {
+        _throwSockoptErrnumException(env, socket_errno, fd);
+    }
+    free(filter);
+#else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fd);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(program);
+    _throwException(env, kExceptionOperationNotSupportedSocketException, "Socket filters are not supported");
+#endif
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    detachFilter
+ * Signature: (Ljava/io/FileDescriptor;)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_detachFilter
+(JNIEnv *env, jclass clazz CK_UNUSED, jobject fd)
+{
+#if defined(junixsocket_have_socket_filter) && defined(SO_DETACH_FILTER)
+    int handle = _getFD(env, fd);
+
+    int dummy = 0;
+    int ret = setsockopt(handle, SOL_SOCKET, SO_DETACH_FILTER, &dummy, sizeof(dummy));
+    if(ret == -1 && socket_errno != ENOENT) { // ENOENT: no filter attached
+        _throwSockoptErrnumException(env, socket_errno, fd);
+    }
+#else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fd);
+    _throwException(env, kExceptionOperationNotSupportedSocketException, "Socket filters are not supported");
+#endif
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    lockFilter
+ * Signature: (Ljava/io/FileDescriptor;)V
+ */
+JNIEXPORT void JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_lockFilter
+(JNIEnv *env, jclass clazz CK_UNUSED, jobject fd)
+{
+#if defined(junixsocket_have_socket_filter)
+#  if !defined(SO_LOCK_FILTER)
+#    define SO_LOCK_FILTER 44
+#  endif
+    int handle = _getFD(env, fd);
+
+    int one = 1;
+    int ret = setsockopt(handle, SOL_SOCKET, SO_LOCK_FILTER, &one, sizeof(one));
+    if(ret == -1) {
+        _throwSockoptErrnumException(env, socket_errno, fd);
+    }
+#else
+    CK_ARGUMENT_POTENTIALLY_UNUSED(fd);
+    _throwException(env, kExceptionOperationNotSupportedSocketException, "Socket filters are not supported");
+#endif
+}
@@ -0,0 +1,88 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "threads.h"
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    setCurrentThreadAffinity
+ * Signature: (I)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_setCurrentThreadAffinity
+ (JNIEnv *env, jclass clazz CK_UNUSED, jint cpu) {
+    CK_ARGUMENT_POTENTIALLY_UNUSED(env);
+    CK_ARGUMENT_POTENTIALLY_UNUSED(cpu);
+
+#if junixsocket_have_sched_setaffinity
+    if(cpu < 0 || cpu >= CPU_SETSIZE) {
+        return JNI_FALSE;
+    }
+
+    cpu_set_t set;
+    CPU_ZERO(&set);
+    CPU_SET(cpu, &set);
+
+    // pid 0 refers to the calling thread
+    if(sched_setaffinity(0, sizeof(set), &set) != 0) {
+        // CPU not available (offline, or excluded by cgroup/cpuset); not an error for our callers
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+#else
+    return JNI_FALSE;
+#endif
+}
+
+/*
+ * Class:     org_newsclub_net_unix_NativeUnixSocket
+ * Method:    getCurrentThreadAffinity
+ * Signature: ()[I
+ */
+JNIEXPORT jintArray JNICALL Java_org_newsclub_net_unix_NativeUnixSocket_getCurrentThreadAffinity
+ (JNIEnv *env, jclass clazz CK_UNUSED) {
+    CK_ARGUMENT_POTENTIALLY_UNUSED(env);
+
+#if junixsocket_have_sched_setaffinity
+    cpu_set_t set;
+    CPU_ZERO(&set);
+
+    // pid 0 refers to the calling thread
+    if(sched_getaffinity(0, sizeof(set), &set) != 0) {
+        // e.g., more than CPU_SETSIZE CPUs
+        return NULL;
+    }
+
+    int count = CPU_COUNT(&set);
+    jint cpus[CPU_SETSIZE];
+    int n = 0;
+    for(int cpu = 0; cpu < CPU_SETSIZE && n < count; cpu++) {
+        if(CPU_ISSET(cpu, &set)) {
+            cpus[n++] = cpu;
+        }
+    }
+
+    jintArray array = (*env)->NewIntArray(env, n);
+    if(array == NULL) {
+        return NULL; // OutOfMemoryError thrown
+    }
+    (*env)->SetIntArrayRegion(env, array, 0, n, cpus);
+    return array;
+#else
+    return NULL;
+#endif
+}
@@ -0,0 +1,31 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifndef threads_h
+#define threads_h
+
+#include "config.h"
+
+#if defined(__linux__) && !defined(__ANDROID__) && __has_include(<sched.h>)
+#  include <sched.h>
+#  if defined(CPU_SET) && defined(CPU_SETSIZE)
+#    define junixsocket_have_sched_setaffinity 1
+#  endif
+#endif
+
+#endif /* threads_h */
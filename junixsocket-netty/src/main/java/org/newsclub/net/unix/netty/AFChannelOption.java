@@ -0,0 +1,48 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.netty;
+
+import org.newsclub.net.unix.AFSocketChannel;
+
+import io.netty.channel.ChannelOption;
+
+/**
+ * junixsocket-specific {@link ChannelOption}s, supported by {@link AFNioSocketChannel}.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class AFChannelOption {
+  /**
+   * The size of the buffer used to receive ancillary messages, such as file descriptors (see
+   * {@link AFSocketChannel#setAncillaryReceiveBufferSize(int)}). Set this to a non-zero value to
+   * receive file descriptors via {@link AFNioSocketChannel#RECEIVED_FILE_DESCRIPTORS}.
+   */
+  public static final ChannelOption<Integer> ANCILLARY_RECEIVE_BUFFER_SIZE = ChannelOption.valueOf(
+      AFChannelOption.class, "ANCILLARY_RECEIVE_BUFFER_SIZE");
+
+  /**
+   * The maximum number of bytes to write with a single gathering write; defaults to twice the
+   * socket's send buffer size.
+   */
+  public static final ChannelOption<Integer> MAX_BYTES_PER_GATHERING_WRITE = ChannelOption.valueOf(
+      AFChannelOption.class, "MAX_BYTES_PER_GATHERING_WRITE");
+
+  private AFChannelOption() {
+    throw new IllegalStateException("No instances");
+  }
+}
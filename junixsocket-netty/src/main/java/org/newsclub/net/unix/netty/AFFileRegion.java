@@ -0,0 +1,179 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.netty;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+import org.newsclub.net.unix.AFSocketChannel;
+import org.newsclub.net.unix.OperationNotSupportedSocketException;
+
+import io.netty.channel.FileRegion;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.IllegalReferenceCountException;
+
+/**
+ * A {@link FileRegion} that is transferred to {@link AFNioSocketChannel}s via {@code sendfile(2)},
+ * without copying the file contents to user space.
+ * <p>
+ * Use this instead of {@link io.netty.channel.DefaultFileRegion}, which can only be transferred by
+ * copying. On platforms without {@code sendfile} support, and for other target channels, the file is
+ * transferred via {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class AFFileRegion extends AbstractReferenceCounted implements FileRegion {
+  private final FileInputStream in;
+  private final long position;
+  private final long count;
+  private long transferred;
+  private boolean sendfileUnsupported;
+
+  /**
+   * Creates a new file region.
+   *
+   * @param in The file input stream; closed when this region is deallocated.
+   * @param position The start position in the file.
+   * @param count The number of bytes to transfer.
+   */
+  public AFFileRegion(FileInputStream in, long position, long count) {
+    if (position < 0 || count < 0) {
+      throw new IllegalArgumentException();
+    }
+    this.in = in;
+    this.position = position;
+    this.count = count;
+  }
+
+  /**
+   * Creates a new file region for the entire file.
+   *
+   * @param file The file.
+   * @return The new region.
+   * @throws IOException on error.
+   */
+  public static AFFileRegion of(File file) throws IOException {
+    return of(file, 0, file.length());
+  }
+
+  /**
+   * Creates a new file region.
+   *
+   * @param file The file.
+   * @param position The start position in the file.
+   * @param count The number of bytes to transfer.
+   * @return The new region.
+   * @throws IOException on error.
+   */
+  public static AFFileRegion of(File file, long position, long count) throws IOException {
+    return new AFFileRegion(new FileInputStream(file), position, count);
+  }
+
+  @Override
+  public long position() {
+    return position;
+  }
+
+  @Override
+  @Deprecated
+  public long transfered() {
+    return transferred;
+  }
+
+  @Override
+  public long transferred() {
+    return transferred;
+  }
+
+  @Override
+  public long count() {
+    return count;
+  }
+
+  @Override
+  public long transferTo(WritableByteChannel target, long pos) throws IOException {
+    long remaining = count - pos;
+    if (remaining < 0 || pos < 0) {
+      throw new IllegalArgumentException("position out of range: " + pos + " (expected: 0 - "
+          + (count - 1) + ")");
+    }
+    if (remaining == 0) {
+      return 0L;
+    }
+    if (refCnt() == 0) {
+      throw new IllegalReferenceCountException(0);
+    }
+
+    long written = -1;
+    if (target instanceof AFSocketChannel && !sendfileUnsupported) {
+      try {
+        written = ((AFSocketChannel<?>) target).sendFile(in.getFD(), position + pos, remaining);
+      } catch (OperationNotSupportedSocketException e) {
+        sendfileUnsupported = true;
+      }
+    }
+    if (written < 0) {
+      written = in.getChannel().transferTo(position + pos, remaining, target);
+    }
+
+    if (written > 0) {
+      transferred += written;
+    } else if (written == 0) {
+      // the file may have been truncated
+      long size = in.getChannel().size();
+      if (position + pos >= size) {
+        throw new IOException("Underlying file size " + size + " smaller then requested count "
+            + count);
+      }
+    }
+    return written;
+  }
+
+  @Override
+  protected void deallocate() {
+    try {
+      in.close();
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+
+  @Override
+  public AFFileRegion retain() {
+    super.retain();
+    return this;
+  }
+
+  @Override
+  public AFFileRegion retain(int increment) {
+    super.retain(increment);
+    return this;
+  }
+
+  @Override
+  public AFFileRegion touch() {
+    return this;
+  }
+
+  @Override
+  public AFFileRegion touch(Object hint) {
+    return this;
+  }
+}
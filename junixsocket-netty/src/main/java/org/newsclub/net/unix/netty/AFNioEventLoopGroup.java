@@ -0,0 +1,97 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.netty;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+import org.newsclub.net.unix.AFSelectorProvider;
+import org.newsclub.net.unix.AFUNIXSelectorProvider;
+
+import io.netty.channel.nio.NioEventLoopGroup;
+
+/**
+ * A {@link NioEventLoopGroup} whose event loops run on junixsocket's selector, suitable for
+ * {@link AFNioSocketChannel}s and {@link AFNioServerSocketChannel}s of the same address family.
+ *
+ * @author Christian Kohlschütter
+ */
+public class AFNioEventLoopGroup extends NioEventLoopGroup {
+  private final AFSelectorProvider<?> selectorProvider;
+
+  /**
+   * Creates a new event loop group for AF_UNIX channels, using the default number of threads.
+   */
+  public AFNioEventLoopGroup() {
+    this(0);
+  }
+
+  /**
+   * Creates a new event loop group for AF_UNIX channels.
+   *
+   * @param nThreads The number of threads, or {@code 0} for Netty's default.
+   */
+  public AFNioEventLoopGroup(int nThreads) {
+    this(nThreads, AFUNIXSelectorProvider.getInstance());
+  }
+
+  /**
+   * Creates a new event loop group.
+   *
+   * @param nThreads The number of threads, or {@code 0} for Netty's default.
+   * @param selectorProvider The selector provider of the desired address family.
+   */
+  public AFNioEventLoopGroup(int nThreads, AFSelectorProvider<?> selectorProvider) {
+    this(nThreads, (Executor) null, selectorProvider);
+  }
+
+  /**
+   * Creates a new event loop group.
+   *
+   * @param nThreads The number of threads, or {@code 0} for Netty's default.
+   * @param threadFactory The thread factory, or {@code null} for Netty's default.
+   * @param selectorProvider The selector provider of the desired address family.
+   */
+  public AFNioEventLoopGroup(int nThreads, ThreadFactory threadFactory,
+      AFSelectorProvider<?> selectorProvider) {
+    super(nThreads, threadFactory, selectorProvider);
+    this.selectorProvider = selectorProvider;
+  }
+
+  /**
+   * Creates a new event loop group.
+   *
+   * @param nThreads The number of threads, or {@code 0} for Netty's default.
+   * @param executor The executor, or {@code null} for Netty's default.
+   * @param selectorProvider The selector provider of the desired address family.
+   */
+  public AFNioEventLoopGroup(int nThreads, Executor executor,
+      AFSelectorProvider<?> selectorProvider) {
+    super(nThreads, executor, selectorProvider);
+    this.selectorProvider = selectorProvider;
+  }
+
+  /**
+   * Returns the selector provider used by this group's event loops.
+   *
+   * @return The selector provider.
+   */
+  public final AFSelectorProvider<?> selectorProvider() {
+    return selectorProvider;
+  }
+}
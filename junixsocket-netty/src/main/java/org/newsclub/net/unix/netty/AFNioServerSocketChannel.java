@@ -0,0 +1,171 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.netty;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.SelectionKey;
+import java.util.List;
+
+import org.newsclub.net.unix.AFSelectorProvider;
+import org.newsclub.net.unix.AFServerSocketChannel;
+import org.newsclub.net.unix.AFSocketChannel;
+import org.newsclub.net.unix.AFUNIXSelectorProvider;
+
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.nio.AbstractNioMessageChannel;
+
+/**
+ * A Netty {@link ServerChannel} backed by an {@link AFServerSocketChannel}, accepting
+ * {@link AFNioSocketChannel}s.
+ * <p>
+ * This class can be used wherever a Netty server channel class is expected, e.g., via
+ * {@code ServerBootstrap.channel(AFNioServerSocketChannel.class)}, or gRPC's
+ * {@code NettyServerBuilder.channelType(AFNioServerSocketChannel.class)}, together with an
+ * {@link AFNioEventLoopGroup}.
+ *
+ * @author Christian Kohlschütter
+ */
+public class AFNioServerSocketChannel extends AbstractNioMessageChannel implements
+    ServerChannel {
+  private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+
+  private final AFNioServerSocketChannelConfig config;
+
+  /**
+   * Creates a new, unbound AF_UNIX server channel.
+   */
+  public AFNioServerSocketChannel() {
+    this(AFUNIXSelectorProvider.getInstance());
+  }
+
+  /**
+   * Creates a new, unbound server channel.
+   *
+   * @param provider The selector provider of the desired address family.
+   */
+  public AFNioServerSocketChannel(AFSelectorProvider<?> provider) {
+    this(newChannel(provider));
+  }
+
+  /**
+   * Creates a new server channel wrapping the given {@link AFServerSocketChannel}.
+   *
+   * @param channel The channel to wrap.
+   */
+  public AFNioServerSocketChannel(AFServerSocketChannel<?> channel) {
+    super(null, channel, SelectionKey.OP_ACCEPT);
+    this.config = new AFNioServerSocketChannelConfig(this, channel);
+  }
+
+  private static AFServerSocketChannel<?> newChannel(AFSelectorProvider<?> provider) {
+    try {
+      return provider.openServerSocketChannel();
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to open a server socket channel", e);
+    }
+  }
+
+  @Override
+  protected AFServerSocketChannel<?> javaChannel() {
+    return (AFServerSocketChannel<?>) super.javaChannel();
+  }
+
+  @Override
+  public AFNioServerSocketChannelConfig config() {
+    return config;
+  }
+
+  @Override
+  public ChannelMetadata metadata() {
+    return METADATA;
+  }
+
+  @Override
+  public boolean isActive() {
+    AFServerSocketChannel<?> ch = javaChannel();
+    return ch.isOpen() && ch.socket().isBound();
+  }
+
+  @Override
+  protected SocketAddress localAddress0() {
+    return javaChannel().getLocalSocketAddress();
+  }
+
+  @Override
+  protected SocketAddress remoteAddress0() {
+    return null;
+  }
+
+  @Override
+  protected void doBind(SocketAddress localAddress) throws Exception {
+    javaChannel().bind(localAddress, config.getBacklog());
+  }
+
+  @Override
+  protected void doClose() throws Exception {
+    javaChannel().close();
+  }
+
+  @Override
+  protected int doReadMessages(List<Object> buf) throws Exception {
+    AFSocketChannel<?> ch = javaChannel().accept();
+    if (ch == null) {
+      return 0;
+    }
+    try {
+      buf.add(new AFNioSocketChannel(this, ch));
+      return 1;
+    } catch (RuntimeException e) {
+      ch.close();
+      throw e;
+    }
+  }
+
+  @Override
+  protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress)
+      throws Exception {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  protected void doFinishConnect() throws Exception {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  protected void doDisconnect() throws Exception {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  protected boolean doWriteMessage(Object msg, ChannelOutboundBuffer in) throws Exception {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  protected final Object filterOutboundMessage(Object msg) throws Exception {
+    throw new UnsupportedOperationException();
+  }
+
+  void clearReadPending0() {
+    clearReadPending();
+  }
+}
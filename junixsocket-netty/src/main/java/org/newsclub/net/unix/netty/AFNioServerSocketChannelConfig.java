@@ -0,0 +1,130 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.netty;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.util.Map;
+
+import org.newsclub.net.unix.AFServerSocketChannel;
+
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.DefaultChannelConfig;
+
+/**
+ * The {@link io.netty.channel.ChannelConfig} of an {@link AFNioServerSocketChannel}.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class AFNioServerSocketChannelConfig extends DefaultChannelConfig {
+  private final AFServerSocketChannel<?> javaChannel;
+  private volatile int backlog = 50;
+
+  AFNioServerSocketChannelConfig(AFNioServerSocketChannel channel,
+      AFServerSocketChannel<?> javaChannel) {
+    super(channel);
+    this.javaChannel = javaChannel;
+  }
+
+  @Override
+  public Map<ChannelOption<?>, Object> getOptions() {
+    return getOptions(super.getOptions(), ChannelOption.SO_BACKLOG, ChannelOption.SO_RCVBUF);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> T getOption(ChannelOption<T> option) {
+    if (option == ChannelOption.SO_BACKLOG) {
+      return (T) Integer.valueOf(getBacklog());
+    } else if (option == ChannelOption.SO_RCVBUF) {
+      return (T) Integer.valueOf(getReceiveBufferSize());
+    }
+    return super.getOption(option);
+  }
+
+  @Override
+  public <T> boolean setOption(ChannelOption<T> option, T value) {
+    validate(option, value);
+
+    if (option == ChannelOption.SO_BACKLOG) {
+      setBacklog((Integer) value);
+    } else if (option == ChannelOption.SO_RCVBUF) {
+      setReceiveBufferSize((Integer) value);
+    } else {
+      return super.setOption(option, value);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the backlog used when binding the server channel.
+   *
+   * @return The backlog.
+   */
+  public int getBacklog() {
+    return backlog;
+  }
+
+  /**
+   * Sets the backlog used when binding the server channel.
+   *
+   * @param backlog The backlog.
+   * @return This instance.
+   */
+  public AFNioServerSocketChannelConfig setBacklog(int backlog) {
+    if (backlog < 0) {
+      throw new IllegalArgumentException("backlog: " + backlog);
+    }
+    this.backlog = backlog;
+    return this;
+  }
+
+  /**
+   * Returns the receive buffer size ({@code SO_RCVBUF}) inherited by accepted channels.
+   *
+   * @return The size, in bytes.
+   */
+  public int getReceiveBufferSize() {
+    try {
+      return javaChannel.getOption(StandardSocketOptions.SO_RCVBUF);
+    } catch (IOException e) {
+      throw new ChannelException(e);
+    }
+  }
+
+  /**
+   * Sets the receive buffer size ({@code SO_RCVBUF}) inherited by accepted channels.
+   *
+   * @param receiveBufferSize The size, in bytes.
+   * @return This instance.
+   */
+  public AFNioServerSocketChannelConfig setReceiveBufferSize(int receiveBufferSize) {
+    try {
+      javaChannel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+    } catch (IOException e) {
+      throw new ChannelException(e);
+    }
+    return this;
+  }
+
+  @Override
+  protected void autoReadCleared() {
+    ((AFNioServerSocketChannel) channel).clearReadPending0();
+  }
+}
@@ -0,0 +1,455 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.netty;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+
+import org.newsclub.net.unix.AFSelectorProvider;
+import org.newsclub.net.unix.AFSocketChannel;
+import org.newsclub.net.unix.AFUNIXSelectorProvider;
+import org.newsclub.net.unix.AFUNIXSocketCredentials;
+import org.newsclub.net.unix.AFUNIXSocketExtensions;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.FileRegion;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.nio.AbstractNioByteChannel;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.util.AttributeKey;
+
+/**
+ * A Netty {@link Channel} backed by an {@link AFSocketChannel} (AF_UNIX, AF_TIPC, AF_VSOCK, etc.),
+ * to be used with an {@link AFNioEventLoopGroup}.
+ * <p>
+ * Gathering writes are performed with a single {@code writev(2)} call, and {@link AFFileRegion}s
+ * are transferred via {@code sendfile(2)} where supported.
+ * <p>
+ * For AF_UNIX, file descriptors can be sent by setting {@link #OUTBOUND_FILE_DESCRIPTORS} before
+ * writing, and received via {@link #RECEIVED_FILE_DESCRIPTORS} (see
+ * {@link AFChannelOption#ANCILLARY_RECEIVE_BUFFER_SIZE}).
+ * <p>
+ * NOTE: When connecting via {@code Bootstrap}, set
+ * {@code resolver(NoopAddressResolverGroup.INSTANCE)}; otherwise Netty attempts to resolve the
+ * socket address via DNS.
+ *
+ * @author Christian Kohlschütter
+ */
+public class AFNioSocketChannel extends AbstractNioByteChannel implements DuplexChannel {
+  /**
+   * File descriptors to be sent along with the next write (AF_UNIX only).
+   */
+  public static final AttributeKey<FileDescriptor[]> OUTBOUND_FILE_DESCRIPTORS = AttributeKey
+      .valueOf(AFNioSocketChannel.class, "OUTBOUND_FILE_DESCRIPTORS");
+
+  /**
+   * File descriptors received along with previous reads (AF_UNIX only). The attribute value should
+   * be cleared ({@code getAndSet(null)}) when consumed.
+   */
+  public static final AttributeKey<FileDescriptor[]> RECEIVED_FILE_DESCRIPTORS = AttributeKey
+      .valueOf(AFNioSocketChannel.class, "RECEIVED_FILE_DESCRIPTORS");
+
+  private static final int MAX_GATHERING_BUFFERS = 1024;
+
+  private final AFNioSocketChannelConfig config;
+
+  // AFSocketChannel#shutdownInput does not update Socket#isInputShutdown
+  private volatile boolean inputShutdown;
+
+  /**
+   * Creates a new, unconnected AF_UNIX channel.
+   */
+  public AFNioSocketChannel() {
+    this(AFUNIXSelectorProvider.getInstance());
+  }
+
+  /**
+   * Creates a new, unconnected channel.
+   *
+   * @param provider The selector provider of the desired address family.
+   */
+  public AFNioSocketChannel(AFSelectorProvider<?> provider) {
+    this(null, newChannel(provider));
+  }
+
+  /**
+   * Creates a new channel wrapping the given {@link AFSocketChannel}.
+   *
+   * @param channel The channel to wrap.
+   */
+  public AFNioSocketChannel(AFSocketChannel<?> channel) {
+    this(null, channel);
+  }
+
+  /**
+   * Creates a new channel wrapping the given {@link AFSocketChannel}.
+   *
+   * @param parent The parent channel (e.g., the server channel that accepted this channel), or
+   *          {@code null}.
+   * @param channel The channel to wrap.
+   */
+  public AFNioSocketChannel(Channel parent, AFSocketChannel<?> channel) {
+    super(parent, channel);
+    this.config = new AFNioSocketChannelConfig(this, channel);
+  }
+
+  private static AFSocketChannel<?> newChannel(AFSelectorProvider<?> provider) {
+    try {
+      return provider.openSocketChannel();
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to open a socket channel", e);
+    }
+  }
+
+  @Override
+  protected AFSocketChannel<?> javaChannel() {
+    return (AFSocketChannel<?>) super.javaChannel();
+  }
+
+  @Override
+  public AFNioSocketChannelConfig config() {
+    return config;
+  }
+
+  @Override
+  public boolean isActive() {
+    AFSocketChannel<?> ch = javaChannel();
+    return ch.isOpen() && ch.isConnected();
+  }
+
+  @Override
+  protected SocketAddress localAddress0() {
+    return javaChannel().getLocalSocketAddress();
+  }
+
+  @Override
+  protected SocketAddress remoteAddress0() {
+    return javaChannel().getRemoteSocketAddress();
+  }
+
+  /**
+   * Returns the credentials of the peer process (AF_UNIX only).
+   *
+   * @return The credentials.
+   * @throws IOException on error, or if the channel is not an AF_UNIX channel.
+   */
+  public AFUNIXSocketCredentials peerCredentials() throws IOException {
+    AFSocketChannel<?> ch = javaChannel();
+    if (!(ch instanceof AFUNIXSocketExtensions)) {
+      throw new IOException("Peer credentials are not supported for " + ch);
+    }
+    return ((AFUNIXSocketExtensions) ch).getPeerCredentials();
+  }
+
+  @Override
+  protected void doBind(SocketAddress localAddress) throws Exception {
+    javaChannel().bind(localAddress);
+  }
+
+  @Override
+  protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress)
+      throws Exception {
+    if (localAddress != null) {
+      doBind(localAddress);
+    }
+
+    boolean success = false;
+    try {
+      boolean connected = javaChannel().connect(remoteAddress);
+      if (!connected) {
+        selectionKey().interestOps(SelectionKey.OP_CONNECT);
+      }
+      success = true;
+      return connected;
+    } finally {
+      if (!success) {
+        doClose();
+      }
+    }
+  }
+
+  @Override
+  protected void doFinishConnect() throws Exception {
+    if (!javaChannel().finishConnect()) {
+      throw new Error();
+    }
+  }
+
+  @Override
+  protected void doDisconnect() throws Exception {
+    doClose();
+  }
+
+  @Override
+  protected void doClose() throws Exception {
+    super.doClose();
+    javaChannel().close();
+  }
+
+  @Override
+  public boolean isInputShutdown() {
+    return inputShutdown || javaChannel().socket().isInputShutdown() || !isActive();
+  }
+
+  @Override
+  protected boolean isInputShutdown0() {
+    // stops further read attempts once input has been shut down
+    return isInputShutdown();
+  }
+
+  @Override
+  public boolean isOutputShutdown() {
+    return javaChannel().socket().isOutputShutdown() || !isActive();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return ((inputShutdown || javaChannel().socket().isInputShutdown()) && javaChannel().socket()
+        .isOutputShutdown())
+        || !isActive();
+  }
+
+  @Override
+  protected final void doShutdownOutput() throws Exception {
+    javaChannel().shutdownOutput();
+  }
+
+  @Override
+  public ChannelFuture shutdownInput() {
+    return shutdownInput(newPromise());
+  }
+
+  @Override
+  public ChannelFuture shutdownInput(final ChannelPromise promise) {
+    EventLoop loop = eventLoop();
+    if (loop.inEventLoop()) {
+      shutdownInput0(promise);
+    } else {
+      loop.execute(() -> shutdownInput0(promise));
+    }
+    return promise;
+  }
+
+  private void shutdownInput0(ChannelPromise promise) {
+    try {
+      javaChannel().shutdownInput();
+      inputShutdown = true;
+      promise.setSuccess();
+    } catch (Throwable t) { // NOPMD
+      promise.setFailure(t);
+    }
+  }
+
+  @Override
+  public ChannelFuture shutdownOutput() {
+    return shutdownOutput(newPromise());
+  }
+
+  @Override
+  public ChannelFuture shutdownOutput(final ChannelPromise promise) {
+    EventLoop loop = eventLoop();
+    if (loop.inEventLoop()) {
+      ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+    } else {
+      loop.execute(() -> ((AbstractUnsafe) unsafe()).shutdownOutput(promise));
+    }
+    return promise;
+  }
+
+  @Override
+  public ChannelFuture shutdown() {
+    return shutdown(newPromise());
+  }
+
+  @Override
+  public ChannelFuture shutdown(final ChannelPromise promise) {
+    ChannelFuture shutdownOutputFuture = shutdownOutput();
+    shutdownOutputFuture.addListener((ChannelFuture f) -> {
+      Throwable outputCause = f.cause();
+      shutdownInput().addListener((ChannelFuture f2) -> {
+        Throwable inputCause = f2.cause();
+        if (outputCause != null) {
+          if (inputCause != null) {
+            outputCause.addSuppressed(inputCause);
+          }
+          promise.setFailure(outputCause);
+        } else if (inputCause != null) {
+          promise.setFailure(inputCause);
+        } else {
+          promise.setSuccess();
+        }
+      });
+    });
+    return promise;
+  }
+
+  @Override
+  protected int doReadBytes(ByteBuf byteBuf) throws Exception {
+    // all of Netty's allocators provide extended handles (Handle itself is deprecated)
+    final RecvByteBufAllocator.ExtendedHandle allocHandle =
+        (RecvByteBufAllocator.ExtendedHandle) unsafe().recvBufAllocHandle();
+    allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+    AFSocketChannel<?> ch = javaChannel();
+    int read;
+    try {
+      read = byteBuf.writeBytes(ch, allocHandle.attemptedBytesRead());
+    } catch (ClosedChannelException e) {
+      if (!ch.isOpen()) {
+        throw e;
+      }
+      read = -1; // end-of-stream, still open
+    }
+    if (read < 0) {
+      return endOfStream();
+    }
+
+    if (read > 0 && ch.getAncillaryReceiveBufferSize() > 0
+        && ch instanceof AFUNIXSocketExtensions) {
+      FileDescriptor[] fds = ((AFUNIXSocketExtensions) ch).getReceivedFileDescriptors();
+      if (fds != null && fds.length > 0) {
+        appendReceivedFileDescriptors(fds);
+      }
+    }
+    return read;
+  }
+
+  /**
+   * Handles end-of-stream. {@link AbstractNioByteChannel} only honors
+   * {@link ChannelOption#ALLOW_HALF_CLOSURE} for {@code SocketChannelConfig}, so with half-closure
+   * enabled we shut down input and fire {@link ChannelInputShutdownEvent} ourselves; otherwise, -1
+   * lets Netty close the channel.
+   *
+   * @return The value to return from {@link #doReadBytes(ByteBuf)}.
+   */
+  private int endOfStream() {
+    if (!config().isAllowHalfClosure() || isInputShutdown()) {
+      return -1;
+    }
+    try {
+      javaChannel().shutdownInput();
+    } catch (IOException e) {
+      return -1;
+    }
+    inputShutdown = true;
+    pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+    return 0;
+  }
+
+  private void appendReceivedFileDescriptors(FileDescriptor[] fds) {
+    FileDescriptor[] existing = attr(RECEIVED_FILE_DESCRIPTORS).get();
+    if (existing != null && existing.length > 0) {
+      FileDescriptor[] merged = new FileDescriptor[existing.length + fds.length];
+      System.arraycopy(existing, 0, merged, 0, existing.length);
+      System.arraycopy(fds, 0, merged, existing.length, fds.length);
+      fds = merged;
+    }
+    attr(RECEIVED_FILE_DESCRIPTORS).set(fds);
+  }
+
+  @Override
+  protected int doWriteBytes(ByteBuf buf) throws Exception {
+    final int expectedWrittenBytes = buf.readableBytes();
+    return buf.readBytes(javaChannel(), expectedWrittenBytes);
+  }
+
+  @Override
+  protected long doWriteFileRegion(FileRegion region) throws Exception {
+    final long position = region.transferred();
+    return region.transferTo(javaChannel(), position);
+  }
+
+  @Override
+  protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+    AFSocketChannel<?> ch = javaChannel();
+
+    FileDescriptor[] fds = attr(OUTBOUND_FILE_DESCRIPTORS).getAndSet(null);
+    if (fds != null) {
+      if (!(ch instanceof AFUNIXSocketExtensions)) {
+        throw new IOException("File descriptors cannot be sent via " + ch);
+      }
+      ((AFUNIXSocketExtensions) ch).setOutboundFileDescriptors(fds);
+    }
+
+    int writeSpinCount = config().getWriteSpinCount();
+    do {
+      if (in.isEmpty()) {
+        clearOpWrite();
+        return;
+      }
+
+      int maxBytesPerGatheringWrite = config.getMaxBytesPerGatheringWrite();
+      ByteBuffer[] nioBuffers = in.nioBuffers(MAX_GATHERING_BUFFERS, maxBytesPerGatheringWrite);
+      int nioBufferCnt = in.nioBufferCount();
+
+      switch (nioBufferCnt) {
+        case 0:
+          // FileRegion or other non-ByteBuf messages
+          writeSpinCount -= doWrite0(in);
+          break;
+        case 1: {
+          ByteBuffer buffer = nioBuffers[0];
+          int attemptedBytes = buffer.remaining();
+          final int localWrittenBytes = ch.write(buffer);
+          if (localWrittenBytes <= 0) {
+            incompleteWrite(true);
+            return;
+          }
+          in.removeBytes(localWrittenBytes);
+          --writeSpinCount;
+          if (attemptedBytes > localWrittenBytes) {
+            incompleteWrite(true);
+            return;
+          }
+          break;
+        }
+        default: {
+          long attemptedBytes = in.nioBufferSize();
+          final long localWrittenBytes = ch.write(nioBuffers, 0, nioBufferCnt);
+          if (localWrittenBytes <= 0) {
+            incompleteWrite(true);
+            return;
+          }
+          in.removeBytes(localWrittenBytes);
+          --writeSpinCount;
+          if (attemptedBytes > localWrittenBytes) {
+            incompleteWrite(true);
+            return;
+          }
+          break;
+        }
+      }
+    } while (writeSpinCount > 0);
+
+    incompleteWrite(writeSpinCount < 0);
+  }
+
+  void clearReadPending0() {
+    clearReadPending();
+  }
+}
@@ -0,0 +1,291 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.netty;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.util.Map;
+
+import org.newsclub.net.unix.AFSocketChannel;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.MessageSizeEstimator;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.socket.DuplexChannelConfig;
+
+/**
+ * The {@link DuplexChannelConfig} of an {@link AFNioSocketChannel}.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class AFNioSocketChannelConfig extends DefaultChannelConfig implements
+    DuplexChannelConfig {
+  private final AFSocketChannel<?> javaChannel;
+  private volatile boolean allowHalfClosure;
+  private volatile int maxBytesPerGatheringWrite = -1;
+
+  AFNioSocketChannelConfig(AFNioSocketChannel channel, AFSocketChannel<?> javaChannel) {
+    super(channel);
+    this.javaChannel = javaChannel;
+  }
+
+  @Override
+  public Map<ChannelOption<?>, Object> getOptions() {
+    return getOptions(super.getOptions(), ChannelOption.ALLOW_HALF_CLOSURE,
+        ChannelOption.SO_RCVBUF, ChannelOption.SO_SNDBUF,
+        AFChannelOption.ANCILLARY_RECEIVE_BUFFER_SIZE,
+        AFChannelOption.MAX_BYTES_PER_GATHERING_WRITE);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> T getOption(ChannelOption<T> option) {
+    if (option == ChannelOption.ALLOW_HALF_CLOSURE) {
+      return (T) Boolean.valueOf(isAllowHalfClosure());
+    } else if (option == ChannelOption.SO_RCVBUF) {
+      return (T) Integer.valueOf(getReceiveBufferSize());
+    } else if (option == ChannelOption.SO_SNDBUF) {
+      return (T) Integer.valueOf(getSendBufferSize());
+    } else if (option == AFChannelOption.ANCILLARY_RECEIVE_BUFFER_SIZE) {
+      return (T) Integer.valueOf(getAncillaryReceiveBufferSize());
+    } else if (option == AFChannelOption.MAX_BYTES_PER_GATHERING_WRITE) {
+      return (T) Integer.valueOf(getMaxBytesPerGatheringWrite());
+    }
+    return super.getOption(option);
+  }
+
+  @Override
+  public <T> boolean setOption(ChannelOption<T> option, T value) {
+    validate(option, value);
+
+    if (option == ChannelOption.ALLOW_HALF_CLOSURE) {
+      setAllowHalfClosure((Boolean) value);
+    } else if (option == ChannelOption.SO_RCVBUF) {
+      setReceiveBufferSize((Integer) value);
+    } else if (option == ChannelOption.SO_SNDBUF) {
+      setSendBufferSize((Integer) value);
+    } else if (option == AFChannelOption.ANCILLARY_RECEIVE_BUFFER_SIZE) {
+      setAncillaryReceiveBufferSize((Integer) value);
+    } else if (option == AFChannelOption.MAX_BYTES_PER_GATHERING_WRITE) {
+      setMaxBytesPerGatheringWrite((Integer) value);
+    } else {
+      return super.setOption(option, value);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isAllowHalfClosure() {
+    return allowHalfClosure;
+  }
+
+  @Override
+  public AFNioSocketChannelConfig setAllowHalfClosure(boolean allowHalfClosure) {
+    this.allowHalfClosure = allowHalfClosure;
+    return this;
+  }
+
+  /**
+   * Returns the socket's receive buffer size ({@code SO_RCVBUF}).
+   *
+   * @return The size, in bytes.
+   */
+  public int getReceiveBufferSize() {
+    try {
+      return javaChannel.getOption(StandardSocketOptions.SO_RCVBUF);
+    } catch (IOException e) {
+      throw new ChannelException(e);
+    }
+  }
+
+  /**
+   * Sets the socket's receive buffer size ({@code SO_RCVBUF}).
+   *
+   * @param receiveBufferSize The size, in bytes.
+   * @return This instance.
+   */
+  public AFNioSocketChannelConfig setReceiveBufferSize(int receiveBufferSize) {
+    try {
+      javaChannel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+    } catch (IOException e) {
+      throw new ChannelException(e);
+    }
+    return this;
+  }
+
+  /**
+   * Returns the socket's send buffer size ({@code SO_SNDBUF}).
+   *
+   * @return The size, in bytes.
+   */
+  public int getSendBufferSize() {
+    try {
+      return javaChannel.getOption(StandardSocketOptions.SO_SNDBUF);
+    } catch (IOException e) {
+      throw new ChannelException(e);
+    }
+  }
+
+  /**
+   * Sets the socket's send buffer size ({@code SO_SNDBUF}).
+   *
+   * @param sendBufferSize The size, in bytes.
+   * @return This instance.
+   */
+  public AFNioSocketChannelConfig setSendBufferSize(int sendBufferSize) {
+    try {
+      javaChannel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+    } catch (IOException e) {
+      throw new ChannelException(e);
+    }
+    return this;
+  }
+
+  /**
+   * Returns the size of the buffer used to receive ancillary messages.
+   *
+   * @return The size, in bytes.
+   * @see AFChannelOption#ANCILLARY_RECEIVE_BUFFER_SIZE
+   */
+  public int getAncillaryReceiveBufferSize() {
+    return javaChannel.getAncillaryReceiveBufferSize();
+  }
+
+  /**
+   * Sets the size of the buffer used to receive ancillary messages.
+   *
+   * @param size The size, in bytes.
+   * @return This instance.
+   * @see AFChannelOption#ANCILLARY_RECEIVE_BUFFER_SIZE
+   */
+  public AFNioSocketChannelConfig setAncillaryReceiveBufferSize(int size) {
+    javaChannel.setAncillaryReceiveBufferSize(size);
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of bytes to write with a single gathering write.
+   *
+   * @return The number of bytes.
+   * @see AFChannelOption#MAX_BYTES_PER_GATHERING_WRITE
+   */
+  public int getMaxBytesPerGatheringWrite() {
+    int max = maxBytesPerGatheringWrite;
+    if (max <= 0) {
+      try {
+        max = Math.max(javaChannel.getOption(StandardSocketOptions.SO_SNDBUF), 4096) << 1;
+      } catch (IOException e) {
+        max = Integer.MAX_VALUE;
+      }
+      maxBytesPerGatheringWrite = max;
+    }
+    return max;
+  }
+
+  /**
+   * Sets the maximum number of bytes to write with a single gathering write.
+   *
+   * @param maxBytes The number of bytes.
+   * @return This instance.
+   * @see AFChannelOption#MAX_BYTES_PER_GATHERING_WRITE
+   */
+  public AFNioSocketChannelConfig setMaxBytesPerGatheringWrite(int maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+    }
+    this.maxBytesPerGatheringWrite = maxBytes;
+    return this;
+  }
+
+  @Override
+  protected void autoReadCleared() {
+    ((AFNioSocketChannel) channel).clearReadPending0();
+  }
+
+  @Override
+  @Deprecated
+  public AFNioSocketChannelConfig setMaxMessagesPerRead(int maxMessagesPerRead) {
+    super.setMaxMessagesPerRead(maxMessagesPerRead);
+    return this;
+  }
+
+  @Override
+  public AFNioSocketChannelConfig setWriteSpinCount(int writeSpinCount) {
+    super.setWriteSpinCount(writeSpinCount);
+    return this;
+  }
+
+  @Override
+  public AFNioSocketChannelConfig setConnectTimeoutMillis(int connectTimeoutMillis) {
+    super.setConnectTimeoutMillis(connectTimeoutMillis);
+    return this;
+  }
+
+  @Override
+  public AFNioSocketChannelConfig setAllocator(ByteBufAllocator allocator) {
+    super.setAllocator(allocator);
+    return this;
+  }
+
+  @Override
+  public AFNioSocketChannelConfig setRecvByteBufAllocator(RecvByteBufAllocator allocator) {
+    super.setRecvByteBufAllocator(allocator);
+    return this;
+  }
+
+  @Override
+  public AFNioSocketChannelConfig setAutoRead(boolean autoRead) {
+    super.setAutoRead(autoRead);
+    return this;
+  }
+
+  @Override
+  public AFNioSocketChannelConfig setAutoClose(boolean autoClose) {
+    super.setAutoClose(autoClose);
+    return this;
+  }
+
+  @Override
+  public AFNioSocketChannelConfig setWriteBufferHighWaterMark(int writeBufferHighWaterMark) {
+    super.setWriteBufferHighWaterMark(writeBufferHighWaterMark);
+    return this;
+  }
+
+  @Override
+  public AFNioSocketChannelConfig setWriteBufferLowWaterMark(int writeBufferLowWaterMark) {
+    super.setWriteBufferLowWaterMark(writeBufferLowWaterMark);
+    return this;
+  }
+
+  @Override
+  public AFNioSocketChannelConfig setWriteBufferWaterMark(
+      WriteBufferWaterMark writeBufferWaterMark) {
+    super.setWriteBufferWaterMark(writeBufferWaterMark);
+    return this;
+  }
+
+  @Override
+  public AFNioSocketChannelConfig setMessageSizeEstimator(MessageSizeEstimator estimator) {
+    super.setMessageSizeEstimator(estimator);
+    return this;
+  }
+}
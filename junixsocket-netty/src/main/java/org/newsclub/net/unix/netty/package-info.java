@@ -0,0 +1,4 @@
+/**
+ * Netty transport for junixsocket channels (AF_UNIX, AF_TIPC, AF_VSOCK, etc.)
+ */
+package org.newsclub.net.unix.netty;
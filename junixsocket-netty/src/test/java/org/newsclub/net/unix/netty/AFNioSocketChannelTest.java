@@ -0,0 +1,274 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.netty;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFUNIXSocketAddress;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.resolver.NoopAddressResolverGroup;
+
+public class AFNioSocketChannelTest {
+  private AFNioEventLoopGroup group;
+  private AFUNIXSocketAddress address;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    group = new AFNioEventLoopGroup(2);
+    address = AFUNIXSocketAddress.ofNewTempFile();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+  }
+
+  private Channel startServer(ChannelInboundHandlerAdapter handler) throws Exception {
+    return new ServerBootstrap().group(group).channel(AFNioServerSocketChannel.class).childHandler(
+        new ChannelInitializer<AFNioSocketChannel>() {
+          @Override
+          protected void initChannel(AFNioSocketChannel ch) throws Exception {
+            ch.config().setAncillaryReceiveBufferSize(256);
+            ch.pipeline().addLast(handler);
+          }
+        }).bind(address).sync().channel();
+  }
+
+  private static final class Collector extends ChannelInboundHandlerAdapter {
+    private final int expected;
+    private final ByteBuf received = Unpooled.buffer();
+    private final CompletableFuture<byte[]> done = new CompletableFuture<>();
+
+    Collector(int expected) {
+      this.expected = expected;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+      ByteBuf buf = (ByteBuf) msg;
+      received.writeBytes(buf);
+      buf.release();
+      if (received.readableBytes() >= expected) {
+        byte[] bytes = new byte[received.readableBytes()];
+        received.readBytes(bytes);
+        done.complete(bytes);
+      }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+      done.completeExceptionally(cause);
+    }
+  }
+
+  private Channel connect(Collector clientCollector) throws Exception {
+    return new Bootstrap().group(group).channel(AFNioSocketChannel.class).resolver(
+        NoopAddressResolverGroup.INSTANCE).handler(
+        clientCollector == null ? new ChannelInboundHandlerAdapter() : clientCollector).connect(
+            address).sync().channel();
+  }
+
+  @Test
+  public void testEchoWithGatheringWrite() throws Exception {
+    Channel server = startServer(new ChannelInboundHandlerAdapter() {
+      @Override
+      public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        ctx.writeAndFlush(msg);
+      }
+    });
+    try {
+      byte[] first = "Hello, ".getBytes(StandardCharsets.UTF_8);
+      byte[] second = "World".getBytes(StandardCharsets.UTF_8);
+
+      Collector collector = new Collector(first.length + second.length);
+      Channel client = connect(collector);
+      assertTrue(client.isActive());
+
+      // two direct components yield a single writev call
+      CompositeByteBuf composite = Unpooled.compositeBuffer();
+      composite.addComponent(true, Unpooled.directBuffer().writeBytes(first));
+      composite.addComponent(true, Unpooled.directBuffer().writeBytes(second));
+      client.writeAndFlush(composite).sync();
+
+      assertEquals("Hello, World", new String(collector.done.get(10, TimeUnit.SECONDS),
+          StandardCharsets.UTF_8));
+      client.close().sync();
+    } finally {
+      server.close().sync();
+    }
+  }
+
+  @Test
+  public void testFileRegion() throws Exception {
+    byte[] data = new byte[100000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    File file = File.createTempFile("jux", ".bin");
+    try {
+      Files.write(file.toPath(), data);
+
+      Collector collector = new Collector(data.length - 10);
+      Channel server = startServer(collector);
+      try {
+        Channel client = connect(null);
+        client.writeAndFlush(AFFileRegion.of(file, 10, data.length - 10)).sync();
+        assertArrayEquals(Arrays.copyOfRange(data, 10, data.length), collector.done.get(10,
+            TimeUnit.SECONDS));
+        client.close().sync();
+      } finally {
+        server.close().sync();
+      }
+    } finally {
+      Files.deleteIfExists(file.toPath());
+    }
+  }
+
+  @Test
+  public void testFileDescriptorPassing() throws Exception {
+    CompletableFuture<FileDescriptor[]> received = new CompletableFuture<>();
+    Channel server = startServer(new ChannelInboundHandlerAdapter() {
+      @Override
+      public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        ((ByteBuf) msg).release();
+        FileDescriptor[] fds = ctx.channel().attr(AFNioSocketChannel.RECEIVED_FILE_DESCRIPTORS)
+            .getAndSet(null);
+        if (fds != null) {
+          received.complete(fds);
+        }
+      }
+    });
+    File file = File.createTempFile("jux", ".txt");
+    try (FileOutputStream fos = new FileOutputStream(file)) {
+      Channel client = connect(null);
+      client.attr(AFNioSocketChannel.OUTBOUND_FILE_DESCRIPTORS).set(new FileDescriptor[] {fos
+          .getFD()});
+      client.writeAndFlush(Unpooled.wrappedBuffer(new byte[] {1})).sync();
+
+      FileDescriptor[] fds = received.get(10, TimeUnit.SECONDS);
+      assertEquals(1, fds.length);
+      assertNotNull(fds[0]);
+      try (FileOutputStream out = new FileOutputStream(fds[0])) {
+        out.write("passed".getBytes(StandardCharsets.UTF_8));
+      }
+      assertEquals("passed", new String(Files.readAllBytes(file.toPath()),
+          StandardCharsets.UTF_8));
+      client.close().sync();
+    } finally {
+      server.close().sync();
+      Files.deleteIfExists(file.toPath());
+    }
+  }
+
+  @Test
+  public void testPeerClose() throws Exception {
+    CompletableFuture<Void> inactive = new CompletableFuture<>();
+    Channel server = startServer(new ChannelInboundHandlerAdapter() {
+      @Override
+      public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        ctx.close();
+      }
+    });
+    try {
+      Channel client = new Bootstrap().group(group).channel(AFNioSocketChannel.class).resolver(
+          NoopAddressResolverGroup.INSTANCE).handler(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+              inactive.complete(null);
+            }
+
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+                throws Exception {
+              inactive.completeExceptionally(cause);
+            }
+          }).connect(address).sync().channel();
+
+      inactive.get(10, TimeUnit.SECONDS);
+      assertFalse(client.isOpen());
+    } finally {
+      server.close().sync();
+    }
+  }
+
+  @Test
+  public void testPeerShutdownOutputWithHalfClosure() throws Exception {
+    CompletableFuture<Boolean> inputShutdown = new CompletableFuture<>();
+    Channel server = startServer(new ChannelInboundHandlerAdapter() {
+      @Override
+      public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        ((AFNioSocketChannel) ctx.channel()).shutdownOutput();
+      }
+    });
+    try {
+      ChannelInboundHandlerAdapter handler = new ChannelInboundHandlerAdapter() {
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+          if (evt instanceof ChannelInputShutdownEvent) {
+            inputShutdown.complete(ctx.channel().isActive());
+          }
+          super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+          inputShutdown.completeExceptionally(cause);
+        }
+      };
+      Channel client = new Bootstrap().group(group).channel(AFNioSocketChannel.class).resolver(
+          NoopAddressResolverGroup.INSTANCE).option(ChannelOption.ALLOW_HALF_CLOSURE, true)
+          .handler(handler).connect(address).sync().channel();
+
+      // the channel is still active after end-of-stream, and can still write
+      assertTrue(inputShutdown.get(10, TimeUnit.SECONDS));
+      assertTrue(((AFNioSocketChannel) client).isInputShutdown());
+      client.writeAndFlush(Unpooled.wrappedBuffer("Hello".getBytes(StandardCharsets.UTF_8)))
+          .sync();
+      client.close().sync();
+    } finally {
+      server.close().sync();
+    }
+  }
+}
@@ -20,6 +20,8 @@ package org.newsclub.net.unix.server;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.SocketAddress;
+import java.util.List;
+import java.util.Set;
 
 import org.newsclub.net.unix.AFServerSocket;
 import org.newsclub.net.unix.AFSocket;
@@ -42,6 +44,19 @@ public abstract class AFSocketServer<A extends AFSocketAddress> extends
     super(serverSocket);
   }
 
+  /**
+   * Creates a server using the given, bound {@link ServerSocket}s, serving connections from all of
+   * them.
+   * <p>
+   * Use this in conjunction with {@link AFServerSocket#inheritedServerSockets()} to serve all
+   * sockets passed via systemd-style socket activation.
+   *
+   * @param serverSockets The server sockets to use (must be bound, at least one).
+   */
+  public AFSocketServer(List<? extends AFServerSocket<? extends A>> serverSockets) {
+    super(serverSockets);
+  }
+
   /**
    * Creates a server using the given {@link SocketAddress}.
    *
@@ -51,9 +66,28 @@ public abstract class AFSocketServer<A extends AFSocketAddress> extends
     super(listenAddress);
   }
 
+  /**
+   * Creates a server that binds to all of the given {@link SocketAddress}es, accepting connections
+   * from all of them using a single thread.
+   * <p>
+   * The addresses may be of different address families; use {@link AFSocketAddress} as the type
+   * parameter in that case.
+   *
+   * @param listenAddresses The addresses to bind to (at least one).
+   */
+  public AFSocketServer(Set<? extends A> listenAddresses) {
+    super(listenAddresses);
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   protected AFServerSocket<A> newServerSocket() throws IOException {
     return (AFServerSocket<A>) getListenAddress().getAddressFamily().newServerSocket();
   }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  protected AFServerSocket<A> newServerSocket(A listenAddress) throws IOException {
+    return (AFServerSocket<A>) listenAddress.getAddressFamily().newServerSocket();
+  }
 }
@@ -0,0 +1,40 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.server;
+
+import java.net.Socket;
+
+/**
+ * Specifies how a {@link SocketServer} treats connections that have been idle for longer than
+ * {@link SocketServer#getIdleTimeout()}.
+ *
+ * @author Christian Kohlschütter
+ * @see SocketServer#setIdleEvictionPolicy(IdleEvictionPolicy)
+ */
+public enum IdleEvictionPolicy {
+  /**
+   * Closes the socket; any thread blocked on I/O for that socket is unblocked, and sees either an
+   * end-of-stream or an exception.
+   */
+  CLOSE,
+
+  /**
+   * Does not touch the socket; only {@link SocketServer#onSocketIdle(Socket, long)} is called.
+   */
+  NOTIFY_ONLY;
+}
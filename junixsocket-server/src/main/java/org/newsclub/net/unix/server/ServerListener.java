@@ -0,0 +1,220 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.server;
+
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One of the listening sockets of a {@link SocketServer}, along with its connection quota and
+ * accounting.
+ * <p>
+ * All listeners of a server share the same connection pool; the per-listener quota limits how many
+ * of the pool's connections may be taken up by a single listener.
+ *
+ * @author Christian Kohlschütter
+ * @see SocketServer#getListeners()
+ */
+public final class ServerListener {
+  private final SocketAddress address;
+  private volatile int maxConcurrentConnections;
+  private final AtomicInteger activeCount = new AtomicInteger();
+  private final AtomicLong acceptedCount = new AtomicLong();
+  private final AtomicLong throttledCount = new AtomicLong();
+  private final AtomicLong backlogSaturatedCount = new AtomicLong();
+  private final AtomicInteger extraAcceptThreads = new AtomicInteger();
+  private volatile int pendingConnections = -1;
+  private volatile int maxBacklog = -1;
+
+  ServerListener(SocketAddress address, int maxConcurrentConnections) {
+    this.address = address;
+    this.maxConcurrentConnections = maxConcurrentConnections;
+  }
+
+  /**
+   * Returns the address this listener is bound to.
+   *
+   * @return The address.
+   */
+  public SocketAddress getLocalAddress() {
+    return address;
+  }
+
+  /**
+   * Returns the maximum number of concurrent connections accepted from this listener.
+   *
+   * @return The maximum, or {@code 0} if only the server-wide limit applies.
+   */
+  public int getMaxConcurrentConnections() {
+    return maxConcurrentConnections;
+  }
+
+  /**
+   * Sets the maximum number of concurrent connections accepted from this listener. The change
+   * takes effect upon the next accept.
+   *
+   * @param max The maximum, or {@code 0} if only the server-wide limit should apply.
+   */
+  public void setMaxConcurrentConnections(int max) {
+    if (max < 0) {
+      throw new IllegalArgumentException("max");
+    }
+    this.maxConcurrentConnections = max;
+  }
+
+  /**
+   * Returns the number of connections from this listener that are currently being served.
+   *
+   * @return The number of active connections.
+   */
+  public int getActiveCount() {
+    return activeCount.get();
+  }
+
+  /**
+   * Returns the total number of connections accepted from this listener.
+   *
+   * @return The number of accepted connections.
+   */
+  public long getAcceptedCount() {
+    return acceptedCount.get();
+  }
+
+  /**
+   * Returns how often accepting from this listener was deferred because its quota was exhausted.
+   *
+   * @return The number of times the quota was hit.
+   */
+  public long getThrottledCount() {
+    return throttledCount.get();
+  }
+
+  /**
+   * Returns the number of connections waiting in this listener's accept backlog, as of the last
+   * backlog sample.
+   *
+   * @return The number of pending connections, or {@code -1} if unknown.
+   * @see SocketServer#setBacklogMonitorInterval(int)
+   */
+  public int getPendingConnections() {
+    return pendingConnections;
+  }
+
+  /**
+   * Returns the maximum size of this listener's accept backlog, as of the last backlog sample.
+   *
+   * @return The maximum backlog, or {@code -1} if unknown.
+   * @see SocketServer#setBacklogMonitorInterval(int)
+   */
+  public int getMaxBacklog() {
+    return maxBacklog;
+  }
+
+  /**
+   * Returns the saturation of this listener's accept backlog (pending connections divided by the
+   * maximum backlog), as of the last backlog sample.
+   *
+   * @return The saturation (usually between 0 and 1), or {@code -1} if unknown.
+   * @see SocketServer#setBacklogMonitorInterval(int)
+   */
+  public float getBacklogSaturation() {
+    int pending = pendingConnections;
+    int max = maxBacklog;
+    if (pending < 0 || max < 0) {
+      return -1;
+    }
+    return max == 0 ? 1 : pending / (float) max;
+  }
+
+  /**
+   * Returns how often the backlog was found to be saturated when sampled.
+   *
+   * @return The number of saturated samples.
+   * @see SocketServer#setBacklogSaturationThreshold(float)
+   */
+  public long getBacklogSaturatedCount() {
+    return backlogSaturatedCount.get();
+  }
+
+  /**
+   * Returns the number of accept threads that were started in addition to the regular one, due to
+   * backlog saturation.
+   *
+   * @return The number of additional accept threads.
+   * @see SocketServer#setMaxAcceptThreads(int)
+   */
+  public int getExtraAcceptThreads() {
+    return extraAcceptThreads.get();
+  }
+
+  void updateBacklog(int pending, int max) {
+    this.pendingConnections = pending;
+    this.maxBacklog = max;
+  }
+
+  void markBacklogSaturated() {
+    backlogSaturatedCount.incrementAndGet();
+  }
+
+  boolean tryAddAcceptThread(int maxExtra) {
+    int n;
+    do {
+      n = extraAcceptThreads.get();
+      if (n >= maxExtra) {
+        return false;
+      }
+    } while (!extraAcceptThreads.compareAndSet(n, n + 1));
+    return true;
+  }
+
+  void acceptThreadRetired() {
+    extraAcceptThreads.decrementAndGet();
+  }
+
+  boolean hasCapacity() {
+    int max = maxConcurrentConnections;
+    return max <= 0 || activeCount.get() < max;
+  }
+
+  void markThrottled() {
+    throttledCount.incrementAndGet();
+  }
+
+  void connectionAccepted() {
+    acceptedCount.incrementAndGet();
+    activeCount.incrementAndGet();
+  }
+
+  /**
+   * Marks a connection as done.
+   *
+   * @return {@code true} if the listener had exhausted its quota before.
+   */
+  boolean connectionDone() {
+    int max = maxConcurrentConnections;
+    return activeCount.getAndDecrement() >= max && max > 0;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[" + address + ";active=" + activeCount + ";accepted="
+        + acceptedCount + ";max=" + maxConcurrentConnections + (maxBacklog < 0 ? "" : ";backlog="
+            + pendingConnections + "/" + maxBacklog) + "]";
+  }
+}
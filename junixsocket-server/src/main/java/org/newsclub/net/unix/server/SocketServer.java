@@ -24,12 +24,24 @@ import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -37,7 +49,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.newsclub.net.unix.AFServerSocket;
+import org.newsclub.net.unix.AFServerSocketChannel;
+import org.newsclub.net.unix.AFSocket;
 import org.newsclub.net.unix.AFSocketAddress;
+import org.newsclub.net.unix.AFSocketChannel;
+import org.newsclub.net.unix.AFTimerWheel;
+import org.newsclub.net.unix.AFUNIXSocketAddress;
+import org.newsclub.net.unix.AFUNIXSocketDiagnostics;
 
 import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
 import com.kohlschutter.annotations.compiletime.SuppressLint;
@@ -52,14 +70,20 @@ import com.kohlschutter.annotations.compiletime.SuppressLint;
  * @param <V> The supported {@link ServerSocket} type.
  */
 public abstract class SocketServer<A extends SocketAddress, S extends Socket, V extends ServerSocket> {
-  private static final ScheduledExecutorService TIMEOUTS = Executors.newScheduledThreadPool(1);
-
   private final @NonNull A listenAddress;
 
   private int maxConcurrentConnections = Runtime.getRuntime().availableProcessors();
   private int serverTimeout = 0; // by default, the server doesn't timeout.
   private int socketTimeout = (int) TimeUnit.SECONDS.toMillis(60);
   private int serverBusyTimeout = (int) TimeUnit.SECONDS.toMillis(1);
+  private int idleTimeout = 0; // by default, idle connections are not evicted.
+  private IdleEvictionPolicy idleEvictionPolicy = IdleEvictionPolicy.CLOSE;
+  private int readTimeout = 0; // by default, reads have no deadline.
+  private int writeTimeout = 0; // by default, writes have no deadline.
+  private int backlogMonitorInterval = 0; // by default, the backlog is not monitored.
+  private float backlogSaturationThreshold = 0.75f;
+  private int maxAcceptThreads = 1;
+  private final AFTimerWheel timerWheel;
 
   private Thread listenThread = null;
   private V serverSocket;
@@ -71,6 +95,18 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
 
   private ScheduledFuture<IOException> timeoutFuture;
   private final V reuseSocket;
+  private final List<V> additionalSockets;
+  private final List<A> additionalAddresses;
+  private final List<V> boundAdditionalSockets = new ArrayList<>();
+
+  private final List<ServerListener> listeners = new CopyOnWriteArrayList<>();
+  private final Map<SocketAddress, Integer> listenerQuotas = new ConcurrentHashMap<>();
+  private volatile Selector acceptSelector;
+  private AFUNIXSocketDiagnostics backlogDiagnostics;
+  private ScheduledExecutorService backlogMonitor;
+
+  private final Map<S, AFTimerWheel.Timeout> idleTimeouts = new ConcurrentHashMap<>();
+  private final Map<S, AFTimerWheel.Timeout> operationDeadlines = new ConcurrentHashMap<>();
 
   /**
    * Creates a server using the given, bound {@link ServerSocket}.
@@ -79,7 +115,41 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
    */
   @SuppressWarnings("all") // unchecked, null
   public SocketServer(V serverSocket) {
-    this((A) Objects.requireNonNull(serverSocket).getLocalSocketAddress(), serverSocket);
+    this((A) Objects.requireNonNull(serverSocket).getLocalSocketAddress(), serverSocket,
+        Collections.<V> emptyList(), Collections.<A> emptyList());
+  }
+
+  /**
+   * Creates a server using the given, bound {@link ServerSocket}s.
+   * <p>
+   * Connections accepted from any of these sockets are served from the same connection pool. This
+   * is particularly useful in conjunction with socket activation, see
+   * {@link AFServerSocket#inheritedServerSockets()}.
+   *
+   * @param serverSockets The server sockets to use (must be bound, at least one).
+   */
+  @SuppressWarnings("all") // unchecked, null
+  public SocketServer(List<? extends V> serverSockets) {
+    this((A) first(serverSockets).getLocalSocketAddress(), first(serverSockets),
+        new ArrayList<V>(serverSockets.subList(1, serverSockets.size())), Collections
+            .<A> emptyList());
+  }
+
+  /**
+   * Creates a server that binds to all of the given {@link SocketAddress}es.
+   * <p>
+   * Connections accepted from any of these addresses are served from the same connection pool. If
+   * all listeners are {@link AFServerSocket}s (possibly of different address families), a single
+   * thread accepts from all of them via one {@link Selector}. The first address is considered the
+   * primary listen address, see {@link #getListenAddress()}.
+   *
+   * @param listenAddresses The addresses to bind to (at least one).
+   * @see #setMaxConcurrentConnections(SocketAddress, int)
+   */
+  @SuppressWarnings("null")
+  public SocketServer(Set<? extends A> listenAddresses) {
+    this(first(listenAddresses), null, Collections.<V> emptyList(), new ArrayList<A>(
+        listenAddresses).subList(1, listenAddresses.size()));
   }
 
   /**
@@ -89,15 +159,19 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
    */
   @SuppressWarnings("null")
   public SocketServer(A listenAddress) {
-    this(listenAddress, null);
+    this(listenAddress, null, Collections.<V> emptyList(), Collections.<A> emptyList());
   }
 
   @SuppressWarnings("null")
-  private SocketServer(A listenAddress, V preboundSocket) {
+  private SocketServer(A listenAddress, V preboundSocket, List<V> additionalSockets,
+      List<A> additionalAddresses) {
     Objects.requireNonNull(listenAddress, "listenAddress");
     this.reuseSocket = preboundSocket;
+    this.additionalSockets = additionalSockets;
+    this.additionalAddresses = additionalAddresses;
 
     this.listenAddress = listenAddress;
+    this.timerWheel = AFTimerWheel.getDefault();
   }
 
   /**
@@ -121,6 +195,52 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
     this.maxConcurrentConnections = maxConcurrentConnections;
   }
 
+  /**
+   * Sets the maximum number of concurrent connections accepted from the listener bound to the given
+   * address. This limit applies in addition to {@link #getMaxConcurrentConnections()}, which is
+   * shared among all listeners.
+   * <p>
+   * The limit may be set before the server is started, or changed while it is running.
+   *
+   * @param listenAddress The listener's address.
+   * @param max The maximum, or {@code 0} if only the server-wide limit should apply.
+   */
+  public void setMaxConcurrentConnections(SocketAddress listenAddress, int max) {
+    if (max < 0) {
+      throw new IllegalArgumentException("max");
+    }
+    listenerQuotas.put(Objects.requireNonNull(listenAddress), max);
+    ServerListener listener = getListener(listenAddress);
+    if (listener != null) {
+      listener.setMaxConcurrentConnections(max);
+    }
+  }
+
+  /**
+   * Returns the listeners this server accepts connections from, along with their per-listener
+   * accounting. The list is populated once the server has started listening.
+   *
+   * @return The listeners.
+   */
+  public List<ServerListener> getListeners() {
+    return Collections.unmodifiableList(listeners);
+  }
+
+  /**
+   * Returns the listener bound to the given address.
+   *
+   * @param listenAddress The address.
+   * @return The listener, or {@code null} if there is no such listener (yet).
+   */
+  public ServerListener getListener(SocketAddress listenAddress) {
+    for (ServerListener listener : listeners) {
+      if (listenAddress.equals(listener.getLocalAddress())) {
+        return listener;
+      }
+    }
+    return null;
+  }
+
   /**
    * Returns the server timeout (in milliseconds).
    *
@@ -178,6 +298,353 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
     this.serverBusyTimeout = timeout;
   }
 
+  /**
+   * Returns the idle timeout (in milliseconds).
+   *
+   * @return The idle timeout in milliseconds (0 = no timeout).
+   * @see #setIdleTimeout(int)
+   */
+  public int getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  /**
+   * Sets the idle timeout (in milliseconds).
+   * <p>
+   * A connection is considered idle if no data has been read from or written to it for at least
+   * the given time. Upon timeout, the connection is handled according to the configured
+   * {@link IdleEvictionPolicy}. The timeout only applies to idle connections; it does not limit
+   * the total time a connection is served.
+   * <p>
+   * For junixsocket sockets, activity is recorded automatically (see
+   * {@link AFSocket#getTransferCount()}). Deadlines are tracked by a shared {@link AFTimerWheel}
+   * and checked for activity only when they expire, so an idle connection is evicted after at least
+   * the given time, and at most twice that time. For other sockets, or for connections that are
+   * busy without transferring data, use {@link #markSocketActive(Socket)}.
+   *
+   * @param timeout The new timeout in milliseconds (0 = no timeout).
+   */
+  public void setIdleTimeout(int timeout) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("timeout");
+    }
+    this.idleTimeout = timeout;
+  }
+
+  /**
+   * Returns the policy that is applied to connections that exceed the idle timeout.
+   *
+   * @return The idle eviction policy.
+   */
+  public IdleEvictionPolicy getIdleEvictionPolicy() {
+    return idleEvictionPolicy;
+  }
+
+  /**
+   * Sets the policy that is applied to connections that exceed the idle timeout.
+   *
+   * @param policy The idle eviction policy.
+   * @see #setIdleTimeout(int)
+   */
+  public void setIdleEvictionPolicy(IdleEvictionPolicy policy) {
+    this.idleEvictionPolicy = Objects.requireNonNull(policy);
+  }
+
+  /**
+   * Returns the read deadline (in milliseconds).
+   *
+   * @return The read deadline in milliseconds (0 = no deadline).
+   * @see #setReadTimeout(int)
+   */
+  public int getReadTimeout() {
+    return readTimeout;
+  }
+
+  /**
+   * Sets the read deadline (in milliseconds).
+   * <p>
+   * If a single read operation on a served junixsocket socket stays pending for at least the given
+   * time, {@link #onSocketReadTimeout(Socket, long)} is called, and the connection is closed.
+   * Unlike the socket timeout, this also covers reads via the socket's channel, and reads in
+   * non-blocking mode are never considered pending.
+   * <p>
+   * Pending operations are tracked via {@link AFSocket#getReadOperationCount()}, and checked
+   * periodically by a shared {@link AFTimerWheel}, so the connection is closed after at least the
+   * given time, and at most twice that time. Other {@link Socket} implementations are not affected.
+   *
+   * @param timeout The new deadline in milliseconds (0 = no deadline).
+   */
+  public void setReadTimeout(int timeout) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("timeout");
+    }
+    this.readTimeout = timeout;
+  }
+
+  /**
+   * Returns the write deadline (in milliseconds).
+   *
+   * @return The write deadline in milliseconds (0 = no deadline).
+   * @see #setWriteTimeout(int)
+   */
+  public int getWriteTimeout() {
+    return writeTimeout;
+  }
+
+  /**
+   * Sets the write deadline (in milliseconds).
+   * <p>
+   * If a single write operation on a served junixsocket socket stays pending for at least the
+   * given time (typically because the peer does not read), {@link #onSocketWriteTimeout(Socket,
+   * long)} is called, and the connection is closed.
+   * <p>
+   * Pending operations are tracked via {@link AFSocket#getWriteOperationCount()}, and checked
+   * periodically by a shared {@link AFTimerWheel}, so the connection is closed after at least the
+   * given time, and at most twice that time. Other {@link Socket} implementations are not affected.
+   *
+   * @param timeout The new deadline in milliseconds (0 = no deadline).
+   */
+  public void setWriteTimeout(int timeout) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("timeout");
+    }
+    this.writeTimeout = timeout;
+  }
+
+  /**
+   * Returns the interval at which the accept backlog of AF_UNIX listeners is sampled (in
+   * milliseconds).
+   *
+   * @return The interval in milliseconds (0 = backlog is not monitored).
+   * @see #setBacklogMonitorInterval(int)
+   */
+  public int getBacklogMonitorInterval() {
+    return backlogMonitorInterval;
+  }
+
+  /**
+   * Sets the interval at which the accept backlog of AF_UNIX listeners is sampled (in
+   * milliseconds).
+   * <p>
+   * The backlog is queried from the kernel via {@link AFUNIXSocketDiagnostics}, which is currently
+   * only supported on Linux; on other platforms, or for non-AF_UNIX listeners, the setting has no
+   * effect. The sampled values are available via {@link ServerListener#getPendingConnections()},
+   * {@link ServerListener#getMaxBacklog()} and {@link ServerListener#getBacklogSaturation()}.
+   * Sampling runs on a dedicated daemon thread, which is stopped along with the server.
+   *
+   * @param interval The interval in milliseconds (0 = do not monitor the backlog).
+   * @see #setBacklogSaturationThreshold(float)
+   * @see #setMaxAcceptThreads(int)
+   */
+  public void setBacklogMonitorInterval(int interval) {
+    if (interval < 0) {
+      throw new IllegalArgumentException("interval");
+    }
+    if (isRunning()) {
+      throw new IllegalStateException("Already configured");
+    }
+    this.backlogMonitorInterval = interval;
+  }
+
+  /**
+   * Returns the backlog saturation at which a listener is considered saturated.
+   *
+   * @return The threshold (between 0 and 1).
+   * @see #setBacklogSaturationThreshold(float)
+   */
+  public float getBacklogSaturationThreshold() {
+    return backlogSaturationThreshold;
+  }
+
+  /**
+   * Sets the backlog saturation (pending connections divided by the maximum backlog) at which a
+   * listener is considered saturated. Upon saturation, {@link #onBacklogSaturated(ServerListener)}
+   * is called, and additional accept threads may be started, see {@link #setMaxAcceptThreads(int)}.
+   *
+   * @param threshold The threshold (between 0 and 1).
+   */
+  public void setBacklogSaturationThreshold(float threshold) {
+    if (!(threshold >= 0 && threshold <= 1)) {
+      throw new IllegalArgumentException("threshold");
+    }
+    this.backlogSaturationThreshold = threshold;
+  }
+
+  /**
+   * Returns the maximum number of threads accepting from a single listener.
+   *
+   * @return The maximum number of accept threads per listener.
+   * @see #setMaxAcceptThreads(int)
+   */
+  public int getMaxAcceptThreads() {
+    return maxAcceptThreads;
+  }
+
+  /**
+   * Sets the maximum number of threads accepting from a single listener.
+   * <p>
+   * By default, each listener is served by one accept thread. If the backlog is monitored (see
+   * {@link #setBacklogMonitorInterval(int)}) and found to be saturated, additional accept threads
+   * are started, up to the given maximum. An additional thread retires after an accept once the
+   * backlog is no longer saturated, or when the server timeout is hit.
+   * <p>
+   * Listeners that are multiplexed via a single {@link Selector} (see {@link #SocketServer(Set)})
+   * are not scaled; their backlog is monitored nonetheless.
+   *
+   * @param max The maximum number of accept threads per listener (at least 1).
+   */
+  public void setMaxAcceptThreads(int max) {
+    if (max < 1) {
+      throw new IllegalArgumentException("max");
+    }
+    this.maxAcceptThreads = max;
+  }
+
+  /**
+   * Marks the given socket as active, postponing its idle timeout.
+   * <p>
+   * Data transfers on junixsocket sockets are recorded automatically, so this is only necessary
+   * for other {@link Socket} implementations, or for connections that should be kept while busy
+   * without transferring any data. This is an O(1) operation.
+   *
+   * @param socket The socket.
+   */
+  protected final void markSocketActive(S socket) {
+    AFTimerWheel.Timeout timeout = idleTimeouts.get(socket);
+    if (timeout != null) {
+      timeout.reschedule(idleTimeout, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void armIdleTimeout(final S socket) {
+    int timeout = idleTimeout;
+    if (timeout <= 0) {
+      return;
+    }
+    final AFSocket<?> afSocket = (socket instanceof AFSocket) ? (AFSocket<?>) socket : null;
+    idleTimeouts.put(socket, timerWheel.schedule(new Runnable() {
+      private long transfers = afSocket == null ? 0 : afSocket.getTransferCount();
+
+      @Override
+      public void run() {
+        if (afSocket != null) {
+          long count = afSocket.getTransferCount();
+          if (count != transfers) {
+            // data was transferred since the last check; not idle
+            transfers = count;
+            idleTimeouts.computeIfPresent(socket, (k, v) -> timerWheel.schedule(this, timeout,
+                TimeUnit.MILLISECONDS));
+            return;
+          }
+        }
+        evictIdleSocket(socket);
+      }
+    }, timeout, TimeUnit.MILLISECONDS));
+  }
+
+  private void disarmIdleTimeout(S socket) {
+    AFTimerWheel.Timeout timeout = idleTimeouts.remove(socket);
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
+
+  private void evictIdleSocket(S socket) {
+    if (idleTimeouts.remove(socket) == null) {
+      return;
+    }
+    onSocketIdle(socket, idleTimeout);
+    try {
+      switch (idleEvictionPolicy) {
+        case CLOSE:
+          socket.close();
+          break;
+        case NOTIFY_ONLY:
+        default:
+          break;
+      }
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+
+  private void armOperationDeadlines(final S socket) {
+    if (!(socket instanceof AFSocket)) {
+      return;
+    }
+    final AFSocket<?> afSocket = (AFSocket<?>) socket;
+    final int readMillis = readTimeout;
+    final int writeMillis = writeTimeout;
+    final int period;
+    if (readMillis <= 0) {
+      period = writeMillis;
+    } else if (writeMillis <= 0) {
+      period = readMillis;
+    } else {
+      period = Math.min(readMillis, writeMillis);
+    }
+    if (period <= 0) {
+      return;
+    }
+    operationDeadlines.put(socket, timerWheel.schedule(new Runnable() {
+      private long reads = afSocket.getReadOperationCount();
+      private long readsSince = System.currentTimeMillis();
+      private long writes = afSocket.getWriteOperationCount();
+      private long writesSince = readsSince;
+
+      @Override
+      public void run() {
+        long now = System.currentTimeMillis();
+
+        long count = afSocket.getReadOperationCount();
+        if (count != reads) {
+          reads = count;
+          readsSince = now;
+        } else if (readMillis > 0 && (count & 1) != 0 && now - readsSince >= readMillis) {
+          // the same read has been pending ever since
+          expireOperation(socket, false, readMillis);
+          return;
+        }
+
+        count = afSocket.getWriteOperationCount();
+        if (count != writes) {
+          writes = count;
+          writesSince = now;
+        } else if (writeMillis > 0 && (count & 1) != 0 && now - writesSince >= writeMillis) {
+          expireOperation(socket, true, writeMillis);
+          return;
+        }
+
+        operationDeadlines.computeIfPresent(socket, (k, v) -> timerWheel.schedule(this, period,
+            TimeUnit.MILLISECONDS));
+      }
+    }, period, TimeUnit.MILLISECONDS));
+  }
+
+  private void disarmOperationDeadlines(S socket) {
+    AFTimerWheel.Timeout timeout = operationDeadlines.remove(socket);
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
+
+  private void expireOperation(S socket, boolean write, int millis) {
+    if (operationDeadlines.remove(socket) == null) {
+      return;
+    }
+    if (write) {
+      onSocketWriteTimeout(socket, millis);
+    } else {
+      onSocketReadTimeout(socket, millis);
+    }
+    try {
+      // closing the socket unblocks the pending operation
+      socket.close();
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+
   /**
    * Checks if the server is running.
    *
@@ -257,13 +724,13 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
       throws InterruptedException {
     synchronized (this) {
       start();
-      long timeStart = System.currentTimeMillis();
-      while (duration > 0) {
+      long deadline = System.currentTimeMillis() + unit.toMillis(duration);
+      long remaining;
+      while ((remaining = deadline - System.currentTimeMillis()) > 0) {
         if (isReady()) {
           return true;
         }
-        this.wait(unit.toMillis(duration));
-        duration -= (System.currentTimeMillis() - timeStart);
+        this.wait(remaining);
       }
       return isReady();
     }
@@ -278,6 +745,20 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
    */
   protected abstract V newServerSocket() throws IOException;
 
+  /**
+   * Returns a new server socket for one of the additional listen addresses specified via
+   * {@link #SocketServer(Set)}.
+   * <p>
+   * The default implementation calls {@link #newServerSocket()}.
+   *
+   * @param listenAddress The address the socket will be bound to.
+   * @return The new socket.
+   * @throws IOException on error.
+   */
+  protected V newServerSocket(A listenAddress) throws IOException {
+    return newServerSocket();
+  }
+
   @SuppressWarnings("null")
   private void listen() throws IOException {
     V server = null;
@@ -306,7 +787,38 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
       }
       server.setSoTimeout(serverTimeout);
 
-      acceptLoop(server);
+      List<V> sockets = new ArrayList<>();
+      sockets.add(server);
+      sockets.addAll(additionalSockets);
+      for (A address : additionalAddresses) {
+        V socket = newServerSocket(address);
+        synchronized (this) {
+          boundAdditionalSockets.add(socket);
+        }
+        socket.bind(address);
+        onServerBound(address);
+        sockets.add(socket);
+      }
+
+      List<ServerListener> socketListeners = new ArrayList<>(sockets.size());
+      for (V socket : sockets) {
+        SocketAddress address = socket.getLocalSocketAddress();
+        Integer quota = listenerQuotas.get(address);
+        socketListeners.add(new ServerListener(address, quota == null ? 0 : quota));
+      }
+      listeners.clear();
+      listeners.addAll(socketListeners);
+
+      boolean selecting = sockets.size() > 1 && isSelectable(sockets);
+      startBacklogMonitor(sockets, socketListeners, selecting);
+      if (selecting) {
+        selectLoop(sockets, socketListeners);
+      } else {
+        for (int i = 1, n = sockets.size(); i < n; i++) {
+          startAcceptThread(sockets.get(i), socketListeners.get(i), false);
+        }
+        acceptLoop(server, socketListeners.get(0), false);
+      }
     } catch (SocketException e) {
       onSocketExceptionDuringAccept(e);
     } finally {
@@ -315,40 +827,254 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
     }
   }
 
-  @SuppressWarnings("PMD.CognitiveComplexity")
+  /**
+   * Starts a thread accepting connections from one of the additional server sockets. This is only
+   * used if the sockets cannot be multiplexed via a {@link Selector}. The server timeout only
+   * applies to the primary socket; additional sockets are closed upon {@link #stop()}.
+   * <p>
+   * This is also used to start additional accept threads for a saturated listener; such threads
+   * retire once the backlog is no longer saturated.
+   *
+   * @param server The server socket.
+   * @param listener The listener accounting for that socket.
+   * @param elastic {@code true} if this is an additional accept thread for a saturated listener.
+   */
+  private void startAcceptThread(final V server, final ServerListener listener,
+      final boolean elastic) {
+    Thread t = new Thread(SocketServer.this.toString() + (elastic ? " additional accept thread for "
+        : " listening thread for ") + server) {
+      @Override
+      public void run() {
+        try {
+          acceptLoop(server, listener, elastic);
+        } catch (SocketException e) {
+          onSocketExceptionDuringAccept(e);
+        } catch (Exception e) {
+          onListenException(e);
+        } catch (Throwable e) { // NOPMD
+          onListenException(e);
+        } finally {
+          if (elastic) {
+            listener.acceptThreadRetired();
+          }
+        }
+      }
+    };
+    t.start();
+  }
+
+  /**
+   * Starts sampling the accept backlog of the given AF_UNIX listeners, if configured and supported.
+   *
+   * @param sockets The server sockets.
+   * @param socketListeners The corresponding listeners.
+   * @param selecting {@code true} if the sockets are multiplexed via a {@link Selector}, in which
+   *          case no additional accept threads are started.
+   */
+  private void startBacklogMonitor(List<V> sockets, List<ServerListener> socketListeners,
+      boolean selecting) {
+    final int interval = backlogMonitorInterval;
+    if (interval <= 0) {
+      return;
+    }
+    final List<V> monitoredSockets = new ArrayList<>(sockets.size());
+    final List<ServerListener> monitoredListeners = new ArrayList<>(sockets.size());
+    for (int i = 0, n = sockets.size(); i < n; i++) {
+      V socket = sockets.get(i);
+      if (socket instanceof AFServerSocket<?> && socket
+          .getLocalSocketAddress() instanceof AFUNIXSocketAddress) {
+        monitoredSockets.add(socket);
+        monitoredListeners.add(socketListeners.get(i));
+      }
+    }
+    if (monitoredSockets.isEmpty()) {
+      return;
+    }
+
+    final AFUNIXSocketDiagnostics diag;
+    try {
+      diag = AFUNIXSocketDiagnostics.open();
+    } catch (IOException | UnsupportedOperationException e) {
+      // not supported on this platform
+      return;
+    }
+
+    // sampling queries the kernel, so don't block the shared timer wheel with it
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor((r) -> {
+      Thread t = new Thread(r, SocketServer.this.toString() + " backlog monitor");
+      t.setDaemon(true);
+      return t;
+    });
+    synchronized (this) {
+      if (stopRequested.get()) {
+        executor.shutdown();
+        try {
+          diag.close();
+        } catch (IOException e) {
+          // ignore
+        }
+        return;
+      }
+      backlogDiagnostics = diag;
+      backlogMonitor = executor;
+    }
+
+    final boolean scale = !selecting;
+    executor.scheduleWithFixedDelay(() -> {
+      if (stopRequested.get()) {
+        executor.shutdown();
+        return;
+      }
+      try {
+        for (int i = 0, n = monitoredSockets.size(); i < n; i++) {
+          V socket = monitoredSockets.get(i);
+          ServerListener listener = monitoredListeners.get(i);
+          sampleBacklog(diag, socket, listener, scale);
+        }
+      } catch (IOException e) {
+        // socket or diagnostics closed; stop sampling
+        executor.shutdown();
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  private void sampleBacklog(AFUNIXSocketDiagnostics diag, V socket, ServerListener listener,
+      boolean scale) throws IOException {
+    if (socket.isClosed()) {
+      return;
+    }
+    AFUNIXSocketDiagnostics.SocketInfo info = diag.getSocketInfo((AFServerSocket<?>) socket);
+    if (info == null || !info.isListening()) {
+      return;
+    }
+    listener.updateBacklog(info.getPendingConnections(), info.getMaxBacklog());
+    if (info.getBacklogSaturation() < backlogSaturationThreshold) {
+      return;
+    }
+    listener.markBacklogSaturated();
+    onBacklogSaturated(listener);
+    if (scale && !stopRequested.get() && listener.tryAddAcceptThread(maxAcceptThreads - 1)) {
+      startAcceptThread(socket, listener, true);
+    }
+  }
+
+  private static <T> T first(Collection<? extends T> elements) {
+    if (elements.isEmpty()) {
+      throw new IllegalArgumentException("At least one listener is required");
+    }
+    return Objects.requireNonNull(elements.iterator().next());
+  }
+
+  private static boolean isSelectable(List<? extends ServerSocket> sockets) {
+    for (ServerSocket socket : sockets) {
+      if (!(socket instanceof AFServerSocket<?>) || ((AFServerSocket<?>) socket)
+          .getChannel() == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isBusy(ServerListener listener) {
+    return connectionPool.getActiveThreadCount() >= maxConcurrentConnections || (listener != null
+        && !listener.hasCapacity());
+  }
+
+  /**
+   * Waits until the connection pool (and, if given, the listener's quota) permits accepting
+   * another connection, or until the server is stopped.
+   *
+   * @param listener The listener, or {@code null} to only consider the server-wide limit.
+   * @throws InterruptedIOException if interrupted.
+   */
   @SuppressFBWarnings("NN_NAKED_NOTIFY")
-  @SuppressLint("RESOURCE_LEAK")
-  private void acceptLoop(V server) throws IOException {
+  private void awaitCapacity(ServerListener listener) throws InterruptedIOException {
     long busyStartTime = 0;
+    while (!stopRequested.get() && isBusy(listener)) {
+      if (busyStartTime == 0) {
+        busyStartTime = System.currentTimeMillis();
+        if (listener != null && !listener.hasCapacity()) {
+          listener.markThrottled();
+        }
+      }
+      onServerBusy(busyStartTime);
+
+      synchronized (connectionsMonitor) {
+        try {
+          connectionsMonitor.wait(serverBusyTimeout);
+        } catch (InterruptedException e) {
+          throw (InterruptedIOException) new InterruptedIOException(
+              "Interrupted while waiting on server resources").initCause(e);
+        }
+      }
+    }
+  }
+
+  @SuppressFBWarnings("NN_NAKED_NOTIFY")
+  private void signalReady() {
+    ready.set(true);
+    synchronized (SocketServer.this) {
+      SocketServer.this.notifyAll();
+    }
+    onServerReady(connectionPool.getActiveThreadCount());
+  }
+
+  private void serveAccepted(S socket, ServerListener listener) throws IOException {
+    try {
+      socket.setSoTimeout(socketTimeout);
+    } catch (SocketException e) {
+      // Connection closed before we could do anything
+      onSocketExceptionAfterAccept(socket, e);
+      socket.close();
+      return;
+    }
+
+    listener.connectionAccepted();
+    Future<?> submission;
+    try {
+      submission = submit(socket, listener, connectionPool);
+    } catch (RejectedExecutionException e) {
+      // the connection pool has been shut down
+      connectionDone(listener);
+      doSocketClose(socket);
+      throw e;
+    }
+    onSubmitted(socket, submission);
+  }
+
+  /**
+   * Updates the listener's accounting after one of its connections has been served (or could not
+   * be served), and wakes up the accept thread(s).
+   *
+   * @param listener The listener.
+   */
+  @SuppressFBWarnings("NN_NAKED_NOTIFY")
+  private void connectionDone(ServerListener listener) {
+    if (listener.connectionDone()) {
+      // the listener had exhausted its quota; re-arm it
+      Selector selector = acceptSelector;
+      if (selector != null) {
+        selector.wakeup();
+      }
+    }
+
+    // Notify the server's accept thread that we handled the connection
+    synchronized (connectionsMonitor) {
+      connectionsMonitor.notifyAll();
+    }
+  }
+
+  @SuppressLint("RESOURCE_LEAK")
+  private void acceptLoop(V server, ServerListener listener, boolean elastic) throws IOException {
     acceptLoop : while (!stopRequested.get() && !Thread.interrupted()) {
       try {
-        while (!stopRequested.get() && connectionPool
-            .getActiveThreadCount() >= maxConcurrentConnections) {
-          if (busyStartTime == 0) {
-            busyStartTime = System.currentTimeMillis();
-          }
-          onServerBusy(busyStartTime);
-
-          synchronized (connectionsMonitor) {
-            try {
-              connectionsMonitor.wait(serverBusyTimeout);
-            } catch (InterruptedException e) {
-              throw (InterruptedIOException) new InterruptedIOException(
-                  "Interrupted while waiting on server resources").initCause(e);
-            }
-          }
-        }
-        busyStartTime = 0;
+        awaitCapacity(listener);
 
         if (stopRequested.get() || server == null) {
           break;
         }
 
-        synchronized (SocketServer.this) {
-          SocketServer.this.notifyAll();
-        }
-        ready.set(true);
-        onServerReady(connectionPool.getActiveThreadCount());
+        signalReady();
 
         final S socket;
         try {
@@ -363,19 +1089,16 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
             throw e;
           }
         }
-        try {
-          socket.setSoTimeout(socketTimeout);
-        } catch (SocketException e) {
-          // Connection closed before we could do anything
-          onSocketExceptionAfterAccept(socket, e);
-          socket.close();
+        serveAccepted(socket, listener);
 
-          continue acceptLoop;
+        if (elastic && listener.getBacklogSaturation() < backlogSaturationThreshold) {
+          // the backlog has drained; retire this additional accept thread
+          break;
         }
-
-        onSubmitted(socket, submit(socket, connectionPool));
       } catch (SocketTimeoutException e) {
-        if (!connectionPool.isQuiescent()) {
+        if (elastic) {
+          break acceptLoop;
+        } else if (!connectionPool.isQuiescent()) {
           continue acceptLoop;
         } else {
           onServerShuttingDown();
@@ -386,6 +1109,93 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
     }
   }
 
+  /**
+   * Accepts connections from all given {@link AFServerSocket}s using a single {@link Selector}.
+   * Listeners that have exhausted their quota are temporarily removed from the selector's interest
+   * set; they are re-armed once one of their connections has been served.
+   *
+   * @param sockets The server sockets.
+   * @param socketListeners The corresponding listeners.
+   * @throws IOException on error.
+   */
+  @SuppressWarnings("PMD.CognitiveComplexity")
+  @SuppressLint("RESOURCE_LEAK")
+  private void selectLoop(List<V> sockets, List<ServerListener> socketListeners)
+      throws IOException {
+    List<SelectionKey> keys = new ArrayList<>(sockets.size());
+    try (Selector selector = ((AFServerSocket<?>) sockets.get(0)).getChannel().provider()
+        .openSelector()) {
+      for (int i = 0, n = sockets.size(); i < n; i++) {
+        AFServerSocketChannel<?> channel = ((AFServerSocket<?>) sockets.get(i)).getChannel();
+        channel.configureBlocking(false);
+        keys.add(channel.register(selector, SelectionKey.OP_ACCEPT, socketListeners.get(i)));
+      }
+      acceptSelector = selector;
+
+      long lastAccept = System.currentTimeMillis();
+      while (!stopRequested.get() && !Thread.interrupted()) {
+        awaitCapacity(null);
+        if (stopRequested.get()) {
+          break;
+        }
+
+        for (SelectionKey key : keys) {
+          ServerListener listener = (ServerListener) key.attachment();
+          if (listener.hasCapacity()) {
+            key.interestOps(SelectionKey.OP_ACCEPT);
+          } else if (key.interestOps() != 0) {
+            listener.markThrottled();
+            key.interestOps(0);
+          }
+        }
+
+        signalReady();
+
+        int numSelected = serverTimeout > 0 ? selector.select(serverTimeout) : selector.select();
+        long now = System.currentTimeMillis();
+        if (numSelected == 0) {
+          if (serverTimeout > 0 && (now - lastAccept) >= serverTimeout) {
+            if (connectionPool.isQuiescent()) {
+              onServerShuttingDown();
+              connectionPool.shutdown();
+              break;
+            }
+            lastAccept = now;
+          }
+          continue;
+        }
+        lastAccept = now;
+
+        for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext();) {
+          SelectionKey key = it.next();
+          it.remove();
+          if (!key.isValid() || !key.isAcceptable()) {
+            continue;
+          }
+          AFServerSocketChannel<?> channel = (AFServerSocketChannel<?>) key.channel();
+          AFSocketChannel<?> socketChannel;
+          try {
+            socketChannel = channel.accept();
+          } catch (IOException e) {
+            if (stopRequested.get() || !channel.isOpen()) {
+              // already closed, ignore
+              continue;
+            } else {
+              throw e;
+            }
+          }
+          if (socketChannel != null) {
+            @SuppressWarnings("unchecked")
+            S socket = (S) socketChannel.socket();
+            serveAccepted(socket, (ServerListener) key.attachment());
+          }
+        }
+      }
+    } finally {
+      acceptSelector = null;
+    }
+  }
+
   /**
    * Stops the server.
    *
@@ -410,19 +1220,55 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
           this.timeoutFuture = null;
         }
 
+        Selector selector = acceptSelector;
+        if (selector != null) {
+          selector.wakeup();
+        }
+
+        ScheduledExecutorService monitor = backlogMonitor;
+        if (monitor != null) {
+          backlogMonitor = null;
+          monitor.shutdownNow();
+        }
+
+        IOException ex = null;
+        AFUNIXSocketDiagnostics diag = backlogDiagnostics;
+        if (diag != null) {
+          backlogDiagnostics = null;
+          try {
+            diag.close();
+          } catch (IOException e) {
+            ex = e;
+          }
+        }
+        List<V> sockets = new ArrayList<>(additionalSockets);
+        sockets.addAll(boundAdditionalSockets);
+        for (V additionalSocket : sockets) {
+          try {
+            additionalSocket.close();
+          } catch (IOException e) {
+            ex = e;
+          }
+        }
         theServerSocket.close();
+        if (ex != null) {
+          throw ex;
+        }
       } finally {
         SocketServer.this.notifyAll();
       }
     }
   }
 
-  private Future<?> submit(final S socket, ExecutorService executor) {
+  private Future<?> submit(final S socket, final ServerListener listener,
+      ExecutorService executor) {
     Objects.requireNonNull(socket);
     return executor.submit(new Runnable() {
       @Override
       public void run() {
         onBeforeServingSocket(socket);
+        armIdleTimeout(socket);
+        armOperationDeadlines(socket);
 
         try { // NOPMD
           doServeSocket(socket);
@@ -431,11 +1277,9 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
         } catch (Throwable t) { // NOPMD
           onServingException(socket, t); // NOPMD
         } finally {
-          // Notify the server's accept thread that we handled the connection
-          synchronized (connectionsMonitor) {
-            connectionsMonitor.notifyAll();
-          }
-
+          disarmIdleTimeout(socket);
+          disarmOperationDeadlines(socket);
+          connectionDone(listener);
           doSocketClose(socket);
           onAfterServingSocket(socket);
         }
@@ -481,18 +1325,19 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
         existingFuture.cancel(false);
       }
 
-      return (this.timeoutFuture = TIMEOUTS.schedule(new Callable<IOException>() {
-        @SuppressFBWarnings("THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION")
-        @Override
-        public IOException call() throws Exception {
-          try {
-            stop();
-            return null;
-          } catch (IOException e) {
-            return e;
-          }
-        }
-      }, delay, unit));
+      return (this.timeoutFuture = new TimerWheelFuture<>(timerWheel,
+          new Callable<IOException>() {
+            @SuppressFBWarnings("THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION")
+            @Override
+            public IOException call() throws Exception {
+              try {
+                stop();
+                return null;
+              } catch (IOException e) {
+                return e;
+              }
+            }
+          }, delay, unit));
     }
   }
 
@@ -588,6 +1433,55 @@ public abstract class SocketServer<A extends SocketAddress, S extends Socket, V
   protected void onBeforeServingSocket(S socket) {
   }
 
+  /**
+   * Called when a socket has exceeded the idle timeout, before the {@link IdleEvictionPolicy} is
+   * applied.
+   * <p>
+   * This method is called from the timer thread, and must not block.
+   *
+   * @param socket The socket.
+   * @param idleMillis The idle timeout that was exceeded, in milliseconds.
+   */
+  protected void onSocketIdle(S socket, long idleMillis) {
+  }
+
+  /**
+   * Called when a read operation has exceeded the read deadline, before the socket is closed.
+   * <p>
+   * This method is called from the timer thread, and must not block.
+   *
+   * @param socket The socket.
+   * @param deadlineMillis The read deadline that was exceeded, in milliseconds.
+   * @see #setReadTimeout(int)
+   */
+  protected void onSocketReadTimeout(S socket, long deadlineMillis) {
+  }
+
+  /**
+   * Called when a write operation has exceeded the write deadline, before the socket is closed.
+   * <p>
+   * This method is called from the timer thread, and must not block.
+   *
+   * @param socket The socket.
+   * @param deadlineMillis The write deadline that was exceeded, in milliseconds.
+   * @see #setWriteTimeout(int)
+   */
+  protected void onSocketWriteTimeout(S socket, long deadlineMillis) {
+  }
+
+  /**
+   * Called when the accept backlog of a listener was found to be saturated, see
+   * {@link #setBacklogSaturationThreshold(float)}. The sampled backlog is available via
+   * {@link ServerListener#getPendingConnections()} and {@link ServerListener#getMaxBacklog()}.
+   * <p>
+   * This method is called from the server's backlog monitor thread; while it runs, no further
+   * samples are taken.
+   *
+   * @param listener The saturated listener.
+   */
+  protected void onBacklogSaturated(ServerListener listener) {
+  }
+
   /**
    * Called when an exception was thrown while serving a socket.
    *
@@ -0,0 +1,69 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.server;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.newsclub.net.unix.AFTimerWheel;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * A {@link ScheduledFuture} backed by an {@link AFTimerWheel} timeout.
+ * <p>
+ * Since the timer wheel's worker thread must not block, the callable is run on the common
+ * {@link ForkJoinPool} once the timeout expires.
+ *
+ * @author Christian Kohlschütter
+ * @param <V> The result type.
+ */
+@SuppressFBWarnings("EQ_COMPARETO_USE_OBJECT_EQUALS")
+final class TimerWheelFuture<V> extends FutureTask<V> implements ScheduledFuture<V> {
+  private final AFTimerWheel.Timeout timeout;
+
+  TimerWheelFuture(AFTimerWheel wheel, Callable<V> callable, long delay, TimeUnit unit) {
+    super(callable);
+    this.timeout = wheel.schedule(new Runnable() {
+      @Override
+      public void run() {
+        ForkJoinPool.commonPool().execute(TimerWheelFuture.this);
+      }
+    }, delay, unit);
+  }
+
+  @Override
+  public long getDelay(TimeUnit unit) {
+    return timeout.getDelay(unit);
+  }
+
+  @Override
+  public int compareTo(Delayed o) {
+    return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    timeout.cancel();
+    return super.cancel(mayInterruptIfRunning);
+  }
+}
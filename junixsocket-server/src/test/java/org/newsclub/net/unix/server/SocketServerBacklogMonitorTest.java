@@ -0,0 +1,156 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocket;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXServerSocket;
+import org.newsclub.net.unix.AFUNIXSocket;
+import org.newsclub.net.unix.AFUNIXSocketAddress;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@AFSocketCapabilityRequirement(AFSocketCapability.CAPABILITY_UNIX_DOMAIN)
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class SocketServerBacklogMonitorTest {
+  private static final int BACKLOG = 4;
+
+  @Test
+  public void testSaturatedBacklogStartsAcceptThreads() throws Exception {
+    assumeTrue("Linux".equals(System.getProperty("os.name")), "sock_diag is Linux-only");
+
+    AFUNIXSocketAddress addr = AFUNIXSocketAddress.ofNewTempFile();
+    AFUNIXServerSocket serverSocket = AFUNIXServerSocket.newInstance();
+    serverSocket.bind(addr, BACKLOG);
+
+    CountDownLatch serving = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch saturated = new CountDownLatch(1);
+    AFSocketServer<AFUNIXSocketAddress> server = new AFSocketServer<AFUNIXSocketAddress>(
+        serverSocket) {
+      @Override
+      protected void doServeSocket(AFSocket<? extends AFUNIXSocketAddress> socket)
+          throws IOException {
+        int b = socket.getInputStream().read();
+        serving.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          return;
+        }
+        socket.getOutputStream().write(b);
+      }
+
+      @Override
+      protected void onBacklogSaturated(ServerListener listener) {
+        saturated.countDown();
+      }
+    };
+    server.setMaxConcurrentConnections(1);
+    server.setBacklogMonitorInterval(10);
+    server.setMaxAcceptThreads(3);
+
+    List<AFUNIXSocket> clients = new ArrayList<>();
+    try {
+      assertTrue(server.startAndWaitToBecomeReady(5, TimeUnit.SECONDS));
+      ServerListener listener = server.getListener(addr);
+      assertNotNull(listener);
+
+      // one connection occupies the only worker; the others pile up in the backlog (the accept
+      // thread may take one more before it notices that the worker is busy)
+      for (int i = 0; i <= BACKLOG; i++) {
+        AFUNIXSocket client = AFUNIXSocket.connectTo(addr);
+        client.setSoTimeout(5000);
+        client.getOutputStream().write(i);
+        clients.add(client);
+        if (i == 0) {
+          assertTrue(serving.await(5, TimeUnit.SECONDS));
+        }
+      }
+
+      assertTrue(saturated.await(5, TimeUnit.SECONDS));
+      assertEquals(BACKLOG, listener.getMaxBacklog());
+      assertTrue(listener.getBacklogSaturatedCount() > 0);
+      long deadline = System.currentTimeMillis() + 5000;
+      while (listener.getExtraAcceptThreads() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertTrue(listener.getExtraAcceptThreads() > 0);
+      assertTrue(listener.getExtraAcceptThreads() <= server.getMaxAcceptThreads() - 1);
+
+      release.countDown();
+      for (int i = 0; i <= BACKLOG; i++) {
+        assertEquals(i, clients.get(i).getInputStream().read());
+      }
+      assertEquals(BACKLOG + 1, listener.getAcceptedCount());
+    } finally {
+      release.countDown();
+      for (AFUNIXSocket client : clients) {
+        client.close();
+      }
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testMonitorStopsWithServer() throws Exception {
+    assumeTrue("Linux".equals(System.getProperty("os.name")), "sock_diag is Linux-only");
+
+    AFUNIXSocketAddress addr = AFUNIXSocketAddress.ofNewTempFile();
+    AFSocketServer<AFUNIXSocketAddress> server = new AFSocketServer<AFUNIXSocketAddress>(addr) {
+      @Override
+      protected void doServeSocket(AFSocket<? extends AFUNIXSocketAddress> socket) {
+      }
+    };
+    server.setBacklogMonitorInterval(10);
+    assertTrue(server.startAndWaitToBecomeReady(5, TimeUnit.SECONDS));
+    String monitorName = server + " backlog monitor";
+    assertTrue(isThreadAlive(monitorName));
+
+    server.stop();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (isThreadAlive(monitorName) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertFalse(isThreadAlive(monitorName), "backlog monitor still running");
+  }
+
+  private static boolean isThreadAlive(String name) {
+    for (Thread t : Thread.getAllStackTraces().keySet()) {
+      if (name.equals(t.getName()) && t.isAlive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
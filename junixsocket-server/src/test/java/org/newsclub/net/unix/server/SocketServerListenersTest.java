@@ -0,0 +1,178 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocket;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXSocket;
+import org.newsclub.net.unix.AFUNIXSocketAddress;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@AFSocketCapabilityRequirement(AFSocketCapability.CAPABILITY_UNIX_DOMAIN)
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class SocketServerListenersTest {
+  private AFUNIXSocketAddress addressA;
+  private AFUNIXSocketAddress addressB;
+  private EchoServer server;
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  /**
+   * Echoes one byte per connection; a {@code 'w'} is only echoed once {@link #release} is counted
+   * down.
+   */
+  private final class EchoServer extends AFSocketServer<AFUNIXSocketAddress> {
+    EchoServer(Set<AFUNIXSocketAddress> addresses) {
+      super(addresses);
+    }
+
+    @Override
+    protected void doServeSocket(AFSocket<? extends AFUNIXSocketAddress> socket)
+        throws IOException {
+      int b = socket.getInputStream().read();
+      if (b == 'w') {
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+      socket.getOutputStream().write(b);
+    }
+  }
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    addressA = AFUNIXSocketAddress.ofNewTempFile();
+    addressB = AFUNIXSocketAddress.ofNewTempFile();
+    Set<AFUNIXSocketAddress> addresses = new LinkedHashSet<>();
+    addresses.add(addressA);
+    addresses.add(addressB);
+    server = new EchoServer(addresses);
+    server.setMaxConcurrentConnections(4);
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    release.countDown();
+    server.stop();
+  }
+
+  private static void assertEcho(AFUNIXSocket sock, int b) throws IOException {
+    sock.setSoTimeout(5000);
+    sock.getOutputStream().write(b);
+    InputStream in = sock.getInputStream();
+    assertEquals(b, in.read());
+  }
+
+  private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new AssertionError("Condition not met within time");
+      }
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testAcceptFromAllListenersWithOneThread() throws Exception {
+    assertTrue(server.startAndWaitToBecomeReady(5, TimeUnit.SECONDS));
+
+    try (AFUNIXSocket a = AFUNIXSocket.connectTo(addressA);
+        AFUNIXSocket b = AFUNIXSocket.connectTo(addressB)) {
+      assertEcho(a, 1);
+      assertEcho(b, 2);
+    }
+
+    assertEquals(2, server.getListeners().size());
+    ServerListener listenerA = server.getListener(addressA);
+    ServerListener listenerB = server.getListener(addressB);
+    assertNotNull(listenerA);
+    assertNotNull(listenerB);
+    assertEquals(1, listenerA.getAcceptedCount());
+    assertEquals(1, listenerB.getAcceptedCount());
+
+    // both listeners are served by the selector in the main listening thread
+    for (Thread t : Thread.getAllStackTraces().keySet()) {
+      assertFalse(t.getName().startsWith(server + " listening thread for "), t.getName());
+    }
+  }
+
+  @Test
+  public void testPerListenerQuota() throws Exception {
+    server.setMaxConcurrentConnections(addressA, 1);
+    assertTrue(server.startAndWaitToBecomeReady(5, TimeUnit.SECONDS));
+    ServerListener listenerA = server.getListener(addressA);
+    assertNotNull(listenerA);
+    assertEquals(1, listenerA.getMaxConcurrentConnections());
+
+    try (AFUNIXSocket busy = AFUNIXSocket.connectTo(addressA);
+        AFUNIXSocket queued = AFUNIXSocket.connectTo(addressA);
+        AFUNIXSocket other = AFUNIXSocket.connectTo(addressB)) {
+      busy.getOutputStream().write('w');
+      queued.getOutputStream().write(3);
+      awaitCondition(() -> listenerA.getThrottledCount() > 0);
+
+      // the exhausted quota of listener A does not affect listener B
+      assertEcho(other, 4);
+      assertEquals(1, listenerA.getActiveCount());
+      assertEquals(1, listenerA.getAcceptedCount());
+
+      // once the busy connection has been served, listener A is re-armed
+      release.countDown();
+      assertEquals('w', busy.getInputStream().read());
+      queued.setSoTimeout(5000);
+      assertEquals(3, queued.getInputStream().read());
+      assertEquals(2, listenerA.getAcceptedCount());
+    }
+    awaitCondition(() -> listenerA.getActiveCount() == 0);
+  }
+
+  @Test
+  public void testQuotaChangedWhileRunning() throws Exception {
+    assertTrue(server.startAndWaitToBecomeReady(5, TimeUnit.SECONDS));
+    ServerListener listenerB = server.getListener(addressB);
+    assertNotNull(listenerB);
+    assertEquals(0, listenerB.getMaxConcurrentConnections());
+
+    server.setMaxConcurrentConnections(addressB, 2);
+    assertEquals(2, listenerB.getMaxConcurrentConnections());
+    try (AFUNIXSocket b = AFUNIXSocket.connectTo(addressB)) {
+      assertEcho(b, 5);
+    }
+  }
+}
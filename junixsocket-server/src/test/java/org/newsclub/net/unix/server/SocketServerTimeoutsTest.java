@@ -0,0 +1,206 @@
+/*
+ * junixsocket
+ *
+ * Copyright 2009-2024 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.newsclub.net.unix.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.newsclub.net.unix.AFSocket;
+import org.newsclub.net.unix.AFSocketCapability;
+import org.newsclub.net.unix.AFSocketCapabilityRequirement;
+import org.newsclub.net.unix.AFUNIXSocket;
+import org.newsclub.net.unix.AFUNIXSocketAddress;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+@AFSocketCapabilityRequirement(AFSocketCapability.CAPABILITY_UNIX_DOMAIN)
+@SuppressFBWarnings({
+    "THROWS_METHOD_THROWS_CLAUSE_THROWABLE", "THROWS_METHOD_THROWS_CLAUSE_BASIC_EXCEPTION"})
+public class SocketServerTimeoutsTest {
+  private AFUNIXSocketAddress address;
+  private TimeoutServer server;
+
+  /**
+   * Echoes every byte it receives; a {@code 'f'} makes it flood the client instead.
+   */
+  private static final class TimeoutServer extends AFSocketServer<AFUNIXSocketAddress> {
+    private final CountDownLatch idle = new CountDownLatch(1);
+    private final CountDownLatch readTimeout = new CountDownLatch(1);
+    private final CountDownLatch writeTimeout = new CountDownLatch(1);
+    private final AtomicReference<Throwable> servingException = new AtomicReference<>();
+
+    TimeoutServer(AFUNIXSocketAddress address) {
+      super(address);
+    }
+
+    @Override
+    protected void doServeSocket(AFSocket<? extends AFUNIXSocketAddress> socket)
+        throws IOException {
+      InputStream in = socket.getInputStream();
+      OutputStream out = socket.getOutputStream();
+      int b;
+      while ((b = in.read()) != -1) {
+        if (b == 'f') {
+          byte[] buf = new byte[8192];
+          while (true) { // NOPMD.WhileLoopWithLiteralBoolean
+            out.write(buf);
+          }
+        }
+        out.write(b);
+      }
+    }
+
+    @Override
+    protected void onServingException(AFSocket<? extends AFUNIXSocketAddress> socket,
+        Throwable t) {
+      servingException.set(t);
+    }
+
+    @Override
+    protected void onSocketIdle(AFSocket<? extends AFUNIXSocketAddress> socket,
+        long idleMillis) {
+      idle.countDown();
+    }
+
+    @Override
+    protected void onSocketReadTimeout(AFSocket<? extends AFUNIXSocketAddress> socket,
+        long deadlineMillis) {
+      readTimeout.countDown();
+    }
+
+    @Override
+    protected void onSocketWriteTimeout(AFSocket<? extends AFUNIXSocketAddress> socket,
+        long deadlineMillis) {
+      writeTimeout.countDown();
+    }
+  }
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    address = AFUNIXSocketAddress.ofNewTempFile();
+    server = new TimeoutServer(address);
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    server.stop();
+  }
+
+  private static void assertClosedByServer(AFUNIXSocket sock) throws IOException {
+    sock.setSoTimeout(5000);
+    InputStream in = sock.getInputStream();
+    try {
+      while (in.read() != -1) { // NOPMD.EmptyControlStatement
+        // drain
+      }
+    } catch (IOException e) {
+      // connection reset
+    }
+  }
+
+  @Test
+  public void testIdleConnectionIsEvicted() throws Exception {
+    server.setIdleTimeout(100);
+    assertTrue(server.startAndWaitToBecomeReady(5, TimeUnit.SECONDS));
+
+    try (AFUNIXSocket sock = AFUNIXSocket.connectTo(address)) {
+      assertTrue(server.idle.await(5, TimeUnit.SECONDS));
+      assertClosedByServer(sock);
+    }
+  }
+
+  @Test
+  public void testActiveConnectionIsNotEvicted() throws Exception {
+    server.setIdleTimeout(200);
+    assertTrue(server.startAndWaitToBecomeReady(5, TimeUnit.SECONDS));
+
+    try (AFUNIXSocket sock = AFUNIXSocket.connectTo(address)) {
+      sock.setSoTimeout(5000);
+      long end = System.currentTimeMillis() + 1000;
+      while (System.currentTimeMillis() < end) {
+        sock.getOutputStream().write(1);
+        assertEquals(1, sock.getInputStream().read());
+        Thread.sleep(20);
+      }
+      assertEquals(1, server.idle.getCount());
+    }
+  }
+
+  @Test
+  public void testIdleEvictionNotifyOnly() throws Exception {
+    server.setIdleTimeout(100);
+    server.setIdleEvictionPolicy(IdleEvictionPolicy.NOTIFY_ONLY);
+    assertTrue(server.startAndWaitToBecomeReady(5, TimeUnit.SECONDS));
+
+    try (AFUNIXSocket sock = AFUNIXSocket.connectTo(address)) {
+      assertTrue(server.idle.await(5, TimeUnit.SECONDS));
+      sock.setSoTimeout(5000);
+      sock.getOutputStream().write(2);
+      assertEquals(2, sock.getInputStream().read());
+    }
+  }
+
+  @Test
+  public void testReadDeadline() throws Exception {
+    server.setReadTimeout(100);
+    assertTrue(server.startAndWaitToBecomeReady(5, TimeUnit.SECONDS));
+
+    try (AFUNIXSocket sock = AFUNIXSocket.connectTo(address)) {
+      // reads that complete in time don't trip the deadline
+      sock.setSoTimeout(5000);
+      for (int i = 0; i < 3; i++) {
+        sock.getOutputStream().write(i);
+        assertEquals(i, sock.getInputStream().read());
+      }
+
+      assertTrue(server.readTimeout.await(5, TimeUnit.SECONDS));
+      assertClosedByServer(sock);
+      assertEquals(1, server.writeTimeout.getCount());
+    }
+  }
+
+  @Test
+  public void testWriteDeadline() throws Exception {
+    server.setWriteTimeout(100);
+    assertTrue(server.startAndWaitToBecomeReady(5, TimeUnit.SECONDS));
+
+    try (AFUNIXSocket sock = AFUNIXSocket.connectTo(address)) {
+      // the server floods the connection, but we don't read
+      sock.getOutputStream().write('f');
+
+      assertTrue(server.writeTimeout.await(5, TimeUnit.SECONDS));
+      long deadline = System.currentTimeMillis() + 5000;
+      while (server.servingException.get() == null && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertNotNull(server.servingException.get(), "blocked write should have been aborted");
+      assertEquals(1, server.readTimeout.getCount());
+    }
+  }
+}